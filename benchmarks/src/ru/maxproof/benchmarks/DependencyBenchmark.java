@@ -0,0 +1,91 @@
+package ru.maxproof.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.maxproof.taskmanager.Task;
+import ru.maxproof.taskmanager.TaskBuilder;
+import ru.maxproof.taskmanager.TaskManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Изменение графа зависимостей из size задач и EDGES * size зависимостей между близкими по Id задачами
+ * с инкрементальным пересчетом топологического порядка и критического пути.
+ * Добавленная зависимость удаляется следующим вызовом, поэтому граф между вызовами не растет.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DependencyBenchmark {
+
+    static final int EDGES = 5;
+    static final int WINDOW = 1000;      // наибольшая разность Id зависимых задач
+
+    @Param({"10000", "100000"})
+    int size;
+
+    @Param({"InMemory", "Concurrent", "Synchronized", "OffHeap", "Sharded"})
+    String implementation;
+
+    TaskManager manager;
+    Random random;
+    int blockerId;          // задача без времени начала и без блокирующих задач
+    int taskId = 0;         // задача, зависимость которой будет удалена (0 - нет)
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = Workloads.timeline(implementation, size);
+        random = new Random(42);
+        for (int added = 0; added < EDGES * size; ) {
+            int blocker = 1 + random.nextInt(size);
+            int task = blocker + 1 + random.nextInt(WINDOW);
+            if (task <= size) {
+                manager.addDependency(task, blocker);
+                added++;
+            }
+        }
+        blockerId = manager.createTask(new TaskBuilder()
+                .setName("Blocker")
+                .setDuration(Workloads.SLOT)
+                .buildTask()).getId();
+    }
+
+    /**
+     * Добавляет зависимость случайной задачи от задачи без блокирующих задач (цикл невозможен)
+     * с пересчетом окончания всех зависящих задач либо удаляет добавленную зависимость
+     */
+    @Benchmark
+    public void addDependency() {
+        if (taskId != 0) {
+            manager.removeDependency(taskId, blockerId);
+            taskId = 0;
+        } else {
+            taskId = 1 + random.nextInt(size);
+            manager.addDependency(taskId, blockerId);
+        }
+    }
+
+    /**
+     * Изменяет продолжительность случайной задачи в пределах свободного промежутка шкалы
+     */
+    @Benchmark
+    public void updateDuration() {
+        Task task = manager.getTask(1 + random.nextInt(size));
+        manager.updateTask(new TaskBuilder(task).setDuration(Duration.ofMinutes(1 + random.nextInt(120))).buildTask());
+    }
+
+    @Benchmark
+    public List<Task> getCriticalPath() {
+        return manager.getCriticalPath();
+    }
+
+    @Benchmark
+    public List<Task> getDependencyOrder() {
+        return manager.getDependencyOrder();
+    }
+}
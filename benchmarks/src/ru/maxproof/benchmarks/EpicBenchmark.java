@@ -0,0 +1,62 @@
+package ru.maxproof.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.maxproof.taskmanager.Epic;
+import ru.maxproof.taskmanager.Subtask;
+import ru.maxproof.taskmanager.TaskBuilder;
+import ru.maxproof.taskmanager.TaskManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции над эпиком с большим числом подзадач
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EpicBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int size;
+
+    @Param({"InMemory", "Concurrent", "Synchronized", "OffHeap", "Sharded"})
+    String implementation;
+
+    TaskManager manager;
+    Epic epic;
+    long counter;
+
+    /**
+     * Создает эпик с size подзадачами, расположенными на шкале времени
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        manager = Workloads.createManager(implementation);
+        int epicId = manager.createEpic(new TaskBuilder()
+                .setName("Epic")
+                .setDescription("Benchmark epic")
+                .buildEpic()).getId();
+        for (int i = 0; i < size; i++)
+            manager.createSubtask(Workloads.timedSubtask(epicId, Workloads.slotStart(i), Workloads.SLOT));
+        epic = manager.getEpics().getFirst();
+        counter = 0;
+    }
+
+    /**
+     * Добавление подзадачи в большой эпик (включает пересчет статуса и времени эпика)
+     */
+    @Benchmark
+    public Subtask createSubtask() {
+        return manager.createSubtask(Workloads.timedSubtask(epic.getId(),
+                Workloads.gapTime(counter++, size), Workloads.TINY));
+    }
+
+    @Benchmark
+    public List<Subtask> getEpicSubtasks() {
+        return manager.getEpicSubtasks(epic);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.maxproof.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.maxproof.taskmanager.HistoryNodeList;
+import ru.maxproof.taskmanager.Task;
+import ru.maxproof.taskmanager.TaskBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Добавление в историю просмотров задачи, которая уже есть в истории
+ * (перемещение узла в конец списка)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int size;
+
+    HistoryNodeList history;
+    Task[] tasks;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        history = new HistoryNodeList();
+        tasks = new Task[size];
+        for (int i = 0; i < size; i++) {
+            tasks[i] = new TaskBuilder()
+                    .setId(i + 1)
+                    .setName("Task")
+                    .setDescription("Benchmark task")
+                    .buildTask();
+            history.addTask(tasks[i]);
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public void addTask() {
+        history.addTask(tasks[next]);
+        if (++next == size)
+            next = 0;
+    }
+}
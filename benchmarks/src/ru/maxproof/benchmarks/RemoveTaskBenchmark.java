@@ -0,0 +1,44 @@
+package ru.maxproof.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.maxproof.taskmanager.TaskManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Удаление задач со шкалы времени. Удаление необратимо, поэтому измеряется
+ * пакет из BATCH удалений за итерацию, а шкала пересоздается перед каждой итерацией.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, batchSize = RemoveTaskBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = RemoveTaskBenchmark.BATCH)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RemoveTaskBenchmark {
+
+    static final int BATCH = 1000;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int size;
+
+    @Param({"InMemory", "Concurrent", "Synchronized", "OffHeap", "Sharded"})
+    String implementation;
+
+    TaskManager manager;
+    int nextId;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        manager = Workloads.timeline(implementation, size);
+        nextId = 1;
+    }
+
+    /**
+     * Удаляет очередную задачу шкалы; задачи удаляются в порядке создания
+     */
+    @Benchmark
+    public void removeTask() {
+        manager.removeTask(nextId++);
+    }
+}
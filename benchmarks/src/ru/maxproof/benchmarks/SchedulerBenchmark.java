@@ -0,0 +1,51 @@
+package ru.maxproof.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.maxproof.taskmanager.SchedulePlan;
+import ru.maxproof.taskmanager.Task;
+import ru.maxproof.taskmanager.TaskBuilder;
+import ru.maxproof.taskmanager.TaskManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение плана размещения задач без времени начала в промежутках шкалы
+ * (пробный режим не изменяет менеджер, поэтому измерения повторяемы)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchedulerBenchmark {
+
+    @Param({"10000", "100000"})
+    int unscheduled;
+
+    @Param({"InMemory", "Concurrent"})
+    String implementation;
+
+    TaskManager manager;
+
+    @Setup
+    public void setUp() {
+        manager = Workloads.timeline(implementation, 10_000);
+        List<Task> tasks = new ArrayList<>(unscheduled);
+        for (int i = 0; i < unscheduled; i++) {
+            tasks.add(new TaskBuilder()
+                    .setName("Unscheduled")
+                    .setDuration(Duration.ofMinutes(10 + i % 50))
+                    .buildTask());
+        }
+        manager.createTasks(tasks);
+    }
+
+    @Benchmark
+    public SchedulePlan planSchedule() {
+        return manager.autoSchedule(Workloads.BASE, null, true);
+    }
+}
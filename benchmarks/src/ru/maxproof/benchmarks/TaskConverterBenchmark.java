@@ -0,0 +1,66 @@
+package ru.maxproof.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.maxproof.server.TaskConverter;
+import ru.maxproof.taskmanager.Managers;
+import ru.maxproof.taskmanager.Subtask;
+import ru.maxproof.taskmanager.TaskBuilder;
+import ru.maxproof.taskmanager.TaskManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование подзадач в JSON и обратно общим преобразователем TaskConverter
+ * (затраты на преобразование в расчете на один запрос)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskConverterBenchmark {
+
+    static final int SUBTASKS = 20;
+
+    Subtask subtask;
+    List<Subtask> subtasks;
+    String subtaskJson;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TaskManager manager = Managers.getDefault();
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 0, 0);
+        int epicId = manager.createEpic(new TaskBuilder().setName("epic").buildEpic()).getId();
+        for (int i = 0; i < SUBTASKS; i++) {
+            manager.createSubtask(new TaskBuilder()
+                    .setEpicId(epicId)
+                    .setName("subtask " + i)
+                    .setDescription("description " + i)
+                    .setStartTime(start.plusHours(i))
+                    .setDuration(Duration.ofMinutes(45))
+                    .buildSubtask());
+        }
+        subtasks = manager.getSubtasks();
+        subtask = subtasks.getFirst();
+        subtaskJson = TaskConverter.toJson(subtask);
+    }
+
+    @Benchmark
+    public String subtaskToJson() {
+        return TaskConverter.toJson(subtask);
+    }
+
+    @Benchmark
+    public Subtask subtaskFromJson() {
+        return TaskConverter.fromJson(subtaskJson, Subtask.class);
+    }
+
+    @Benchmark
+    public String subtaskListToJson() {
+        return TaskConverter.toJson(subtasks);
+    }
+}
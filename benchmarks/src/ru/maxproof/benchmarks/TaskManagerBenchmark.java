@@ -0,0 +1,85 @@
+package ru.maxproof.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.maxproof.exceptions.OverlappingTasksException;
+import ru.maxproof.taskmanager.Task;
+import ru.maxproof.taskmanager.TaskManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Создание задач с проверкой пересечений по времени и получение
+ * списка задач в порядке приоритета
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskManagerBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int size;
+
+    @Param({"InMemory", "Concurrent", "Synchronized", "OffHeap", "Sharded"})
+    String implementation;
+
+    TaskManager manager;
+    long counter;
+
+    /**
+     * Шкала пересоздается на каждой итерации, чтобы созданные задачи
+     * не накапливались и размер менеджера оставался близким к size
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        manager = Workloads.timeline(implementation, size);
+        counter = 0;
+    }
+
+    /**
+     * Успешное создание задачи в свободном промежутке шкалы
+     */
+    @Benchmark
+    public Task createTask() {
+        return manager.createTask(Workloads.timedTask(Workloads.gapTime(counter++, size), Workloads.TINY));
+    }
+
+    /**
+     * Создание задачи, пересекающейся с задачей шкалы (отклоняется менеджером)
+     */
+    @Benchmark
+    public Object createTaskConflicting() {
+        long slot = counter++ % size;
+        try {
+            return manager.createTask(Workloads.timedTask(Workloads.slotStart(slot).plusMinutes(30), Workloads.SLOT));
+        } catch (OverlappingTasksException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Получение задачи по идентификатору (включает добавление в историю просмотров)
+     */
+    @Benchmark
+    public Task getTask() {
+        return manager.getTask((int) (counter++ % size) + 1);
+    }
+
+    @Benchmark
+    public List<Task> getPrioritizedTasks() {
+        return manager.getPrioritizedTasks();
+    }
+
+    /**
+     * Получение задач шкалы за одну неделю (84 задачи) в середине шкалы
+     */
+    @Benchmark
+    public List<Task> getPrioritizedWeek() {
+        LocalDateTime from = Workloads.slotStart(size / 2);
+        return manager.getPrioritizedTasks(from, from.plusWeeks(1));
+    }
+}
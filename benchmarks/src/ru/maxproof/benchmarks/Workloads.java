@@ -0,0 +1,83 @@
+package ru.maxproof.benchmarks;
+
+import ru.maxproof.taskmanager.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Общие рабочие нагрузки бенчмарков. Все реализации TaskManager заполняются
+ * одинаково, поэтому результаты разных реализаций сопоставимы.
+ * <p>
+ * Шкала времени: задача i начинается в BASE + 2i часов и длится 1 час,
+ * за каждой задачей следует свободный промежуток длиной 1 час.
+ */
+final class Workloads {
+
+    static final LocalDateTime BASE = LocalDateTime.of(2030, 1, 1, 0, 0);
+    static final Duration SLOT = Duration.ofHours(1);
+    static final Duration TINY = Duration.ofNanos(1);
+
+    private Workloads() {
+    }
+
+    /**
+     * Создает пустой менеджер задач требуемой реализации
+     * @param implementation InMemory, Concurrent, Synchronized, OffHeap или Sharded
+     */
+    static TaskManager createManager(String implementation) {
+        return switch (implementation) {
+            case "InMemory" -> new InMemoryTaskManager();
+            case "Concurrent" -> Managers.getConcurrent();
+            case "Synchronized" -> Managers.synchronizedTaskManager(new InMemoryTaskManager());
+            case "OffHeap" -> Managers.getOffHeap();
+            case "Sharded" -> Managers.getSharded();
+            default -> throw new IllegalArgumentException("Неизвестная реализация: " + implementation);
+        };
+    }
+
+    /**
+     * Время начала i-й задачи шкалы
+     */
+    static LocalDateTime slotStart(long i) {
+        return BASE.plusHours(2 * i);
+    }
+
+    /**
+     * Время внутри свободных промежутков шкалы из size задач. Последовательные значения k
+     * обходят все промежутки, затем смещаются на наносекунду, поэтому задачи
+     * длительностью TINY никогда не пересекаются ни с шкалой, ни друг с другом.
+     */
+    static LocalDateTime gapTime(long k, int size) {
+        return slotStart(k % size).plus(SLOT).plusNanos(k / size);
+    }
+
+    static Task timedTask(LocalDateTime startTime, Duration duration) {
+        return new TaskBuilder()
+                .setName("Task")
+                .setDescription("Benchmark task")
+                .setStartTime(startTime)
+                .setDuration(duration)
+                .buildTask();
+    }
+
+    static Subtask timedSubtask(int epicId, LocalDateTime startTime, Duration duration) {
+        return new TaskBuilder()
+                .setName("Subtask")
+                .setDescription("Benchmark subtask")
+                .setEpicId(epicId)
+                .setStartTime(startTime)
+                .setDuration(duration)
+                .buildSubtask();
+    }
+
+    /**
+     * Создает менеджер со шкалой из size задач. Идентификаторы задач - 1..size.
+     */
+    static TaskManager timeline(String implementation, int size) {
+        TaskManager manager = createManager(implementation);
+        for (int i = 0; i < size; i++)
+            manager.createTask(timedTask(slotStart(i), SLOT));
+        return manager;
+    }
+}
@@ -52,10 +52,10 @@ public class Demo {
 
         System.out.println("Перечень задач (группировка по статусу)");
         System.out.println("------------------------------------------------");
+        var counts = taskManager.countByStatus();
         for (var status: TaskStatus.values()) {
-            System.out.println(status);
-            taskManager.getEntireTaskList().stream()
-                    .filter(task -> task.getStatus() == status)
+            System.out.println(status + " (" + counts.get(status) + ")");
+            taskManager.getTasksByStatus(status)
                     .forEach(task -> System.out.println(" * " + task));
         }
         System.out.println();
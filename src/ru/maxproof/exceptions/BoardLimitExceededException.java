@@ -0,0 +1,12 @@
+package ru.maxproof.exceptions;
+
+/**
+ * Класс исключения для возбуждения в случае, когда изменение доски задач
+ * превышает установленное для нее ограничение (на число задач или на объем памяти).
+ */
+public class BoardLimitExceededException extends RuntimeException {
+
+    public BoardLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.maxproof.exceptions;
+
+/**
+ * Класс исключения для возбуждения в случае добавления зависимости
+ * между задачами, образующей цикл зависимостей.
+ */
+public class DependencyCycleException extends RuntimeException {
+    public DependencyCycleException(String message) {
+        super(message);
+    }
+}
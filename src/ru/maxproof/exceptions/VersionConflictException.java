@@ -0,0 +1,22 @@
+package ru.maxproof.exceptions;
+
+/**
+ * Класс исключения для возбуждения в случае условного обновления задачи,
+ * версия которой отличается от ожидаемой (задача была изменена после ее получения).
+ */
+public class VersionConflictException extends RuntimeException {
+
+    private final long actualVersion;
+
+    public VersionConflictException(String message, long actualVersion) {
+        super(message);
+        this.actualVersion = actualVersion;
+    }
+
+    /**
+     * Возвращает текущую версию задачи
+     */
+    public long getActualVersion() {
+        return actualVersion;
+    }
+}
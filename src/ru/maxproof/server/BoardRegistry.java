@@ -0,0 +1,192 @@
+package ru.maxproof.server;
+
+import com.sun.net.httpserver.HttpHandler;
+import ru.maxproof.taskmanager.BoardTaskManager;
+import ru.maxproof.taskmanager.FileBackedTaskManager;
+import ru.maxproof.taskmanager.Managers;
+import ru.maxproof.taskmanager.TaskManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Реестр досок задач: изолированных менеджеров задач, размещаемых в одном сервере.
+ * Доска создается (или загружается из файла) при первом обращении к ней,
+ * а доска, к которой не было обращений в течение заданного времени, выгружается из памяти.
+ * Каждое изменение доски записывается в журнал, поэтому при выгрузке журнал лишь сжимается в снимок.
+ * <p>
+ * Выгружаемая доска помечается, и журнал сжимается вне операций над таблицей досок, поэтому файловый
+ * ввод-вывод выгрузки не блокирует обращения к другим доскам. Запрос к выгружаемой доске ожидает
+ * завершения выгрузки и загружает доску заново.
+ */
+public final class BoardRegistry implements AutoCloseable {
+
+    private static final Pattern BOARD_NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final long MIN_EVICTION_PERIOD = 1000;     // минимальный период проверки досок, мс
+    private static final int EVICTING = -1;                   // число запросов выгружаемой доски
+
+    /**
+     * Загруженная доска
+     */
+    static final class Board {
+        private final BoardTaskManager storage;
+        private final Map<String, HttpHandler> handlers;
+        private final AtomicInteger activeRequests = new AtomicInteger();    // EVICTING - доска выгружается
+        private final CompletableFuture<Void> evicted = new CompletableFuture<>();
+        private volatile long lastAccess;
+
+        private Board(BoardTaskManager storage) {
+            this.storage = storage;
+            // Запросы к доске могут выполняться параллельно
+            TaskManager manager = Managers.synchronizedTaskManager(storage);
+            this.handlers = HttpTaskServer.createHandlers(manager);
+        }
+
+        /**
+         * Возвращает обработчик ресурса доски (null - ресурс отсутствует)
+         * @param context Путь ресурса, например "/tasks"
+         */
+        HttpHandler getHandler(String context) {
+            return handlers.get(context);
+        }
+
+        /**
+         * Захватывает доску, если она не выгружается
+         */
+        private boolean tryAcquire() {
+            for (int count = activeRequests.get(); count != EVICTING; count = activeRequests.get()) {
+                if (activeRequests.compareAndSet(count, count + 1))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    private final Path directory;
+    private final long idleTimeout;
+    private final int maxTasks;
+    private final long maxMemory;
+    private final Map<String, Board> boards = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+
+
+    private BoardRegistry(Path directory, Duration idleTimeout, int maxTasks, long maxMemory) {
+        this.directory = directory;
+        this.idleTimeout = idleTimeout.toNanos();
+        this.maxTasks = maxTasks;
+        this.maxMemory = maxMemory;
+        evictor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("board-evictor").daemon().factory());
+    }
+
+    /**
+     * Создает реестр досок и запускает периодическую выгрузку неиспользуемых досок
+     * @param directory Каталог файлов досок
+     * @param idleTimeout Время без обращений, после которого доска выгружается из памяти
+     * @param maxTasks Максимальное число задач доски (0 - без ограничения)
+     * @param maxMemory Максимальная оценка памяти, занимаемой задачами доски, байт (0 - без ограничения)
+     * @return Реестр досок
+     * @throws IOException если не удалось создать каталог файлов досок
+     */
+    public static BoardRegistry open(Path directory, Duration idleTimeout, int maxTasks, long maxMemory)
+            throws IOException {
+
+        // Выгрузка запускается после создания реестра: поток выгрузки видит полностью созданный реестр
+        BoardRegistry registry = new BoardRegistry(Files.createDirectories(directory), idleTimeout, maxTasks, maxMemory);
+        long period = Math.max(idleTimeout.toMillis() / 2, MIN_EVICTION_PERIOD);
+        registry.evictor.scheduleWithFixedDelay(registry::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        return registry;
+    }
+
+    /**
+     * Проверяет допустимость имени доски (латинские буквы, цифры, '_' и '-', не более 64 символов)
+     */
+    static boolean isValidName(String name) {
+        return BOARD_NAME.matcher(name).matches();
+    }
+
+    /**
+     * Захватывает доску для выполнения запроса, при необходимости создавая или загружая ее.
+     * Захваченная доска не выгружается до вызова release.
+     * @param name Имя доски (см. isValidName)
+     * @return Доска
+     * @throws FileBackedTaskManager.ManagerSaveException если не удалось загрузить доску
+     */
+    Board acquire(String name) {
+        while (true) {
+            Board board = boards.computeIfAbsent(name, key ->
+                    new Board(BoardTaskManager.open(directory.resolve(key + ".csv"), maxTasks, maxMemory)));
+            if (board.tryAcquire()) {
+                board.lastAccess = System.nanoTime();
+                return board;
+            }
+            // Доска выгружается: после сжатия журнала она будет загружена заново
+            board.evicted.join();
+        }
+    }
+
+    /**
+     * Освобождает доску по завершении запроса
+     */
+    void release(Board board) {
+        board.lastAccess = System.nanoTime();
+        board.activeRequests.decrementAndGet();
+    }
+
+    /**
+     * Проверяет, загружена ли доска в память
+     */
+    boolean isLoaded(String name) {
+        return boards.containsKey(name);
+    }
+
+    /**
+     * Выгружает из памяти доски без выполняющихся запросов, к которым не было обращений
+     * в течение заданного времени
+     */
+    void evictIdle() {
+
+        long now = System.nanoTime();
+        boards.forEach((name, board) -> {
+            if (board.activeRequests.get() == 0 && now - board.lastAccess >= idleTimeout)
+                evict(name, board);
+        });
+    }
+
+    /**
+     * Выгружает доску, если она не захвачена запросами
+     */
+    private void evict(String name, Board board) {
+
+        if (!board.activeRequests.compareAndSet(0, EVICTING))
+            return;
+        try {
+            board.storage.compact();
+        } catch (FileBackedTaskManager.ManagerSaveException e) {
+            // Журнал доски не изменяется при неудачном сжатии: доска будет загружена из журнала
+        } finally {
+            boards.remove(name, board);
+            board.evicted.complete(null);
+        }
+    }
+
+    /**
+     * Останавливает выгрузку досок и сохраняет снимки всех загруженных досок без выполняющихся запросов
+     * (журнал досок с выполняющимися запросами остается полным)
+     */
+    @Override
+    public void close() {
+        evictor.close();
+        boards.forEach(this::evict);
+    }
+}
@@ -0,0 +1,74 @@
+package ru.maxproof.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import ru.maxproof.exceptions.BoardLimitExceededException;
+import ru.maxproof.taskmanager.FileBackedTaskManager;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Обработчик запросов к доскам задач: запрос /boards/{board}/{resource}... передается
+ * обработчику ресурса {resource} доски {board} (например, /boards/team1/tasks/5 - запросу /tasks/5 доски team1)
+ */
+class BoardRouter implements HttpHandler {
+
+    private static final String PREFIX = "/boards/";
+    private static final int INSUFFICIENT_STORAGE = 507;
+
+    private final BoardRegistry registry;
+
+
+    BoardRouter(BoardRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+
+        // Разбор пути: имя доски и путь ресурса доски
+        URI uri = exchange.getRequestURI();
+        String path = uri.getRawPath();
+        int boardEnd = path.indexOf('/', PREFIX.length());
+        if (!path.startsWith(PREFIX) || boardEnd < 0) {
+            sendEmptyResponse(exchange, 404);
+            return;
+        }
+        String name = path.substring(PREFIX.length(), boardEnd);
+        if (!BoardRegistry.isValidName(name)) {
+            sendEmptyResponse(exchange, 400);
+            return;
+        }
+        String resourcePath = path.substring(boardEnd);
+        int contextEnd = resourcePath.indexOf('/', 1);
+        String context = contextEnd < 0 ? resourcePath : resourcePath.substring(0, contextEnd);
+        String query = uri.getRawQuery();
+        URI resourceURI = URI.create(query == null ? resourcePath : resourcePath + "?" + query);
+
+        // Выполнение запроса обработчиком ресурса захваченной доски
+        BoardRegistry.Board board;
+        try {
+            board = registry.acquire(name);
+        } catch (FileBackedTaskManager.ManagerSaveException e) {
+            sendEmptyResponse(exchange, 500);
+            return;
+        }
+        try {
+            HttpHandler handler = board.getHandler(context);
+            if (handler == null)
+                sendEmptyResponse(exchange, 404);
+            else
+                handler.handle(new BoardExchange(exchange, resourceURI));
+        } catch (BoardLimitExceededException e) {
+            sendEmptyResponse(exchange, INSUFFICIENT_STORAGE);
+        } finally {
+            registry.release(board);
+        }
+    }
+
+    private static void sendEmptyResponse(HttpExchange exchange, int responseCode) throws IOException {
+        exchange.sendResponseHeaders(responseCode, 0);
+        exchange.close();
+    }
+}
@@ -1,5 +1,6 @@
 package ru.maxproof.server;
 
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import ru.maxproof.server.handlers.*;
 import ru.maxproof.taskmanager.Managers;
@@ -7,28 +8,127 @@ import ru.maxproof.taskmanager.TaskManager;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 public class HttpTaskServer {
 
+    /**
+     * Режим выполнения запросов
+     */
+    public enum ExecutionMode {
+        DISPATCHER,         // все запросы выполняются потоком-диспетчером сервера
+        THREAD_POOL,        // запросы выполняются пулом платформенных потоков фиксированного размера
+        VIRTUAL_THREADS     // каждый запрос выполняется в отдельном виртуальном потоке
+    }
+
     private static final int PORT = 8080;
+    private static final int DEFAULT_BACKLOG = 0;   // 0 - значение по умолчанию системы
+    private static final long DEFAULT_BOARD_IDLE = 600;     // время до выгрузки доски без обращений, с
 
     private final HttpServer httpServer;
+    private final ExecutorService executor;
+    private final BoardRegistry boards;
+    private final int port;
 
     HttpTaskServer() throws IOException {
+        this(PORT, ExecutionMode.THREAD_POOL, Runtime.getRuntime().availableProcessors(), DEFAULT_BACKLOG);
+    }
 
-        // Создание сервера
-        httpServer = HttpServer.create(new InetSocketAddress(PORT), 0);
+    /**
+     * Конструктор сервера
+     * @param port Порт сервера
+     * @param mode Режим выполнения запросов
+     * @param threads Число потоков пула (для режима THREAD_POOL)
+     * @param backlog Максимальная длина очереди входящих соединений (0 - значение по умолчанию системы)
+     * @throws IOException если не удалось открыть порт сервера
+     */
+    public HttpTaskServer(int port, ExecutionMode mode, int threads, int backlog) throws IOException {
+        this(port, mode, threads, backlog, null);
+    }
 
-        // Создание менеджера задач
-        TaskManager taskManager = Managers.getDefault();
+    /**
+     * Конструктор сервера с досками задач
+     * @param port Порт сервера
+     * @param mode Режим выполнения запросов
+     * @param threads Число потоков пула (для режима THREAD_POOL)
+     * @param backlog Максимальная длина очереди входящих соединений (0 - значение по умолчанию системы)
+     * @param boards Реестр досок задач, доступных по пути /boards/{board} (null - доски не поддерживаются)
+     * @throws IOException если не удалось открыть порт сервера
+     */
+    public HttpTaskServer(int port, ExecutionMode mode, int threads, int backlog, BoardRegistry boards)
+            throws IOException {
+        // Менеджер задач при параллельной обработке запросов - потокобезопасный
+        this(mode == ExecutionMode.DISPATCHER ? Managers.getDefault() : Managers.getConcurrent(),
+                port, mode, threads, backlog, boards);
+    }
+
+    /**
+     * Конструктор сервера для заданного менеджера задач
+     * @param taskManager Менеджер задач (при режиме, отличном от DISPATCHER, - потокобезопасный)
+     * @param port Порт сервера
+     * @param mode Режим выполнения запросов
+     * @param threads Число потоков пула (для режима THREAD_POOL)
+     * @param backlog Максимальная длина очереди входящих соединений (0 - значение по умолчанию системы)
+     * @throws IOException если не удалось открыть порт сервера
+     */
+    public HttpTaskServer(TaskManager taskManager, int port, ExecutionMode mode, int threads, int backlog)
+            throws IOException {
+        this(taskManager, port, mode, threads, backlog, null);
+    }
+
+    /**
+     * Конструктор сервера для заданного менеджера задач с досками задач
+     * @param taskManager Менеджер задач (при режиме, отличном от DISPATCHER, - потокобезопасный)
+     * @param port Порт сервера
+     * @param mode Режим выполнения запросов
+     * @param threads Число потоков пула (для режима THREAD_POOL)
+     * @param backlog Максимальная длина очереди входящих соединений (0 - значение по умолчанию системы)
+     * @param boards Реестр досок задач, доступных по пути /boards/{board} (null - доски не поддерживаются)
+     * @throws IOException если не удалось открыть порт сервера
+     */
+    public HttpTaskServer(TaskManager taskManager, int port, ExecutionMode mode, int threads, int backlog,
+                          BoardRegistry boards) throws IOException {
+
+        // Создание сервера
+        this.port = port;
+        this.boards = boards;
+        httpServer = HttpServer.create(new InetSocketAddress(port), backlog);
+        executor = switch (mode) {
+            case DISPATCHER -> null;
+            case THREAD_POOL -> Executors.newFixedThreadPool(threads);
+            case VIRTUAL_THREADS -> Executors.newVirtualThreadPerTaskExecutor();
+        };
+        httpServer.setExecutor(executor);
 
         // Настройка сервера
-        httpServer.createContext("/tasks", new HttpTaskHandler(taskManager));
-        httpServer.createContext("/subtasks", new HttpSubtaskHandler(taskManager));
-        httpServer.createContext("/epics", new HttpEpicsHandler(taskManager));
-        httpServer.createContext("/history", new HttpHistoryHandler(taskManager));
-        httpServer.createContext("/prioritized", new HttpPrioritizedHandler(taskManager));
+        createHandlers(taskManager).forEach(httpServer::createContext);
+        if (boards != null)
+            httpServer.createContext("/boards/", new BoardRouter(boards));
+    }
+
+    /**
+     * Создает обработчики ресурсов менеджера задач
+     * @param taskManager Менеджер задач
+     * @return Обработчики по путям ресурсов
+     */
+    static Map<String, HttpHandler> createHandlers(TaskManager taskManager) {
+
+        Map<String, HttpHandler> handlers = new LinkedHashMap<>();
+        handlers.put("/tasks", new HttpTaskHandler(taskManager));
+        handlers.put("/subtasks", new HttpSubtaskHandler(taskManager));
+        handlers.put("/epics", new HttpEpicsHandler(taskManager));
+        handlers.put("/history", new HttpHistoryHandler(taskManager));
+        handlers.put("/prioritized", new HttpPrioritizedHandler(taskManager));
+        handlers.put("/search", new HttpSearchHandler(taskManager));
+        handlers.put("/free-slot", new HttpFreeSlotHandler(taskManager));
+        handlers.put("/stats", new HttpStatsHandler(taskManager));
+        return handlers;
     }
 
     /**
@@ -38,7 +138,7 @@ public class HttpTaskServer {
 
         // Запуск сервера
         httpServer.start();
-        System.out.println("Server started at port: " + PORT);
+        System.out.println("Server started at port: " + port);
     }
 
     /**
@@ -46,13 +146,61 @@ public class HttpTaskServer {
      */
     void stop() {
         httpServer.stop(0);
+        if (executor != null)
+            executor.shutdown();
+        if (boards != null)
+            boards.close();
         System.out.println("Server stopped");
     }
 
 
+    /**
+     * Запуск сервера. Поддерживаемые параметры:
+     * <li> --port=N - порт сервера; </li>
+     * <li> --executor=dispatcher|pool|virtual - режим выполнения запросов; </li>
+     * <li> --threads=N - число потоков пула; </li>
+     * <li> --backlog=N - длина очереди входящих соединений; </li>
+     * <li> --boards=DIR - каталог файлов досок задач (без параметра доски не поддерживаются); </li>
+     * <li> --board-idle=N - время без обращений, после которого доска выгружается из памяти, с; </li>
+     * <li> --board-max-tasks=N - максимальное число задач доски; </li>
+     * <li> --board-max-memory=N - максимальный объем памяти, занимаемой задачами доски, МБ. </li>
+     * @throws IllegalArgumentException если параметр или его значение недопустимы
+     */
     public static void main(String[] agrs) throws IOException {
 
-        HttpTaskServer server = new HttpTaskServer();
+        int port = PORT;
+        ExecutionMode mode = ExecutionMode.THREAD_POOL;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int backlog = DEFAULT_BACKLOG;
+        Path boardsDirectory = null;
+        long boardIdle = DEFAULT_BOARD_IDLE;
+        int boardMaxTasks = 0;
+        long boardMaxMemory = 0;
+        for (String arg : agrs) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2)
+                throw new IllegalArgumentException("Недопустимый параметр: " + arg);
+            switch (parts[0]) {
+                case "--port" -> port = Integer.parseInt(parts[1]);
+                case "--threads" -> threads = Integer.parseInt(parts[1]);
+                case "--backlog" -> backlog = Integer.parseInt(parts[1]);
+                case "--boards" -> boardsDirectory = Path.of(parts[1]);
+                case "--board-idle" -> boardIdle = Long.parseLong(parts[1]);
+                case "--board-max-tasks" -> boardMaxTasks = Integer.parseInt(parts[1]);
+                case "--board-max-memory" -> boardMaxMemory = Long.parseLong(parts[1]) * 1024 * 1024;
+                case "--executor" -> mode = switch (parts[1]) {
+                    case "dispatcher" -> ExecutionMode.DISPATCHER;
+                    case "pool" -> ExecutionMode.THREAD_POOL;
+                    case "virtual" -> ExecutionMode.VIRTUAL_THREADS;
+                    default -> throw new IllegalArgumentException("Недопустимый режим выполнения запросов: " + parts[1]);
+                };
+                default -> throw new IllegalArgumentException("Неизвестный параметр: " + parts[0]);
+            }
+        }
+
+        BoardRegistry boards = boardsDirectory == null ? null :
+                BoardRegistry.open(boardsDirectory, Duration.ofSeconds(boardIdle), boardMaxTasks, boardMaxMemory);
+        HttpTaskServer server = new HttpTaskServer(port, mode, threads, backlog, boards);
         server.start();
     }
 }
@@ -5,12 +5,21 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
+import ru.maxproof.taskmanager.Epic;
+import ru.maxproof.taskmanager.Subtask;
+import ru.maxproof.taskmanager.Task;
+import ru.maxproof.taskmanager.TaskBuilder;
+import ru.maxproof.taskmanager.TaskStatus;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 
 public class TaskConverter {
@@ -29,10 +38,35 @@ public class TaskConverter {
 
         @Override
         public LocalDateTime read(JsonReader jsonReader) throws IOException {
+            if (jsonReader.peek() == JsonToken.NULL) {
+                jsonReader.nextNull();
+                return null;
+            }
             return LocalDateTime.parse(jsonReader.nextString(), timeFormatter);
         }
     }
 
+    static class LocalDateTypeAdapter extends TypeAdapter<LocalDate> {
+
+        @Override
+        public void write(JsonWriter jsonWriter, LocalDate localDate) throws IOException {
+            if (localDate != null) {
+                jsonWriter.value(localDate.format(DateTimeFormatter.ISO_LOCAL_DATE));
+            } else {
+                jsonWriter.nullValue();
+            }
+        }
+
+        @Override
+        public LocalDate read(JsonReader jsonReader) throws IOException {
+            if (jsonReader.peek() == JsonToken.NULL) {
+                jsonReader.nextNull();
+                return null;
+            }
+            return LocalDate.parse(jsonReader.nextString(), DateTimeFormatter.ISO_LOCAL_DATE);
+        }
+    }
+
     static class DurationTypeAdapter extends TypeAdapter<Duration> {
 
         @Override
@@ -46,27 +80,242 @@ public class TaskConverter {
 
         @Override
         public Duration read(JsonReader jsonReader) throws IOException {
+            if (jsonReader.peek() == JsonToken.NULL) {
+                jsonReader.nextNull();
+                return null;
+            }
             return Duration.ofMinutes(Long.parseLong(jsonReader.nextString()));
         }
     }
 
+    /**
+     * Потоковый преобразователь задач всех типов. Поля читаются и заполняются
+     * через TaskBuilder, поэтому обращения к полям классов через reflection не требуются.
+     * Формат совпадает с прежним (reflection) представлением: поля со значением null не выводятся;
+     * номер версии выводится только для зарегистрированных задач.
+     * @param <T> Тип задачи
+     */
+    abstract static class BaseTaskTypeAdapter<T extends Task> extends TypeAdapter<T> {
+
+        static final LocalDateTimeTypeAdapter timeAdapter = new LocalDateTimeTypeAdapter();
+        static final DurationTypeAdapter durationAdapter = new DurationTypeAdapter();
+
+        /**
+         * Создает строителя, заполненного полями задачи
+         */
+        abstract TaskBuilder toBuilder(T task);
+
+        /**
+         * Создает задачу требуемого типа
+         */
+        abstract T build(TaskBuilder builder);
+
+        @Override
+        public void write(JsonWriter out, T task) throws IOException {
+
+            if (task == null) {
+                out.nullValue();
+                return;
+            }
+            TaskBuilder builder = toBuilder(task);
+            out.beginObject();
+            out.name("id").value(builder.getId());
+            writeString(out, "name", builder.getName());
+            writeString(out, "description", builder.getDescription());
+            if (builder.getStatus() != null)
+                out.name("status").value(builder.getStatus().name());
+            if (builder.getStartTime() != null)
+                timeAdapter.write(out.name("startTime"), builder.getStartTime());
+            if (builder.getDuration() != null)
+                durationAdapter.write(out.name("duration"), builder.getDuration());
+            if (builder.getVersion() != 0)
+                out.name("version").value(builder.getVersion());
+            writeExtraFields(out, task, builder);
+            out.endObject();
+        }
+
+        /**
+         * Записывает поля, специфичные для типа задачи
+         */
+        void writeExtraFields(JsonWriter out, T task, TaskBuilder builder) throws IOException {
+        }
+
+        /**
+         * Читает поле, специфичное для типа задачи
+         * @return true, если поле распознано и прочитано
+         */
+        boolean readExtraField(JsonReader in, String name, TaskBuilder builder) throws IOException {
+            return false;
+        }
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            TaskBuilder builder = new TaskBuilder();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "id" -> builder.setId(in.nextInt());
+                    case "name" -> builder.setName(in.nextString());
+                    case "description" -> builder.setDescription(in.nextString());
+                    case "status" -> builder.setStatus(TaskStatus.valueOf(in.nextString()));
+                    case "startTime" -> builder.setStartTime(timeAdapter.read(in));
+                    case "duration" -> builder.setDuration(durationAdapter.read(in));
+                    case "version" -> builder.setVersion(in.nextLong());
+                    default -> {
+                        if (!readExtraField(in, name, builder))
+                            in.skipValue();
+                    }
+                }
+            }
+            in.endObject();
+            return build(builder);
+        }
+
+        private static void writeString(JsonWriter out, String name, String value) throws IOException {
+            if (value != null)
+                out.name(name).value(value);
+        }
+    }
+
+    static class TaskTypeAdapter extends BaseTaskTypeAdapter<Task> {
+
+        @Override
+        TaskBuilder toBuilder(Task task) {
+            return new TaskBuilder(task);
+        }
+
+        @Override
+        Task build(TaskBuilder builder) {
+            return builder.buildTask();
+        }
+    }
+
+    static class SubtaskTypeAdapter extends BaseTaskTypeAdapter<Subtask> {
+
+        @Override
+        TaskBuilder toBuilder(Subtask subtask) {
+            return new TaskBuilder(subtask);
+        }
+
+        @Override
+        Subtask build(TaskBuilder builder) {
+            return builder.buildSubtask();
+        }
+
+        @Override
+        void writeExtraFields(JsonWriter out, Subtask subtask, TaskBuilder builder) throws IOException {
+            out.name("epicId").value(subtask.getEpicId());
+        }
+
+        @Override
+        boolean readExtraField(JsonReader in, String name, TaskBuilder builder) throws IOException {
+            if (!name.equals("epicId"))
+                return false;
+            builder.setEpicId(in.nextInt());
+            return true;
+        }
+    }
+
+    static class EpicTypeAdapter extends BaseTaskTypeAdapter<Epic> {
+
+        @Override
+        TaskBuilder toBuilder(Epic epic) {
+            return new TaskBuilder(epic);
+        }
+
+        @Override
+        Epic build(TaskBuilder builder) {
+            return builder.buildEpic();
+        }
+
+        @Override
+        void writeExtraFields(JsonWriter out, Epic epic, TaskBuilder builder) throws IOException {
+            out.name("subtaskIds").beginArray();
+            for (int id : epic.getSubtasks())
+                out.value(id);
+            out.endArray();
+            if (epic.getEndTime() != null)
+                timeAdapter.write(out.name("endTime"), epic.getEndTime());
+        }
+
+        @Override
+        boolean readExtraField(JsonReader in, String name, TaskBuilder builder) throws IOException {
+            switch (name) {
+                case "subtaskIds" -> {
+                    var ids = new ArrayList<Integer>();
+                    in.beginArray();
+                    while (in.hasNext())
+                        ids.add(in.nextInt());
+                    in.endArray();
+                    builder.setSubs(List.copyOf(ids));
+                }
+                case "endTime" -> builder.setEndTime(timeAdapter.read(in));
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Общий преобразователь. Экземпляр Gson потокобезопасен, поэтому создается однократно.
+     */
+    private static final Gson gson = createTaskJsonConverter();
+
     private static Gson createTaskJsonConverter() {
         return new GsonBuilder()
                 .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeTypeAdapter())
+                .registerTypeAdapter(LocalDate.class, new LocalDateTypeAdapter())
                 .registerTypeAdapter(Duration.class, new DurationTypeAdapter())
+                .registerTypeAdapter(Task.class, new TaskTypeAdapter())
+                .registerTypeAdapter(Subtask.class, new SubtaskTypeAdapter())
+                .registerTypeAdapter(Epic.class, new EpicTypeAdapter())
                 .create();
     }
 
     public static <T> T fromJson(String json, Class<T> clazz) {
-        return createTaskJsonConverter().fromJson(json, clazz);
+        return gson.fromJson(json, clazz);
     }
 
     public static String toJson(Object obj) {
-        return createTaskJsonConverter().toJson(obj);
+        return gson.toJson(obj);
+    }
+
+    /**
+     * Записывает коллекцию в виде JSON-массива непосредственно в поток вывода,
+     * без построения промежуточной строки. Элементы сериализуются по фактическому типу,
+     * результат совпадает с toJson для той же коллекции.
+     * @param items Коллекция объектов
+     * @param writer Поток вывода (не закрывается)
+     * @throws IOException при ошибке вывода
+     */
+    public static void writeJsonArray(Iterable<?> items, Writer writer) throws IOException {
+
+        JsonWriter out = gson.newJsonWriter(writer);
+        out.beginArray();
+        for (Object item : items) {
+            if (item == null)
+                out.nullValue();
+            else
+                gson.toJson(item, item.getClass(), out);
+        }
+        out.endArray();
+        out.flush();
     }
 
     static <T> List<T> listFromJson(String json, Class<T> clazz) {
         var typeToken = TypeToken.getParameterized(List.class, clazz);
-        return createTaskJsonConverter().fromJson(json, typeToken.getType());
+        return gson.fromJson(json, typeToken.getType());
     }
 }
@@ -1,17 +1,35 @@
 package ru.maxproof.server.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
+import ru.maxproof.exceptions.VersionConflictException;
 import ru.maxproof.server.TaskConverter;
+import ru.maxproof.taskmanager.Task;
 import ru.maxproof.taskmanager.TaskManager;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
 import java.util.regex.Pattern;
 
 public class BaseHttpHandler {
 
     private static final Pattern pathPattern = Pattern.compile("/(\\d+)");
+    static final int STREAMING_THRESHOLD = 1000;        // размер списка, начиная с которого ответ передается потоком
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
     protected final TaskManager manager;
 
     public BaseHttpHandler(TaskManager manager) {
@@ -26,8 +44,135 @@ public class BaseHttpHandler {
         sendEmptyResponse(exchange, 406);
     }
 
+    void sendBadRequest(HttpExchange exchange) throws IOException {
+        sendEmptyResponse(exchange, 400);
+    }
+
+    /**
+     * Отправляет ответ 412 на условное обновление задачи, измененной другим клиентом
+     * @param actualVersion Текущая версия задачи (передается в заголовке ETag)
+     */
+    void sendPreconditionFailed(HttpExchange exchange, long actualVersion) throws IOException {
+        exchange.getResponseHeaders().set("ETag", toETag(actualVersion));
+        sendEmptyResponse(exchange, 412);
+    }
+
+    /**
+     * Представляет номер версии задачи в виде значения заголовка ETag
+     */
+    static String toETag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Добавляет в ответ заголовок ETag с версией задачи (null - задача отсутствует, заголовок не добавляется)
+     */
+    static void setETag(HttpExchange exchange, Task task) {
+        if (task != null)
+            exchange.getResponseHeaders().set("ETag", toETag(task.getVersion()));
+    }
+
+    /**
+     * Возвращает ожидаемые версии задачи из заголовка If-Match (список ETag через запятую).
+     * Значение, не являющееся ETag задачи (в том числе слабый ETag), не совпадает ни с одной версией
+     * и возвращается как 0 - номер версии незарегистрированной задачи.
+     * @return Ожидаемые версии либо пустое значение, если заголовок отсутствует или содержит "*"
+     */
+    static Optional<Set<Long>> getIfMatchVersions(HttpExchange exchange) {
+
+        String value = exchange.getRequestHeaders().getFirst("If-Match");
+        if (value == null)
+            return Optional.empty();
+        Set<Long> versions = new LinkedHashSet<>();
+        for (String tag : value.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*"))
+                return Optional.empty();
+            versions.add(parseETag(tag));
+        }
+        return Optional.of(versions);
+    }
+
+    /**
+     * Разбирает ETag задачи (0 - значение не является ETag задачи)
+     */
+    private static long parseETag(String tag) {
+
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\""))
+            return 0;
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Обновляет задачу с учетом заголовка If-Match: при наличии заголовка обновление выполняется,
+     * только если текущая версия задачи совпадает с одной из перечисленных.
+     * Условное обновление проверяет одну версию, поэтому при конфликте с другой перечисленной
+     * версией попытка повторяется с ней.
+     * @param conditionalUpdate Условное обновление (задача, ожидаемая версия)
+     * @param update Безусловное обновление
+     * @return Сохраненная задача
+     * @throws VersionConflictException если текущая версия не совпадает ни с одной из перечисленных
+     */
+    static <T extends Task> T updateIfMatch(HttpExchange exchange, T task,
+                                            BiFunction<T, Long, T> conditionalUpdate, UnaryOperator<T> update) {
+
+        Optional<Set<Long>> expectedVersions = getIfMatchVersions(exchange);
+        if (expectedVersions.isEmpty())
+            return update.apply(task);
+        Set<Long> versions = expectedVersions.get();
+        long expectedVersion = versions.iterator().next();
+        while (true) {
+            try {
+                return conditionalUpdate.apply(task, expectedVersion);
+            } catch (VersionConflictException e) {
+                if (e.getActualVersion() == expectedVersion || !versions.contains(e.getActualVersion()))
+                    throw e;
+                expectedVersion = e.getActualVersion();
+            }
+        }
+    }
+
+    /**
+     * Возвращает параметры строки запроса (параметры с пустым значением пропускаются).
+     * Значения декодируются после разбора, поэтому могут содержать закодированные символы '&' и '='.
+     */
+    static Map<String, String> getQueryParameters(HttpExchange exchange) {
+
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty())
+            return parameters;
+        for (String parameter : query.split("&")) {
+            String[] parts = parameter.split("=", 2);
+            if (parts.length == 2 && !parts[1].isEmpty())
+                parameters.put(URLDecoder.decode(parts[0], StandardCharsets.UTF_8),
+                        URLDecoder.decode(parts[1], StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * Разбирает время в формате ISO (null - параметр не задан)
+     * @throws DateTimeParseException при неверном формате времени
+     */
+    static LocalDateTime parseTime(String value) {
+        return value == null ? null : LocalDateTime.parse(value, DateTimeFormatter.ISO_DATE_TIME);
+    }
+
+    /**
+     * Отправляет объект в формате JSON. Большие списки передаются потоком (см. sendJsonStream),
+     * остальные ответы - целиком с указанием длины.
+     */
     void sendJsonResponse(HttpExchange exchange, Object responseObject, int responseCode) throws IOException {
 
+        if (responseObject instanceof Collection<?> items && items.size() >= STREAMING_THRESHOLD) {
+            sendJsonStream(exchange, items, responseCode);
+            return;
+        }
         String responseString = TaskConverter.toJson(responseObject);
         byte[] resp = responseString.getBytes(StandardCharsets.UTF_8);
         exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
@@ -36,6 +181,23 @@ public class BaseHttpHandler {
         exchange.close();
     }
 
+    /**
+     * Отправляет коллекцию в формате JSON с поблочной передачей (chunked transfer encoding):
+     * JSON записывается непосредственно в тело ответа, поэтому полная строка ответа
+     * и ее байтовая копия в памяти не создаются
+     */
+    void sendJsonStream(HttpExchange exchange, Collection<?> items, int responseCode) throws IOException {
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+        exchange.sendResponseHeaders(responseCode, 0);
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), STREAM_BUFFER_SIZE)) {
+            TaskConverter.writeJsonArray(items, writer);
+        } finally {
+            exchange.close();
+        }
+    }
+
     void sendEmptyResponse(HttpExchange exchange, int responseCode) throws IOException {
         exchange.sendResponseHeaders(responseCode, 0);
         exchange.close();
@@ -4,6 +4,7 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import ru.maxproof.exceptions.NotFoundIdException;
 import ru.maxproof.exceptions.OverlappingTasksException;
+import ru.maxproof.exceptions.VersionConflictException;
 import ru.maxproof.server.TaskConverter;
 import ru.maxproof.taskmanager.Epic;
 import ru.maxproof.taskmanager.Subtask;
@@ -35,6 +36,7 @@ public class HttpEpicsHandler extends BaseHttpHandler implements HttpHandler {
                             List<Subtask> subtasks = manager.getEpicSubtasks(epic);
                             sendJsonResponse(exchange, subtasks, 200);
                         } else {
+                            setETag(exchange, epic);
                             sendJsonResponse(exchange, epic, 200);
                         }
                     }
@@ -45,9 +47,12 @@ public class HttpEpicsHandler extends BaseHttpHandler implements HttpHandler {
                     Epic epic = TaskConverter.fromJson(body, Epic.class);
                     if (epic.getId() == TaskManager.DRAFT_TASK_ID) {
                         epic = manager.createEpic(epic);
+                        setETag(exchange, epic);
                         sendJsonResponse(exchange, epic, 201);
                     } else {
-                        manager.updateEpic(epic);
+                        // Заголовок If-Match делает обновление условным (версия задачи должна совпадать)
+                        epic = updateIfMatch(exchange, epic, manager::updateEpic, manager::updateEpic);
+                        setETag(exchange, epic);
                         sendEmptyResponse(exchange, 201);
                     }
                 }
@@ -66,6 +71,8 @@ public class HttpEpicsHandler extends BaseHttpHandler implements HttpHandler {
             sendNotFound(exchange);
         } catch (OverlappingTasksException e) {
             sendHasInteractions(exchange);
+        } catch (VersionConflictException e) {
+            sendPreconditionFailed(exchange, e.getActualVersion());
         }
     }
 }
@@ -0,0 +1,57 @@
+package ru.maxproof.server.handlers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import ru.maxproof.taskmanager.TaskManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Обработчик запросов поиска свободного интервала времени. Поддерживаемые параметры запроса:
+ * <li> duration - длина интервала в минутах (обязательный); </li>
+ * <li> from - самое раннее начало интервала (по умолчанию - текущее время); </li>
+ * <li> to - самое позднее окончание интервала (по умолчанию - без ограничения). </li>
+ * Если свободного интервала нет, возвращается код 404.
+ */
+public class HttpFreeSlotHandler extends BaseHttpHandler implements HttpHandler {
+
+    /**
+     * Свободный интервал времени
+     */
+    record FreeSlot(LocalDateTime startTime, LocalDateTime endTime) {}
+
+    public HttpFreeSlotHandler(TaskManager manager) {
+        super(manager);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestMethod().equals("GET")) {
+            Map<String, String> query = getQueryParameters(exchange);
+            Duration length;
+            Optional<LocalDateTime> start;
+            try {
+                length = Duration.ofMinutes(Long.parseLong(query.getOrDefault("duration", "")));
+                LocalDateTime from = parseTime(query.get("from"));
+                if (from == null)
+                    from = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+                start = manager.findFreeSlot(length, from, parseTime(query.get("to")));
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                // NumberFormatException - разновидность IllegalArgumentException
+                sendBadRequest(exchange);
+                return;
+            }
+            if (start.isEmpty()) {
+                sendNotFound(exchange);
+                return;
+            }
+            sendJsonResponse(exchange, new FreeSlot(start.get(), start.get().plus(length)), 200);
+        }
+    }
+}
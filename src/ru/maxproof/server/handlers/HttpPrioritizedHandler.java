@@ -2,10 +2,22 @@ package ru.maxproof.server.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import ru.maxproof.taskmanager.Task;
 import ru.maxproof.taskmanager.TaskManager;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Обработчик запросов списка задач по времени. Поддерживаемые параметры запроса:
+ * <li> from, to - интервал времени (выбираются задачи, пересекающиеся с [from, to)); </li>
+ * <li> limit - максимальное число задач; </li>
+ * <li> after - время начала последней полученной задачи для получения следующей страницы. </li>
+ * Без параметров возвращается вся временная шкала.
+ */
 public class HttpPrioritizedHandler extends BaseHttpHandler implements HttpHandler {
 
     public HttpPrioritizedHandler(TaskManager manager) {
@@ -15,7 +27,24 @@ public class HttpPrioritizedHandler extends BaseHttpHandler implements HttpHandl
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         if (exchange.getRequestMethod().equals("GET")) {
-            var tasks = manager.getPrioritizedTasks();
+            Map<String, String> query = getQueryParameters(exchange);
+            if (query.isEmpty()) {
+                sendJsonResponse(exchange, manager.getPrioritizedTasks(), 200);
+                return;
+            }
+            List<Task> tasks;
+            try {
+                LocalDateTime from = parseTime(query.get("from"));
+                LocalDateTime to = parseTime(query.get("to"));
+                LocalDateTime after = parseTime(query.get("after"));
+                int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : Integer.MAX_VALUE;
+                tasks = after != null ?
+                        manager.getPrioritizedTasksAfter(after, to, limit) :
+                        manager.getPrioritizedTasks(from, to, limit);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                sendBadRequest(exchange);
+                return;
+            }
             sendJsonResponse(exchange, tasks, 200);
         }
     }
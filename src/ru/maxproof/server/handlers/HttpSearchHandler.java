@@ -0,0 +1,39 @@
+package ru.maxproof.server.handlers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import ru.maxproof.taskmanager.TaskManager;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Обработчик запросов поиска задач по тексту. Поддерживаемые параметры запроса:
+ * <li> q - текст запроса (обязательный); </li>
+ * <li> limit - максимальное число задач. </li>
+ */
+public class HttpSearchHandler extends BaseHttpHandler implements HttpHandler {
+
+    public HttpSearchHandler(TaskManager manager) {
+        super(manager);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestMethod().equals("GET")) {
+            Map<String, String> query = getQueryParameters(exchange);
+            int limit;
+            try {
+                limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : Integer.MAX_VALUE;
+            } catch (NumberFormatException e) {
+                sendBadRequest(exchange);
+                return;
+            }
+            if (!query.containsKey("q")) {
+                sendBadRequest(exchange);
+                return;
+            }
+            sendJsonResponse(exchange, manager.search(query.get("q"), limit), 200);
+        }
+    }
+}
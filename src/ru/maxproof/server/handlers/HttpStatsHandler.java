@@ -0,0 +1,25 @@
+package ru.maxproof.server.handlers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import ru.maxproof.taskmanager.TaskManager;
+
+import java.io.IOException;
+
+/**
+ * Обработчик запросов статистики задач: число задач по статусам и типам,
+ * суммарная продолжительность и занятость по дням (продолжительности - в минутах)
+ */
+public class HttpStatsHandler extends BaseHttpHandler implements HttpHandler {
+
+    public HttpStatsHandler(TaskManager manager) {
+        super(manager);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestMethod().equals("GET")) {
+            sendJsonResponse(exchange, manager.getStatistics(), 200);
+        }
+    }
+}
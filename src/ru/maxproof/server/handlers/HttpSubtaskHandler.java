@@ -4,6 +4,7 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import ru.maxproof.exceptions.NotFoundIdException;
 import ru.maxproof.exceptions.OverlappingTasksException;
+import ru.maxproof.exceptions.VersionConflictException;
 import ru.maxproof.server.TaskConverter;
 import ru.maxproof.taskmanager.Subtask;
 import ru.maxproof.taskmanager.TaskManager;
@@ -29,6 +30,7 @@ public class HttpSubtaskHandler extends BaseHttpHandler implements HttpHandler {
                         sendJsonResponse(exchange, manager.getSubtasks(), 200);
                     } else {
                         Subtask subtask = manager.getSubtask(optId.get());
+                        setETag(exchange, subtask);
                         sendJsonResponse(exchange, subtask, 200);
                     }
                 }
@@ -39,9 +41,12 @@ public class HttpSubtaskHandler extends BaseHttpHandler implements HttpHandler {
                     Subtask subtask = TaskConverter.fromJson(body, Subtask.class);
                     if (subtask.getId() == TaskManager.DRAFT_TASK_ID) {
                         subtask = manager.createSubtask(subtask);
+                        setETag(exchange, subtask);
                         sendJsonResponse(exchange, subtask, 201);
                     } else {
-                        manager.updateSubtask(subtask);
+                        // Заголовок If-Match делает обновление условным (версия задачи должна совпадать)
+                        subtask = updateIfMatch(exchange, subtask, manager::updateSubtask, manager::updateSubtask);
+                        setETag(exchange, subtask);
                         sendEmptyResponse(exchange, 201);
                     }
                 }
@@ -60,6 +65,8 @@ public class HttpSubtaskHandler extends BaseHttpHandler implements HttpHandler {
             sendNotFound(exchange);
         } catch (OverlappingTasksException e) {
             sendHasInteractions(exchange);
+        } catch (VersionConflictException e) {
+            sendPreconditionFailed(exchange, e.getActualVersion());
         }
     }
 }
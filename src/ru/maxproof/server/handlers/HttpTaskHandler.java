@@ -4,6 +4,7 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import ru.maxproof.exceptions.NotFoundIdException;
 import ru.maxproof.exceptions.OverlappingTasksException;
+import ru.maxproof.exceptions.VersionConflictException;
 import ru.maxproof.server.TaskConverter;
 import ru.maxproof.taskmanager.Task;
 import ru.maxproof.taskmanager.TaskManager;
@@ -30,6 +31,7 @@ public class HttpTaskHandler extends BaseHttpHandler implements HttpHandler {
                         sendJsonResponse(exchange, manager.getTasks(), 200);
                     } else {
                         Task task = manager.getTask(optId.get());
+                        setETag(exchange, task);
                         sendJsonResponse(exchange, task, 200);
                     }
                 }
@@ -39,9 +41,12 @@ public class HttpTaskHandler extends BaseHttpHandler implements HttpHandler {
                     Task task = TaskConverter.fromJson(body, Task.class);
                     if (task.getId() == TaskManager.DRAFT_TASK_ID) {
                         task = manager.createTask(task);
+                        setETag(exchange, task);
                         sendJsonResponse(exchange, task, 201);
                     } else {
-                        manager.updateTask(task);
+                        // Заголовок If-Match делает обновление условным (версия задачи должна совпадать)
+                        task = updateIfMatch(exchange, task, manager::updateTask, manager::updateTask);
+                        setETag(exchange, task);
                         sendEmptyResponse(exchange, 201);
                     }
                 }
@@ -60,6 +65,8 @@ public class HttpTaskHandler extends BaseHttpHandler implements HttpHandler {
             sendNotFound(exchange);
         } catch (OverlappingTasksException e) {
             sendHasInteractions(exchange);
+        } catch (VersionConflictException e) {
+            sendPreconditionFailed(exchange, e.getActualVersion());
         }
     }
 }
@@ -0,0 +1,147 @@
+package ru.maxproof.taskmanager;
+
+import ru.maxproof.exceptions.BoardLimitExceededException;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Менеджер задач доски: журналируемое файловое хранилище с ограничениями на число задач
+ * и на оценку занимаемой памяти. Состояние доски восстанавливается из файлов при открытии менеджера
+ * (см. open), поэтому выгруженная доска загружается повторно без потери изменений.
+ * <p>
+ * Объем памяти оценивается приближенно (постоянные накладные расходы на задачу и строки
+ * названия и описания) и обновляется по событиям изменения задач.
+ */
+public final class BoardTaskManager extends FileBackedTaskManager {
+
+    static final long TASK_OVERHEAD = 256;      // оценка памяти задачи без учета строк, байт
+
+    private final int maxTasks;
+    private final long maxMemory;
+    private long estimatedMemory = 0;
+
+
+    private BoardTaskManager(Path storageFile, int maxTasks, long maxMemory) {
+        super(storageFile, StorageMode.JOURNAL);
+        this.maxTasks = maxTasks;
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Открывает доску: создает менеджер доски и восстанавливает ее состояние из файлов (если таковые имеются)
+     * @param storageFile Файл-хранилище доски
+     * @param maxTasks Максимальное число задач всех типов (0 - без ограничения)
+     * @param maxMemory Максимальная оценка занимаемой памяти, байт (0 - без ограничения)
+     * @return Менеджер доски
+     * @throws ManagerSaveException если не удалось прочитать снимок или журнал доски
+     */
+    public static BoardTaskManager open(Path storageFile, int maxTasks, long maxMemory) {
+        BoardTaskManager manager = new BoardTaskManager(storageFile, maxTasks, maxMemory);
+        // Оценка памяти учитывает и задачи, восстановленные из файлов
+        manager.subscribe(event -> manager.estimatedMemory +=
+                estimateMemory(event.newTask()) - estimateMemory(event.oldTask()));
+        manager.restore();
+        return manager;
+    }
+
+    /**
+     * Оценивает объем памяти, занимаемый задачей (null - задача отсутствует)
+     */
+    static long estimateMemory(Task task) {
+        if (task == null)
+            return 0;
+        return TASK_OVERHEAD + 2L * (length(task.getName()) + length(task.getDescription()));
+    }
+
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
+    }
+
+    /**
+     * Возвращает текущую оценку памяти, занимаемой задачами доски
+     */
+    public long getEstimatedMemory() {
+        return estimatedMemory;
+    }
+
+    /**
+     * Сжимает журнал изменений доски в снимок (перед выгрузкой доски из памяти)
+     */
+    public void compact() {
+        save();
+    }
+
+    /**
+     * Проверяет, что изменение не превышает ограничений доски
+     * @param addedTasks Число добавляемых задач
+     * @param addedMemory Прирост оценки памяти
+     * @throws BoardLimitExceededException если изменение превышает ограничение
+     */
+    private void checkLimits(int addedTasks, long addedMemory) {
+
+        int size = taskRegistry.size() + epicRegistry.size() + subtaskRegistry.size();
+        if (maxTasks > 0 && addedTasks > 0 && size + addedTasks > maxTasks)
+            throw new BoardLimitExceededException("Превышено максимальное число задач доски: " + maxTasks);
+        if (maxMemory > 0 && addedMemory > 0 && estimatedMemory + addedMemory > maxMemory)
+            throw new BoardLimitExceededException("Превышен максимальный объем памяти доски: " + maxMemory);
+    }
+
+    private static long estimateMemory(List<? extends Task> tasks) {
+        return tasks.stream().mapToLong(BoardTaskManager::estimateMemory).sum();
+    }
+
+    @Override
+    public Task createTask(Task draftTask) {
+        checkLimits(1, estimateMemory(draftTask));
+        return super.createTask(draftTask);
+    }
+
+    @Override
+    public Subtask createSubtask(Subtask draftSubtask) {
+        checkLimits(1, estimateMemory(draftSubtask));
+        return super.createSubtask(draftSubtask);
+    }
+
+    @Override
+    public List<Task> createTasks(List<Task> draftTasks) {
+        checkLimits(draftTasks.size(), estimateMemory(draftTasks));
+        return super.createTasks(draftTasks);
+    }
+
+    @Override
+    public List<Subtask> createSubtasks(List<Subtask> draftSubtasks) {
+        checkLimits(draftSubtasks.size(), estimateMemory(draftSubtasks));
+        return super.createSubtasks(draftSubtasks);
+    }
+
+    @Override
+    public Epic createEpic(Epic draftEpic) {
+        checkLimits(1, estimateMemory(draftEpic));
+        return super.createEpic(draftEpic);
+    }
+
+    @Override
+    public Task updateTask(Task task) {
+        Task oldTask = taskRegistry.get(task.getId());
+        if (oldTask != null)
+            checkLimits(0, estimateMemory(task) - estimateMemory(oldTask));
+        return super.updateTask(task);
+    }
+
+    @Override
+    public Subtask updateSubtask(Subtask subtask) {
+        Subtask oldSubtask = subtaskRegistry.get(subtask.getId());
+        if (oldSubtask != null)
+            checkLimits(0, estimateMemory(subtask) - estimateMemory(oldSubtask));
+        return super.updateSubtask(subtask);
+    }
+
+    @Override
+    public Epic updateEpic(Epic epic) {
+        Epic oldEpic = epicRegistry.get(epic.getId());
+        if (oldEpic != null)
+            checkLimits(0, estimateMemory(epic) - estimateMemory(oldEpic));
+        return super.updateEpic(epic);
+    }
+}
@@ -0,0 +1,257 @@
+package ru.maxproof.taskmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Поток событий изменения задач (change data capture). Подключается к реестрам задач
+ * как вторичный индекс (см. TaskRegistry), поэтому видит каждое изменение реестров,
+ * включая пересчет эпиков, и не требует переопределения методов менеджера.
+ * <p>
+ * Вне транзакции события публикуются сразу после изменения реестра. Внутри транзакции
+ * события накапливаются и публикуются при фиксации либо отбрасываются при отмене,
+ * поэтому подписчики не видят изменений, которые были отменены.
+ * Порядковые номера присваиваются при публикации. Если подписчиков нет, события не создаются.
+ * <p>
+ * Исключение получателя не передается изменяющему коду: иначе оно прервало бы операцию менеджера
+ * посреди изменения реестров. Исключение передается обработчику неперехваченных исключений
+ * текущего потока, доставка события остальным получателям продолжается.
+ */
+class ChangeFeed implements TaskIndex {
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final List<TaskEvent> pending = new ArrayList<>();     // события транзакции (без номеров)
+    private boolean holding = false;
+    private long sequence = 0;
+
+
+    /**
+     * Определяет вид изменения по прежней и новой версии задачи
+     */
+    static TaskEvent.Type classify(Task oldTask, Task newTask) {
+        if (oldTask == null)
+            return TaskEvent.Type.CREATED;
+        if (newTask == null)
+            return TaskEvent.Type.REMOVED;
+        // Эпик, у которого изменились только характеристики, определяемые подзадачами
+        if (newTask instanceof Epic && Objects.equals(oldTask.getName(), newTask.getName()) &&
+                Objects.equals(oldTask.getDescription(), newTask.getDescription()))
+            return TaskEvent.Type.EPIC_RECOMPUTED;
+        return TaskEvent.Type.UPDATED;
+    }
+
+    @Override
+    public void replace(Task oldTask, Task newTask) {
+
+        if (subscribers.isEmpty())
+            return;
+        offer(event(oldTask, newTask));
+    }
+
+    /**
+     * Создает событие без номера (состояние потока не используется, поэтому конкурентный
+     * менеджер создает событие до захвата блокировки потока, см. offer)
+     */
+    static TaskEvent event(Task oldTask, Task newTask) {
+        return new TaskEvent(0, classify(oldTask, newTask), oldTask, newTask);
+    }
+
+    /**
+     * Публикует событие, созданное event, либо накапливает его внутри транзакции
+     */
+    void offer(TaskEvent event) {
+        if (holding)
+            pending.add(event);
+        else
+            publish(event);
+    }
+
+    /**
+     * Проверяет, есть ли подписчики (без подписчиков события не создаются)
+     */
+    boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    private void publish(TaskEvent event) {
+        TaskEvent numbered = new TaskEvent(++sequence, event.type(), event.oldTask(), event.newTask());
+        for (Subscriber subscriber : subscribers)
+            subscriber.deliver(numbered);
+    }
+
+    /**
+     * Начинает накопление событий (начало транзакции)
+     */
+    void hold() {
+        holding = true;
+    }
+
+    /**
+     * Публикует накопленные события (фиксация транзакции)
+     */
+    void release() {
+        holding = false;
+        List<TaskEvent> events = List.copyOf(pending);
+        pending.clear();
+        events.forEach(this::publish);
+    }
+
+    /**
+     * Отбрасывает накопленные события (отмена транзакции)
+     */
+    void discard() {
+        holding = false;
+        pending.clear();
+    }
+
+    /**
+     * Подписывает получателя на синхронную доставку: получатель вызывается потоком,
+     * изменившим задачу, сразу после изменения. Исключение получателя не прерывает изменение
+     * и передается обработчику неперехваченных исключений потока.
+     */
+    TaskSubscription subscribe(TaskListener listener) {
+        Subscriber subscriber = new Subscriber(listener);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * Подписывает получателя на асинхронную доставку через кольцевой буфер ограниченного размера.
+     * Изменяющий поток не ожидает получателя: при заполнении буфера вытесняются самые старые события.
+     * @param capacity Емкость буфера (округляется вверх до степени двойки)
+     */
+    TaskSubscription subscribeAsync(TaskListener listener, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Емкость буфера должна быть положительной");
+        AsyncSubscriber subscriber = new AsyncSubscriber(listener, capacity);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+
+    private class Subscriber implements TaskSubscription {
+
+        final TaskListener listener;
+
+        Subscriber(TaskListener listener) {
+            this.listener = Objects.requireNonNull(listener);
+        }
+
+        void deliver(TaskEvent event) {
+            notify(event);
+        }
+
+        /**
+         * Вызывает получателя; ошибка получателя передается обработчику неперехваченных исключений потока
+         */
+        final void notify(TaskEvent event) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e);
+            }
+        }
+
+        @Override
+        public long getDroppedEvents() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+            subscribers.remove(this);
+        }
+    }
+
+
+    /**
+     * Асинхронная подписка: кольцевой буфер и собственный виртуальный поток доставки
+     */
+    private final class AsyncSubscriber extends Subscriber {
+
+        private final TaskEvent[] ring;
+        private final int mask;
+        private long head = 0;      // номер следующего доставляемого события буфера
+        private long tail = 0;      // номер следующего помещаемого события буфера
+        private long dropped = 0;
+        private boolean closed = false;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+
+        AsyncSubscriber(TaskListener listener, int capacity) {
+            super(listener);
+            ring = new TaskEvent[Integer.highestOneBit(Math.min(capacity, 1 << 30) * 2 - 1)];
+            mask = ring.length - 1;
+            Thread.ofVirtual().name("task-events").start(this::dispatch);
+        }
+
+        @Override
+        void deliver(TaskEvent event) {
+            lock.lock();
+            try {
+                if (closed)
+                    return;
+                if (tail - head == ring.length) {
+                    ++head;
+                    ++dropped;
+                }
+                ring[(int) (tail++ & mask)] = event;
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private TaskEvent take() throws InterruptedException {
+            lock.lock();
+            try {
+                while (head == tail && !closed)
+                    notEmpty.await();
+                if (head == tail)
+                    return null;
+                int index = (int) (head++ & mask);
+                TaskEvent event = ring[index];
+                ring[index] = null;
+                return event;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void dispatch() {
+            try {
+                // Ошибка получателя не прерывает доставку последующих событий
+                for (TaskEvent event = take(); event != null; event = take())
+                    notify(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public long getDroppedEvents() {
+            lock.lock();
+            try {
+                return dropped;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            lock.lock();
+            try {
+                closed = true;
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,961 @@
+package ru.maxproof.taskmanager;
+
+import ru.maxproof.exceptions.NotFoundIdException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Менеджер задач для совместного использования несколькими потоками.
+ * <li> Чтение задач выполняется без блокировок: реестры хранят неизменяемые задачи
+ * в ConcurrentHashMap, временная шкала - в ConcurrentSkipListSet. Чтение не видит незавершенных
+ * и отмененных транзакций: оно проверяет штамп блокировки транзакции и при пересечении
+ * с транзакцией повторяется после ее завершения (см. read); </li>
+ * <li> Изменения разделены по блокировкам-полосам: изменения подзадач блокируют полосу
+ * своего эпика, поэтому подзадачи разных эпиков изменяются параллельно; простые задачи
+ * блокируют полосу по собственному идентификатору; </li>
+ * <li> Общей является блокировка временной шкалы, под которой выполняются проверка
+ * пересечений и изменение шкалы; </li>
+ * <li> Индексы статусов, поиска и статистики разделены на полосы индексов по идентификатору задачи
+ * со своими блокировками (см. Indexes). Слова задачи и изменение статистики вычисляются до захвата
+ * блокировки полосы, поэтому под ней выполняется только изменение структур индексов; </li>
+ * <li> Граф зависимостей и поток событий имеют свои блокировки: граф блокируется только при изменении
+ * задач, участвующих в зависимостях, поток - только при наличии подписчиков. Синхронные получатели
+ * событий вызываются под блокировкой потока. </li>
+ * Блокировки захватываются в порядке: полосы (по возрастанию номера), временная шкала,
+ * поток событий, блокировки индексов (полосы индексов и граф не вкладываются друг в друга).
+ */
+public class ConcurrentTaskManager implements TaskManager {
+
+    private static final int STRIPES = 64;     // число полос блокировки (степень двойки)
+    private static final int INDEX_STRIPES = 16;   // число полос индексов (степень двойки)
+    private static final long ANY_VERSION = Long.MIN_VALUE;    // обновление без проверки версии
+
+    private final AtomicInteger taskId = new AtomicInteger();
+    private final IndexStripe[] indexStripes = new IndexStripe[INDEX_STRIPES];
+    private final DependencyGraph dependencyGraph = new DependencyGraph(new RegisteredTasks());  // зависимости задач
+    private final ReentrantLock graphLock = new ReentrantLock();
+    private final ChangeFeed changeFeed = new ChangeFeed();        // события изменения задач
+    private final ReentrantLock feedLock = new ReentrantLock();
+    private final Indexes indexes = new Indexes();
+    private final ConcurrentTaskRegistry<Task> taskRegistry = new ConcurrentTaskRegistry<>(indexes);
+    private final ConcurrentTaskRegistry<Epic> epicRegistry = new ConcurrentTaskRegistry<>(indexes);
+    private final ConcurrentTaskRegistry<Subtask> subtaskRegistry = new ConcurrentTaskRegistry<>(indexes);
+    private final ConcurrentHashMap<Integer, EpicAggregate> epicAggregates = new ConcurrentHashMap<>();
+    private final TimeIndex prioritizedTasks = TimeIndex.concurrent();
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ReentrantLock timeLock = new ReentrantLock();
+    private final ReentrantLock historyLock = new ReentrantLock();
+    private final HistoryManager historyManager;
+    private TransactionLog transaction = null;     // журнал текущей транзакции (доступ - под полосами)
+    private final StampedLock transactionLock = new StampedLock();    // запись - на время транзакции
+    private volatile Thread transactionOwner = null;    // поток, выполняющий транзакцию
+
+
+    public ConcurrentTaskManager() {
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new ReentrantLock();
+        for (int i = 0; i < INDEX_STRIPES; i++)
+            indexStripes[i] = new IndexStripe();
+        this.historyManager = Managers.getDefaultHistory();
+    }
+
+
+    /**
+     * Полоса индексов: индексы статусов, поиска и статистики части задач под своей блокировкой
+     */
+    private static final class IndexStripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final StatusIndex statusIndex = new StatusIndex();
+        private final TextIndex textIndex = new TextIndex();
+        private final StatisticsIndex statisticsIndex = new StatisticsIndex();
+
+        private void replace(Task oldTask, Task newTask) {
+            TextIndex.Change text = TextIndex.prepare(oldTask, newTask);
+            StatisticsIndex.Delta statistics = StatisticsIndex.prepare(oldTask, newTask);
+            lock.lock();
+            try {
+                statusIndex.replace(oldTask, newTask);
+                textIndex.apply(text);
+                statisticsIndex.apply(statistics);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private <T> T read(Supplier<T> action) {
+            lock.lock();
+            try {
+                return action.get();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Вторичные индексы, изменяемые реестрами (см. ConcurrentTaskRegistry). Все версии задачи
+     * попадают в одну полосу индексов, а изменения одной задачи упорядочены полосами блокировки,
+     * поэтому индексы видят версии задачи в порядке их публикации. Граф не блокируется, если задача
+     * не участвует в зависимостях: узел создается только под полосой задачи (см. withTaskStripes).
+     */
+    private final class Indexes implements TaskIndex {
+
+        @Override
+        public void replace(Task oldTask, Task newTask) {
+            int id = oldTask != null ? oldTask.getId() : newTask.getId();
+            indexStripes[id & (INDEX_STRIPES - 1)].replace(oldTask, newTask);
+            if (dependencyGraph.affects(oldTask, newTask))
+                runWithGraph(() -> dependencyGraph.replace(oldTask, newTask));
+            if (changeFeed.hasSubscribers()) {
+                TaskEvent event = ChangeFeed.event(oldTask, newTask);
+                runWithFeed(() -> changeFeed.offer(event));
+            }
+        }
+    }
+
+
+    // region Locking
+
+    private ReentrantLock stripe(int id) {
+        return stripes[id & (STRIPES - 1)];
+    }
+
+    private <T> T withStripe(int id, Supplier<T> action) {
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Выполняет действие под двумя полосами блокировки (например, при переносе подзадачи между эпиками)
+     */
+    private <T> T withStripes(int id1, int id2, Supplier<T> action) {
+        int first = Math.min(id1 & (STRIPES - 1), id2 & (STRIPES - 1));
+        int second = Math.max(id1 & (STRIPES - 1), id2 & (STRIPES - 1));
+        stripes[first].lock();
+        try {
+            stripes[second].lock();
+            try {
+                return action.get();
+            } finally {
+                stripes[second].unlock();
+            }
+        } finally {
+            stripes[first].unlock();
+        }
+    }
+
+    /**
+     * Выполняет действие под полосами блокировки заданных идентификаторов (групповые операции)
+     */
+    private <T> T withStripes(Collection<Integer> ids, Supplier<T> action) {
+        boolean[] used = new boolean[STRIPES];
+        ids.forEach(id -> used[id & (STRIPES - 1)] = true);
+        List<ReentrantLock> locked = new ArrayList<>();
+        try {
+            for (int i = 0; i < STRIPES; i++) {
+                if (used[i]) {
+                    stripes[i].lock();
+                    locked.add(stripes[i]);
+                }
+            }
+            return action.get();
+        } finally {
+            for (int i = locked.size() - 1; i >= 0; i--)
+                locked.get(i).unlock();
+        }
+    }
+
+    /**
+     * Выполняет действие под всеми полосами блокировки (операции над реестрами целиком)
+     */
+    private void withAllStripes(Runnable action) {
+        int locked = 0;
+        try {
+            for (; locked < STRIPES; locked++)
+                stripes[locked].lock();
+            action.run();
+        } finally {
+            while (locked > 0)
+                stripes[--locked].unlock();
+        }
+    }
+
+    /**
+     * Заменяет задачу на временной шкале после проверки пересечений
+     * @param oldTask Прежняя версия задачи (или null)
+     * @param newTask Новая версия задачи (или null при удалении)
+     */
+    private void updateTimeIndex(Task oldTask, Task newTask) {
+        timeLock.lock();
+        try {
+            if (newTask != null)
+                prioritizedTasks.checkTaskInTime(newTask);
+            if (oldTask != null && oldTask.isValidTime())
+                prioritizedTasks.remove(oldTask);
+            if (newTask != null && newTask.isValidTime())
+                prioritizedTasks.add(newTask);
+        } finally {
+            timeLock.unlock();
+        }
+    }
+
+    /**
+     * Проверяет пересечения новой задачи, выделяет ей идентификатор и размещает ее на временной шкале.
+     * Все три действия выполняются атомарно, поэтому идентификатор выделяется только прошедшей проверку задаче.
+     * @param draftTask Черновая задача
+     * @param build Построение зарегистрированной задачи по выделенному идентификатору
+     * @return Зарегистрированная задача
+     */
+    private <T extends Task> T placeNew(Task draftTask, IntFunction<T> build) {
+        timeLock.lock();
+        try {
+            prioritizedTasks.checkTaskInTime(draftTask);
+            T task = build.apply(taskId.incrementAndGet());
+            if (task.isValidTime())
+                prioritizedTasks.add(task);
+            return task;
+        } finally {
+            timeLock.unlock();
+        }
+    }
+
+    /**
+     * Проверяет пересечения группы новых задач целиком, выделяет задачам идентификаторы одним блоком
+     * и размещает их на временной шкале (атомарно, см. placeNew)
+     * @param draftTasks Черновые задачи
+     * @param build Построение зарегистрированной задачи по черновой задаче и выделенному идентификатору
+     * @return Зарегистрированные задачи в порядке следования черновых задач
+     */
+    private <D extends Task, T extends Task> List<T> placeAllNew(List<D> draftTasks, BiFunction<D, Integer, T> build) {
+        timeLock.lock();
+        try {
+            prioritizedTasks.checkTasksInTime(draftTasks);
+            int id = taskId.getAndAdd(draftTasks.size());
+            List<T> tasks = new ArrayList<>(draftTasks.size());
+            for (D draftTask : draftTasks) {
+                T task = build.apply(draftTask, ++id);
+                if (task.isValidTime())
+                    prioritizedTasks.add(task);
+                tasks.add(task);
+            }
+            return tasks;
+        } finally {
+            timeLock.unlock();
+        }
+    }
+
+    /**
+     * Выполняет создание задач под полосой блокировки. Полоса новой задачи неизвестна до выделения
+     * идентификатора, поэтому захватывается полоса ожидаемого идентификатора: захват любой полосы
+     * исключает создание во время транзакции, а до помещения в реестр задача недоступна другим потокам.
+     */
+    private <T> T withCreationStripe(Supplier<T> action) {
+        return withStripe(taskId.get() + 1, action);
+    }
+
+    /**
+     * Выполняет действие под полосами, которыми защищены изменения двух задач или подзадач
+     * (для подзадачи - полоса ее эпика). Узел графа зависимостей создается по текущей версии задачи,
+     * поэтому задача не должна изменяться параллельно (см. Indexes). Если за время захвата
+     * подзадача была перенесена в другой эпик, попытка повторяется.
+     * @throws NotFoundIdException если задача или подзадача не найдена
+     */
+    private void withTaskStripes(int id1, int id2, Runnable action) {
+        boolean done;
+        do {
+            int stripeId1 = stripeId(findExisting(id1));
+            int stripeId2 = stripeId(findExisting(id2));
+            done = withStripes(stripeId1, stripeId2, () -> {
+                if (stripeId(findExisting(id1)) != stripeId1 || stripeId(findExisting(id2)) != stripeId2)
+                    return false;
+                action.run();
+                return true;
+            });
+        } while (!done);
+    }
+
+    private Task findExisting(int id) {
+        Task task = findTask(id);
+        if (task == null)
+            throw new NotFoundIdException("Задача или подзадача с указанным Id не найдена");
+        return task;
+    }
+
+    /**
+     * Возвращает идентификатор, по которому выбирается полоса блокировки изменений задачи
+     */
+    private static int stripeId(Task task) {
+        return task instanceof Subtask subtask ? subtask.getEpicId() : task.getId();
+    }
+
+    /**
+     * Выполняет чтение, изолированное от транзакции. Чтение выполняется оптимистично без блокировок;
+     * если за это время выполнялась транзакция, результат (или исключение) отбрасывается и чтение
+     * повторяется под блокировкой транзакции на чтение, то есть после ее завершения.
+     * Поток транзакции видит ее изменения и читает без проверки.
+     */
+    private <T> T read(Supplier<T> action) {
+        if (transactionOwner == Thread.currentThread())
+            return action.get();
+        long stamp = transactionLock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = action.get();
+                if (transactionLock.validate(stamp))
+                    return result;
+            } catch (RuntimeException e) {
+                if (transactionLock.validate(stamp))
+                    throw e;
+            }
+        }
+        stamp = transactionLock.readLock();
+        try {
+            return action.get();
+        } finally {
+            transactionLock.unlockRead(stamp);
+        }
+    }
+
+    private <T> T withGraph(Supplier<T> action) {
+        graphLock.lock();
+        try {
+            return action.get();
+        } finally {
+            graphLock.unlock();
+        }
+    }
+
+    private void runWithGraph(Runnable action) {
+        graphLock.lock();
+        try {
+            action.run();
+        } finally {
+            graphLock.unlock();
+        }
+    }
+
+    private void runWithFeed(Runnable action) {
+        feedLock.lock();
+        try {
+            action.run();
+        } finally {
+            feedLock.unlock();
+        }
+    }
+
+    /**
+     * Собирает результаты чтения полос индексов (полосы читаются по очереди)
+     */
+    private <T> List<T> collect(Function<IndexStripe, Collection<T>> read) {
+        List<T> result = new ArrayList<>();
+        for (IndexStripe stripe : indexStripes)
+            result.addAll(stripe.read(() -> read.apply(stripe)));
+        return result;
+    }
+
+    private void addToHistory(Task task) {
+        historyLock.lock();
+        try {
+            historyManager.add(task);
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    private void removeFromHistory(int id) {
+        if (transaction != null) {
+            transaction.deferHistoryRemoval(id);
+            return;
+        }
+        historyLock.lock();
+        try {
+            historyManager.remove(id);
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    // endregion
+
+
+    @Override
+    public Task createTask(Task draftTask) {
+
+        if (draftTask.getId() != TaskManager.DRAFT_TASK_ID)
+            throw new NotFoundIdException("Ненулевое значение Id новой задачи.");
+
+        // Проверка пересечений, выделение Id и занятие места на шкале выполняются атомарно
+        return withCreationStripe(() -> {
+            Task registeredTask = placeNew(draftTask,
+                    id -> new TaskBuilder(draftTask).setId(id).setVersion(1).buildTask());
+            taskRegistry.put(registeredTask.getId(), registeredTask);
+            return registeredTask;
+        });
+    }
+
+    @Override
+    public Subtask createSubtask(Subtask draftSubtask) {
+
+        if (draftSubtask.getId() != TaskManager.DRAFT_TASK_ID)
+            throw new NotFoundIdException("Ненулевое значение Id новой подзадачи.");
+
+        int epicId = draftSubtask.getEpicId();
+        return withStripe(epicId, () -> {
+            Epic epic = epicRegistry.get(epicId);
+            if (epic == null)
+                throw new NotFoundIdException("Недопустимый Id родительского эпика");
+
+            Subtask registeredSubtask = placeNew(draftSubtask, id -> new TaskBuilder(draftSubtask)
+                    .setId(id)
+                    .setEpicId(epicId)
+                    .setVersion(1)
+                    .buildSubtask());
+            subtaskRegistry.put(registeredSubtask.getId(), registeredSubtask);
+            epicAggregates.get(epicId).addSubtask(registeredSubtask);
+            refreshEpic(epicId);
+            return registeredSubtask;
+        });
+    }
+
+    @Override
+    public List<Task> createTasks(List<Task> draftTasks) {
+
+        for (Task draftTask : draftTasks) {
+            if (draftTask.getId() != TaskManager.DRAFT_TASK_ID)
+                throw new NotFoundIdException("Ненулевое значение Id новой задачи.");
+        }
+
+        // Идентификаторы выделяются одним блоком после проверки группы (как и при создании одной задачи)
+        return withCreationStripe(() -> {
+            List<Task> registeredTasks = placeAllNew(draftTasks,
+                    (draftTask, id) -> new TaskBuilder(draftTask).setId(id).setVersion(1).buildTask());
+            registeredTasks.forEach(task -> taskRegistry.put(task.getId(), task));
+            return registeredTasks;
+        });
+    }
+
+    @Override
+    public List<Subtask> createSubtasks(List<Subtask> draftSubtasks) {
+
+        Set<Integer> epicIds = new LinkedHashSet<>();
+        for (Subtask draftSubtask : draftSubtasks) {
+            if (draftSubtask.getId() != TaskManager.DRAFT_TASK_ID)
+                throw new NotFoundIdException("Ненулевое значение Id новой подзадачи.");
+            epicIds.add(draftSubtask.getEpicId());
+        }
+
+        return withStripes(epicIds, () -> {
+            for (int epicId : epicIds) {
+                if (!epicRegistry.containsKey(epicId))
+                    throw new NotFoundIdException("Недопустимый Id родительского эпика");
+            }
+
+            List<Subtask> registeredSubtasks = placeAllNew(draftSubtasks,
+                    (draftSubtask, id) -> new TaskBuilder(draftSubtask).setId(id).setVersion(1).buildSubtask());
+
+            // Каждый затронутый эпик пересчитывается однократно
+            for (Subtask subtask : registeredSubtasks) {
+                subtaskRegistry.put(subtask.getId(), subtask);
+                epicAggregates.get(subtask.getEpicId()).addSubtask(subtask);
+            }
+            epicIds.forEach(this::refreshEpic);
+            return registeredSubtasks;
+        });
+    }
+
+    @Override
+    public Epic createEpic(Epic draftEpic) {
+
+        if (draftEpic.getId() != TaskManager.DRAFT_TASK_ID)
+            throw new NotFoundIdException("Ненулевое значение Id нового эпика.");
+
+        EpicAggregate aggregate = new EpicAggregate();
+        return withCreationStripe(() -> {
+            Epic registeredEpic = aggregate.apply(
+                    new TaskBuilder(draftEpic).setId(taskId.incrementAndGet()).buildEpic(), 1);
+            epicAggregates.put(registeredEpic.getId(), aggregate);
+            epicRegistry.put(registeredEpic.getId(), registeredEpic);
+            return registeredEpic;
+        });
+    }
+
+    @Override
+    public Task updateTask(Task task) {
+        return updateTask(task, ANY_VERSION);
+    }
+
+    @Override
+    public Task updateTask(Task task, long expectedVersion) {
+
+        if (task.getId() == TaskManager.DRAFT_TASK_ID)
+            throw new NotFoundIdException("Недопустимый Id задачи");
+        return withStripe(task.getId(), () -> {
+            Task oldTask = taskRegistry.get(task.getId());
+            if (oldTask == null)
+                throw new NotFoundIdException("Недопустимый Id задачи");
+            checkVersion(oldTask, expectedVersion);
+            Task newTask = Task.withVersion(task, oldTask.getVersion() + 1);
+            updateTimeIndex(oldTask, newTask);
+            taskRegistry.put(newTask.getId(), newTask);
+            return newTask;
+        });
+    }
+
+    @Override
+    public Subtask updateSubtask(Subtask subtask) {
+        return updateSubtask(subtask, ANY_VERSION);
+    }
+
+    @Override
+    public Subtask updateSubtask(Subtask subtask, long expectedVersion) {
+
+        if (subtask.getId() == TaskManager.DRAFT_TASK_ID)
+            throw new NotFoundIdException("Недопустимый Id подзадачи");
+
+        // Подзадача блокируется через полосы прежнего и нового эпика. Если за время
+        // захвата блокировок подзадача была перенесена в другой эпик, попытка повторяется.
+        Subtask updated;
+        do {
+            Subtask current = subtaskRegistry.get(subtask.getId());
+            if (current == null)
+                throw new NotFoundIdException("Недопустимый Id подзадачи");
+            updated = withStripes(current.getEpicId(), subtask.getEpicId(), () -> {
+                Subtask oldSubtask = subtaskRegistry.get(subtask.getId());
+                if (oldSubtask == null)
+                    throw new NotFoundIdException("Недопустимый Id подзадачи");
+                if (oldSubtask.getEpicId() != current.getEpicId())
+                    return null;
+                EpicAggregate newAggregate = epicAggregates.get(subtask.getEpicId());
+                if (newAggregate == null)
+                    throw new NotFoundIdException("Недопустимый Id родительского эпика");
+                checkVersion(oldSubtask, expectedVersion);
+
+                Subtask newSubtask = Task.withVersion(subtask, oldSubtask.getVersion() + 1);
+                updateTimeIndex(oldSubtask, newSubtask);
+                subtaskRegistry.put(newSubtask.getId(), newSubtask);
+                if (oldSubtask.getEpicId() == newSubtask.getEpicId()) {
+                    newAggregate.replaceSubtask(oldSubtask, newSubtask);
+                } else {
+                    epicAggregates.get(oldSubtask.getEpicId()).removeSubtask(oldSubtask);
+                    newAggregate.addSubtask(newSubtask);
+                    refreshEpic(oldSubtask.getEpicId());
+                }
+                refreshEpic(newSubtask.getEpicId());
+                return newSubtask;
+            });
+        } while (updated == null);
+        return updated;
+    }
+
+    @Override
+    public Epic updateEpic(Epic epic) {
+        return updateEpic(epic, ANY_VERSION);
+    }
+
+    @Override
+    public Epic updateEpic(Epic epic, long expectedVersion) {
+        return withStripe(epic.getId(), () -> {
+            // Статус, время и состав эпика определяются его подзадачами
+            Epic oldEpic = epicRegistry.get(epic.getId());
+            if (oldEpic == null)
+                return null;
+            checkVersion(oldEpic, expectedVersion);
+            Epic newEpic = epicAggregates.get(epic.getId()).apply(epic, oldEpic.getVersion() + 1);
+            epicRegistry.put(epic.getId(), newEpic);
+            return newEpic;
+        });
+    }
+
+    /**
+     * Проверка версии задачи при условном обновлении (ANY_VERSION - обновление без условия)
+     */
+    private static void checkVersion(Task current, long expectedVersion) {
+        if (expectedVersion != ANY_VERSION)
+            Task.checkVersion(current, expectedVersion);
+    }
+
+    /**
+     * Публикует новую версию эпика (вызывается под полосой блокировки эпика)
+     * @param epicId Идентификатор эпика
+     */
+    private void refreshEpic(int epicId) {
+        if (transaction != null) {
+            transaction.deferEpicRefresh(epicId);
+            return;
+        }
+        Epic epic = epicRegistry.get(epicId);
+        if (epic != null)
+            epicRegistry.put(epicId, epicAggregates.get(epicId).apply(epic, epic.getVersion() + 1));
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        return read(() -> List.copyOf(taskRegistry.values()));
+    }
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        return read(() -> List.copyOf(subtaskRegistry.values()));
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        return read(() -> List.copyOf(epicRegistry.values()));
+    }
+
+    @Override
+    public List<Task> getTopTaskList() {
+        return read(() -> {
+            var list = new ArrayList<Task>();
+            list.addAll(taskRegistry.values());
+            list.addAll(epicRegistry.values());
+            return list;
+        });
+    }
+
+    @Override
+    public List<Task> getEntireTaskList() {
+        return read(() -> {
+            var list = new ArrayList<Task>();
+            list.addAll(taskRegistry.values());
+            list.addAll(epicRegistry.values());
+            list.addAll(subtaskRegistry.values());
+            return list;
+        });
+    }
+
+    /**
+     * Возвращает задачи с заданным статусом в порядке возрастания идентификаторов
+     * (полосы индексов читаются по очереди, как и в ShardedTaskManager)
+     */
+    @Override
+    public List<Task> getTasksByStatus(TaskStatus status) {
+        return read(() -> {
+            List<Task> tasks = collect(stripe -> stripe.statusIndex.get(status));
+            tasks.sort(Comparator.comparingInt(Task::getId));
+            return tasks;
+        });
+    }
+
+    @Override
+    public Map<TaskStatus, Integer> countByStatus() {
+        return read(() -> {
+            EnumMap<TaskStatus, Integer> counts = new EnumMap<>(TaskStatus.class);
+            for (IndexStripe stripe : indexStripes)
+                stripe.read(stripe.statusIndex::counts)
+                        .forEach((status, count) -> counts.merge(status, count, Integer::sum));
+            return counts;
+        });
+    }
+
+    @Override
+    public TaskStatistics getStatistics() {
+        return read(() -> StatisticsIndex.combine(collect(stripe -> List.of(stripe.statisticsIndex.snapshot()))));
+    }
+
+    @Override
+    public List<Task> search(String query, int limit) {
+        return read(() -> {
+            List<Task> tasks = collect(stripe -> stripe.textIndex.search(query, limit));
+            tasks.sort(Comparator.comparingInt(Task::getId));
+            return tasks.size() > limit ? List.copyOf(tasks.subList(0, limit)) : tasks;
+        });
+    }
+
+    /**
+     * Изменяет зависимости под полосами обеих задач: транзакция удерживает все полосы,
+     * поэтому параллельное изменение зависимостей не попадает в ее журнал
+     */
+    @Override
+    public void addDependency(int taskId, int blockerId) {
+        withTaskStripes(taskId, blockerId, () -> runWithGraph(() -> dependencyGraph.addDependency(blockerId, taskId)));
+    }
+
+    @Override
+    public void removeDependency(int taskId, int blockerId) {
+        withTaskStripes(taskId, blockerId,
+                () -> runWithGraph(() -> dependencyGraph.removeDependency(blockerId, taskId)));
+    }
+
+    @Override
+    public List<Task> getBlockers(int taskId) {
+        return read(() -> findTasks(withGraph(() -> dependencyGraph.getBlockers(taskId))));
+    }
+
+    @Override
+    public List<Task> getDependencyOrder() {
+        return read(() -> findTasks(withGraph(dependencyGraph::getOrder)));
+    }
+
+    @Override
+    public List<Task> getCriticalPath() {
+        return read(() -> findTasks(withGraph(dependencyGraph::getCriticalPath)));
+    }
+
+    /**
+     * Возвращает задачи и подзадачи по идентификаторам, не добавляя их в историю просмотров
+     * (задачи, удаленные после чтения индекса, пропускаются)
+     */
+    private List<Task> findTasks(List<Integer> ids) {
+        return ids.stream().map(this::findTask).filter(Objects::nonNull).toList();
+    }
+
+    private Task findTask(int id) {
+        Task task = taskRegistry.get(id);
+        return task != null ? task : subtaskRegistry.get(id);
+    }
+
+    /**
+     * Задачи и подзадачи реестров для графа зависимостей
+     */
+    private class RegisteredTasks implements DependencyGraph.Tasks {
+
+        @Override
+        public long duration(int id) {
+            Task task = findTask(id);
+            return task != null ? task.getDurationSeconds() : ABSENT;
+        }
+
+        @Override
+        public void forEach(DependencyGraph.Visitor visitor) {
+            taskRegistry.values().forEach(task -> visitor.visit(task.getId(), task.getDurationSeconds()));
+            subtaskRegistry.values().forEach(subtask -> visitor.visit(subtask.getId(), subtask.getDurationSeconds()));
+        }
+    }
+
+    @Override
+    public void clearTasks() {
+        withAllStripes(() -> {
+            taskRegistry.values().forEach(task -> updateTimeIndex(task, null));
+            taskRegistry.clear();
+        });
+    }
+
+    @Override
+    public void clearSubtasks() {
+        withAllStripes(() -> {
+            subtaskRegistry.values().forEach(subtask -> updateTimeIndex(subtask, null));
+            subtaskRegistry.clear();
+            epicAggregates.values().forEach(EpicAggregate::clear);
+            epicRegistry.values().forEach(epic -> epicRegistry.put(epic.getId(),
+                    epicAggregates.get(epic.getId()).apply(epic, epic.getVersion() + 1)));
+        });
+    }
+
+    @Override
+    public void clearEpics() {
+        withAllStripes(() -> {
+            clearSubtasks();
+            epicRegistry.clear();
+            epicAggregates.clear();
+        });
+    }
+
+    @Override
+    public Task getTask(int id) {
+
+        Task task = read(() -> taskRegistry.get(id));
+        if (task == null)
+            throw new NotFoundIdException("Задача с указанным Id не найдена");
+        addToHistory(task);
+        return task;
+    }
+
+    @Override
+    public Subtask getSubtask(int id) {
+
+        Subtask subtask = read(() -> subtaskRegistry.get(id));
+        if (subtask == null)
+            throw new NotFoundIdException("Подзадача с указанным Id не найдена");
+        addToHistory(subtask);
+        return subtask;
+    }
+
+    @Override
+    public Epic getEpic(int id) {
+
+        Epic epic = read(() -> epicRegistry.get(id));
+        if (epic == null)
+            throw new NotFoundIdException("Эпик с указанным Id не найден");
+        addToHistory(epic);
+        return epic;
+    }
+
+    @Override
+    public void removeTask(int id) {
+        withStripe(id, () -> {
+            Task task = taskRegistry.remove(id);
+            if (task != null)
+                updateTimeIndex(task, null);
+            removeFromHistory(id);
+            return task;
+        });
+    }
+
+    @Override
+    public void removeSubtask(int id) {
+
+        boolean removed;
+        do {
+            Subtask current = subtaskRegistry.get(id);
+            if (current == null)
+                return;
+            removed = withStripe(current.getEpicId(), () -> {
+                Subtask subtask = subtaskRegistry.get(id);
+                if (subtask == null)
+                    return true;
+                if (subtask.getEpicId() != current.getEpicId())
+                    return false;
+                subtaskRegistry.remove(id);
+                updateTimeIndex(subtask, null);
+                removeFromHistory(id);
+                epicAggregates.get(subtask.getEpicId()).removeSubtask(subtask);
+                refreshEpic(subtask.getEpicId());
+                return true;
+            });
+        } while (!removed);
+    }
+
+    @Override
+    public void removeEpic(int id) {
+        withStripe(id, () -> {
+            Epic epic = epicRegistry.remove(id);
+            if (epic != null) {
+                // Состав эпика берется из агрегата (внутри транзакции публикация эпика откладывается)
+                epicAggregates.remove(id).subtaskIds().forEach(subtaskId -> {
+                    Subtask subtask = subtaskRegistry.remove(subtaskId);
+                    if (subtask != null)
+                        updateTimeIndex(subtask, null);
+                    removeFromHistory(subtaskId);
+                });
+                removeFromHistory(id);
+            }
+            return epic;
+        });
+    }
+
+    @Override
+    public List<Subtask> getEpicSubtasks(Epic epic) {
+        return read(() -> epic.getSubtasks().stream()
+                .map(subtaskRegistry::get)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return read(() -> taskRegistry.isEmpty() && epicRegistry.isEmpty() && subtaskRegistry.isEmpty());
+    }
+
+    /**
+     * Выполняет транзакцию под всеми полосами блокировки и блокировкой транзакции на запись:
+     * параллельные изменения ожидают ее завершения, а чтение, пересекшееся с транзакцией,
+     * повторяется после ее завершения (см. read). События публикуются после снятия блокировки.
+     */
+    @Override
+    public void executeTransaction(Consumer<TaskTransaction> operations) {
+        withAllStripes(() -> {
+            if (transaction != null)
+                throw new IllegalStateException("Вложенные транзакции не поддерживаются");
+            TransactionLog log = new TransactionLog(this,
+                    taskRegistry.asMap(), subtaskRegistry.asMap(), epicRegistry.asMap(), epicAggregates,
+                    prioritizedTasks);
+            long stamp = transactionLock.writeLock();
+            transactionOwner = Thread.currentThread();
+            try {
+                transaction = log;
+                runWithFeed(changeFeed::hold);
+                runWithGraph(dependencyGraph::hold);
+                try {
+                    operations.accept(log);
+                } catch (RuntimeException e) {
+                    transaction = null;
+                    timeLock.lock();
+                    try {
+                        log.rollback();
+                    } finally {
+                        timeLock.unlock();
+                    }
+                    runWithGraph(dependencyGraph::discard);
+                    runWithFeed(changeFeed::discard);
+                    throw e;
+                }
+                transaction = null;
+                runWithGraph(dependencyGraph::release);
+                log.getDeferredEpics().forEach(this::refreshEpic);
+                log.getDeferredHistoryRemovals().forEach(this::removeFromHistory);
+            } finally {
+                transactionOwner = null;
+                transactionLock.unlockWrite(stamp);
+            }
+            runWithFeed(changeFeed::release);
+        });
+    }
+
+    @Override
+    public TaskSubscription subscribe(TaskListener listener) {
+        return changeFeed.subscribe(listener);
+    }
+
+    @Override
+    public TaskSubscription subscribeAsync(TaskListener listener, int capacity) {
+        return changeFeed.subscribeAsync(listener, capacity);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        historyLock.lock();
+        try {
+            return historyManager.getHistory();
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return read(prioritizedTasks::toList);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to, int limit) {
+        return read(() -> prioritizedTasks.window(from, to, limit));
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksAfter(LocalDateTime after, LocalDateTime to, int limit) {
+        return read(() -> prioritizedTasks.after(after, to, limit));
+    }
+
+    @Override
+    public Optional<LocalDateTime> findFreeSlot(Duration length, LocalDateTime notBefore, LocalDateTime notAfter) {
+        return read(() -> prioritizedTasks.findFreeSlot(length, notBefore, notAfter));
+    }
+}
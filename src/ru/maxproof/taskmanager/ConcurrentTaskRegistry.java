@@ -0,0 +1,102 @@
+package ru.maxproof.taskmanager;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр задач одного типа для ConcurrentTaskManager: чтение выполняется без блокировок,
+ * а вторичные индексы менеджера (см. TaskIndex) изменяются после каждого изменения реестра;
+ * индексы сами отвечают за свои блокировки. Изменения одной задачи упорядочены блокировкой-полосой
+ * менеджера, поэтому индексы видят версии задачи в порядке их публикации в реестре.
+ * <p>
+ * Таблица задач закрыта: реестр изменяется только через put, remove и clear,
+ * поэтому ни одно изменение не минует индексы.
+ * @param <T> Тип задач реестра
+ */
+class ConcurrentTaskRegistry<T extends Task> {
+
+    private final ConcurrentHashMap<Integer, T> tasks = new ConcurrentHashMap<>();
+    private final TaskIndex indexes;
+
+
+    /**
+     * @param indexes Индексы менеджера (безопасные для вызова из нескольких потоков)
+     */
+    ConcurrentTaskRegistry(TaskIndex indexes) {
+        this.indexes = indexes;
+    }
+
+    T get(int id) {
+        return tasks.get(id);
+    }
+
+    boolean containsKey(int id) {
+        return tasks.containsKey(id);
+    }
+
+    boolean isEmpty() {
+        return tasks.isEmpty();
+    }
+
+    /**
+     * Возвращает задачи реестра (представление только для чтения, слабо согласованное при изменениях)
+     */
+    Collection<T> values() {
+        return Collections.unmodifiableCollection(tasks.values());
+    }
+
+    T put(int id, T task) {
+        T oldValue = tasks.put(id, task);
+        indexes.replace(oldValue, task);
+        return oldValue;
+    }
+
+    T remove(int id) {
+        T oldValue = tasks.remove(id);
+        if (oldValue != null)
+            indexes.replace(oldValue, null);
+        return oldValue;
+    }
+
+    void clear() {
+        for (Integer id : tasks.keySet())
+            remove(id);
+    }
+
+    /**
+     * Возвращает представление реестра в виде таблицы для журнала транзакции (см. TransactionLog):
+     * put и remove таблицы изменяют реестр с индексами, прочие изменения не поддерживаются
+     */
+    Map<Integer, T> asMap() {
+        return new AbstractMap<>() {
+            @Override
+            public T get(Object key) {
+                return tasks.get(key);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return tasks.containsKey(key);
+            }
+
+            @Override
+            public T put(Integer key, T value) {
+                return ConcurrentTaskRegistry.this.put(key, value);
+            }
+
+            @Override
+            public T remove(Object key) {
+                return key instanceof Integer id ? ConcurrentTaskRegistry.this.remove(id) : null;
+            }
+
+            @Override
+            public Set<Entry<Integer, T>> entrySet() {
+                return Collections.unmodifiableMap(tasks).entrySet();
+            }
+        };
+    }
+}
@@ -0,0 +1,492 @@
+package ru.maxproof.taskmanager;
+
+import ru.maxproof.exceptions.DependencyCycleException;
+import ru.maxproof.exceptions.NotFoundIdException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Граф зависимостей задач и подзадач, поддерживаемый реестрами задач (см. TaskRegistry).
+ * Зависимость blocker -> task означает, что задача task не может начаться до окончания задачи blocker.
+ * <p>
+ * Топологический порядок поддерживается инкрементально (алгоритм Пирса - Келли): добавление зависимости,
+ * нарушающей порядок, перенумеровывает лишь задачи между ее концами, достижимые из них, а тот же обход
+ * обнаруживает цикл. Самое раннее окончание задачи (ее продолжительность плюс самое позднее окончание
+ * блокирующих задач) пересчитывается в топологическом порядке только для задач, достижимых из изменившейся,
+ * и только пока окончание меняется. Задачи упорядочены по раннему окончанию, поэтому критический путь
+ * восстанавливается от последней из них за время, пропорциональное длине пути. Задачи также упорядочены
+ * по позиции в топологическом порядке, поэтому порядок выдается без сортировки.
+ * Эпики в зависимостях не участвуют: их время определяется подзадачами.
+ * <p>
+ * Граф хранит только задачи, участвующие в зависимостях: узел создается при добавлении первой
+ * зависимости задачи и удаляется вместе с последней. Продолжительность задач и перечень задач
+ * без зависимостей граф получает от менеджера (см. Tasks), поэтому изменение задачи без зависимостей
+ * сводится к поиску ее узла, а число узлов не зависит от числа задач.
+ * <p>
+ * Граф изменяется под блокировкой менеджера, но таблица узлов допускает чтение без блокировки:
+ * многопоточные менеджеры проверяют через affects, нужна ли графу замена версии задачи,
+ * и не захватывают блокировку графа при изменении задач без зависимостей.
+ */
+class DependencyGraph implements TaskIndex {
+
+    /**
+     * Задачи и подзадачи менеджера, которому принадлежит граф
+     */
+    interface Tasks {
+
+        long ABSENT = -1;
+
+        /**
+         * Возвращает продолжительность задачи или подзадачи, с (ABSENT - задача или подзадача не найдена)
+         */
+        long duration(int id);
+
+        /**
+         * Передает получателю все задачи и подзадачи
+         */
+        void forEach(Visitor visitor);
+    }
+
+    interface Visitor {
+        void visit(int id, long duration);
+    }
+
+    private static final class Node {
+        private final int id;
+        private long duration;          // продолжительность задачи, с
+        private long finish;            // самое раннее окончание, с (от начала выполнения графа)
+        private int order;              // позиция в топологическом порядке
+        private int mark;               // отметка последнего обхода, посетившего задачу
+        private boolean queued;         // задача ожидает пересчета раннего окончания
+        private final List<Node> blockers = new ArrayList<>();
+        private final List<Node> dependents = new ArrayList<>();
+
+        private Node(int id, long duration, int order) {
+            this.id = id;
+            this.duration = duration;
+            this.finish = duration;
+            this.order = order;
+        }
+    }
+
+    /**
+     * Изменение зависимости в транзакции
+     */
+    private record Change(int blockerId, int taskId, boolean added) {
+    }
+
+    private static final Comparator<Node> BY_ORDER = Comparator.comparingInt(node -> node.order);
+    private static final Comparator<Node> BY_FINISH =
+            Comparator.<Node>comparingLong(node -> node.finish).thenComparingInt(node -> node.id);
+
+    private final Tasks tasks;
+    private final Map<Integer, Node> nodes = new ConcurrentHashMap<>();
+    private final TreeSet<Node> byFinish = new TreeSet<>(BY_FINISH);
+    private final TreeSet<Node> byOrder = new TreeSet<>(BY_ORDER);     // позиции задач различны
+    private final PriorityQueue<Node> pending = new PriorityQueue<>(BY_ORDER);
+    private int nextOrder = 0;          // позиция после всех задач
+    private int firstOrder = 0;         // позиция первой задачи
+    private int epoch = 0;
+    private List<Change> changes = null;        // изменения зависимостей транзакции (null - вне транзакции)
+
+
+    /**
+     * @param tasks Задачи и подзадачи менеджера
+     */
+    DependencyGraph(Tasks tasks) {
+        this.tasks = tasks;
+    }
+
+    /**
+     * Проверяет без блокировки, затрагивает ли граф замена версии задачи (задача участвует в зависимостях).
+     * Узел задачи создается под блокировкой, исключающей изменение самой задачи, поэтому изменяющий
+     * задачу поток видит ее узел; узел, удаленный параллельно, дает лишь лишний захват блокировки.
+     */
+    boolean affects(Task oldTask, Task newTask) {
+        return oldTask != null && !(oldTask instanceof Epic) && nodes.containsKey(oldTask.getId());
+    }
+
+    @Override
+    public void replace(Task oldTask, Task newTask) {
+
+        if (oldTask instanceof Epic || newTask instanceof Epic)
+            return;
+        if (newTask == null)
+            remove(oldTask.getId());
+        else if (oldTask != null)
+            updateDuration(newTask.getId(), newTask.getDurationSeconds());
+    }
+
+    /**
+     * Учитывает новую продолжительность задачи, если задача участвует в зависимостях
+     * (для менеджеров, хранящих задачи не в реестрах, см. OffHeapTaskManager)
+     * @param id Идентификатор задачи или подзадачи
+     * @param duration Продолжительность задачи, с
+     */
+    void updateDuration(int id, long duration) {
+
+        Node node = nodes.get(id);
+        if (node != null && node.duration != duration) {
+            node.duration = duration;
+            schedule(node);
+            recalculate();
+        }
+    }
+
+    /**
+     * Проверяет, может ли задача участвовать в зависимостях (задача или подзадача менеджера)
+     */
+    boolean contains(int id) {
+        return nodes.containsKey(id) || tasks.duration(id) != Tasks.ABSENT;
+    }
+
+    /**
+     * Возвращает число задач, участвующих в зависимостях (число узлов графа)
+     */
+    int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Добавляет зависимость (повторное добавление игнорируется)
+     * @param blockerId Идентификатор блокирующей задачи
+     * @param taskId Идентификатор зависимой задачи
+     * @throws NotFoundIdException если задача не найдена
+     * @throws DependencyCycleException если зависимость образует цикл
+     */
+    void addDependency(int blockerId, int taskId) {
+
+        checkTask(blockerId);
+        checkTask(taskId);
+        if (blockerId == taskId)
+            throw new DependencyCycleException("Задача не может зависеть от самой себя");
+        // Новая блокирующая задача помещается перед всеми задачами, новая зависимая - после всех,
+        // поэтому первая зависимость задачи не требует перестановки
+        Node blocker = getNode(blockerId, true);
+        Node task = getNode(taskId, false);
+        if (task.blockers.contains(blocker))
+            return;
+        if (blocker.order > task.order)
+            reorder(blocker, task);
+        blocker.dependents.add(task);
+        task.blockers.add(blocker);
+        log(blocker, task, true);
+        schedule(task);
+        recalculate();
+    }
+
+    /**
+     * Удаляет зависимость (отсутствующая зависимость игнорируется)
+     * @param blockerId Идентификатор блокирующей задачи
+     * @param taskId Идентификатор зависимой задачи
+     * @throws NotFoundIdException если задача не найдена
+     */
+    void removeDependency(int blockerId, int taskId) {
+
+        Node blocker = nodes.get(blockerId);
+        Node task = nodes.get(taskId);
+        if (blocker == null || task == null) {
+            checkTask(blockerId);
+            checkTask(taskId);
+            return;
+        }
+        if (!task.blockers.remove(blocker))
+            return;
+        blocker.dependents.remove(task);
+        log(blocker, task, false);
+        schedule(task);
+        recalculate();
+        dropIfIsolated(blocker);
+        dropIfIsolated(task);
+    }
+
+    /**
+     * Возвращает идентификаторы задач, блокирующих задачу
+     * @throws NotFoundIdException если задача не найдена
+     */
+    List<Integer> getBlockers(int taskId) {
+        Node node = nodes.get(taskId);
+        if (node == null) {
+            checkTask(taskId);
+            return List.of();
+        }
+        return node.blockers.stream().map(blocker -> blocker.id).toList();
+    }
+
+    /**
+     * Возвращает идентификаторы всех задач в топологическом порядке
+     * (каждая задача следует за всеми блокирующими ее задачами, задачи без зависимостей - в конце)
+     */
+    List<Integer> getOrder() {
+        List<Integer> order = new ArrayList<>();
+        byOrder.forEach(node -> order.add(node.id));
+        tasks.forEach((id, duration) -> {
+            if (!nodes.containsKey(id))
+                order.add(id);
+        });
+        return order;
+    }
+
+    /**
+     * Возвращает идентификаторы задач критического пути: самой длинной по суммарной
+     * продолжительности цепочки зависимых задач, от первой задачи к последней
+     * (пустой перечень, если нет задач ненулевой продолжительности)
+     */
+    List<Integer> getCriticalPath() {
+
+        // Путь из одной задачи без зависимостей: самая продолжительная из таких задач
+        long[] longest = {0, 0};        // продолжительность, идентификатор
+        tasks.forEach((id, duration) -> {
+            if ((duration > longest[0] || duration == longest[0] && id > longest[1]) && !nodes.containsKey(id)) {
+                longest[0] = duration;
+                longest[1] = id;
+            }
+        });
+        Node last = byFinish.isEmpty() ? null : byFinish.last();
+        if (last == null || longest[0] > last.finish || longest[0] == last.finish && longest[1] > last.id)
+            return longest[0] == 0 ? List.of() : List.of((int) longest[1]);
+        if (last.finish == 0)
+            return List.of();
+        List<Integer> path = new ArrayList<>();
+        for (Node node = last; node != null; ) {
+            path.add(node.id);
+            // Раннее окончание задачи определяется блокирующей задачей с самым поздним окончанием
+            Node critical = null;
+            for (Node blocker : node.blockers) {
+                if (critical == null || blocker.finish > critical.finish)
+                    critical = blocker;
+            }
+            node = critical;
+        }
+        return path.reversed();
+    }
+
+    /**
+     * Передает все зависимости получателю
+     * @param consumer Получатель (идентификатор блокирующей задачи, идентификатор зависимой задачи)
+     */
+    void forEachDependency(BiConsumer<Integer, Integer> consumer) {
+        for (Node task : nodes.values()) {
+            for (Node blocker : task.blockers)
+                consumer.accept(blocker.id, task.id);
+        }
+    }
+
+    /**
+     * Начинает запись изменений зависимостей транзакции
+     */
+    void hold() {
+        changes = new ArrayList<>();
+    }
+
+    /**
+     * Фиксирует изменения зависимостей транзакции
+     */
+    void release() {
+        changes = null;
+    }
+
+    /**
+     * Отменяет изменения зависимостей транзакции, в том числе зависимости, удаленные вместе с задачами.
+     * Вызывается после восстановления реестров: изменения отменяются в обратном порядке,
+     * изменения зависимостей задач, созданных в транзакции, пропускаются.
+     */
+    void discard() {
+
+        List<Change> log = changes;
+        changes = null;
+        for (Change change : log.reversed()) {
+            if (!contains(change.blockerId()) || !contains(change.taskId()))
+                continue;
+            if (change.added())
+                removeDependency(change.blockerId(), change.taskId());
+            else
+                addDependency(change.blockerId(), change.taskId());
+        }
+    }
+
+    /**
+     * Возвращает узел задачи, создавая его при первой зависимости задачи
+     * @param first true - новый узел помещается перед всеми задачами, false - после всех задач
+     * @throws NotFoundIdException если задача не найдена
+     */
+    private Node getNode(int id, boolean first) {
+
+        Node node = nodes.get(id);
+        if (node != null)
+            return node;
+        long duration = tasks.duration(id);
+        if (duration == Tasks.ABSENT)
+            throw new NotFoundIdException("Задача или подзадача с указанным Id не найдена");
+        node = new Node(id, duration, first ? firstOrder() : nextOrder());
+        nodes.put(node.id, node);
+        byFinish.add(node);
+        byOrder.add(node);
+        return node;
+    }
+
+    /**
+     * Проверяет наличие задачи без зависимостей
+     * @throws NotFoundIdException если задача не найдена
+     */
+    private void checkTask(int id) {
+        if (!contains(id))
+            throw new NotFoundIdException("Задача или подзадача с указанным Id не найдена");
+    }
+
+    /**
+     * Удаляет узел задачи, не участвующей больше в зависимостях
+     */
+    private void dropIfIsolated(Node node) {
+        if (node.blockers.isEmpty() && node.dependents.isEmpty() && nodes.remove(node.id) != null) {
+            byFinish.remove(node);
+            byOrder.remove(node);
+        }
+    }
+
+    private void log(Node blocker, Node task, boolean added) {
+        if (changes != null)
+            changes.add(new Change(blocker.id, task.id, added));
+    }
+
+    private int nextOrder() {
+        if (nextOrder == Integer.MAX_VALUE)
+            compactOrder();
+        return nextOrder++;
+    }
+
+    private int firstOrder() {
+        if (firstOrder == Integer.MIN_VALUE)
+            compactOrder();
+        return --firstOrder;
+    }
+
+    /**
+     * Уплотняет позиции задач вокруг середины диапазона: позиции удаленных задач не используются повторно
+     * (перенумерация сохраняет взаимный порядок задач, поэтому byOrder остается упорядоченным)
+     */
+    private void compactOrder() {
+        nextOrder = -(nodes.size() / 2);
+        firstOrder = nextOrder;
+        byOrder.forEach(node -> node.order = nextOrder++);
+    }
+
+    /**
+     * Удаляет задачу вместе с ее зависимостями (отсутствующая задача игнорируется)
+     */
+    void remove(int id) {
+
+        Node node = nodes.remove(id);
+        if (node == null)
+            return;
+        byFinish.remove(node);
+        byOrder.remove(node);
+        for (Node blocker : node.blockers) {
+            blocker.dependents.remove(node);
+            log(blocker, node, false);
+        }
+        for (Node dependent : node.dependents) {
+            dependent.blockers.remove(node);
+            log(node, dependent, false);
+            schedule(dependent);
+        }
+        recalculate();
+        node.blockers.forEach(this::dropIfIsolated);
+        node.dependents.forEach(this::dropIfIsolated);
+    }
+
+    /**
+     * Восстанавливает топологический порядок перед добавлением зависимости blocker -> task,
+     * если blocker следует за task. Переставляются только задачи, зависящие от task и предшествующие
+     * blocker, и задачи, блокирующие blocker и следующие за task: первые помещаются после вторых
+     * на освободившиеся позиции.
+     * @throws DependencyCycleException если blocker зависит от task
+     */
+    private void reorder(Node blocker, Node task) {
+
+        int lower = task.order;
+        int upper = blocker.order;
+        int mark = ++epoch;
+        Deque<Node> stack = new ArrayDeque<>();
+
+        List<Node> forward = new ArrayList<>();
+        task.mark = mark;
+        stack.push(task);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            forward.add(node);
+            for (Node dependent : node.dependents) {
+                if (dependent == blocker)
+                    throw new DependencyCycleException("Зависимость образует цикл зависимостей задач");
+                if (dependent.mark != mark && dependent.order < upper) {
+                    dependent.mark = mark;
+                    stack.push(dependent);
+                }
+            }
+        }
+
+        List<Node> backward = new ArrayList<>();
+        blocker.mark = mark;
+        stack.push(blocker);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            backward.add(node);
+            for (Node previous : node.blockers) {
+                if (previous.mark != mark && previous.order > lower) {
+                    previous.mark = mark;
+                    stack.push(previous);
+                }
+            }
+        }
+
+        forward.sort(BY_ORDER);
+        backward.sort(BY_ORDER);
+        forward.forEach(byOrder::remove);
+        backward.forEach(byOrder::remove);
+        int[] orders = new int[forward.size() + backward.size()];
+        int i = 0;
+        for (Node node : backward)
+            orders[i++] = node.order;
+        for (Node node : forward)
+            orders[i++] = node.order;
+        Arrays.sort(orders);
+        i = 0;
+        for (Node node : backward)
+            node.order = orders[i++];
+        for (Node node : forward)
+            node.order = orders[i++];
+        byOrder.addAll(forward);
+        byOrder.addAll(backward);
+    }
+
+    private void schedule(Node node) {
+        if (!node.queued) {
+            node.queued = true;
+            pending.add(node);
+        }
+    }
+
+    /**
+     * Пересчитывает раннее окончание ожидающих задач в топологическом порядке: к моменту пересчета
+     * задачи все блокирующие ее задачи уже пересчитаны, поэтому каждая задача пересчитывается однократно
+     */
+    private void recalculate() {
+
+        Node node;
+        while ((node = pending.poll()) != null) {
+            node.queued = false;
+            long start = 0;
+            for (Node blocker : node.blockers)
+                start = Math.max(start, blocker.finish);
+            long finish = start + node.duration;
+            if (finish != node.finish) {
+                byFinish.remove(node);
+                node.finish = finish;
+                byFinish.add(node);
+                node.dependents.forEach(this::schedule);
+            }
+        }
+    }
+}
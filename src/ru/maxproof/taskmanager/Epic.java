@@ -2,6 +2,7 @@ package ru.maxproof.taskmanager;
 
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.List;
 
 public class Epic extends Task {
@@ -11,13 +12,16 @@ public class Epic extends Task {
      */
     private final List<Integer> subtaskIds;
 
-    private final LocalDateTime endTime;
+    private final long endSecond;       // окончание выполнения (см. Task)
+    private final int endNano;
 
 
     public Epic(TaskBuilder builder) {
         super(builder);
         subtaskIds = builder.getSubs() == null ? List.of() : builder.getSubs();
-        endTime = builder.getEndTime();
+        LocalDateTime endTime = builder.getEndTime();
+        endSecond = endTime == null ? 0 : endTime.toEpochSecond(ZoneOffset.UTC);
+        endNano = endTime == null ? NO_TIME : endTime.getNano();
     }
 
     /**
@@ -31,6 +35,16 @@ public class Epic extends Task {
 
     @Override
     public LocalDateTime getEndTime() {
-        return endTime;
+        return toLocalDateTime(endSecond, endNano);
+    }
+
+    @Override
+    long getEndSecond() {
+        return endSecond;
+    }
+
+    @Override
+    int getEndNano() {
+        return endNano;
     }
 }
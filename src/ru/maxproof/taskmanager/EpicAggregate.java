@@ -0,0 +1,162 @@
+package ru.maxproof.taskmanager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+
+/**
+ * Агрегированные характеристики эпика, поддерживаемые инкрементально
+ * при каждом изменении его подзадач. Пересчет статуса и времени эпика
+ * не требует обхода всех подзадач и выполняется за O(log k).
+ */
+class EpicAggregate {
+
+    /**
+     * Неизменяемое представление префикса массива идентификаторов подзадач.
+     * Добавление подзадач пишет за пределы опубликованного префикса,
+     * поэтому ранее выданные эпики не видят последующих изменений.
+     */
+    private static class IdListView extends AbstractList<Integer> implements RandomAccess {
+
+        private final int[] ids;
+        private final int size;
+
+        IdListView(int[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException(index);
+            return ids[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private int[] subtaskIds = new int[4];  // идентификаторы подзадач в порядке добавления
+    private int size = 0;                   // число подзадач
+    private int newCount = 0;               // число подзадач в статусе NEW
+    private int doneCount = 0;              // число подзадач в статусе DONE
+    private final TreeMap<LocalDateTime, Integer> startTimes = new TreeMap<>();    // мультимножество начал
+    private final TreeMap<LocalDateTime, Integer> endTimes = new TreeMap<>();      // мультимножество окончаний
+    private Duration duration = Duration.ZERO;      // суммарная длительность подзадач
+
+
+    /**
+     * Добавляет подзадачу к эпику
+     * @param subtask Новая подзадача эпика
+     */
+    void addSubtask(Subtask subtask) {
+
+        if (size == subtaskIds.length)
+            subtaskIds = Arrays.copyOf(subtaskIds, size * 2);
+        subtaskIds[size++] = subtask.getId();
+        account(subtask, 1);
+    }
+
+    /**
+     * Удаляет подзадачу из эпика
+     * @param subtask Удаляемая подзадача
+     */
+    void removeSubtask(Subtask subtask) {
+
+        int index = 0;
+        while (index < size && subtaskIds[index] != subtask.getId())
+            ++index;
+        if (index == size)
+            return;
+
+        // Копирование при удалении: опубликованные эпики продолжают ссылаться на прежний массив
+        int[] ids = new int[Math.max(4, subtaskIds.length)];
+        System.arraycopy(subtaskIds, 0, ids, 0, index);
+        System.arraycopy(subtaskIds, index + 1, ids, index, size - index - 1);
+        subtaskIds = ids;
+        --size;
+        account(subtask, -1);
+    }
+
+    /**
+     * Учитывает изменение подзадачи, не меняющее состав эпика
+     * @param oldSubtask Прежняя версия подзадачи
+     * @param newSubtask Новая версия подзадачи
+     */
+    void replaceSubtask(Subtask oldSubtask, Subtask newSubtask) {
+        account(oldSubtask, -1);
+        account(newSubtask, 1);
+    }
+
+    /**
+     * Удаляет все подзадачи эпика
+     */
+    void clear() {
+        subtaskIds = new int[4];
+        size = 0;
+        newCount = 0;
+        doneCount = 0;
+        startTimes.clear();
+        endTimes.clear();
+        duration = Duration.ZERO;
+    }
+
+    /**
+     * Возвращает актуальный состав эпика (неизменяемое представление)
+     * @return Идентификаторы подзадач в порядке добавления
+     */
+    List<Integer> subtaskIds() {
+        return new IdListView(subtaskIds, size);
+    }
+
+    /**
+     * Создает новую версию эпика с актуальными агрегированными характеристиками
+     * @param epic Эпик, имя и описание которого сохраняются
+     * @param version Номер версии эпика
+     * @return Новая неизменяемая версия эпика
+     */
+    Epic apply(Epic epic, long version) {
+
+        TaskStatus status = newCount == size ? TaskStatus.NEW :
+                doneCount == size ? TaskStatus.DONE :
+                        TaskStatus.IN_PROGRESS;
+        return new TaskBuilder(epic)
+                .setSubs(subtaskIds())
+                .setStatus(status)
+                .setStartTime(startTimes.isEmpty() ? null : startTimes.firstKey())
+                .setDuration(duration)
+                .setEndTime(endTimes.isEmpty() ? null : endTimes.lastKey())
+                .setVersion(version)
+                .buildEpic();
+    }
+
+    /**
+     * Учитывает вклад подзадачи в агрегированные характеристики
+     * @param subtask Подзадача
+     * @param sign 1 для учета подзадачи, -1 для исключения
+     */
+    private void account(Subtask subtask, int sign) {
+
+        if (subtask.isNew())
+            newCount += sign;
+        else if (subtask.isDone())
+            doneCount += sign;
+
+        if (subtask.isValidTime()) {
+            updateMultiset(startTimes, subtask.getStartTime(), sign);
+            updateMultiset(endTimes, subtask.getEndTime(), sign);
+            duration = sign > 0 ? duration.plus(subtask.getDuration()) : duration.minus(subtask.getDuration());
+        }
+    }
+
+    private static void updateMultiset(TreeMap<LocalDateTime, Integer> multiset, LocalDateTime key, int sign) {
+        multiset.merge(key, sign, (count, delta) -> count + delta == 0 ? null : count + delta);
+    }
+}
@@ -2,10 +2,16 @@ package ru.maxproof.taskmanager;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.StringJoiner;
+import java.util.function.Consumer;
 
 public class FileBackedTaskManager extends InMemoryTaskManager {
 
@@ -13,11 +19,57 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
 
     }
 
+    /**
+     * Режим сохранения состояния менеджера
+     */
+    public enum StorageMode {
+        SNAPSHOT,       // полная перезапись файла-хранилища при каждом изменении
+        JOURNAL         // дописывание записи об изменении в журнал с периодическим сжатием в снимок
+    }
+
+    /**
+     * Число записей журнала, после которого журнал сжимается в снимок
+     */
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+
+    // Виды записей журнала
+    private static final String JOURNAL_PUT = "+";
+    private static final String JOURNAL_REMOVE = "-";
+    private static final String JOURNAL_CLEAR = "*";
+    private static final String JOURNAL_DEPEND = ">";
+    private static final String JOURNAL_UNDEPEND = "<";
+
+    // Тип строки снимка, описывающей зависимость задачи: id зависимой задачи,DEPENDENCY,id блокирующей задачи
+    private static final String DEPENDENCY = "DEPENDENCY";
+
     private final Path storageFile;
+    private final Path journalFile;
+    private final StorageMode mode;
+    private final int compactionThreshold;
+    private int journalSize = 0;
+    private List<String> transactionRecords = null;     // изменения текущей транзакции
+    private final List<String> refreshedEpics = new ArrayList<>();  // пересчитанные эпики текущего изменения
 
     public FileBackedTaskManager(Path storageFile) {
+        this(storageFile, StorageMode.SNAPSHOT);
+    }
+
+    public FileBackedTaskManager(Path storageFile, StorageMode mode) {
+        this(storageFile, mode, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Конструктор менеджера с сохранением в файл
+     * @param storageFile Файл-хранилище (снимок состояния)
+     * @param mode Режим сохранения
+     * @param compactionThreshold Число записей журнала, после которого журнал сжимается в снимок
+     */
+    public FileBackedTaskManager(Path storageFile, StorageMode mode, int compactionThreshold) {
         super();
         this.storageFile = storageFile;
+        this.journalFile = storageFile.resolveSibling(storageFile.getFileName() + ".journal");
+        this.mode = mode;
+        this.compactionThreshold = compactionThreshold;
     }
 
     private String saveTaskToString(Task task) {
@@ -36,17 +88,18 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         joiner.add(startTime == null ? "" : startTime.toString());
         Duration duration = task.getDuration();
         joiner.add(duration == null ? "" : duration.toString());
+        joiner.add(String.valueOf(task.getVersion()));
         return joiner.toString();
     }
 
     private Task loadTaskFromString(String taskString) {
 
         enum PosData {
-            ID, CLASS, NAME, STATUS, DESCRIPTION, EPIC_ID, START_TIME, DURATION
+            ID, CLASS, NAME, STATUS, DESCRIPTION, EPIC_ID, START_TIME, DURATION, VERSION
         }
 
         Task task = null;
-        // !! Здесь указание limit (=8) важно для того, чтобы не были выкинуты trailing empty strings !!
+        // !! Здесь указание limit (=9) важно для того, чтобы не были выкинуты trailing empty strings !!
         String[] parts = taskString.split(",", PosData.values().length);
         TaskBuilder builder = new TaskBuilder();
         builder.setId(Integer.parseInt(parts[PosData.ID.ordinal()]));
@@ -55,6 +108,9 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         builder.setDescription(parts[PosData.DESCRIPTION.ordinal()]);
         builder.setStartTime(parts[6].isEmpty() ? null : LocalDateTime.parse(parts[PosData.START_TIME.ordinal()]));
         builder.setDuration(parts[7].isEmpty() ? null : Duration.parse(parts[PosData.DURATION.ordinal()]));
+        // Файлы прежнего формата не содержат версии: загруженные задачи получают версию 1
+        builder.setVersion(parts.length > PosData.VERSION.ordinal() ?
+                Long.parseLong(parts[PosData.VERSION.ordinal()]) : 1);
         String taskClass = parts[1];
         switch (taskClass) {
             case "TASK" -> task = new Task(builder);
@@ -68,131 +124,371 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
     }
 
     /**
-     * Сохраняет текущее состояние менеджера задач в файл-хранилище
+     * Сохраняет текущее состояние менеджера задач в файл-хранилище.
+     * Снимок записывается во временный файл и атомарно замещает прежний,
+     * после чего журнал изменений становится ненужным и удаляется.
      */
-    void save() {
+    protected void save() {
 
         StringJoiner joiner = new StringJoiner("\n");
         joiner.add("id,type,name,status,description,epic");
         taskRegistry.values().forEach(task -> joiner.add(saveTaskToString(task)));
         epicRegistry.values().forEach(task -> joiner.add(saveTaskToString(task)));
         subtaskRegistry.values().forEach(task -> joiner.add(saveTaskToString(task)));
+        dependencyGraph.forEachDependency((blockerId, taskId) ->
+                joiner.add(taskId + "," + DEPENDENCY + "," + blockerId));
+        Path tempFile = storageFile.resolveSibling(storageFile.getFileName() + ".tmp");
         try (BufferedWriter bw = new BufferedWriter(
-                new FileWriter(storageFile.toFile(), StandardCharsets.UTF_8))) {
+                new FileWriter(tempFile.toFile(), StandardCharsets.UTF_8))) {
             bw.write(joiner.toString());
         } catch (IOException e) {
             throw new ManagerSaveException();
         }
+        try {
+            Files.move(tempFile, storageFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(journalFile);
+            journalSize = 0;
+        } catch (IOException e) {
+            throw new ManagerSaveException();
+        }
+    }
+
+    /**
+     * Фиксирует изменение состояния менеджера в соответствии с режимом сохранения
+     * @param record Запись журнала, описывающая изменение
+     */
+    private void persist(String record) {
+        if (transactionRecords != null)
+            transactionRecords.add(record);
+        else
+            persist(List.of(record));
+    }
+
+    /**
+     * Фиксирует группу изменений однократной записью (одним снимком либо одним дописыванием в журнал)
+     * @param records Записи журнала, описывающие изменения
+     */
+    private void persist(List<String> records) {
+
+        if (!refreshedEpics.isEmpty()) {
+            List<String> group = new ArrayList<>(records);
+            group.addAll(refreshedEpics);
+            refreshedEpics.clear();
+            records = group;
+        }
+        if (records.isEmpty())
+            return;
+        if (mode == StorageMode.SNAPSHOT) {
+            save();
+            return;
+        }
+        try (BufferedWriter bw = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (String record : records) {
+                bw.write(record);
+                bw.newLine();
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException();
+        }
+        journalSize += records.size();
+        if (journalSize >= compactionThreshold)
+            save();
+    }
+
+    /**
+     * Пересчет эпика меняет его версию: в режиме журнала новая версия эпика записывается
+     * в одной группе с изменением, вызвавшим пересчет (внутри транзакции - при ее фиксации)
+     */
+    @Override
+    protected void epicRefreshed(Epic epic) {
+        if (mode == StorageMode.SNAPSHOT)
+            return;
+        String record = JOURNAL_PUT + "," + saveTaskToString(epic);
+        if (transactionRecords != null)
+            transactionRecords.add(record);
+        else
+            refreshedEpics.add(record);
+    }
+
+    private void persistPut(Task task) {
+        persist(JOURNAL_PUT + "," + saveTaskToString(task));
+    }
+
+    private void persistPutAll(List<? extends Task> tasks) {
+        persist(tasks.stream().map(task -> JOURNAL_PUT + "," + saveTaskToString(task)).toList());
+    }
+
+    private void persistRemove(int id) {
+        persist(JOURNAL_REMOVE + "," + id);
+    }
+
+    private void persistClear(String taskClass) {
+        persist(JOURNAL_CLEAR + "," + taskClass);
+    }
+
+    private void persistDependency(String kind, int taskId, int blockerId) {
+        persist(kind + "," + taskId + "," + blockerId);
+    }
+
+    /**
+     * Загружает зависимость задачи из строки снимка либо записи журнала.
+     * Зависимости удаленных задач пропускаются.
+     * @param dependency Идентификаторы зависимой и блокирующей задачи через запятую
+     * @param add true - добавить зависимость, false - удалить
+     */
+    private void loadDependency(String dependency, boolean add) {
+        String[] parts = dependency.split(",");
+        int taskId = Integer.parseInt(parts[0]);
+        int blockerId = Integer.parseInt(parts[1]);
+        if (!dependencyGraph.contains(taskId) || !dependencyGraph.contains(blockerId))
+            return;
+        if (add)
+            dependencyGraph.addDependency(blockerId, taskId);
+        else
+            dependencyGraph.removeDependency(blockerId, taskId);
+    }
+
+    /**
+     * Помещает загруженную задачу в соответствующий реестр
+     * @param loadedTask Загруженная задача
+     */
+    private void putLoadedTask(Task loadedTask) {
+        switch (loadedTask) {
+            case Subtask subtask -> subtaskRegistry.put(subtask.getId(), subtask);
+            case Epic epic -> epicRegistry.put(epic.getId(), epic);
+            case Task task -> taskRegistry.put(task.getId(), task);
+        }
+        taskId = Math.max(taskId, loadedTask.getId());
+    }
+
+    /**
+     * Применяет запись журнала к реестрам менеджера. Записи журнала описывают
+     * итоговое состояние задач, поэтому повторное применение журнала поверх
+     * более нового снимка приводит к тому же результату.
+     * @param record Запись журнала
+     */
+    private void replayRecord(String record) {
+
+        String[] parts = record.split(",", 2);
+        switch (parts[0]) {
+            case JOURNAL_PUT -> putLoadedTask(loadTaskFromString(parts[1]));
+            case JOURNAL_REMOVE -> {
+                int id = Integer.parseInt(parts[1]);
+                taskRegistry.remove(id);
+                subtaskRegistry.remove(id);
+                epicRegistry.remove(id);
+                taskId = Math.max(taskId, id);
+            }
+            case JOURNAL_DEPEND -> loadDependency(parts[1], true);
+            case JOURNAL_UNDEPEND -> loadDependency(parts[1], false);
+            case JOURNAL_CLEAR -> {
+                switch (parts[1]) {
+                    case "TASK" -> taskRegistry.clear();
+                    case "SUBTASK" -> subtaskRegistry.clear();
+                    case "EPIC" -> {
+                        subtaskRegistry.clear();
+                        epicRegistry.clear();
+                    }
+                }
+            }
+        }
     }
 
     static FileBackedTaskManager loadTaskManager(Path storageFile) {
+        return loadTaskManager(storageFile, StorageMode.SNAPSHOT);
+    }
+
+    /**
+     * Загружает менеджер задач из снимка состояния и журнала изменений (если таковой имеется)
+     * @param storageFile Файл-хранилище
+     * @param mode Режим сохранения загруженного менеджера
+     * @return Загруженный менеджер задач
+     * @throws ManagerSaveException если не удалось прочитать ни снимок, ни журнал
+     */
+    static FileBackedTaskManager loadTaskManager(Path storageFile, StorageMode mode) {
+
+        var manager = new FileBackedTaskManager(storageFile, mode);
+        if (!manager.restore())
+            throw new ManagerSaveException();
+        return manager;
+    }
 
-        var manager = new FileBackedTaskManager(storageFile);
-        try (BufferedReader br = new BufferedReader(
-                new FileReader(storageFile.toFile(), StandardCharsets.UTF_8))) {
-            int globalId = 0;
-            boolean first = true;
-            while (br.ready()) {
-                String line = br.readLine();
-                if (first) {
-                    first = false;
-                    continue;
+    /**
+     * Восстанавливает состояние пустого менеджера из снимка и журнала изменений (если таковые имеются)
+     * @return false, если нет ни снимка, ни журнала (менеджер остается пустым)
+     * @throws ManagerSaveException если не удалось прочитать снимок или журнал
+     */
+    protected boolean restore() {
+
+        boolean hasSnapshot = Files.isRegularFile(storageFile);
+        boolean hasJournal = Files.isRegularFile(journalFile);
+        if (!hasSnapshot && !hasJournal)
+            return false;
+
+        try {
+            if (hasSnapshot) {
+                try (BufferedReader br = new BufferedReader(
+                        new FileReader(storageFile.toFile(), StandardCharsets.UTF_8))) {
+                    boolean first = true;
+                    while (br.ready()) {
+                        String line = br.readLine();
+                        if (first) {
+                            first = false;
+                            continue;
+                        }
+                        // Зависимости записываются после всех задач
+                        String[] parts = line.split(",", 3);
+                        if (parts[1].equals(DEPENDENCY))
+                            loadDependency(parts[0] + "," + parts[2], true);
+                        else
+                            putLoadedTask(loadTaskFromString(line));
+                    }
                 }
-                Task loadedTask = manager.loadTaskFromString(line);
-                switch (loadedTask) {
-                    case Subtask subtask -> manager.subtaskRegistry.put(subtask.getId(), subtask);
-                    case Epic epic -> manager.epicRegistry.put(epic.getId(), epic);
-                    case Task task -> manager.taskRegistry.put(task.getId(), task);
+            }
+            if (hasJournal) {
+                try (BufferedReader br = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        if (!line.isEmpty()) {
+                            replayRecord(line);
+                            ++journalSize;
+                        }
+                    }
                 }
-                globalId = Math.max(globalId, loadedTask.getId());
+                // Подзадачи удаленных эпиков удаляются вместе с ними
+                subtaskRegistry.values().removeIf(subtask -> !epicRegistry.containsKey(subtask.getEpicId()));
             }
-            // Регистрация subtask в эпиках
-            manager.epicRegistry.keySet()
-                    .forEach(epicId -> manager.epicRegistry.computeIfPresent(epicId,
-                            (k, oldEpic) -> manager.updateEpicImplicitly(oldEpic,
-                                    list -> list.addAll(manager.subtaskRegistry.values().stream()
-                                            .filter(subtask -> subtask.getEpicId() == oldEpic.getId())
-                                            .map(Subtask::getId)
-                                            .toList()))));
-            manager.taskId = globalId;
-            return manager;
         } catch (IOException e) {
             throw new ManagerSaveException();
         }
+
+        // Регистрация subtask в эпиках и восстановление временной шкалы
+        restoreIndexes();
+        return true;
     }
 
     @Override
     public Task createTask(Task draftTask) {
         Task task = super.createTask(draftTask);
-        save();
+        persistPut(task);
         return task;
     }
 
     @Override
     public Subtask createSubtask(Subtask draftSubtask) {
         Subtask subtask = super.createSubtask(draftSubtask);
-        save();
+        persistPut(subtask);
         return subtask;
     }
 
+    @Override
+    public List<Task> createTasks(List<Task> draftTasks) {
+        List<Task> tasks = super.createTasks(draftTasks);
+        persistPutAll(tasks);
+        return tasks;
+    }
+
+    @Override
+    public List<Subtask> createSubtasks(List<Subtask> draftSubtasks) {
+        List<Subtask> subtasks = super.createSubtasks(draftSubtasks);
+        persistPutAll(subtasks);
+        return subtasks;
+    }
+
+    /**
+     * Выполняет транзакцию; изменения транзакции сохраняются однократно после ее фиксации
+     */
+    @Override
+    public void executeTransaction(Consumer<TaskTransaction> operations) {
+
+        if (transactionRecords != null)
+            throw new IllegalStateException("Вложенные транзакции не поддерживаются");
+        List<String> records = new ArrayList<>();
+        transactionRecords = records;
+        try {
+            super.executeTransaction(operations);
+        } finally {
+            transactionRecords = null;
+        }
+        persist(records);
+    }
+
     @Override
     public Epic createEpic(Epic draftEpic) {
         Epic epic = super.createEpic(draftEpic);
-        save();
+        persistPut(epic);
         return epic;
     }
 
     @Override
-    public void updateTask(Task task) {
-        super.updateTask(task);
-        save();
+    public Task updateTask(Task task) {
+        Task updatedTask = super.updateTask(task);
+        persistPut(updatedTask);
+        return updatedTask;
     }
 
     @Override
-    public void updateSubtask(Subtask subtask) {
-        super.updateSubtask(subtask);
-        save();
+    public Subtask updateSubtask(Subtask subtask) {
+        Subtask updatedSubtask = super.updateSubtask(subtask);
+        persistPut(updatedSubtask);
+        return updatedSubtask;
     }
 
     @Override
-    public void updateEpic(Epic epic) {
-        super.updateEpic(epic);
-        save();
+    public Epic updateEpic(Epic epic) {
+        Epic updatedEpic = super.updateEpic(epic);
+        // Обновление несуществующего эпика игнорируется и не должно попадать в журнал
+        if (updatedEpic != null)
+            persistPut(updatedEpic);
+        return updatedEpic;
     }
 
     @Override
     public void clearSubtasks() {
         super.clearSubtasks();
-        save();
+        persistClear("SUBTASK");
     }
 
     @Override
     public void clearTasks() {
         super.clearTasks();
-        save();
+        persistClear("TASK");
     }
 
     @Override
     public void clearEpics() {
         super.clearEpics();
-        save();
+        persistClear("EPIC");
     }
 
     @Override
     public void removeTask(int id) {
         super.removeTask(id);
-        save();
+        persistRemove(id);
     }
 
     @Override
     public void removeSubtask(int id) {
         super.removeSubtask(id);
-        save();
+        persistRemove(id);
     }
 
     @Override
     public void removeEpic(int id) {
         super.removeEpic(id);
-        save();
+        persistRemove(id);
+    }
+
+    @Override
+    public void addDependency(int taskId, int blockerId) {
+        super.addDependency(taskId, blockerId);
+        persistDependency(JOURNAL_DEPEND, taskId, blockerId);
+    }
+
+    @Override
+    public void removeDependency(int taskId, int blockerId) {
+        super.removeDependency(taskId, blockerId);
+        persistDependency(JOURNAL_UNDEPEND, taskId, blockerId);
     }
 }
@@ -1,6 +1,5 @@
 package ru.maxproof.taskmanager;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -20,7 +19,7 @@ public class HistoryNodeList implements Iterable<Task> {
         }
     }
 
-    private final HashMap<Integer, Node> nodes = new HashMap<>();   // таблица элементов списка
+    private final IntMap<Node> nodes = new IntMap<>();   // таблица элементов списка
     private Node first = null;      // указатель на первый элемент связного списка
     private Node last = null;       // указатель на последний элемент связного списка
     private int size = 0;           // размер списка
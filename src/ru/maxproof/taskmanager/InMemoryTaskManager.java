@@ -1,7 +1,6 @@
 package ru.maxproof.taskmanager;
 
 import ru.maxproof.exceptions.NotFoundIdException;
-import ru.maxproof.exceptions.OverlappingTasksException;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -15,13 +14,22 @@ import java.util.function.Consumer;
 public class InMemoryTaskManager implements TaskManager {
 
     protected int taskId = 0;
-    protected final Map<Integer, Task> taskRegistry = new HashMap<>();
-    protected final Map<Integer, Epic> epicRegistry = new HashMap<>();
-    protected final Map<Integer, Subtask> subtaskRegistry = new HashMap<>();
+    private final StatusIndex statusIndex = new StatusIndex();     // индекс задач всех типов по статусу
+    private final TextIndex textIndex = new TextIndex();           // полнотекстовый индекс задач всех типов
+    private final StatisticsIndex statisticsIndex = new StatisticsIndex();    // статистика задач всех типов
+    private final ChangeFeed changeFeed = new ChangeFeed();        // события изменения задач
+    protected final DependencyGraph dependencyGraph = new DependencyGraph(new RegisteredTasks());  // зависимости задач
+    protected final IntMap<Task> taskRegistry =
+            new TaskRegistry<>(statusIndex, textIndex, statisticsIndex, dependencyGraph, changeFeed);
+    protected final IntMap<Epic> epicRegistry =
+            new TaskRegistry<>(statusIndex, textIndex, statisticsIndex, changeFeed);
+    protected final IntMap<Subtask> subtaskRegistry =
+            new TaskRegistry<>(statusIndex, textIndex, statisticsIndex, dependencyGraph, changeFeed);
+    private final IntMap<EpicAggregate> epicAggregates = new IntMap<>();
     private final HistoryManager historyManager;
 
-    private final TreeSet<Task> prioritizedTasks = new TreeSet<>(
-            Comparator.comparing(Task::getStartTime));
+    private final TimeIndex prioritizedTasks = new TimeIndex();
+    private TransactionLog transaction = null;     // журнал текущей транзакции
 
 
     public InMemoryTaskManager() {
@@ -31,11 +39,11 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public Task createTask(Task draftTask) {
 
-        checkTaskInTime(draftTask);
+        prioritizedTasks.checkTaskInTime(draftTask);
         if (draftTask.getId() != TaskManager.DRAFT_TASK_ID)
             throw new NotFoundIdException("Ненулевое значение Id новой задачи.");
 
-        Task registeredTask = new TaskBuilder(draftTask).setId(++taskId).buildTask();
+        Task registeredTask = new TaskBuilder(draftTask).setId(++taskId).setVersion(1).buildTask();
         taskRegistry.put(registeredTask.getId(), registeredTask);
         if (registeredTask.isValidTime())
             prioritizedTasks.add(registeredTask);
@@ -47,7 +55,7 @@ public class InMemoryTaskManager implements TaskManager {
     public Subtask createSubtask(Subtask draftSubtask) {
 
         // Проверка во времени
-        checkTaskInTime(draftSubtask);
+        prioritizedTasks.checkTaskInTime(draftSubtask);
 
         // Проверка Id
         if (draftSubtask.getId() != TaskManager.DRAFT_TASK_ID)
@@ -62,68 +70,167 @@ public class InMemoryTaskManager implements TaskManager {
         Subtask registeredSubtask = new TaskBuilder(draftSubtask)
                 .setId(++taskId)
                 .setEpicId(epic.getId())
+                .setVersion(1)
                 .buildSubtask();
         subtaskRegistry.put(registeredSubtask.getId(), registeredSubtask);
-        epicRegistry.put(epic.getId(), updateEpicImplicitly(epic,
-                list -> list.add(registeredSubtask.getId())));
+        epicAggregates.get(epic.getId()).addSubtask(registeredSubtask);
+        refreshEpic(epic.getId());
         if (registeredSubtask.isValidTime())
             prioritizedTasks.add(registeredSubtask);
         return registeredSubtask;
     }
 
 
+    @Override
+    public List<Task> createTasks(List<Task> draftTasks) {
+
+        // Проверка всей группы до регистрации
+        for (Task draftTask : draftTasks) {
+            if (draftTask.getId() != TaskManager.DRAFT_TASK_ID)
+                throw new NotFoundIdException("Ненулевое значение Id новой задачи.");
+        }
+        prioritizedTasks.checkTasksInTime(draftTasks);
+
+        // Идентификаторы выделяются одним блоком
+        int id = taskId;
+        taskId += draftTasks.size();
+        List<Task> registeredTasks = new ArrayList<>(draftTasks.size());
+        for (Task draftTask : draftTasks) {
+            Task registeredTask = new TaskBuilder(draftTask).setId(++id).setVersion(1).buildTask();
+            taskRegistry.put(registeredTask.getId(), registeredTask);
+            if (registeredTask.isValidTime())
+                prioritizedTasks.add(registeredTask);
+            registeredTasks.add(registeredTask);
+        }
+        return registeredTasks;
+    }
+
+
+    @Override
+    public List<Subtask> createSubtasks(List<Subtask> draftSubtasks) {
+
+        // Проверка всей группы до регистрации
+        for (Subtask draftSubtask : draftSubtasks) {
+            if (draftSubtask.getId() != TaskManager.DRAFT_TASK_ID)
+                throw new NotFoundIdException("Ненулевое значение Id новой подзадачи.");
+            if (!epicRegistry.containsKey(draftSubtask.getEpicId()))
+                throw new NotFoundIdException("Недопустимый Id родительского эпика");
+        }
+        prioritizedTasks.checkTasksInTime(draftSubtasks);
+
+        // Идентификаторы выделяются одним блоком, каждый затронутый эпик пересчитывается однократно
+        int id = taskId;
+        taskId += draftSubtasks.size();
+        List<Subtask> registeredSubtasks = new ArrayList<>(draftSubtasks.size());
+        Set<Integer> touchedEpics = new LinkedHashSet<>();
+        for (Subtask draftSubtask : draftSubtasks) {
+            Subtask registeredSubtask = new TaskBuilder(draftSubtask).setId(++id).setVersion(1).buildSubtask();
+            subtaskRegistry.put(registeredSubtask.getId(), registeredSubtask);
+            epicAggregates.get(registeredSubtask.getEpicId()).addSubtask(registeredSubtask);
+            touchedEpics.add(registeredSubtask.getEpicId());
+            if (registeredSubtask.isValidTime())
+                prioritizedTasks.add(registeredSubtask);
+            registeredSubtasks.add(registeredSubtask);
+        }
+        touchedEpics.forEach(this::refreshEpic);
+        return registeredSubtasks;
+    }
+
+
     @Override
     public Epic createEpic(Epic draftEpic) {
 
         if (draftEpic.getId() != TaskManager.DRAFT_TASK_ID)
             throw new NotFoundIdException("Ненулевое значение Id нового эпика.");
 
-        Epic registeredEpic = new TaskBuilder(draftEpic).setId(++taskId).buildEpic();
+        EpicAggregate aggregate = new EpicAggregate();
+        Epic registeredEpic = aggregate.apply(new TaskBuilder(draftEpic).setId(++taskId).buildEpic(), 1);
         epicRegistry.put(registeredEpic.getId(), registeredEpic);
+        epicAggregates.put(registeredEpic.getId(), aggregate);
         return registeredEpic;
     }
 
 
     @Override
-    public void updateTask(Task task) {
+    public Task updateTask(Task task) {
 
-        checkTaskInTime(task);
+        prioritizedTasks.checkTaskInTime(task);
         if (task.getId() == TaskManager.DRAFT_TASK_ID || !taskRegistry.containsKey(task.getId()))
             throw new NotFoundIdException("Недопустимый Id задачи");
 
         Task oldTask = taskRegistry.get(task.getId());
-        taskRegistry.put(task.getId(), task);
+        Task newTask = Task.withVersion(task, oldTask.getVersion() + 1);
+        taskRegistry.put(newTask.getId(), newTask);
         if (oldTask.isValidTime())
             prioritizedTasks.remove(oldTask);
-        if (task.isValidTime()) {
-            prioritizedTasks.add(task);
+        if (newTask.isValidTime()) {
+            prioritizedTasks.add(newTask);
         }
+        return newTask;
+    }
+
+
+    @Override
+    public Task updateTask(Task task, long expectedVersion) {
+        Task.checkVersion(taskRegistry.get(task.getId()), expectedVersion);
+        return updateTask(task);
     }
 
 
     @Override
-    public void updateSubtask(Subtask subtask) {
+    public Subtask updateSubtask(Subtask subtask) {
 
-        checkTaskInTime(subtask);
+        prioritizedTasks.checkTaskInTime(subtask);
         if (subtask.getId() == TaskManager.DRAFT_TASK_ID || !subtaskRegistry.containsKey(subtask.getId()))
             throw new NotFoundIdException("Недопустимый Id подзадачи");
 
         Subtask oldSubtask = subtaskRegistry.get(subtask.getId());
-        subtaskRegistry.put(subtask.getId(), subtask);
-        // Обновление соответствующего эпика (если, конечно, подзадача привязана к эпику)
-        epicRegistry.computeIfPresent(subtask.getEpicId(),
-                (k, epic) -> updateEpicImplicitly(epic, null));
+        if (oldSubtask.getEpicId() != subtask.getEpicId() && !epicRegistry.containsKey(subtask.getEpicId()))
+            throw new NotFoundIdException("Недопустимый Id родительского эпика");
+        Subtask newSubtask = Task.withVersion(subtask, oldSubtask.getVersion() + 1);
+        subtaskRegistry.put(newSubtask.getId(), newSubtask);
+
+        // Обновление соответствующего эпика (либо перенос подзадачи в другой эпик)
+        if (oldSubtask.getEpicId() == newSubtask.getEpicId()) {
+            epicAggregates.get(newSubtask.getEpicId()).replaceSubtask(oldSubtask, newSubtask);
+        } else {
+            epicAggregates.get(oldSubtask.getEpicId()).removeSubtask(oldSubtask);
+            epicAggregates.get(newSubtask.getEpicId()).addSubtask(newSubtask);
+            refreshEpic(oldSubtask.getEpicId());
+        }
+        refreshEpic(newSubtask.getEpicId());
         if (oldSubtask.isValidTime())
             prioritizedTasks.remove(oldSubtask);
-        if (subtask.isValidTime()) {
-            prioritizedTasks.add(subtask);
+        if (newSubtask.isValidTime()) {
+            prioritizedTasks.add(newSubtask);
         }
+        return newSubtask;
+    }
+
+
+    @Override
+    public Subtask updateSubtask(Subtask subtask, long expectedVersion) {
+        Task.checkVersion(subtaskRegistry.get(subtask.getId()), expectedVersion);
+        return updateSubtask(subtask);
     }
 
 
     @Override
-    public void updateEpic(Epic epic) {
-        epicRegistry.computeIfPresent(epic.getId(), (k, oldEpic) -> epic);
+    public Epic updateEpic(Epic epic) {
+        // Статус, время и состав эпика определяются его подзадачами
+        Epic oldEpic = epicRegistry.get(epic.getId());
+        if (oldEpic == null)
+            return null;
+        Epic newEpic = epicAggregates.get(epic.getId()).apply(epic, oldEpic.getVersion() + 1);
+        epicRegistry.put(epic.getId(), newEpic);
+        return newEpic;
+    }
+
+
+    @Override
+    public Epic updateEpic(Epic epic, long expectedVersion) {
+        Task.checkVersion(epicRegistry.get(epic.getId()), expectedVersion);
+        return updateEpic(epic);
     }
 
 
@@ -162,22 +269,103 @@ public class InMemoryTaskManager implements TaskManager {
     }
 
 
+    @Override
+    public List<Task> getTasksByStatus(TaskStatus status) {
+        return statusIndex.get(status);
+    }
+
+
+    @Override
+    public Map<TaskStatus, Integer> countByStatus() {
+        return statusIndex.counts();
+    }
+
+
+    @Override
+    public TaskStatistics getStatistics() {
+        return statisticsIndex.snapshot();
+    }
+
+
+    @Override
+    public List<Task> search(String query, int limit) {
+        return textIndex.search(query, limit);
+    }
+
+
+    @Override
+    public void addDependency(int taskId, int blockerId) {
+        dependencyGraph.addDependency(blockerId, taskId);
+    }
+
+
+    @Override
+    public void removeDependency(int taskId, int blockerId) {
+        dependencyGraph.removeDependency(blockerId, taskId);
+    }
+
+
+    @Override
+    public List<Task> getBlockers(int taskId) {
+        return dependencyGraph.getBlockers(taskId).stream().map(this::findTask).toList();
+    }
+
+
+    @Override
+    public List<Task> getDependencyOrder() {
+        return dependencyGraph.getOrder().stream().map(this::findTask).toList();
+    }
+
+
+    @Override
+    public List<Task> getCriticalPath() {
+        return dependencyGraph.getCriticalPath().stream().map(this::findTask).toList();
+    }
+
+
+    /**
+     * Возвращает задачу или подзадачу по идентификатору, не добавляя ее в историю просмотров
+     */
+    private Task findTask(int id) {
+        Task task = taskRegistry.get(id);
+        return task != null ? task : subtaskRegistry.get(id);
+    }
+
+
+    /**
+     * Задачи и подзадачи реестров для графа зависимостей
+     */
+    private class RegisteredTasks implements DependencyGraph.Tasks {
+
+        @Override
+        public long duration(int id) {
+            Task task = findTask(id);
+            return task != null ? task.getDurationSeconds() : ABSENT;
+        }
+
+        @Override
+        public void forEach(DependencyGraph.Visitor visitor) {
+            taskRegistry.values().forEach(task -> visitor.visit(task.getId(), task.getDurationSeconds()));
+            subtaskRegistry.values().forEach(subtask -> visitor.visit(subtask.getId(), subtask.getDurationSeconds()));
+        }
+    }
+
+
     @Override
     public void clearTasks() {
+        prioritizedTasks.removeAll(taskRegistry.values());
         taskRegistry.clear();
-        prioritizedTasks.removeIf(task -> task.getClass() == Subtask.class);
     }
 
 
     @Override
     public void clearSubtasks() {
 
-        epicRegistry.keySet().forEach(
-                k -> epicRegistry.computeIfPresent(k,
-                        (k1, oldEpic) -> updateEpicImplicitly(oldEpic, ArrayList::clear)
-        ));
+        epicAggregates.values().forEach(EpicAggregate::clear);
+        epicRegistry.replaceAll((id, epic) -> epicAggregates.get(id).apply(epic, epic.getVersion() + 1));
+        epicRegistry.values().forEach(this::epicRefreshed);
+        prioritizedTasks.removeAll(subtaskRegistry.values());
         subtaskRegistry.clear();
-        prioritizedTasks.removeIf(task -> task.getClass() == Subtask.class);
     }
 
 
@@ -185,6 +373,7 @@ public class InMemoryTaskManager implements TaskManager {
     public void clearEpics() {
         clearSubtasks();
         epicRegistry.clear();
+        epicAggregates.clear();
     }
 
 
@@ -223,22 +412,24 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public void removeTask(int id) {
-        taskRegistry.remove(id);
-        historyManager.remove(id);
-        prioritizedTasks.removeIf(task -> task.getId() == id);
+        Task task = taskRegistry.remove(id);
+        removeFromHistory(id);
+        if (task != null)
+            prioritizedTasks.remove(task);
     }
 
 
     @Override
     public void removeSubtask(int id) {
 
-        Subtask subtask = subtaskRegistry.get(id);
-        subtaskRegistry.remove(id);
-        historyManager.remove(id);
-        // Обновление соответствующего эпика (если, конечно, подзадача привязана к эпику)
-        epicRegistry.computeIfPresent(subtask.getEpicId(),
-                (k, epic) -> updateEpicImplicitly(epic, list -> list.remove((Integer)id)));
-        prioritizedTasks.removeIf(task -> task.getId() == id);
+        Subtask subtask = subtaskRegistry.remove(id);
+        if (subtask == null)
+            return;
+        removeFromHistory(id);
+        // Обновление соответствующего эпика
+        epicAggregates.get(subtask.getEpicId()).removeSubtask(subtask);
+        refreshEpic(subtask.getEpicId());
+        prioritizedTasks.remove(subtask);
     }
 
 
@@ -247,13 +438,20 @@ public class InMemoryTaskManager implements TaskManager {
 
         Epic epic = epicRegistry.get(id);
         if (epic != null) {
-            epic.getSubtasks().forEach(subtaskId -> {
-                subtaskRegistry.remove(subtaskId);
-                historyManager.remove(subtaskId);
-                prioritizedTasks.removeIf(task -> task.getId() == id);
-            });
+            // Подзадачи удаляются со шкалы одной группой, без пересчета эпика после каждой из них.
+            // Состав эпика берется из агрегата (внутри транзакции публикация эпика откладывается)
+            List<Integer> subtaskIds = epicAggregates.get(id).subtaskIds();
+            List<Subtask> subtasks = new ArrayList<>(subtaskIds.size());
+            for (int subtaskId : subtaskIds) {
+                Subtask subtask = subtaskRegistry.remove(subtaskId);
+                if (subtask != null)
+                    subtasks.add(subtask);
+                removeFromHistory(subtaskId);
+            }
+            prioritizedTasks.removeAll(subtasks);
             epicRegistry.remove(id);
-            historyManager.remove(id);
+            epicAggregates.remove(id);
+            removeFromHistory(id);
         }
     }
 
@@ -265,52 +463,105 @@ public class InMemoryTaskManager implements TaskManager {
 
 
     /**
-     * Процедура обновления статуса Epic задания на основе текущих статусов дочерних заданий
-     * @param epic Обновляемый эпик
-     * @param subOperation Операция с подзадачами
+     * Публикует новую версию эпика на основе его агрегированных характеристик
+     * @param epicId Идентификатор эпика
+     */
+    private void refreshEpic(int epicId) {
+        if (transaction != null) {
+            transaction.deferEpicRefresh(epicId);
+            return;
+        }
+        Epic epic = epicRegistry.get(epicId);
+        if (epic != null) {
+            Epic refreshedEpic = epicAggregates.get(epicId).apply(epic, epic.getVersion() + 1);
+            epicRegistry.put(epicId, refreshedEpic);
+            epicRefreshed(refreshedEpic);
+        }
+    }
+
+
+    /**
+     * Вызывается после публикации новой версии эпика, пересчитанной по его подзадачам
+     * (при изменении состава или подзадач эпика, а не при явном обновлении эпика)
+     * @param epic Новая версия эпика
+     */
+    protected void epicRefreshed(Epic epic) {
+    }
+
+
+    /**
+     * Удаляет задачу из истории просмотров (внутри транзакции - при ее фиксации)
+     * @param id Идентификатор задачи
      */
-    protected Epic updateEpicImplicitly(Epic epic, Consumer<ArrayList<Integer>> subOperation) {
+    private void removeFromHistory(int id) {
+        if (transaction != null)
+            transaction.deferHistoryRemoval(id);
+        else
+            historyManager.remove(id);
+    }
 
-        TaskBuilder builder = new TaskBuilder(epic);
 
-        // Обновление списка подзадач
-        if (subOperation != null) {
-            subOperation.accept(builder.getSubs());
+    @Override
+    public void executeTransaction(Consumer<TaskTransaction> operations) {
+
+        if (transaction != null)
+            throw new IllegalStateException("Вложенные транзакции не поддерживаются");
+        TransactionLog log = new TransactionLog(this,
+                taskRegistry, subtaskRegistry, epicRegistry, epicAggregates, prioritizedTasks);
+        int savedTaskId = taskId;
+        transaction = log;
+        changeFeed.hold();
+        dependencyGraph.hold();
+        try {
+            operations.accept(log);
+        } catch (RuntimeException e) {
+            transaction = null;
+            log.rollback();
+            dependencyGraph.discard();
+            changeFeed.discard();
+            taskId = savedTaskId;
+            throw e;
         }
+        transaction = null;
+        dependencyGraph.release();
 
-        // Обновление статуса выполнения эпика
-        List<Subtask> subtasks = builder.getSubs().stream()
-                .map(subtaskRegistry::get)
-                .toList();
-        TaskStatus newStatus = subtasks.stream().allMatch(Task::isNew) ? TaskStatus.NEW :
-                    subtasks.stream().allMatch(Task::isDone) ? TaskStatus.DONE :
-                        TaskStatus.IN_PROGRESS;
-        builder.setStatus(newStatus);
+        // Фиксация: однократный пересчет затронутых эпиков, очистка истории и публикация событий
+        log.getDeferredEpics().forEach(this::refreshEpic);
+        log.getDeferredHistoryRemovals().forEach(historyManager::remove);
+        changeFeed.release();
+    }
 
-        // Обновление времени начала
-        LocalDateTime epicStartTime = subtasks.stream()
-                .filter(Task::isValidTime)
-                .map(Task::getStartTime)
-                .min(Comparator.naturalOrder())
-                .orElse(null);
-        builder.setStartTime(epicStartTime);
 
-        // Обновление длительности эпика
-        Duration epicDuration = subtasks.stream()
-                .filter(Task::isValidTime)
-                .map(Task::getDuration)
-                .reduce(Duration.ZERO, Duration::plus);
-        builder.setDuration(epicDuration);
+    /**
+     * Восстанавливает агрегированные характеристики эпиков и временную шкалу по содержимому реестров
+     * (используется после непосредственного заполнения реестров, например при загрузке из файла)
+     */
+    protected void restoreIndexes() {
+
+        epicAggregates.clear();
+        epicRegistry.keySet().forEach(id -> epicAggregates.put(id, new EpicAggregate()));
+        subtaskRegistry.values().forEach(subtask -> {
+            EpicAggregate aggregate = epicAggregates.get(subtask.getEpicId());
+            if (aggregate != null)
+                aggregate.addSubtask(subtask);
+        });
+        epicRegistry.replaceAll((id, epic) -> epicAggregates.get(id).apply(epic, epic.getVersion()));
+
+        prioritizedTasks.clear();
+        taskRegistry.values().stream().filter(Task::isValidTime).forEach(prioritizedTasks::add);
+        subtaskRegistry.values().stream().filter(Task::isValidTime).forEach(prioritizedTasks::add);
+    }
+
+
+    @Override
+    public TaskSubscription subscribe(TaskListener listener) {
+        return changeFeed.subscribe(listener);
+    }
 
-        // Обновление времени окончания
-        LocalDateTime epicEndTime = subtasks.stream()
-                .filter(Task::isValidTime)
-                .map(Task::getEndTime)
-                .max(Comparator.naturalOrder())
-                .orElse(null);
-        builder.setEndTime(epicEndTime);
 
-        return builder.buildEpic();
+    @Override
+    public TaskSubscription subscribeAsync(TaskListener listener, int capacity) {
+        return changeFeed.subscribeAsync(listener, capacity);
     }
 
 
@@ -344,48 +595,21 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public List<Task> getPrioritizedTasks() {
-        return List.copyOf(prioritizedTasks);
+        return prioritizedTasks.toList();
     }
 
-    /**
-     * Проверка, что две задачи не пересекаются во времени
-     * @param task1 Задача 1
-     * @param task2 Задача 2
-     * @return true, если задачи не пересекаются во времени
-     */
-    private boolean checkTasksDisjointInTime(Task task1, Task task2) {
-
-        // Проверка имеет смысл, если время задано
-        if (!task1.isValidTime() || !task2.isValidTime())
-            return true;
-
-        // Для проверки удобно, чтобы первой задачей была task1, для определенности
-        if (task2.getStartTime().isBefore(task1.getStartTime())) {
-            var t = task1;
-            task1 = task2;
-            task2 = t;
-        }
-
-        // Если начало задачи 2 настает раньше, чем оканчивается задача 1,
-        // либо задачи запускаются одновременно -
-        // задачи пересекаются во времени
-        return !task2.getStartTime().isBefore(task1.getEndTime()) &&
-                task2.getStartTime() != task1.getStartTime();
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to, int limit) {
+        return prioritizedTasks.window(from, to, limit);
     }
 
+    @Override
+    public List<Task> getPrioritizedTasksAfter(LocalDateTime after, LocalDateTime to, int limit) {
+        return prioritizedTasks.after(after, to, limit);
+    }
 
-    /**
-     * Проверка задачи пересечение с другими задачами на временной шкале
-     * @param task Проверяемая задача
-     * @throws RuntimeException Если задача пересекается с имеющейся задачей
-     */
-    private void checkTaskInTime(Task task) {
-
-        if (task.isValidTime()) {
-            if (prioritizedTasks.stream()
-                    .filter(task1 -> task1.getId() != task.getId())
-                    .anyMatch(task1 -> !checkTasksDisjointInTime(task1, task)))
-                throw new OverlappingTasksException("Недопустимое пересечение задач во времени");
-        }
+    @Override
+    public Optional<LocalDateTime> findFreeSlot(Duration length, LocalDateTime notBefore, LocalDateTime notAfter) {
+        return prioritizedTasks.findFreeSlot(length, notBefore, notAfter);
     }
 }
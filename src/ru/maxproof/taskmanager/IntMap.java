@@ -0,0 +1,308 @@
+package ru.maxproof.taskmanager;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Таблица с ключами типа int и открытой адресацией (линейное пробирование).
+ * Ключи хранятся в массиве int, значения - в параллельном массиве, поэтому
+ * на элемент не создаются ни Integer, ни узел HashMap.Node, а поиск по int
+ * не требует упаковки ключа.
+ * <p>
+ * Хэш ключа перемешивается так же, как в HashMap, поэтому для небольших
+ * идентификаторов порядок обхода совпадает с порядком обхода HashMap (по возрастанию).
+ * Значения null не допускаются: пустая ячейка обозначается значением null.
+ * Удаление через итератор не поддерживается, для удаления по условию
+ * следует использовать values().removeIf / entrySet().removeIf.
+ * @param <V> Тип значения
+ */
+class IntMap<V> extends AbstractMap<Integer, V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int size = 0;
+    private int mask;
+    private int modCount = 0;
+
+
+    IntMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(int key) {
+        return key ^ (key >>> 16);
+    }
+
+    /**
+     * Возвращает индекс ячейки ключа или -1, если ключ отсутствует
+     */
+    private int indexOf(int key) {
+        for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key)
+                return i;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+
+        Objects.requireNonNull(value);
+        int i = hash(key) & mask;
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        ++modCount;
+        // Коэффициент заполнения не более 1/2: цепочки пробирования остаются короткими
+        if (++size * 2 > values.length)
+            rehash(values.length * 2);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+
+        int index = indexOf(key);
+        if (index < 0)
+            return null;
+        V old = (V) values[index];
+        removeAt(index);
+        return old;
+    }
+
+    /**
+     * Удаляет элемент ячейки со сдвигом последующих элементов цепочки
+     * (без использования специальных меток удаленных ячеек)
+     */
+    private void removeAt(int index) {
+
+        int gap = index;
+        for (int i = (gap + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+            int home = hash(keys[i]) & mask;
+            // Элемент можно переместить в освободившуюся ячейку, если она лежит
+            // на его пути пробирования (между home и i с учетом кольцевого перехода)
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = null;
+        --size;
+        ++modCount;
+    }
+
+    private void rehash(int capacity) {
+
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = hash(oldKeys[i]) & mask;
+                while (values[j] != null)
+                    j = (j + 1) & mask;
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer id ? get(id.intValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer id && containsKey(id.intValue());
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return put(key.intValue(), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Integer id ? remove(id.intValue()) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        if (size == 0)
+            return;
+        // После массового удаления таблица возвращается к исходному размеру
+        allocate(MIN_CAPACITY);
+        size = 0;
+        ++modCount;
+    }
+
+    /**
+     * Удаляет элементы, удовлетворяющие условию
+     * @return true, если удален хотя бы один элемент
+     */
+    @SuppressWarnings("unchecked")
+    private boolean removeIf(Predicate<? super Integer> keyFilter, Predicate<? super V> valueFilter) {
+
+        int[] removed = new int[size];
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && keyFilter.test(keys[i]) && valueFilter.test((V) values[i]))
+                removed[count++] = keys[i];
+        }
+        for (int i = 0; i < count; i++)
+            remove(removed[i]);
+        return count > 0;
+    }
+
+    private abstract class SlotIterator<T> implements Iterator<T> {
+
+        private int next = advance(0);
+        private final int expectedModCount = modCount;
+
+        private int advance(int index) {
+            while (index < values.length && values[index] == null)
+                ++index;
+            return index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (next >= values.length)
+                throw new NoSuchElementException();
+            int index = next;
+            next = advance(index + 1);
+            return element(index);
+        }
+
+        abstract T element(int index);
+    }
+
+    private final class Entry implements Map.Entry<Integer, V> {
+
+        private final int index;
+        private final int key;
+
+        Entry(int index) {
+            this.index = index;
+            this.key = keys[index];
+        }
+
+        @Override
+        public Integer getKey() {
+            return key;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            return (V) values[index];
+        }
+
+        @Override
+        public V setValue(V value) {
+            // Замена значения существующего ключа не меняет структуру таблицы
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> e &&
+                    Objects.equals(getKey(), e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key ^ getValue().hashCode();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<Integer, V>> iterator() {
+                return new SlotIterator<>() {
+                    @Override
+                    Map.Entry<Integer, V> element(int index) {
+                        return new Entry(index);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean removeIf(Predicate<? super Map.Entry<Integer, V>> filter) {
+                return IntMap.this.removeIf(key -> filter.test(new SimpleImmutableEntry<>(key, get(key.intValue()))),
+                        value -> true);
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Iterator<V> iterator() {
+                return new SlotIterator<>() {
+                    @Override
+                    V element(int index) {
+                        return (V) values[index];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean removeIf(Predicate<? super V> filter) {
+                return IntMap.this.removeIf(key -> true, filter);
+            }
+        };
+    }
+}
@@ -13,6 +13,39 @@ public class Managers {
         return new InMemoryTaskManager();
     }
 
+    /**
+     * Создает менеджер задач для совместного использования несколькими потоками
+     * @return Потокобезопасный менеджер задач
+     */
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager();
+    }
+
+    /**
+     * Создает менеджер задач, хранящий поля задач вне кучи
+     * @return Менеджер задач для большого числа задач
+     */
+    public static TaskManager getOffHeap() {
+        return new OffHeapTaskManager();
+    }
+
+    /**
+     * Создает менеджер задач, разделенный на секции по числу процессоров
+     * @return Потокобезопасный менеджер задач с параллельными изменениями разных секций
+     */
+    public static TaskManager getSharded() {
+        return new ShardedTaskManager();
+    }
+
+    /**
+     * Создает потокобезопасную обертку над менеджером задач
+     * @param manager Исходный менеджер задач
+     * @return Менеджер задач, допускающий обращения из нескольких потоков
+     */
+    public static TaskManager synchronizedTaskManager(TaskManager manager) {
+        return new SynchronizedTaskManager(manager);
+    }
+
     /**
      * Создает менеджер истории класса по умолчанию
      * @return Менеджер истории задач
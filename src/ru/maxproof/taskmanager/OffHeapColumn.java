@@ -0,0 +1,72 @@
+package ru.maxproof.taskmanager;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Столбец значений фиксированной ширины вне кучи (direct ByteBuffer).
+ * Элементы адресуются номером строки; при обращении за пределами емкости
+ * для записи столбец увеличивается вдвое. Непрочитанные строки содержат нули.
+ */
+class OffHeapColumn {
+
+    private final int width;
+    private ByteBuffer buffer;
+
+
+    /**
+     * @param width Ширина элемента в байтах (1, 4 или 8)
+     * @param capacity Начальная емкость в строках
+     */
+    OffHeapColumn(int width, int capacity) {
+        this.width = width;
+        this.buffer = ByteBuffer.allocateDirect(width * capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Обеспечивает емкость столбца не менее rows строк
+     */
+    void ensureCapacity(int rows) {
+
+        int capacity = buffer.capacity() / width;
+        if (rows <= capacity)
+            return;
+        while (capacity < rows)
+            capacity *= 2;
+        ByteBuffer grown = ByteBuffer.allocateDirect(width * capacity).order(ByteOrder.nativeOrder());
+        grown.put(0, buffer, 0, buffer.capacity());
+        buffer = grown;
+    }
+
+    long getLong(int row) {
+        return buffer.getLong(row * width);
+    }
+
+    void putLong(int row, long value) {
+        buffer.putLong(row * width, value);
+    }
+
+    int getInt(int row) {
+        return buffer.getInt(row * width);
+    }
+
+    void putInt(int row, int value) {
+        buffer.putInt(row * width, value);
+    }
+
+    byte getByte(int row) {
+        return buffer.get(row);
+    }
+
+    void putByte(int row, byte value) {
+        buffer.put(row, value);
+    }
+
+    /**
+     * Обнуляет строки [from, to)
+     */
+    void clear(int from, int to) {
+        for (int i = from * width; i < to * width; i++)
+            buffer.put(i, (byte) 0);
+    }
+}
@@ -0,0 +1,110 @@
+package ru.maxproof.taskmanager;
+
+/**
+ * Таблица int -> int вне кучи с открытой адресацией (линейное пробирование), как в IntMap.
+ * Ключи и значения хранятся в столбцах OffHeapColumn, поэтому таблица не создает объектов
+ * на элемент. Ключ 0 не допускается: он обозначает пустую ячейку; отсутствие ключа
+ * обозначается значением 0.
+ */
+class OffHeapIntMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private OffHeapColumn keys;
+    private OffHeapColumn values;
+    private int capacity;
+    private int mask;
+    private int size = 0;
+
+
+    OffHeapIntMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        keys = new OffHeapColumn(4, capacity);
+        values = new OffHeapColumn(4, capacity);
+        mask = capacity - 1;
+    }
+
+    private static int hash(int key) {
+        return key ^ (key >>> 16);
+    }
+
+    /**
+     * Возвращает значение ключа (0, если ключ отсутствует)
+     */
+    int get(int key) {
+        for (int i = hash(key) & mask; keys.getInt(i) != 0; i = (i + 1) & mask) {
+            if (keys.getInt(i) == key)
+                return values.getInt(i);
+        }
+        return 0;
+    }
+
+    /**
+     * Связывает ключ со значением
+     * @param key Ключ (не 0)
+     */
+    void put(int key, int value) {
+
+        int i = hash(key) & mask;
+        for (; keys.getInt(i) != 0; i = (i + 1) & mask) {
+            if (keys.getInt(i) == key) {
+                values.putInt(i, value);
+                return;
+            }
+        }
+        keys.putInt(i, key);
+        values.putInt(i, value);
+        // Коэффициент заполнения не более 1/2: цепочки пробирования остаются короткими
+        if (++size * 2 > capacity)
+            rehash(capacity * 2);
+    }
+
+    /**
+     * Удаляет ключ со сдвигом последующих элементов цепочки (без меток удаленных ячеек)
+     */
+    void remove(int key) {
+
+        int gap = hash(key) & mask;
+        while (keys.getInt(gap) != key) {
+            if (keys.getInt(gap) == 0)
+                return;
+            gap = (gap + 1) & mask;
+        }
+        for (int i = (gap + 1) & mask; keys.getInt(i) != 0; i = (i + 1) & mask) {
+            int home = hash(keys.getInt(i)) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys.putInt(gap, keys.getInt(i));
+                values.putInt(gap, values.getInt(i));
+                gap = i;
+            }
+        }
+        keys.putInt(gap, 0);
+        --size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void rehash(int newCapacity) {
+
+        OffHeapColumn oldKeys = keys;
+        OffHeapColumn oldValues = values;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int i = 0; i < oldCapacity; i++) {
+            int key = oldKeys.getInt(i);
+            if (key != 0) {
+                int j = hash(key) & mask;
+                while (keys.getInt(j) != 0)
+                    j = (j + 1) & mask;
+                keys.putInt(j, key);
+                values.putInt(j, oldValues.getInt(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,1399 @@
+package ru.maxproof.taskmanager;
+
+import ru.maxproof.exceptions.NotFoundIdException;
+import ru.maxproof.exceptions.OverlappingTasksException;
+import ru.maxproof.exceptions.VersionConflictException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Менеджер задач с хранением полей задач вне кучи, по столбцам.
+ * <p>
+ * Тип, статус, время, эпик подзадачи
+ * хранятся в примитивных столбцах (см. OffHeapColumn), названия и описания - в области строк
+ * (см. StringArena). Связи также хранятся в столбцах: подзадачи эпика образуют двусвязный список,
+ * временная шкала - декартово дерево (treap) по времени начала с приоритетом-хэшем номера строки.
+ * Поэтому число объектов в куче не зависит от числа задач, а объекты Task создаются
+ * только при выдаче задач через интерфейс менеджера.
+ * <p>
+ * Строки удаленных задач используются повторно, поэтому емкость столбцов определяется наибольшим
+ * числом одновременно существующих задач, а не числом выданных идентификаторов. Идентификатор
+ * задачи связан с номером строки таблицей вне кучи (см. OffHeapIntMap), строки каждого типа
+ * образуют список, упорядоченный по идентификаторам: перебор и очистка задач обходят только живые строки.
+ * Строки каждого статуса также связаны в список, поэтому перечень задач со статусом строится
+ * за время, пропорциональное его длине (как в StatusIndex).
+ * <p>
+ * Агрегированные характеристики эпиков (статус, начало, окончание, длительность)
+ * поддерживаются инкрементально; при исключении подзадачи, определявшей начало
+ * или окончание эпика, время эпика пересчитывается обходом его подзадач.
+ * История просмотров хранит выданные версии задач, как и в InMemoryTaskManager.
+ * События изменения задач публикуются операциями менеджера: версии задач для событий
+ * создаются только при наличии подписчиков (см. ChangeFeed). Граф зависимостей (см. DependencyGraph)
+ * хранит узлы только задач с зависимостями и читает продолжительность задач из столбцов строк;
+ * запись и освобождение строк задач без зависимостей ограничиваются поиском узла в графе.
+ * Менеджер не потокобезопасен (см. Managers.synchronizedTaskManager).
+ */
+public class OffHeapTaskManager implements TaskManager {
+
+    // Тип задачи строки
+    private static final byte EMPTY = 0;
+    private static final byte TASK = 1;
+    private static final byte SUBTASK = 2;
+    private static final byte EPIC = 3;
+
+    private static final int NIL = 0;                   // пустая ссылка (идентификаторы начинаются с 1)
+    private static final byte NO_STATUS = -1;
+    private static final int INITIAL_ROWS = 1024;
+    private static final long COMPACTION_THRESHOLD = 1 << 20;   // минимальный объем мусора для уплотнения строк
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+    private static final byte[] KINDS = {TASK, SUBTASK, EPIC};
+
+    // Поля задач
+    private final OffHeapColumn kind = new OffHeapColumn(1, INITIAL_ROWS);
+    private final OffHeapColumn status = new OffHeapColumn(1, INITIAL_ROWS);
+    private final OffHeapColumn name = new OffHeapColumn(8, INITIAL_ROWS);
+    private final OffHeapColumn description = new OffHeapColumn(8, INITIAL_ROWS);
+    private final OffHeapColumn startSecond = new OffHeapColumn(8, INITIAL_ROWS);
+    private final OffHeapColumn startNano = new OffHeapColumn(4, INITIAL_ROWS);
+    private final OffHeapColumn durationSeconds = new OffHeapColumn(8, INITIAL_ROWS);
+    private final OffHeapColumn durationNano = new OffHeapColumn(4, INITIAL_ROWS);
+    private final OffHeapColumn epicId = new OffHeapColumn(4, INITIAL_ROWS);
+    private final OffHeapColumn version = new OffHeapColumn(8, INITIAL_ROWS);
+
+    // Строки: идентификатор задачи и соседи в списке строк того же типа (свободные строки - в списке свободных)
+    private final OffHeapColumn ids = new OffHeapColumn(4, INITIAL_ROWS);
+    private final OffHeapColumn prevRow = new OffHeapColumn(4, INITIAL_ROWS);
+    private final OffHeapColumn nextRow = new OffHeapColumn(4, INITIAL_ROWS);
+
+    // Соседи в списке строк того же статуса
+    private final OffHeapColumn prevByStatus = new OffHeapColumn(4, INITIAL_ROWS);
+    private final OffHeapColumn nextByStatus = new OffHeapColumn(4, INITIAL_ROWS);
+
+    // Эпики: окончание, состав и счетчики статусов подзадач
+    private final OffHeapColumn endSecond = new OffHeapColumn(8, INITIAL_ROWS);
+    private final OffHeapColumn endNano = new OffHeapColumn(4, INITIAL_ROWS);
+    private final OffHeapColumn firstChild = new OffHeapColumn(4, INITIAL_ROWS);
+    private final OffHeapColumn lastChild = new OffHeapColumn(4, INITIAL_ROWS);
+    private final OffHeapColumn childCount = new OffHeapColumn(4, INITIAL_ROWS);
+    private final OffHeapColumn newCount = new OffHeapColumn(4, INITIAL_ROWS);
+    private final OffHeapColumn doneCount = new OffHeapColumn(4, INITIAL_ROWS);
+
+    // Подзадачи: соседи в списке подзадач эпика
+    private final OffHeapColumn prevSibling = new OffHeapColumn(4, INITIAL_ROWS);
+    private final OffHeapColumn nextSibling = new OffHeapColumn(4, INITIAL_ROWS);
+
+    // Временная шкала: потомки узла дерева
+    private final OffHeapColumn left = new OffHeapColumn(4, INITIAL_ROWS);
+    private final OffHeapColumn right = new OffHeapColumn(4, INITIAL_ROWS);
+
+    private final OffHeapColumn[] columns = {kind, status, name, description, startSecond, startNano,
+            durationSeconds, durationNano, epicId, version, endSecond, endNano, firstChild, lastChild, childCount,
+            newCount, doneCount, prevSibling, nextSibling, left, right, ids, prevRow, nextRow,
+            prevByStatus, nextByStatus};
+
+    private StringArena strings = new StringArena(64 * INITIAL_ROWS);
+    private int rows = INITIAL_ROWS;                    // емкость столбцов
+    private int usedRows = 0;                           // выделенные строки 1..usedRows (живые и свободные)
+    private int freeRows = NIL;                         // первая строка списка свободных строк
+    private final int[] firstRow = new int[KINDS.length + 1];   // начало списка строк по типу задачи
+    private final int[] lastRow = new int[KINDS.length + 1];    // конец списка строк по типу задачи
+    private final OffHeapIntMap rowsById = new OffHeapIntMap();
+    private int taskId = 0;
+    private int liveRows = 0;
+    private final int[] statusCounts = new int[STATUSES.length];
+    private final int[] firstByStatus = new int[STATUSES.length];   // списки строк по статусу в порядке
+    private final int[] lastByStatus = new int[STATUSES.length];    // присвоения статуса
+    private int timelineRoot = NIL;
+    private final HistoryManager historyManager = Managers.getDefaultHistory();
+    private final DependencyGraph dependencyGraph = new DependencyGraph(new RowTasks());
+    private final ChangeFeed changeFeed = new ChangeFeed();
+    private Transaction transaction = null;
+
+
+    // region Строки
+
+    /**
+     * Возвращает строку задачи либо NIL, если задача не найдена
+     */
+    private int rowOf(int id) {
+        return id > 0 ? rowsById.get(id) : NIL;
+    }
+
+    /**
+     * Возвращает строку задачи указанного типа либо NIL
+     */
+    private int rowOf(int id, byte type) {
+        int row = rowOf(id);
+        return row != NIL && kind.getByte(row) == type ? row : NIL;
+    }
+
+    /**
+     * Выделяет задаче строку: свободную строку удаленной задачи либо новую
+     * @param id Идентификатор задачи
+     */
+    private int allocateRow(int id) {
+
+        int row = freeRows;
+        if (row != NIL) {
+            freeRows = nextRow.getInt(row);
+        } else {
+            row = ++usedRows;
+            if (row >= rows) {
+                while (rows <= row)
+                    rows *= 2;
+                for (OffHeapColumn column : columns)
+                    column.ensureCapacity(rows);
+            }
+        }
+        ids.putInt(row, id);
+        rowsById.put(id, row);
+        return row;
+    }
+
+    /**
+     * Включает строку в список строк своего типа, упорядоченный по идентификаторам.
+     * Новая задача имеет наибольший идентификатор и добавляется в конец списка за O(1);
+     * место задачи, восстановленной при отмене транзакции, ищется от конца списка.
+     */
+    private void linkRow(int row, byte type) {
+
+        int prev = lastRow[type];
+        while (prev != NIL && ids.getInt(prev) > ids.getInt(row))
+            prev = prevRow.getInt(prev);
+        int next = prev == NIL ? firstRow[type] : nextRow.getInt(prev);
+        prevRow.putInt(row, prev);
+        nextRow.putInt(row, next);
+        if (prev == NIL)
+            firstRow[type] = row;
+        else
+            nextRow.putInt(prev, row);
+        if (next == NIL)
+            lastRow[type] = row;
+        else
+            prevRow.putInt(next, row);
+    }
+
+    private void unlinkRow(int row, byte type) {
+
+        int prev = prevRow.getInt(row);
+        int next = nextRow.getInt(row);
+        if (prev == NIL)
+            firstRow[type] = next;
+        else
+            nextRow.putInt(prev, next);
+        if (next == NIL)
+            lastRow[type] = prev;
+        else
+            prevRow.putInt(next, prev);
+    }
+
+    /**
+     * Возвращает емкость столбцов в строках
+     */
+    int getRowCapacity() {
+        return rows;
+    }
+
+    private TaskStatus statusOf(int row) {
+        byte ordinal = status.getByte(row);
+        return ordinal == NO_STATUS ? null : STATUSES[ordinal];
+    }
+
+    /**
+     * Изменяет статус строки; при смене статуса строка переносится в конец списка нового статуса
+     */
+    private void setStatus(int row, TaskStatus newStatus) {
+
+        byte ordinal = status.getByte(row);
+        byte newOrdinal = newStatus == null ? NO_STATUS : (byte) newStatus.ordinal();
+        if (ordinal == newOrdinal)
+            return;
+        if (ordinal != NO_STATUS) {
+            --statusCounts[ordinal];
+            unlinkByStatus(row, ordinal);
+        }
+        if (newOrdinal != NO_STATUS) {
+            ++statusCounts[newOrdinal];
+            linkByStatus(row, newOrdinal);
+        }
+        status.putByte(row, newOrdinal);
+    }
+
+    private void linkByStatus(int row, byte ordinal) {
+
+        int last = lastByStatus[ordinal];
+        prevByStatus.putInt(row, last);
+        nextByStatus.putInt(row, NIL);
+        if (last == NIL)
+            firstByStatus[ordinal] = row;
+        else
+            nextByStatus.putInt(last, row);
+        lastByStatus[ordinal] = row;
+    }
+
+    private void unlinkByStatus(int row, byte ordinal) {
+
+        int prev = prevByStatus.getInt(row);
+        int next = nextByStatus.getInt(row);
+        if (prev == NIL)
+            firstByStatus[ordinal] = next;
+        else
+            nextByStatus.putInt(prev, next);
+        if (next == NIL)
+            lastByStatus[ordinal] = prev;
+        else
+            prevByStatus.putInt(next, prev);
+    }
+
+    /**
+     * Записывает поля задачи и номер версии в строку (связи строки не изменяются)
+     */
+    private void storeRow(int row, Task task, byte type, long rowVersion) {
+
+        if (strings.getGarbage() > COMPACTION_THRESHOLD && strings.getGarbage() * 2 > strings.getSize())
+            compactStrings();
+        if (kind.getByte(row) == EMPTY) {
+            ++liveRows;
+            status.putByte(row, NO_STATUS);
+            linkRow(row, type);
+        } else {
+            strings.release(name.getLong(row));
+            strings.release(description.getLong(row));
+        }
+        kind.putByte(row, type);
+        setStatus(row, task.getStatus());
+        name.putLong(row, strings.append(task.getName()));
+        description.putLong(row, strings.append(task.getDescription()));
+        startSecond.putLong(row, task.getStartSecond());
+        startNano.putInt(row, task.getStartNano());
+        durationSeconds.putLong(row, task.getDurationSeconds());
+        durationNano.putInt(row, task.getDurationNano());
+        if (task instanceof Subtask subtask)
+            epicId.putInt(row, subtask.getEpicId());
+        version.putLong(row, rowVersion);
+        if (type != EPIC)
+            dependencyGraph.updateDuration(ids.getInt(row), task.getDurationSeconds());
+    }
+
+    /**
+     * Сбрасывает связи строки (списки подзадач и временная шкала)
+     */
+    private void resetLinks(int row) {
+        for (OffHeapColumn column : new OffHeapColumn[]{firstChild, lastChild, childCount, newCount, doneCount,
+                prevSibling, nextSibling, left, right})
+            column.putInt(row, NIL);
+    }
+
+    private void clearRow(int row) {
+
+        if (kind.getByte(row) != EPIC)
+            dependencyGraph.remove(ids.getInt(row));
+        strings.release(name.getLong(row));
+        strings.release(description.getLong(row));
+        setStatus(row, null);
+        unlinkRow(row, kind.getByte(row));
+        kind.putByte(row, EMPTY);
+        rowsById.remove(ids.getInt(row));
+        nextRow.putInt(row, freeRows);
+        freeRows = row;
+        --liveRows;
+    }
+
+    /**
+     * Переписывает живые строки в новую область, освобождая замененные строки
+     */
+    private void compactStrings() {
+
+        StringArena compacted = new StringArena(strings.getSize());
+        for (byte type : KINDS) {
+            for (int row = firstRow[type]; row != NIL; row = nextRow.getInt(row)) {
+                name.putLong(row, compacted.append(strings.get(name.getLong(row))));
+                description.putLong(row, compacted.append(strings.get(description.getLong(row))));
+            }
+        }
+        strings = compacted;
+    }
+
+    private boolean hasTime(int row) {
+        return startNano.getInt(row) != Task.NO_TIME && durationNano.getInt(row) != Task.NO_TIME;
+    }
+
+    private long rowEndSecond(int row) {
+        return startSecond.getLong(row) + durationSeconds.getLong(row) +
+                (startNano.getInt(row) + durationNano.getInt(row) >= Task.NANOS_PER_SECOND ? 1 : 0);
+    }
+
+    private int rowEndNano(int row) {
+        int nano = startNano.getInt(row) + durationNano.getInt(row);
+        return nano >= Task.NANOS_PER_SECOND ? nano - Task.NANOS_PER_SECOND : nano;
+    }
+
+    private static Duration toDuration(long seconds, int nano) {
+        return nano == Task.NO_TIME ? null : Duration.ofSeconds(seconds, nano);
+    }
+
+    /**
+     * Создает объект задачи по строке
+     */
+    private Task materialize(int row) {
+
+        TaskBuilder builder = new TaskBuilder()
+                .setId(ids.getInt(row))
+                .setName(strings.get(name.getLong(row)))
+                .setDescription(strings.get(description.getLong(row)))
+                .setStatus(statusOf(row))
+                .setStartTime(Task.toLocalDateTime(startSecond.getLong(row), startNano.getInt(row)))
+                .setDuration(toDuration(durationSeconds.getLong(row), durationNano.getInt(row)))
+                .setVersion(version.getLong(row));
+        return switch (kind.getByte(row)) {
+            case SUBTASK -> builder.setEpicId(epicId.getInt(row)).buildSubtask();
+            case EPIC -> builder.setSubs(childIds(row))
+                    .setEndTime(Task.toLocalDateTime(endSecond.getLong(row), endNano.getInt(row)))
+                    .buildEpic();
+            default -> builder.buildTask();
+        };
+    }
+
+    private List<Task> collect(byte type) {
+        List<Task> list = new ArrayList<>();
+        for (int row = firstRow[type]; row != NIL; row = nextRow.getInt(row))
+            list.add(materialize(row));
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Task> List<T> collectAs(byte type) {
+        return (List<T>) List.copyOf(collect(type));
+    }
+
+    // endregion
+
+
+    // region События
+
+    /**
+     * Возвращает версию задачи строки до изменения (null - строки нет или нет подписчиков)
+     */
+    private Task observe(int row) {
+        return row != NIL && changeFeed.hasSubscribers() ? materialize(row) : null;
+    }
+
+    /**
+     * Публикует событие изменения задачи
+     * @param oldTask Версия задачи до изменения (см. observe)
+     * @param row Строка задачи после изменения (NIL - задача удалена)
+     */
+    private void publish(Task oldTask, int row) {
+        if (!changeFeed.hasSubscribers())
+            return;
+        Task newTask = row != NIL ? materialize(row) : null;
+        if (oldTask != null || newTask != null)
+            changeFeed.replace(oldTask, newTask);
+    }
+
+    // endregion
+
+
+    // region Эпики
+
+    private List<Integer> childIds(int epic) {
+        List<Integer> children = new ArrayList<>(childCount.getInt(epic));
+        for (int child = firstChild.getInt(epic); child != NIL; child = nextSibling.getInt(child))
+            children.add(ids.getInt(child));
+        return List.copyOf(children);
+    }
+
+    /**
+     * Сбрасывает агрегированные характеристики эпика без подзадач
+     */
+    private void resetEpic(int epic) {
+        resetLinks(epic);
+        setStatus(epic, TaskStatus.NEW);
+        startNano.putInt(epic, Task.NO_TIME);
+        durationSeconds.putLong(epic, 0);
+        durationNano.putInt(epic, 0);
+        endNano.putInt(epic, Task.NO_TIME);
+    }
+
+    /**
+     * Учитывает вклад подзадачи в характеристики эпика
+     */
+    private void account(int epic, int row) {
+
+        TaskStatus rowStatus = statusOf(row);
+        if (rowStatus == TaskStatus.NEW)
+            newCount.putInt(epic, newCount.getInt(epic) + 1);
+        else if (rowStatus == TaskStatus.DONE)
+            doneCount.putInt(epic, doneCount.getInt(epic) + 1);
+        if (!hasTime(row))
+            return;
+        addDuration(epic, durationSeconds.getLong(row), durationNano.getInt(row));
+        if (startNano.getInt(epic) == Task.NO_TIME || Task.compareTime(startSecond.getLong(row), startNano.getInt(row),
+                startSecond.getLong(epic), startNano.getInt(epic)) < 0) {
+            startSecond.putLong(epic, startSecond.getLong(row));
+            startNano.putInt(epic, startNano.getInt(row));
+        }
+        if (endNano.getInt(epic) == Task.NO_TIME || Task.compareTime(rowEndSecond(row), rowEndNano(row),
+                endSecond.getLong(epic), endNano.getInt(epic)) > 0) {
+            endSecond.putLong(epic, rowEndSecond(row));
+            endNano.putInt(epic, rowEndNano(row));
+        }
+    }
+
+    /**
+     * Исключает вклад подзадачи из характеристик эпика
+     * @return true, если подзадача определяла начало или окончание эпика (требуется пересчет времени)
+     */
+    private boolean unaccount(int epic, int row) {
+
+        TaskStatus rowStatus = statusOf(row);
+        if (rowStatus == TaskStatus.NEW)
+            newCount.putInt(epic, newCount.getInt(epic) - 1);
+        else if (rowStatus == TaskStatus.DONE)
+            doneCount.putInt(epic, doneCount.getInt(epic) - 1);
+        if (!hasTime(row))
+            return false;
+        addDuration(epic, -durationSeconds.getLong(row) - 1, Task.NANOS_PER_SECOND - durationNano.getInt(row));
+        return Task.compareTime(startSecond.getLong(row), startNano.getInt(row),
+                startSecond.getLong(epic), startNano.getInt(epic)) == 0 ||
+                Task.compareTime(rowEndSecond(row), rowEndNano(row), endSecond.getLong(epic), endNano.getInt(epic)) == 0;
+    }
+
+    private void addDuration(int epic, long seconds, int nano) {
+        long totalSeconds = durationSeconds.getLong(epic) + seconds;
+        int totalNano = durationNano.getInt(epic) + nano;
+        if (totalNano >= Task.NANOS_PER_SECOND) {
+            totalNano -= Task.NANOS_PER_SECOND;
+            ++totalSeconds;
+        }
+        durationSeconds.putLong(epic, totalSeconds);
+        durationNano.putInt(epic, totalNano);
+    }
+
+    /**
+     * Пересчитывает начало и окончание эпика обходом его подзадач
+     */
+    private void rescanTime(int epic) {
+        startNano.putInt(epic, Task.NO_TIME);
+        endNano.putInt(epic, Task.NO_TIME);
+        long seconds = durationSeconds.getLong(epic);
+        int nano = durationNano.getInt(epic);
+        for (int child = firstChild.getInt(epic); child != NIL; child = nextSibling.getInt(child))
+            accountTime(epic, child);
+        durationSeconds.putLong(epic, seconds);
+        durationNano.putInt(epic, nano);
+    }
+
+    private void accountTime(int epic, int row) {
+        // Счетчики статусов учитываются отдельно: вклад подзадачи во время без изменения счетчиков
+        int savedNew = newCount.getInt(epic);
+        int savedDone = doneCount.getInt(epic);
+        account(epic, row);
+        newCount.putInt(epic, savedNew);
+        doneCount.putInt(epic, savedDone);
+    }
+
+    /**
+     * Обновляет статус эпика по счетчикам подзадач (изменение состава эпика создает его новую версию)
+     */
+    private void refreshStatus(int epic) {
+        version.putLong(epic, version.getLong(epic) + 1);
+        int count = childCount.getInt(epic);
+        setStatus(epic, newCount.getInt(epic) == count ? TaskStatus.NEW :
+                doneCount.getInt(epic) == count ? TaskStatus.DONE : TaskStatus.IN_PROGRESS);
+    }
+
+    /**
+     * Добавляет подзадачу в конец списка подзадач эпика
+     */
+    private void attach(int epic, int row) {
+
+        int last = lastChild.getInt(epic);
+        prevSibling.putInt(row, last);
+        nextSibling.putInt(row, NIL);
+        if (last == NIL)
+            firstChild.putInt(epic, row);
+        else
+            nextSibling.putInt(last, row);
+        lastChild.putInt(epic, row);
+        childCount.putInt(epic, childCount.getInt(epic) + 1);
+        account(epic, row);
+        refreshStatus(epic);
+    }
+
+    /**
+     * Исключает подзадачу из списка подзадач эпика
+     */
+    private void detach(int epic, int row) {
+
+        int prev = prevSibling.getInt(row);
+        int next = nextSibling.getInt(row);
+        if (prev == NIL)
+            firstChild.putInt(epic, next);
+        else
+            nextSibling.putInt(prev, next);
+        if (next == NIL)
+            lastChild.putInt(epic, prev);
+        else
+            prevSibling.putInt(next, prev);
+        childCount.putInt(epic, childCount.getInt(epic) - 1);
+        if (unaccount(epic, row))
+            rescanTime(epic);
+        refreshStatus(epic);
+    }
+
+    // endregion
+
+
+    // region Временная шкала
+
+    private static int priority(int row) {
+        int hash = row * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private int compareStart(int first, int second) {
+        return Task.compareTime(startSecond.getLong(first), startNano.getInt(first),
+                startSecond.getLong(second), startNano.getInt(second));
+    }
+
+    private int insert(int node, int row) {
+
+        if (node == NIL)
+            return row;
+        if (compareStart(row, node) < 0) {
+            left.putInt(node, insert(left.getInt(node), row));
+            if (priority(left.getInt(node)) > priority(node)) {
+                int child = left.getInt(node);
+                left.putInt(node, right.getInt(child));
+                right.putInt(child, node);
+                return child;
+            }
+        } else {
+            right.putInt(node, insert(right.getInt(node), row));
+            if (priority(right.getInt(node)) > priority(node)) {
+                int child = right.getInt(node);
+                right.putInt(node, left.getInt(child));
+                left.putInt(child, node);
+                return child;
+            }
+        }
+        return node;
+    }
+
+    private int delete(int node, int row) {
+
+        if (node == NIL)
+            return NIL;
+        if (node == row)
+            return merge(left.getInt(node), right.getInt(node));
+        if (compareStart(row, node) < 0)
+            left.putInt(node, delete(left.getInt(node), row));
+        else
+            right.putInt(node, delete(right.getInt(node), row));
+        return node;
+    }
+
+    private int merge(int first, int second) {
+
+        if (first == NIL)
+            return second;
+        if (second == NIL)
+            return first;
+        if (priority(first) > priority(second)) {
+            right.putInt(first, merge(right.getInt(first), second));
+            return first;
+        }
+        left.putInt(second, merge(first, left.getInt(second)));
+        return second;
+    }
+
+    private void addToTimeline(int row) {
+        if (hasTime(row)) {
+            left.putInt(row, NIL);
+            right.putInt(row, NIL);
+            timelineRoot = insert(timelineRoot, row);
+        }
+    }
+
+    private void removeFromTimeline(int row) {
+        if (hasTime(row))
+            timelineRoot = delete(timelineRoot, row);
+    }
+
+    /**
+     * Ищет на шкале ближайшую к моменту времени задачу
+     * @param greater true - ближайшую не раньше момента, false - не позже
+     * @param inclusive true - допускается задача, начинающаяся в этот момент
+     * @return Номер строки задачи либо NIL
+     */
+    private int seek(long second, int nano, boolean greater, boolean inclusive) {
+
+        int result = NIL;
+        int node = timelineRoot;
+        while (node != NIL) {
+            int compare = Task.compareTime(startSecond.getLong(node), startNano.getInt(node), second, nano);
+            boolean suitable = greater ? compare > 0 : compare < 0;
+            if (suitable || (inclusive && compare == 0)) {
+                result = node;
+                node = greater ? left.getInt(node) : right.getInt(node);
+            } else {
+                node = greater ? right.getInt(node) : left.getInt(node);
+            }
+        }
+        return result;
+    }
+
+    private int seek(LocalDateTime time, boolean greater, boolean inclusive) {
+        return seek(time.toEpochSecond(ZoneOffset.UTC), time.getNano(), greater, inclusive);
+    }
+
+    private int next(int row) {
+        return seek(startSecond.getLong(row), startNano.getInt(row), true, false);
+    }
+
+    private boolean startsBefore(int row, LocalDateTime time) {
+        return Task.compareTime(startSecond.getLong(row), startNano.getInt(row),
+                time.toEpochSecond(ZoneOffset.UTC), time.getNano()) < 0;
+    }
+
+    /**
+     * Проверка задачи на пересечение с задачами шкалы (сравниваются ближайшие соседи, O(log n))
+     * @throws OverlappingTasksException Если задача пересекается с имеющейся задачей
+     */
+    private void checkTaskInTime(Task task) {
+
+        if (!task.isValidTime())
+            return;
+        long second = task.getStartSecond();
+        int nano = task.getStartNano();
+        int before = seek(second, nano, false, true);
+        if (before != NIL && ids.getInt(before) == task.getId())
+            before = seek(startSecond.getLong(before), startNano.getInt(before), false, false);
+        int after = seek(second, nano, true, true);
+        if (after != NIL && ids.getInt(after) == task.getId())
+            after = next(after);
+
+        // Задачи пересекаются, если одна начинается раньше окончания другой либо задачи начинаются одновременно
+        if (before != NIL && (Task.compareTime(second, nano, rowEndSecond(before), rowEndNano(before)) < 0 ||
+                Task.compareTime(second, nano, startSecond.getLong(before), startNano.getInt(before)) == 0))
+            throw new OverlappingTasksException("Недопустимое пересечение задач во времени");
+        if (after != NIL && (Task.compareTime(startSecond.getLong(after), startNano.getInt(after),
+                task.getEndSecond(), task.getEndNano()) < 0 ||
+                Task.compareTime(second, nano, startSecond.getLong(after), startNano.getInt(after)) == 0))
+            throw new OverlappingTasksException("Недопустимое пересечение задач во времени");
+    }
+
+    // endregion
+
+
+    @Override
+    public Task createTask(Task draftTask) {
+
+        checkTaskInTime(draftTask);
+        if (draftTask.getId() != TaskManager.DRAFT_TASK_ID)
+            throw new NotFoundIdException("Ненулевое значение Id новой задачи.");
+        return registerTask(draftTask);
+    }
+
+    private Task registerTask(Task draftTask) {
+        int row = allocateRow(++taskId);
+        resetLinks(row);
+        storeRow(row, draftTask, TASK, 1);
+        addToTimeline(row);
+        publish(null, row);
+        return new TaskBuilder(draftTask).setId(taskId).setVersion(1).buildTask();
+    }
+
+
+    @Override
+    public Subtask createSubtask(Subtask draftSubtask) {
+
+        checkTaskInTime(draftSubtask);
+        if (draftSubtask.getId() != TaskManager.DRAFT_TASK_ID)
+            throw new NotFoundIdException("Ненулевое значение Id новой подзадачи.");
+        if (rowOf(draftSubtask.getEpicId(), EPIC) == NIL)
+            throw new NotFoundIdException("Недопустимый Id родительского эпика");
+        return registerSubtask(draftSubtask);
+    }
+
+    private Subtask registerSubtask(Subtask draftSubtask) {
+        int row = allocateRow(++taskId);
+        int epic = rowOf(draftSubtask.getEpicId());
+        Task oldEpic = observe(epic);
+        resetLinks(row);
+        storeRow(row, draftSubtask, SUBTASK, 1);
+        attach(epic, row);
+        addToTimeline(row);
+        publish(null, row);
+        publish(oldEpic, epic);
+        return new TaskBuilder(draftSubtask).setId(taskId).setVersion(1).buildSubtask();
+    }
+
+
+    @Override
+    public List<Task> createTasks(List<Task> draftTasks) {
+
+        // Проверка всей группы до регистрации
+        for (Task draftTask : draftTasks) {
+            if (draftTask.getId() != TaskManager.DRAFT_TASK_ID)
+                throw new NotFoundIdException("Ненулевое значение Id новой задачи.");
+        }
+        TimeIndex.checkBatchDisjoint(draftTasks).forEach(this::checkTaskInTime);
+        return draftTasks.stream().map(this::registerTask).toList();
+    }
+
+
+    @Override
+    public List<Subtask> createSubtasks(List<Subtask> draftSubtasks) {
+
+        // Проверка всей группы до регистрации
+        for (Subtask draftSubtask : draftSubtasks) {
+            if (draftSubtask.getId() != TaskManager.DRAFT_TASK_ID)
+                throw new NotFoundIdException("Ненулевое значение Id новой подзадачи.");
+            if (rowOf(draftSubtask.getEpicId(), EPIC) == NIL)
+                throw new NotFoundIdException("Недопустимый Id родительского эпика");
+        }
+        TimeIndex.checkBatchDisjoint(draftSubtasks).forEach(this::checkTaskInTime);
+        return draftSubtasks.stream().map(this::registerSubtask).toList();
+    }
+
+
+    @Override
+    public Epic createEpic(Epic draftEpic) {
+
+        if (draftEpic.getId() != TaskManager.DRAFT_TASK_ID)
+            throw new NotFoundIdException("Ненулевое значение Id нового эпика.");
+        int row = allocateRow(++taskId);
+        storeRow(row, draftEpic, EPIC, 1);
+        resetEpic(row);
+        publish(null, row);
+        return (Epic) materialize(row);
+    }
+
+
+    @Override
+    public Task updateTask(Task task) {
+
+        checkTaskInTime(task);
+        int row = rowOf(task.getId(), TASK);
+        if (row == NIL)
+            throw new NotFoundIdException("Недопустимый Id задачи");
+        Task oldTask = observe(row);
+        removeFromTimeline(row);
+        storeRow(row, task, TASK, version.getLong(row) + 1);
+        addToTimeline(row);
+        publish(oldTask, row);
+        return materialize(row);
+    }
+
+
+    @Override
+    public Task updateTask(Task task, long expectedVersion) {
+        checkVersion(task.getId(), TASK, expectedVersion);
+        return updateTask(task);
+    }
+
+
+    @Override
+    public Subtask updateSubtask(Subtask subtask) {
+
+        checkTaskInTime(subtask);
+        int row = rowOf(subtask.getId(), SUBTASK);
+        if (row == NIL)
+            throw new NotFoundIdException("Недопустимый Id подзадачи");
+        int oldEpic = rowOf(epicId.getInt(row));
+        int newEpic = rowOf(subtask.getEpicId(), EPIC);
+        if (newEpic == NIL)
+            throw new NotFoundIdException("Недопустимый Id родительского эпика");
+
+        Task oldSubtask = observe(row);
+        Task oldEpicVersion = observe(oldEpic);
+        Task newEpicVersion = oldEpic == newEpic ? null : observe(newEpic);
+        removeFromTimeline(row);
+        long newVersion = version.getLong(row) + 1;
+        if (oldEpic == newEpic) {
+            // Подзадача сохраняет место в списке эпика
+            boolean rescan = unaccount(oldEpic, row);
+            storeRow(row, subtask, SUBTASK, newVersion);
+            account(oldEpic, row);
+            if (rescan)
+                rescanTime(oldEpic);
+            refreshStatus(oldEpic);
+        } else {
+            detach(oldEpic, row);
+            storeRow(row, subtask, SUBTASK, newVersion);
+            attach(newEpic, row);
+        }
+        addToTimeline(row);
+        publish(oldSubtask, row);
+        publish(oldEpicVersion, oldEpic);
+        if (oldEpic != newEpic)
+            publish(newEpicVersion, newEpic);
+        return (Subtask) materialize(row);
+    }
+
+
+    @Override
+    public Subtask updateSubtask(Subtask subtask, long expectedVersion) {
+        checkVersion(subtask.getId(), SUBTASK, expectedVersion);
+        return updateSubtask(subtask);
+    }
+
+
+    @Override
+    public Epic updateEpic(Epic epic) {
+
+        // Статус, время и состав эпика определяются его подзадачами
+        int row = rowOf(epic.getId(), EPIC);
+        if (row == NIL)
+            return null;
+        Task oldEpic = observe(row);
+        strings.release(name.getLong(row));
+        strings.release(description.getLong(row));
+        name.putLong(row, strings.append(epic.getName()));
+        description.putLong(row, strings.append(epic.getDescription()));
+        version.putLong(row, version.getLong(row) + 1);
+        publish(oldEpic, row);
+        return (Epic) materialize(row);
+    }
+
+
+    @Override
+    public Epic updateEpic(Epic epic, long expectedVersion) {
+        checkVersion(epic.getId(), EPIC, expectedVersion);
+        return updateEpic(epic);
+    }
+
+    /**
+     * Проверка версии задачи перед условным обновлением (отсутствующая задача не проверяется)
+     * @throws VersionConflictException если номер версии задачи отличается от ожидаемого
+     */
+    private void checkVersion(int id, byte type, long expectedVersion) {
+        int row = rowOf(id, type);
+        if (row != NIL && version.getLong(row) != expectedVersion)
+            throw new VersionConflictException("Задача изменена: текущая версия " + version.getLong(row) +
+                    ", ожидаемая " + expectedVersion, version.getLong(row));
+    }
+
+
+    @Override
+    public List<Task> getTasks() {
+        return List.copyOf(collect(TASK));
+    }
+
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        return collectAs(SUBTASK);
+    }
+
+
+    @Override
+    public List<Epic> getEpics() {
+        return collectAs(EPIC);
+    }
+
+
+    @Override
+    public List<Task> getTopTaskList() {
+        var list = collect(TASK);
+        list.addAll(collect(EPIC));
+        return list;
+    }
+
+
+    @Override
+    public List<Task> getEntireTaskList() {
+        var list = getTopTaskList();
+        list.addAll(collect(SUBTASK));
+        return list;
+    }
+
+
+    @Override
+    public List<Task> getTasksByStatus(TaskStatus taskStatus) {
+        List<Task> list = new ArrayList<>(statusCounts[taskStatus.ordinal()]);
+        for (int row = firstByStatus[taskStatus.ordinal()]; row != NIL; row = nextByStatus.getInt(row))
+            list.add(materialize(row));
+        return list;
+    }
+
+
+    @Override
+    public Map<TaskStatus, Integer> countByStatus() {
+        Map<TaskStatus, Integer> counts = new EnumMap<>(TaskStatus.class);
+        for (TaskStatus taskStatus : STATUSES)
+            counts.put(taskStatus, statusCounts[taskStatus.ordinal()]);
+        return counts;
+    }
+
+
+    @Override
+    public void clearTasks() {
+        for (int row = firstRow[TASK]; row != NIL; row = firstRow[TASK]) {
+            Task oldTask = observe(row);
+            removeFromTimeline(row);
+            clearRow(row);
+            publish(oldTask, NIL);
+        }
+    }
+
+
+    @Override
+    public void clearSubtasks() {
+        // Эпики сбрасываются до удаления подзадач: версии эпиков для событий включают их прежний состав
+        for (int row = firstRow[EPIC]; row != NIL; row = nextRow.getInt(row)) {
+            Task oldEpic = observe(row);
+            resetEpic(row);
+            version.putLong(row, version.getLong(row) + 1);
+            publish(oldEpic, row);
+        }
+        for (int row = firstRow[SUBTASK]; row != NIL; row = firstRow[SUBTASK]) {
+            Task oldSubtask = observe(row);
+            removeFromTimeline(row);
+            clearRow(row);
+            publish(oldSubtask, NIL);
+        }
+    }
+
+
+    @Override
+    public void clearEpics() {
+        clearSubtasks();
+        for (int row = firstRow[EPIC]; row != NIL; row = firstRow[EPIC]) {
+            Task oldEpic = observe(row);
+            clearRow(row);
+            publish(oldEpic, NIL);
+        }
+    }
+
+
+    @Override
+    public Task getTask(int id) {
+
+        int row = rowOf(id, TASK);
+        if (row == NIL)
+            throw new NotFoundIdException("Задача с указанным Id не найдена");
+        Task task = materialize(row);
+        historyManager.add(task);
+        return task;
+    }
+
+
+    @Override
+    public Subtask getSubtask(int id) {
+
+        int row = rowOf(id, SUBTASK);
+        if (row == NIL)
+            throw new NotFoundIdException("Подзадача с указанным Id не найдена");
+        Subtask subtask = (Subtask) materialize(row);
+        historyManager.add(subtask);
+        return subtask;
+    }
+
+
+    @Override
+    public Epic getEpic(int id) {
+
+        int row = rowOf(id, EPIC);
+        if (row == NIL)
+            throw new NotFoundIdException("Эпик с указанным Id не найден");
+        Epic epic = (Epic) materialize(row);
+        historyManager.add(epic);
+        return epic;
+    }
+
+
+    @Override
+    public void removeTask(int id) {
+        int row = rowOf(id, TASK);
+        if (row != NIL) {
+            Task oldTask = observe(row);
+            removeFromTimeline(row);
+            clearRow(row);
+            publish(oldTask, NIL);
+        }
+        removeFromHistory(id);
+    }
+
+
+    @Override
+    public void removeSubtask(int id) {
+
+        int row = rowOf(id, SUBTASK);
+        if (row == NIL)
+            return;
+        removeFromHistory(id);
+        int epic = rowOf(epicId.getInt(row));
+        Task oldSubtask = observe(row);
+        Task oldEpic = observe(epic);
+        detach(epic, row);
+        removeFromTimeline(row);
+        clearRow(row);
+        publish(oldSubtask, NIL);
+        publish(oldEpic, epic);
+    }
+
+
+    @Override
+    public void removeEpic(int id) {
+
+        int row = rowOf(id, EPIC);
+        if (row == NIL)
+            return;
+        Task oldEpic = observe(row);
+        for (int child = firstChild.getInt(row); child != NIL; child = nextSibling.getInt(child)) {
+            Task oldSubtask = observe(child);
+            removeFromHistory(ids.getInt(child));
+            removeFromTimeline(child);
+            clearRow(child);
+            publish(oldSubtask, NIL);
+        }
+        clearRow(row);
+        publish(oldEpic, NIL);
+        removeFromHistory(id);
+    }
+
+
+    @Override
+    public void addDependency(int taskId, int blockerId) {
+        dependencyGraph.addDependency(blockerId, taskId);
+    }
+
+
+    @Override
+    public void removeDependency(int taskId, int blockerId) {
+        dependencyGraph.removeDependency(blockerId, taskId);
+    }
+
+
+    @Override
+    public List<Task> getBlockers(int taskId) {
+        return dependencyGraph.getBlockers(taskId).stream().map(this::findTask).toList();
+    }
+
+
+    @Override
+    public List<Task> getDependencyOrder() {
+        return dependencyGraph.getOrder().stream().map(this::findTask).toList();
+    }
+
+
+    @Override
+    public List<Task> getCriticalPath() {
+        return dependencyGraph.getCriticalPath().stream().map(this::findTask).toList();
+    }
+
+
+    /**
+     * Возвращает задачу или подзадачу по идентификатору, не добавляя ее в историю просмотров
+     */
+    private Task findTask(int id) {
+        return materialize(rowOf(id));
+    }
+
+
+    /**
+     * Задачи и подзадачи строк для графа зависимостей (без создания версий задач)
+     */
+    private class RowTasks implements DependencyGraph.Tasks {
+
+        @Override
+        public long duration(int id) {
+            int row = rowOf(id);
+            return row != NIL && kind.getByte(row) != EPIC ? durationSeconds.getLong(row) : ABSENT;
+        }
+
+        @Override
+        public void forEach(DependencyGraph.Visitor visitor) {
+            for (byte type : new byte[]{TASK, SUBTASK}) {
+                for (int row = firstRow[type]; row != NIL; row = nextRow.getInt(row))
+                    visitor.visit(ids.getInt(row), durationSeconds.getLong(row));
+            }
+        }
+    }
+
+
+    @Override
+    public List<Subtask> getEpicSubtasks(Epic epic) {
+        return epic.getSubtasks().stream()
+                .map(id -> rowOf(id, SUBTASK))
+                .map(row -> row != NIL ? (Subtask) materialize(row) : null)
+                .toList();
+    }
+
+
+    @Override
+    public boolean isEmpty() {
+        return liveRows == 0;
+    }
+
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+
+    /**
+     * Удаляет задачу из истории просмотров (внутри транзакции - при ее фиксации)
+     */
+    private void removeFromHistory(int id) {
+        if (transaction != null)
+            transaction.historyRemovals.add(id);
+        else
+            historyManager.remove(id);
+    }
+
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+
+        // Обход дерева в порядке возрастания времени начала
+        List<Task> list = new ArrayList<>();
+        int[] stack = new int[64];
+        int top = 0;
+        int node = timelineRoot;
+        while (node != NIL || top > 0) {
+            while (node != NIL) {
+                if (top == stack.length)
+                    stack = Arrays.copyOf(stack, top * 2);
+                stack[top++] = node;
+                node = left.getInt(node);
+            }
+            node = stack[--top];
+            list.add(materialize(node));
+            node = right.getInt(node);
+        }
+        return list;
+    }
+
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to, int limit) {
+
+        List<Task> result = new ArrayList<>();
+        if (limit <= 0 || (from != null && to != null && !from.isBefore(to)))
+            return result;
+        int row = seek(Long.MIN_VALUE, 0, true, true);
+        if (from != null) {
+            // Начавшейся до from может быть только одна задача - ближайшая слева
+            int before = seek(from, false, false);
+            if (before != NIL && (to == null || startsBefore(before, to)) && Task.compareTime(rowEndSecond(before),
+                    rowEndNano(before), from.toEpochSecond(ZoneOffset.UTC), from.getNano()) > 0)
+                result.add(materialize(before));
+            row = seek(from, true, true);
+        }
+        return collectFrom(row, to, limit, result);
+    }
+
+
+    @Override
+    public List<Task> getPrioritizedTasksAfter(LocalDateTime after, LocalDateTime to, int limit) {
+
+        List<Task> result = new ArrayList<>();
+        if (limit <= 0 || (after != null && to != null && !after.isBefore(to)))
+            return result;
+        int row = after == null ? seek(Long.MIN_VALUE, 0, true, true) : seek(after, true, false);
+        return collectFrom(row, to, limit, result);
+    }
+
+    private List<Task> collectFrom(int row, LocalDateTime to, int limit, List<Task> result) {
+        for (; row != NIL && result.size() < limit && (to == null || startsBefore(row, to)); row = next(row))
+            result.add(materialize(row));
+        return result;
+    }
+
+
+    @Override
+    public Optional<LocalDateTime> findFreeSlot(Duration length, LocalDateTime notBefore, LocalDateTime notAfter) {
+
+        // Задачи шкалы, начиная с выполняющейся в момент notBefore, создаются по мере просмотра промежутков
+        int before = seek(notBefore, false, false);
+        int first = before != NIL ? before : seek(notBefore, true, true);
+        Iterable<Task> timeline = () -> new Iterator<>() {
+            private int row = first;
+
+            @Override
+            public boolean hasNext() {
+                return row != NIL;
+            }
+
+            @Override
+            public Task next() {
+                if (row == NIL)
+                    throw new NoSuchElementException();
+                Task task = materialize(row);
+                row = OffHeapTaskManager.this.next(row);
+                return task;
+            }
+        };
+        return TimeIndex.firstGap(timeline, length, notBefore, notAfter);
+    }
+
+
+    /**
+     * Журнал транзакции: исходные версии затронутых задач (null - задача создана в транзакции).
+     * Операции применяются к менеджеру сразу; при отмене текущие версии затронутых задач удаляются,
+     * исходные версии записываются в заново выделенные строки, а списки подзадач затронутых эпиков
+     * строятся заново в исходном порядке (эпик подзадачи считается затронутым вместе с ней).
+     */
+    private final class Transaction implements TaskTransaction {
+
+        private final Map<Integer, Task> originals = new LinkedHashMap<>();
+        private final List<Integer> historyRemovals = new ArrayList<>();
+
+        private void touch(int id) {
+            if (originals.containsKey(id))
+                return;
+            int row = rowOf(id);
+            originals.put(id, row != NIL ? materialize(row) : null);
+            // При отмене подзадача восстанавливается в другой строке: список подзадач эпика строится заново
+            if (row != NIL && kind.getByte(row) == SUBTASK)
+                touch(epicId.getInt(row));
+        }
+
+        private <T extends Task> T created(T task) {
+            originals.putIfAbsent(task.getId(), null);
+            return task;
+        }
+
+        @Override
+        public Task createTask(Task draftTask) {
+            return created(OffHeapTaskManager.this.createTask(draftTask));
+        }
+
+        @Override
+        public Subtask createSubtask(Subtask draftSubtask) {
+            touch(draftSubtask.getEpicId());
+            return created(OffHeapTaskManager.this.createSubtask(draftSubtask));
+        }
+
+        @Override
+        public Epic createEpic(Epic draftEpic) {
+            return created(OffHeapTaskManager.this.createEpic(draftEpic));
+        }
+
+        @Override
+        public void updateTask(Task task) {
+            touch(task.getId());
+            OffHeapTaskManager.this.updateTask(task);
+        }
+
+        @Override
+        public void updateSubtask(Subtask subtask) {
+            touch(subtask.getId());
+            touch(subtask.getEpicId());
+            OffHeapTaskManager.this.updateSubtask(subtask);
+        }
+
+        @Override
+        public void updateEpic(Epic epic) {
+            touch(epic.getId());
+            OffHeapTaskManager.this.updateEpic(epic);
+        }
+
+        @Override
+        public void removeTask(int id) {
+            touch(id);
+            OffHeapTaskManager.this.removeTask(id);
+        }
+
+        @Override
+        public void removeSubtask(int id) {
+            touch(id);
+            OffHeapTaskManager.this.removeSubtask(id);
+        }
+
+        @Override
+        public void removeEpic(int id) {
+            touch(id);
+            int row = rowOf(id, EPIC);
+            if (row != NIL)
+                childIds(row).forEach(this::touch);
+            OffHeapTaskManager.this.removeEpic(id);
+        }
+
+        void rollback() {
+
+            // Удаление текущих версий затронутых задач
+            for (int id : originals.keySet()) {
+                int row = rowOf(id);
+                if (row != NIL) {
+                    if (kind.getByte(row) != EPIC)
+                        removeFromTimeline(row);
+                    clearRow(row);
+                }
+            }
+
+            // Восстановление исходных версий
+            for (Task original : originals.values()) {
+                if (original == null)
+                    continue;
+                int row = allocateRow(original.getId());
+                resetLinks(row);
+                if (original instanceof Epic epic) {
+                    storeRow(row, epic, EPIC, epic.getVersion());
+                    resetEpic(row);
+                } else {
+                    storeRow(row, original, original instanceof Subtask ? SUBTASK : TASK, original.getVersion());
+                    addToTimeline(row);
+                }
+            }
+
+            // Состав затронутых эпиков восстанавливается в исходном порядке
+            for (Task original : originals.values()) {
+                if (original instanceof Epic epic) {
+                    int row = rowOf(epic.getId());
+                    for (int child : epic.getSubtasks())
+                        attach(row, rowOf(child));
+                    version.putLong(row, epic.getVersion());
+                }
+            }
+        }
+    }
+
+
+    @Override
+    public void executeTransaction(Consumer<TaskTransaction> operations) {
+
+        if (transaction != null)
+            throw new IllegalStateException("Вложенные транзакции не поддерживаются");
+        Transaction log = new Transaction();
+        int savedTaskId = taskId;
+        transaction = log;
+        changeFeed.hold();
+        dependencyGraph.hold();
+        try {
+            operations.accept(log);
+        } catch (RuntimeException e) {
+            transaction = null;
+            log.rollback();
+            dependencyGraph.discard();
+            changeFeed.discard();
+            taskId = savedTaskId;
+            throw e;
+        }
+        transaction = null;
+        dependencyGraph.release();
+        log.historyRemovals.forEach(historyManager::remove);
+        changeFeed.release();
+    }
+
+
+    @Override
+    public TaskSubscription subscribe(TaskListener listener) {
+        return changeFeed.subscribe(listener);
+    }
+
+
+    @Override
+    public TaskSubscription subscribeAsync(TaskListener listener, int capacity) {
+        return changeFeed.subscribeAsync(listener, capacity);
+    }
+}
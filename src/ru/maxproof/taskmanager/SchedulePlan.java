@@ -0,0 +1,11 @@
+package ru.maxproof.taskmanager;
+
+import java.util.List;
+
+/**
+ * План размещения задач без времени начала на временной шкале (см. TaskManager.autoSchedule)
+ * @param scheduled Размещенные задачи и подзадачи - новые версии с установленным временем начала
+ * @param unscheduled Задачи и подзадачи, для которых не нашлось свободного промежутка
+ */
+public record SchedulePlan(List<Task> scheduled, List<Task> unscheduled) {
+}
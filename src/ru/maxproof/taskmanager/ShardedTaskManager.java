@@ -0,0 +1,1103 @@
+package ru.maxproof.taskmanager;
+
+import ru.maxproof.exceptions.NotFoundIdException;
+
+import java.time.LocalDateTime;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Менеджер задач, разделенный на секции для совместного использования несколькими потоками.
+ * <li> Простые задачи и эпики размещаются в секции по собственному идентификатору, подзадачи -
+ * в секции своего эпика, поэтому изменение эпика и его подзадач затрагивает одну секцию; </li>
+ * <li> Каждая секция имеет собственные реестры, агрегаты эпиков, индексы статусов, текста и статистики
+ * и временную шкалу под собственной блокировкой чтения-записи, поэтому изменения
+ * разных секций выполняются параллельно; </li>
+ * <li> Перечни задач всех секций строятся параллельным получением упорядоченных перечней
+ * секций и их k-путевым слиянием; </li>
+ * <li> Пересечения во времени проверяются по шкалам всех секций под общей блокировкой
+ * временной шкалы, под которой выполняются и все изменения шкал. Изменения задач
+ * без времени выполнения эту блокировку не захватывают. </li>
+ * <li> Граф зависимостей и поток событий изменения задач общие для всех секций и изменяются
+ * реестрами секций под общей блокировкой индексов; синхронные получатели событий вызываются под ней.
+ * Изменения задач без зависимостей при отсутствии подписчиков эту блокировку не захватывают;
+ * зависимости изменяются под блокировками чтения всех секций. </li>
+ * Блокировки захватываются в порядке: секции (по возрастанию номера), временная шкала,
+ * затем блокировка индексов.
+ */
+public class ShardedTaskManager implements TaskManager {
+
+    private static final long ANY_VERSION = Long.MIN_VALUE;    // обновление без проверки версии
+    private static final Comparator<Task> ID_ORDER = Comparator.comparingInt(Task::getId);
+    private static final Comparator<Task> TIME_ORDER = Task::compareStartTime;
+
+    /**
+     * Секция менеджера задач
+     */
+    private static final class Shard {
+
+        private final int index;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final StatusIndex statusIndex = new StatusIndex();
+        private final TextIndex textIndex = new TextIndex();
+        private final StatisticsIndex statisticsIndex = new StatisticsIndex();
+        private final IntMap<Task> tasks;
+        private final IntMap<Epic> epics;
+        private final IntMap<Subtask> subtasks;
+        private final IntMap<EpicAggregate> aggregates = new IntMap<>();
+        private final TimeIndex timeline = new TimeIndex();
+
+        Shard(int index, TaskIndex subtaskDirectory, TaskIndex sharedIndexes) {
+            this.index = index;
+            tasks = new TaskRegistry<>(statusIndex, textIndex, statisticsIndex, sharedIndexes);
+            epics = new TaskRegistry<>(statusIndex, textIndex, statisticsIndex, sharedIndexes);
+            subtasks = new TaskRegistry<>(statusIndex, textIndex, statisticsIndex, subtaskDirectory, sharedIndexes);
+        }
+    }
+
+    /**
+     * Граф зависимостей и поток событий, общие для всех секций, под общей блокировкой индексов.
+     * Блокировка захватывается, только если изменение затрагивает граф (задача участвует
+     * в зависимостях) или у потока есть подписчики, поэтому изменения задач без зависимостей
+     * при отсутствии подписчиков не упорядочиваются между секциями.
+     * Перенос подзадачи в секцию другого эпика удаляет ее из реестра прежней секции
+     * и добавляет в реестр новой; выполненная через move пара изменений передается
+     * индексам одной заменой версии, поэтому перенос не удаляет зависимости подзадачи.
+     */
+    private final class SharedIndexes implements TaskIndex {
+
+        private final DependencyGraph dependencyGraph;
+        private final ChangeFeed changeFeed;
+        private boolean moving = false;
+        private Task moved = null;      // прежняя версия переносимой подзадачи
+
+        SharedIndexes(DependencyGraph dependencyGraph, ChangeFeed changeFeed) {
+            this.dependencyGraph = dependencyGraph;
+            this.changeFeed = changeFeed;
+        }
+
+        @Override
+        public void replace(Task oldTask, Task newTask) {
+            // Перенос выполняется под блокировкой индексов (см. move) и всегда проходит через нее
+            if (!indexLock.isHeldByCurrentThread() && !changeFeed.hasSubscribers() &&
+                    !dependencyGraph.affects(oldTask, newTask))
+                return;
+            indexLock.lock();
+            try {
+                if (moving && newTask == null) {
+                    moved = oldTask;
+                    return;
+                }
+                if (moving && oldTask == null) {
+                    oldTask = moved;
+                    moved = null;
+                }
+                dependencyGraph.replace(oldTask, newTask);
+                changeFeed.replace(oldTask, newTask);
+            } finally {
+                indexLock.unlock();
+            }
+        }
+
+        /**
+         * Выполняет перенос подзадачи между реестрами секций (удаление, затем добавление)
+         */
+        void move(Runnable action) {
+            indexLock.lock();
+            try {
+                moving = true;
+                action.run();
+            } finally {
+                moving = false;
+                moved = null;
+                indexLock.unlock();
+            }
+        }
+    }
+
+    private final Shard[] shards;
+    private final AtomicInteger taskId = new AtomicInteger();
+    private final Map<Integer, Integer> subtaskEpics = new ConcurrentHashMap<>();    // подзадача -> эпик
+    private final ReentrantLock timeLock = new ReentrantLock();
+    private final TimeIndex reserved = new TimeIndex();     // время новых задач до их размещения (под timeLock)
+    private final ReentrantLock historyLock = new ReentrantLock();
+    private final HistoryManager historyManager;
+    private final ReentrantLock indexLock = new ReentrantLock();
+    private final DependencyGraph dependencyGraph = new DependencyGraph(new ShardedTasks());  // зависимости задач
+    private final ChangeFeed changeFeed = new ChangeFeed();     // события изменения задач всех секций
+    private final SharedIndexes sharedIndexes = new SharedIndexes(dependencyGraph, changeFeed);
+    private TransactionLog transaction = null;     // журнал текущей транзакции (доступ - под секциями)
+
+
+    /**
+     * Создает менеджер задач с числом секций, равным числу процессоров
+     */
+    public ShardedTaskManager() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Создает менеджер задач с заданным числом секций
+     * @param shardCount Число секций (положительное)
+     * @throws IllegalArgumentException если число секций не положительно
+     */
+    public ShardedTaskManager(int shardCount) {
+
+        if (shardCount <= 0)
+            throw new IllegalArgumentException("Число секций должно быть положительным");
+        // Справочник секций подзадач поддерживается реестрами подзадач всех секций
+        TaskIndex subtaskDirectory = (oldTask, newTask) -> {
+            if (newTask != null)
+                subtaskEpics.put(newTask.getId(), ((Subtask) newTask).getEpicId());
+            else
+                subtaskEpics.remove(oldTask.getId());
+        };
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++)
+            shards[i] = new Shard(i, subtaskDirectory, sharedIndexes);
+        this.historyManager = Managers.getDefaultHistory();
+    }
+
+
+    // region Shards and locking
+
+    /**
+     * Возвращает секцию простой задачи или эпика либо секцию подзадач эпика
+     * @param id Идентификатор задачи или эпика
+     */
+    private Shard shardOf(int id) {
+        return shards[Math.floorMod(id, shards.length)];
+    }
+
+    /**
+     * Возвращает секцию подзадачи (null - подзадача отсутствует)
+     */
+    private Shard subtaskShard(int id) {
+        Integer epicId = subtaskEpics.get(id);
+        return epicId == null ? null : shardOf(epicId);
+    }
+
+    /**
+     * Возвращает секцию, в которой размещается задача любого типа
+     */
+    private Shard home(Task task) {
+        return shardOf(task instanceof Subtask subtask ? subtask.getEpicId() : task.getId());
+    }
+
+    private static <T> T read(Shard shard, Supplier<T> action) {
+        shard.lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    private static <T> T withShard(Shard shard, Supplier<T> action) {
+        shard.lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет действие под блокировками нескольких секций (захватываются по возрастанию номера)
+     */
+    private static <T> T withShards(Collection<Shard> locked, Supplier<T> action) {
+        Shard[] ordered = locked.stream()
+                .distinct()
+                .sorted(Comparator.comparingInt(shard -> shard.index))
+                .toArray(Shard[]::new);
+        int count = 0;
+        try {
+            for (; count < ordered.length; count++)
+                ordered[count].lock.writeLock().lock();
+            return action.get();
+        } finally {
+            while (count > 0)
+                ordered[--count].lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет действие под блокировками всех секций (операции над реестрами целиком)
+     */
+    private void withAllShards(Runnable action) {
+        withShards(Arrays.asList(shards), () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Выполняет действие под блокировками чтения всех секций (по возрастанию номера)
+     */
+    private <T> T readAll(Supplier<T> action) {
+        int count = 0;
+        try {
+            for (; count < shards.length; count++)
+                shards[count].lock.readLock().lock();
+            return action.get();
+        } finally {
+            while (count > 0)
+                shards[--count].lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Проверяет пересечения новой версии задачи с задачами всех секций и заменяет задачу на шкале
+     * @param oldShard Секция прежней версии задачи
+     * @param oldTask Прежняя версия задачи (или null)
+     * @param newShard Секция новой версии задачи
+     * @param newTask Новая версия задачи (или null при удалении)
+     */
+    private void updateTimeline(Shard oldShard, Task oldTask, Shard newShard, Task newTask) {
+
+        boolean oldTimed = oldTask != null && oldTask.isValidTime();
+        boolean newTimed = newTask != null && newTask.isValidTime();
+        if (!oldTimed && !newTimed)
+            return;
+        timeLock.lock();
+        try {
+            if (newTimed)
+                checkInTime(newTask);
+            if (oldTimed)
+                oldShard.timeline.remove(oldTask);
+            if (newTimed)
+                newShard.timeline.add(newTask);
+        } finally {
+            timeLock.unlock();
+        }
+    }
+
+    /**
+     * Проверяет пересечения задачи с задачами всех секций и с зарезервированным временем новых задач
+     * (вызывается под timeLock)
+     */
+    private void checkInTime(Task task) {
+        for (Shard shard : shards)
+            shard.timeline.checkTaskInTime(task);
+        reserved.checkTaskInTime(task);
+    }
+
+    /**
+     * Проверяет пересечения группы новых задач и только затем выделяет им идентификаторы,
+     * резервируя их время до размещения в секциях (см. placeReserved). Секция задачи определяется
+     * ее идентификатором, поэтому проверка выполняется до блокировки секций, а резерв не позволяет
+     * другим потокам занять проверенное время. Отклоненные задачи идентификаторов не расходуют.
+     * @param draftTasks Новые задачи
+     * @param build Построение зарегистрированной задачи по новой задаче и выделенному идентификатору
+     * @return Зарегистрированные задачи
+     */
+    private <D extends Task, T extends Task> List<T> reserve(List<D> draftTasks, BiFunction<D, Integer, T> build) {
+
+        List<Task> timed = TimeIndex.checkBatchDisjoint(draftTasks);
+        timeLock.lock();
+        try {
+            timed.forEach(this::checkInTime);
+            int id = taskId.getAndAdd(draftTasks.size());
+            List<T> registeredTasks = new ArrayList<>(draftTasks.size());
+            for (D draftTask : draftTasks) {
+                T registeredTask = build.apply(draftTask, ++id);
+                if (registeredTask.isValidTime())
+                    reserved.add(registeredTask);
+                registeredTasks.add(registeredTask);
+            }
+            return registeredTasks;
+        } finally {
+            timeLock.unlock();
+        }
+    }
+
+    /**
+     * Переносит зарезервированное время новых задач на шкалы их секций
+     * (секции задач должны быть заблокированы вызывающим)
+     * @param tasks Задачи, полученные от reserve
+     */
+    private void placeReserved(List<? extends Task> tasks) {
+        timeLock.lock();
+        try {
+            for (Task task : tasks) {
+                if (task.isValidTime()) {
+                    reserved.remove(task);
+                    home(task).timeline.add(task);
+                }
+            }
+        } finally {
+            timeLock.unlock();
+        }
+    }
+
+    private void addToHistory(Task task) {
+        historyLock.lock();
+        try {
+            historyManager.add(task);
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    private void removeFromHistory(int id) {
+        if (transaction != null) {
+            transaction.deferHistoryRemoval(id);
+            return;
+        }
+        historyLock.lock();
+        try {
+            historyManager.remove(id);
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    // endregion
+
+
+    // region Cross-shard reads
+
+    /**
+     * Строит перечень задач всех секций: упорядоченные перечни секций получаются параллельно
+     * (каждый - под блокировкой чтения своей секции) и объединяются k-путевым слиянием.
+     * Поток, удерживающий блокировку секции (например, внутри транзакции), получает перечни сам.
+     * @param run Упорядоченный перечень задач секции
+     * @param order Порядок задач
+     * @param limit Максимальное число задач
+     * @return Перечень задач всех секций в заданном порядке
+     */
+    private <T> List<T> collect(Function<Shard, List<T>> run, Comparator<? super T> order, int limit) {
+
+        boolean locked = Arrays.stream(shards).anyMatch(shard -> shard.lock.isWriteLockedByCurrentThread());
+        var stream = Arrays.stream(shards);
+        List<List<T>> runs = (locked ? stream : stream.parallel())
+                .map(shard -> read(shard, () -> run.apply(shard)))
+                .toList();
+        return merge(runs, order, limit);
+    }
+
+    /**
+     * Упорядоченный по идентификаторам перечень задач реестра секции
+     */
+    private static <T extends Task> List<T> sortedById(Collection<T> tasks) {
+        List<T> run = new ArrayList<>(tasks);
+        run.sort(ID_ORDER);
+        return run;
+    }
+
+    /**
+     * Объединяет упорядоченные перечни k-путевым слиянием за O(n log k):
+     * куча содержит по одному очередному элементу каждого перечня
+     * @param runs Перечни, упорядоченные в порядке order
+     * @param order Порядок элементов
+     * @param limit Максимальное число элементов результата
+     * @return Упорядоченный перечень из не более чем limit элементов
+     */
+    static <T> List<T> merge(List<List<T>> runs, Comparator<? super T> order, int limit) {
+
+        int total = runs.stream().mapToInt(List::size).sum();
+        List<T> result = new ArrayList<>(Math.max(Math.min(total, limit), 0));
+        // Элемент кучи - номер перечня и позиция очередного элемента в нем
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Math.max(runs.size(), 1),
+                (a, b) -> order.compare(runs.get(a[0]).get(a[1]), runs.get(b[0]).get(b[1])));
+        for (int i = 0; i < runs.size(); i++) {
+            if (!runs.get(i).isEmpty())
+                heap.add(new int[] {i, 0});
+        }
+        while (!heap.isEmpty() && result.size() < limit) {
+            int[] head = heap.poll();
+            List<T> run = runs.get(head[0]);
+            result.add(run.get(head[1]));
+            if (++head[1] < run.size())
+                heap.add(head);
+        }
+        return result;
+    }
+
+    // endregion
+
+
+    @Override
+    public Task createTask(Task draftTask) {
+
+        if (draftTask.getId() != TaskManager.DRAFT_TASK_ID)
+            throw new NotFoundIdException("Ненулевое значение Id новой задачи.");
+
+        Task registeredTask = reserve(List.of(draftTask),
+                (draft, id) -> new TaskBuilder(draft).setId(id).setVersion(1).buildTask()).getFirst();
+        Shard shard = shardOf(registeredTask.getId());
+        return withShard(shard, () -> {
+            placeReserved(List.of(registeredTask));
+            shard.tasks.put(registeredTask.getId(), registeredTask);
+            return registeredTask;
+        });
+    }
+
+    @Override
+    public Subtask createSubtask(Subtask draftSubtask) {
+
+        if (draftSubtask.getId() != TaskManager.DRAFT_TASK_ID)
+            throw new NotFoundIdException("Ненулевое значение Id новой подзадачи.");
+
+        int epicId = draftSubtask.getEpicId();
+        Shard shard = shardOf(epicId);
+        return withShard(shard, () -> {
+            if (!shard.epics.containsKey(epicId))
+                throw new NotFoundIdException("Недопустимый Id родительского эпика");
+
+            Subtask registeredSubtask = reserve(List.of(draftSubtask), (draft, id) -> new TaskBuilder(draft)
+                    .setId(id)
+                    .setEpicId(epicId)
+                    .setVersion(1)
+                    .buildSubtask()).getFirst();
+            placeReserved(List.of(registeredSubtask));
+            shard.subtasks.put(registeredSubtask.getId(), registeredSubtask);
+            shard.aggregates.get(epicId).addSubtask(registeredSubtask);
+            refreshEpic(shard, epicId);
+            return registeredSubtask;
+        });
+    }
+
+    @Override
+    public List<Task> createTasks(List<Task> draftTasks) {
+
+        for (Task draftTask : draftTasks) {
+            if (draftTask.getId() != TaskManager.DRAFT_TASK_ID)
+                throw new NotFoundIdException("Ненулевое значение Id новой задачи.");
+        }
+
+        // Идентификаторы выделяются одним блоком после проверки, блокируются секции новых задач
+        List<Task> registeredTasks = reserve(draftTasks,
+                (draft, id) -> new TaskBuilder(draft).setId(id).setVersion(1).buildTask());
+        return withShards(registeredTasks.stream().map(this::home).toList(), () -> {
+            placeReserved(registeredTasks);
+            registeredTasks.forEach(task -> home(task).tasks.put(task.getId(), task));
+            return registeredTasks;
+        });
+    }
+
+    @Override
+    public List<Subtask> createSubtasks(List<Subtask> draftSubtasks) {
+
+        Set<Integer> epicIds = new LinkedHashSet<>();
+        for (Subtask draftSubtask : draftSubtasks) {
+            if (draftSubtask.getId() != TaskManager.DRAFT_TASK_ID)
+                throw new NotFoundIdException("Ненулевое значение Id новой подзадачи.");
+            epicIds.add(draftSubtask.getEpicId());
+        }
+
+        return withShards(epicIds.stream().map(this::shardOf).toList(), () -> {
+            for (int epicId : epicIds) {
+                if (!shardOf(epicId).epics.containsKey(epicId))
+                    throw new NotFoundIdException("Недопустимый Id родительского эпика");
+            }
+
+            List<Subtask> registeredSubtasks = reserve(draftSubtasks,
+                    (draft, id) -> new TaskBuilder(draft).setId(id).setVersion(1).buildSubtask());
+            placeReserved(registeredSubtasks);
+
+            // Каждый затронутый эпик пересчитывается однократно
+            for (Subtask subtask : registeredSubtasks) {
+                Shard shard = shardOf(subtask.getEpicId());
+                shard.subtasks.put(subtask.getId(), subtask);
+                shard.aggregates.get(subtask.getEpicId()).addSubtask(subtask);
+            }
+            epicIds.forEach(epicId -> refreshEpic(shardOf(epicId), epicId));
+            return registeredSubtasks;
+        });
+    }
+
+    @Override
+    public Epic createEpic(Epic draftEpic) {
+
+        if (draftEpic.getId() != TaskManager.DRAFT_TASK_ID)
+            throw new NotFoundIdException("Ненулевое значение Id нового эпика.");
+
+        EpicAggregate aggregate = new EpicAggregate();
+        Epic registeredEpic = aggregate.apply(
+                new TaskBuilder(draftEpic).setId(taskId.incrementAndGet()).buildEpic(), 1);
+        Shard shard = shardOf(registeredEpic.getId());
+        return withShard(shard, () -> {
+            shard.aggregates.put(registeredEpic.getId(), aggregate);
+            shard.epics.put(registeredEpic.getId(), registeredEpic);
+            return registeredEpic;
+        });
+    }
+
+    @Override
+    public Task updateTask(Task task) {
+        return updateTask(task, ANY_VERSION);
+    }
+
+    @Override
+    public Task updateTask(Task task, long expectedVersion) {
+
+        if (task.getId() == TaskManager.DRAFT_TASK_ID)
+            throw new NotFoundIdException("Недопустимый Id задачи");
+        Shard shard = shardOf(task.getId());
+        return withShard(shard, () -> {
+            Task oldTask = shard.tasks.get(task.getId());
+            if (oldTask == null)
+                throw new NotFoundIdException("Недопустимый Id задачи");
+            checkVersion(oldTask, expectedVersion);
+            Task newTask = Task.withVersion(task, oldTask.getVersion() + 1);
+            updateTimeline(shard, oldTask, shard, newTask);
+            shard.tasks.put(newTask.getId(), newTask);
+            return newTask;
+        });
+    }
+
+    @Override
+    public Subtask updateSubtask(Subtask subtask) {
+        return updateSubtask(subtask, ANY_VERSION);
+    }
+
+    @Override
+    public Subtask updateSubtask(Subtask subtask, long expectedVersion) {
+
+        if (subtask.getId() == TaskManager.DRAFT_TASK_ID)
+            throw new NotFoundIdException("Недопустимый Id подзадачи");
+
+        // Подзадача блокируется через секции прежнего и нового эпика. Если за время
+        // захвата блокировок подзадача была перенесена в другую секцию, попытка повторяется.
+        Subtask updated;
+        do {
+            Shard oldShard = subtaskShard(subtask.getId());
+            if (oldShard == null)
+                throw new NotFoundIdException("Недопустимый Id подзадачи");
+            Shard newShard = shardOf(subtask.getEpicId());
+            updated = withShards(List.of(oldShard, newShard), () -> {
+                Subtask oldSubtask = oldShard.subtasks.get(subtask.getId());
+                if (oldSubtask == null)
+                    return null;
+                EpicAggregate newAggregate = newShard.aggregates.get(subtask.getEpicId());
+                if (newAggregate == null)
+                    throw new NotFoundIdException("Недопустимый Id родительского эпика");
+                checkVersion(oldSubtask, expectedVersion);
+
+                Subtask newSubtask = Task.withVersion(subtask, oldSubtask.getVersion() + 1);
+                updateTimeline(oldShard, oldSubtask, newShard, newSubtask);
+                // Прежняя версия удаляется до добавления новой: справочник секций указывает на новую
+                if (oldShard != newShard) {
+                    sharedIndexes.move(() -> {
+                        oldShard.subtasks.remove(oldSubtask.getId());
+                        newShard.subtasks.put(newSubtask.getId(), newSubtask);
+                    });
+                } else {
+                    newShard.subtasks.put(newSubtask.getId(), newSubtask);
+                }
+                if (oldSubtask.getEpicId() == newSubtask.getEpicId()) {
+                    newAggregate.replaceSubtask(oldSubtask, newSubtask);
+                } else {
+                    oldShard.aggregates.get(oldSubtask.getEpicId()).removeSubtask(oldSubtask);
+                    newAggregate.addSubtask(newSubtask);
+                    refreshEpic(oldShard, oldSubtask.getEpicId());
+                }
+                refreshEpic(newShard, newSubtask.getEpicId());
+                return newSubtask;
+            });
+        } while (updated == null);
+        return updated;
+    }
+
+    @Override
+    public Epic updateEpic(Epic epic) {
+        return updateEpic(epic, ANY_VERSION);
+    }
+
+    @Override
+    public Epic updateEpic(Epic epic, long expectedVersion) {
+        Shard shard = shardOf(epic.getId());
+        return withShard(shard, () -> {
+            // Статус, время и состав эпика определяются его подзадачами
+            Epic oldEpic = shard.epics.get(epic.getId());
+            if (oldEpic == null)
+                return null;
+            checkVersion(oldEpic, expectedVersion);
+            Epic newEpic = shard.aggregates.get(epic.getId()).apply(epic, oldEpic.getVersion() + 1);
+            shard.epics.put(epic.getId(), newEpic);
+            return newEpic;
+        });
+    }
+
+    /**
+     * Проверка версии задачи при условном обновлении (ANY_VERSION - обновление без условия)
+     */
+    private static void checkVersion(Task current, long expectedVersion) {
+        if (expectedVersion != ANY_VERSION)
+            Task.checkVersion(current, expectedVersion);
+    }
+
+    /**
+     * Публикует новую версию эпика (вызывается под блокировкой секции эпика)
+     * @param shard Секция эпика
+     * @param epicId Идентификатор эпика
+     */
+    private void refreshEpic(Shard shard, int epicId) {
+        if (transaction != null) {
+            transaction.deferEpicRefresh(epicId);
+            return;
+        }
+        Epic epic = shard.epics.get(epicId);
+        if (epic != null)
+            shard.epics.put(epicId, shard.aggregates.get(epicId).apply(epic, epic.getVersion() + 1));
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        return collect(shard -> sortedById(shard.tasks.values()), ID_ORDER, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        return collect(shard -> sortedById(shard.subtasks.values()), ID_ORDER, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        return collect(shard -> sortedById(shard.epics.values()), ID_ORDER, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Task> getTopTaskList() {
+        return collect(shard -> {
+            List<Task> run = new ArrayList<>(shard.tasks.values());
+            run.addAll(shard.epics.values());
+            run.sort(ID_ORDER);
+            return run;
+        }, ID_ORDER, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Task> getEntireTaskList() {
+        return collect(shard -> {
+            List<Task> run = new ArrayList<>(shard.tasks.values());
+            run.addAll(shard.epics.values());
+            run.addAll(shard.subtasks.values());
+            run.sort(ID_ORDER);
+            return run;
+        }, ID_ORDER, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Task> getTasksByStatus(TaskStatus status) {
+        return collect(shard -> sortedById(shard.statusIndex.get(status)), ID_ORDER, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Map<TaskStatus, Integer> countByStatus() {
+        Map<TaskStatus, Integer> counts = new EnumMap<>(TaskStatus.class);
+        for (Shard shard : shards)
+            read(shard, shard.statusIndex::counts).forEach((status, count) -> counts.merge(status, count, Integer::sum));
+        return counts;
+    }
+
+    @Override
+    public TaskStatistics getStatistics() {
+        // Снимки секций строятся за O(1) после первого чтения и объединяются за O(k * d) для d дней
+        return StatisticsIndex.combine(Arrays.stream(shards)
+                .map(shard -> read(shard, shard.statisticsIndex::snapshot))
+                .toList());
+    }
+
+    @Override
+    public List<Task> search(String query, int limit) {
+        // Каждая секция возвращает не более limit первых по идентификатору задач
+        return collect(shard -> shard.textIndex.search(query, limit), ID_ORDER, Math.max(limit, 0));
+    }
+
+    /**
+     * Изменяет зависимости под блокировками чтения всех секций: граф читает задачи секций
+     * (см. ShardedTasks), а транзакция удерживает все секции, поэтому параллельное изменение
+     * зависимостей не попадает в ее журнал
+     */
+    @Override
+    public void addDependency(int taskId, int blockerId) {
+        readAll(() -> withIndexes(() -> {
+            dependencyGraph.addDependency(blockerId, taskId);
+            return null;
+        }));
+    }
+
+    @Override
+    public void removeDependency(int taskId, int blockerId) {
+        readAll(() -> withIndexes(() -> {
+            dependencyGraph.removeDependency(blockerId, taskId);
+            return null;
+        }));
+    }
+
+    @Override
+    public List<Task> getBlockers(int taskId) {
+        return readAll(() -> findTasks(withIndexes(() -> dependencyGraph.getBlockers(taskId))));
+    }
+
+    @Override
+    public List<Task> getDependencyOrder() {
+        return readAll(() -> findTasks(withIndexes(dependencyGraph::getOrder)));
+    }
+
+    @Override
+    public List<Task> getCriticalPath() {
+        return readAll(() -> findTasks(withIndexes(dependencyGraph::getCriticalPath)));
+    }
+
+    /**
+     * Возвращает задачи и подзадачи по идентификаторам, не добавляя их в историю просмотров
+     * (задачи, удаленные после чтения графа, пропускаются)
+     */
+    private List<Task> findTasks(List<Integer> ids) {
+        return ids.stream().map(this::findTask).filter(Objects::nonNull).toList();
+    }
+
+    private Task findTask(int id) {
+        Shard shard = shardOf(id);
+        Task task = read(shard, () -> shard.tasks.get(id));
+        if (task != null)
+            return task;
+        Shard subtaskShard = subtaskShard(id);
+        return subtaskShard == null ? null : read(subtaskShard, () -> subtaskShard.subtasks.get(id));
+    }
+
+    /**
+     * Задачи и подзадачи секций для графа зависимостей. Граф читает задачи под блокировкой индексов,
+     * поэтому операции с зависимостями предварительно захватывают блокировки чтения всех секций
+     * (см. readAll; транзакция и очистка удерживают все секции на запись)
+     */
+    private class ShardedTasks implements DependencyGraph.Tasks {
+
+        @Override
+        public long duration(int id) {
+            Task task = findTask(id);
+            return task != null ? task.getDurationSeconds() : ABSENT;
+        }
+
+        @Override
+        public void forEach(DependencyGraph.Visitor visitor) {
+            for (Shard shard : shards) {
+                shard.tasks.values().forEach(task -> visitor.visit(task.getId(), task.getDurationSeconds()));
+                shard.subtasks.values().forEach(subtask ->
+                        visitor.visit(subtask.getId(), subtask.getDurationSeconds()));
+            }
+        }
+    }
+
+    @Override
+    public void clearTasks() {
+        withAllShards(() -> {
+            timeLock.lock();
+            try {
+                for (Shard shard : shards)
+                    shard.timeline.removeAll(shard.tasks.values());
+            } finally {
+                timeLock.unlock();
+            }
+            for (Shard shard : shards)
+                shard.tasks.clear();
+        });
+    }
+
+    @Override
+    public void clearSubtasks() {
+        withAllShards(() -> {
+            timeLock.lock();
+            try {
+                for (Shard shard : shards)
+                    shard.timeline.removeAll(shard.subtasks.values());
+            } finally {
+                timeLock.unlock();
+            }
+            for (Shard shard : shards) {
+                shard.subtasks.clear();
+                shard.aggregates.values().forEach(EpicAggregate::clear);
+                shard.epics.replaceAll((id, epic) -> shard.aggregates.get(id).apply(epic, epic.getVersion() + 1));
+            }
+        });
+    }
+
+    @Override
+    public void clearEpics() {
+        withAllShards(() -> {
+            clearSubtasks();
+            for (Shard shard : shards) {
+                shard.epics.clear();
+                shard.aggregates.clear();
+            }
+        });
+    }
+
+    @Override
+    public Task getTask(int id) {
+
+        Shard shard = shardOf(id);
+        Task task = read(shard, () -> shard.tasks.get(id));
+        if (task == null)
+            throw new NotFoundIdException("Задача с указанным Id не найдена");
+        addToHistory(task);
+        return task;
+    }
+
+    @Override
+    public Subtask getSubtask(int id) {
+
+        Shard shard = subtaskShard(id);
+        Subtask subtask = shard == null ? null : read(shard, () -> shard.subtasks.get(id));
+        if (subtask == null)
+            throw new NotFoundIdException("Подзадача с указанным Id не найдена");
+        addToHistory(subtask);
+        return subtask;
+    }
+
+    @Override
+    public Epic getEpic(int id) {
+
+        Shard shard = shardOf(id);
+        Epic epic = read(shard, () -> shard.epics.get(id));
+        if (epic == null)
+            throw new NotFoundIdException("Эпик с указанным Id не найден");
+        addToHistory(epic);
+        return epic;
+    }
+
+    @Override
+    public void removeTask(int id) {
+        Shard shard = shardOf(id);
+        withShard(shard, () -> {
+            Task task = shard.tasks.remove(id);
+            if (task != null)
+                updateTimeline(shard, task, null, null);
+            removeFromHistory(id);
+            return task;
+        });
+    }
+
+    @Override
+    public void removeSubtask(int id) {
+
+        boolean removed;
+        do {
+            Shard shard = subtaskShard(id);
+            if (shard == null)
+                return;
+            removed = withShard(shard, () -> {
+                Subtask subtask = shard.subtasks.remove(id);
+                if (subtask == null)
+                    return false;
+                updateTimeline(shard, subtask, null, null);
+                removeFromHistory(id);
+                shard.aggregates.get(subtask.getEpicId()).removeSubtask(subtask);
+                refreshEpic(shard, subtask.getEpicId());
+                return true;
+            });
+        } while (!removed);
+    }
+
+    @Override
+    public void removeEpic(int id) {
+        Shard shard = shardOf(id);
+        withShard(shard, () -> {
+            Epic epic = shard.epics.remove(id);
+            if (epic != null) {
+                // Состав эпика берется из агрегата (внутри транзакции публикация эпика откладывается)
+                shard.aggregates.remove(id).subtaskIds().forEach(subtaskId -> {
+                    Subtask subtask = shard.subtasks.remove(subtaskId);
+                    if (subtask != null)
+                        updateTimeline(shard, subtask, null, null);
+                    removeFromHistory(subtaskId);
+                });
+                removeFromHistory(id);
+            }
+            return epic;
+        });
+    }
+
+    @Override
+    public List<Subtask> getEpicSubtasks(Epic epic) {
+        Shard shard = shardOf(epic.getId());
+        return read(shard, () -> epic.getSubtasks().stream()
+                .map(shard.subtasks::get)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return Arrays.stream(shards).allMatch(shard -> read(shard, () ->
+                shard.tasks.isEmpty() && shard.epics.isEmpty() && shard.subtasks.isEmpty()));
+    }
+
+    /**
+     * Представление реестров всех секций в виде одной таблицы для журнала транзакции:
+     * задача находится по идентификатору, а размещается в секции по идентификатору или по задаче
+     */
+    private final class ShardedView<T> extends AbstractMap<Integer, T> {
+
+        private final Function<Shard, IntMap<T>> registry;
+        private final IntFunction<Shard> locate;
+        private final BiFunction<Integer, T, Shard> place;
+
+        ShardedView(Function<Shard, IntMap<T>> registry, IntFunction<Shard> locate,
+                    BiFunction<Integer, T, Shard> place) {
+            this.registry = registry;
+            this.locate = locate;
+            this.place = place;
+        }
+
+        @Override
+        public T get(Object key) {
+            Shard shard = key instanceof Integer id ? locate.apply(id) : null;
+            return shard == null ? null : registry.apply(shard).get(key);
+        }
+
+        @Override
+        public T put(Integer key, T value) {
+            return registry.apply(place.apply(key, value)).put(key, value);
+        }
+
+        @Override
+        public T remove(Object key) {
+            Shard shard = key instanceof Integer id ? locate.apply(id) : null;
+            return shard == null ? null : registry.apply(shard).remove(key);
+        }
+
+        @Override
+        public Set<Entry<Integer, T>> entrySet() {
+            Set<Entry<Integer, T>> entries = new TreeSet<>(Map.Entry.comparingByKey());
+            for (Shard shard : shards)
+                registry.apply(shard).forEach((id, value) -> entries.add(new SimpleImmutableEntry<>(id, value)));
+            return entries;
+        }
+    }
+
+    /**
+     * Выполняет транзакцию под блокировками всех секций: параллельные изменения и чтение
+     * ожидают ее завершения. Журнал транзакции работает с реестрами и шкалами всех секций
+     * через представления, размещающие задачи в их секциях.
+     */
+    @Override
+    public void executeTransaction(Consumer<TaskTransaction> operations) {
+        withAllShards(() -> {
+            if (transaction != null)
+                throw new IllegalStateException("Вложенные транзакции не поддерживаются");
+            TimeIndex timelines = new TimeIndex() {
+                @Override
+                void add(Task task) {
+                    home(task).timeline.add(task);
+                }
+
+                @Override
+                void remove(Task task) {
+                    home(task).timeline.remove(task);
+                }
+            };
+            TransactionLog log = new TransactionLog(this,
+                    new ShardedView<Task>(shard -> shard.tasks, this::shardOf, (id, task) -> shardOf(id)),
+                    new ShardedView<Subtask>(shard -> shard.subtasks, this::subtaskShard,
+                            (id, subtask) -> shardOf(subtask.getEpicId())),
+                    new ShardedView<Epic>(shard -> shard.epics, this::shardOf, (id, epic) -> shardOf(id)),
+                    new ShardedView<EpicAggregate>(shard -> shard.aggregates, this::shardOf,
+                            (id, aggregate) -> shardOf(id)),
+                    timelines);
+            transaction = log;
+            runWithIndexes(() -> {
+                changeFeed.hold();
+                dependencyGraph.hold();
+            });
+            try {
+                operations.accept(log);
+            } catch (RuntimeException e) {
+                transaction = null;
+                timeLock.lock();
+                try {
+                    log.rollback();
+                } finally {
+                    timeLock.unlock();
+                }
+                runWithIndexes(() -> {
+                    dependencyGraph.discard();
+                    changeFeed.discard();
+                });
+                throw e;
+            }
+            transaction = null;
+            runWithIndexes(dependencyGraph::release);
+            log.getDeferredEpics().forEach(epicId -> refreshEpic(shardOf(epicId), epicId));
+            log.getDeferredHistoryRemovals().forEach(this::removeFromHistory);
+            runWithIndexes(changeFeed::release);
+        });
+    }
+
+    private <T> T withIndexes(Supplier<T> action) {
+        indexLock.lock();
+        try {
+            return action.get();
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    private void runWithIndexes(Runnable action) {
+        indexLock.lock();
+        try {
+            action.run();
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    @Override
+    public TaskSubscription subscribe(TaskListener listener) {
+        return changeFeed.subscribe(listener);
+    }
+
+    @Override
+    public TaskSubscription subscribeAsync(TaskListener listener, int capacity) {
+        return changeFeed.subscribeAsync(listener, capacity);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        historyLock.lock();
+        try {
+            return historyManager.getHistory();
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return collect(shard -> shard.timeline.toList(), TIME_ORDER, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to, int limit) {
+        // Первые limit задач объединения находятся среди первых limit задач каждой секции
+        return collect(shard -> shard.timeline.window(from, to, limit), TIME_ORDER, limit);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksAfter(LocalDateTime after, LocalDateTime to, int limit) {
+        return collect(shard -> shard.timeline.after(after, to, limit), TIME_ORDER, limit);
+    }
+}
@@ -0,0 +1,438 @@
+package ru.maxproof.taskmanager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Статистика задач всех типов, поддерживаемая реестрами задач (см. TaskRegistry) при каждом
+ * изменении: число задач по статусам и типам, суммарная продолжительность и занятость по дням.
+ * <p>
+ * Занятость хранится в неизменяемом декартовом дереве по дням (изменение копирует только путь
+ * от корня), поэтому снимок статистики лишь запоминает корень и не копирует данные.
+ * Задача учитывается не более чем в трех днях независимо от своей длины: неполные первый
+ * и последний дни хранятся как занятое время, а полностью занятые дни между ними - как разность
+ * числа покрывающих задач в начале и после окончания промежутка (занятость дня складывается
+ * из его времени и суммы разностей по этот день включительно). Изменение задачи учитывается
+ * за O(log d), где d - число дней с хранимыми значениями.
+ * Эпики учитываются в числе задач, но не во времени: их время определяется подзадачами.
+ */
+class StatisticsIndex implements TaskIndex {
+
+    private static final long NANOS_PER_DAY = Duration.ofDays(1).toNanos();
+
+    /**
+     * Неизменяемый узел дерева занятости
+     */
+    private static final class Node {
+        private final long day;             // номер дня (LocalDate.toEpochDay)
+        private final int priority;         // приоритет узла в декартовом дереве (хеш дня)
+        private final long partial;         // время неполных дней задач, нс
+        private final long delta;           // изменение числа задач, покрывающих день целиком
+        private final long deltaSum;        // сумма delta поддерева
+        private final Node left;
+        private final Node right;
+
+        private Node(long day, long partial, long delta, Node left, Node right) {
+            this.day = day;
+            this.priority = priority(day);
+            this.partial = partial;
+            this.delta = delta;
+            this.deltaSum = deltaSum(left) + delta + deltaSum(right);
+            this.left = left;
+            this.right = right;
+        }
+
+        private Node with(Node left, Node right) {
+            return new Node(day, partial, delta, left, right);
+        }
+    }
+
+    private final EnumMap<TaskStatus, Integer> statusCounts = new EnumMap<>(TaskStatus.class);
+    private int taskCount = 0;
+    private int subtaskCount = 0;
+    private int epicCount = 0;
+    private Duration scheduledDuration = Duration.ZERO;
+    private Node utilization = null;                        // корень дерева занятости
+    private volatile TaskStatistics snapshot = null;       // null - статистика изменилась после снимка
+
+
+    StatisticsIndex() {
+        for (TaskStatus status : TaskStatus.values())
+            statusCounts.put(status, 0);
+    }
+
+    /**
+     * Изменение статистики при замене версии задачи. Вычисляется без обращения к индексу,
+     * поэтому конкурентный менеджер готовит его до захвата блокировки индекса (см. apply).
+     */
+    static final class Delta {
+
+        private final Task oldTask;
+        private final Task newTask;
+        private Duration scheduledDuration = Duration.ZERO;
+        private final long[] days = new long[6];            // до трех дней на каждую из версий
+        private final long[] partials = new long[6];
+        private final long[] deltas = new long[6];
+        private int size = 0;
+
+        private Delta(Task oldTask, Task newTask) {
+            this.oldTask = oldTask;
+            this.newTask = newTask;
+        }
+
+        /**
+         * Учитывает время задачи
+         * @param task Задача
+         * @param sign 1 - добавление задачи, -1 - исключение задачи
+         */
+        private void account(Task task, int sign) {
+
+            if (task instanceof Epic || !task.isValidTime())
+                return;
+            Duration duration = task.getDuration();
+            scheduledDuration = sign > 0 ? scheduledDuration.plus(duration) : scheduledDuration.minus(duration);
+            LocalDateTime start = task.getStartTime();
+            LocalDateTime end = task.getEndTime();
+            long startDay = start.toLocalDate().toEpochDay();
+            long endDay = end.toLocalDate().toEpochDay();
+            if (startDay == endDay) {
+                add(startDay, sign * Duration.between(start, end).toNanos(), 0);
+                return;
+            }
+            // Первый и последний дни - занятым временем, дни между ними - разностью покрытия
+            add(startDay, sign * Duration.between(start, start.toLocalDate().plusDays(1).atStartOfDay()).toNanos(), 0);
+            if (endDay > startDay + 1) {
+                add(startDay + 1, 0, sign);
+                add(endDay, sign * Duration.between(end.toLocalDate().atStartOfDay(), end).toNanos(), -sign);
+            } else {
+                add(endDay, sign * Duration.between(end.toLocalDate().atStartOfDay(), end).toNanos(), 0);
+            }
+        }
+
+        private void add(long day, long partial, long delta) {
+            days[size] = day;
+            partials[size] = partial;
+            deltas[size] = delta;
+            size++;
+        }
+    }
+
+    @Override
+    public void replace(Task oldTask, Task newTask) {
+        apply(prepare(oldTask, newTask));
+    }
+
+    /**
+     * Вычисляет изменение статистики при замене версии задачи (индекс не используется)
+     * @param oldTask Прежняя версия задачи (null - задача добавляется)
+     * @param newTask Новая версия задачи (null - задача удаляется)
+     */
+    static Delta prepare(Task oldTask, Task newTask) {
+        Delta delta = new Delta(oldTask, newTask);
+        if (oldTask != null)
+            delta.account(oldTask, -1);
+        if (newTask != null)
+            delta.account(newTask, 1);
+        return delta;
+    }
+
+    /**
+     * Применяет изменение статистики, вычисленное prepare
+     */
+    void apply(Delta delta) {
+        if (delta.oldTask != null)
+            count(delta.oldTask, -1);
+        if (delta.newTask != null)
+            count(delta.newTask, 1);
+        scheduledDuration = scheduledDuration.plus(delta.scheduledDuration);
+        for (int i = 0; i < delta.size; i++)
+            add(delta.days[i], delta.partials[i], delta.deltas[i]);
+        snapshot = null;
+    }
+
+    /**
+     * Учитывает задачу в числе задач по статусам и типам
+     * @param task Задача
+     * @param sign 1 - добавление задачи, -1 - исключение задачи
+     */
+    private void count(Task task, int sign) {
+        statusCounts.merge(task.getStatus(), sign, Integer::sum);
+        switch (task) {
+            case Subtask subtask -> subtaskCount += sign;
+            case Epic epic -> epicCount += sign;
+            case Task simple -> taskCount += sign;
+        }
+    }
+
+    /**
+     * Изменяет значения дня в дереве занятости (узел без значений удаляется)
+     */
+    private void add(long day, long partial, long delta) {
+
+        if (partial == 0 && delta == 0)
+            return;
+        Node[] lower = split(utilization, day);
+        Node[] upper = split(lower[1], day + 1);
+        Node node = upper[0];
+        long newPartial = (node == null ? 0 : node.partial) + partial;
+        long newDelta = (node == null ? 0 : node.delta) + delta;
+        node = newPartial == 0 && newDelta == 0 ? null : new Node(day, newPartial, newDelta, null, null);
+        utilization = merge(merge(lower[0], node), upper[1]);
+    }
+
+    /**
+     * Разделяет дерево на дни до day и дни начиная с day (копируя пути разделения)
+     */
+    private static Node[] split(Node node, long day) {
+        if (node == null)
+            return new Node[2];
+        if (node.day < day) {
+            Node[] parts = split(node.right, day);
+            parts[0] = node.with(node.left, parts[0]);
+            return parts;
+        }
+        Node[] parts = split(node.left, day);
+        parts[1] = node.with(parts[1], node.right);
+        return parts;
+    }
+
+    /**
+     * Объединяет деревья, все дни первого из которых предшествуют дням второго
+     */
+    private static Node merge(Node first, Node second) {
+        if (first == null)
+            return second;
+        if (second == null)
+            return first;
+        if (first.priority > second.priority)
+            return first.with(first.left, merge(first.right, second));
+        return second.with(merge(first, second.left), second.right);
+    }
+
+    private static long deltaSum(Node node) {
+        return node == null ? 0 : node.deltaSum;
+    }
+
+    private static int priority(long day) {
+        long hash = (day ^ (day >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (hash ^ (hash >>> 31));
+    }
+
+    /**
+     * Возвращает занятость дня по дереву за O(log d), нс
+     */
+    private static long utilization(Node root, long day) {
+        long coverage = 0;
+        long partial = 0;
+        for (Node node = root; node != null; ) {
+            if (node.day <= day) {
+                coverage += deltaSum(node.left) + node.delta;
+                if (node.day == day)
+                    partial = node.partial;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return partial + coverage * NANOS_PER_DAY;
+    }
+
+    /**
+     * Возвращает снимок статистики
+     */
+    TaskStatistics snapshot() {
+
+        TaskStatistics statistics = snapshot;
+        if (statistics == null) {
+            statistics = new TaskStatistics(Collections.unmodifiableMap(new EnumMap<>(statusCounts)),
+                    taskCount, subtaskCount, epicCount, scheduledDuration,
+                    new Utilization(utilization == null ? List.of() : List.of(utilization)));
+            snapshot = statistics;
+        }
+        return statistics;
+    }
+
+    /**
+     * Объединяет снимки статистики непересекающихся множеств задач (например, секций менеджера).
+     * Занятость объединения не копируется: она вычисляется по деревьям снимков при чтении.
+     * @param parts Снимки статистики, построенные StatisticsIndex
+     * @return Снимок статистики объединения
+     */
+    static TaskStatistics combine(List<TaskStatistics> parts) {
+
+        if (parts.size() == 1)
+            return parts.getFirst();
+        EnumMap<TaskStatus, Integer> statusCounts = new EnumMap<>(TaskStatus.class);
+        List<Node> roots = new ArrayList<>();
+        int taskCount = 0;
+        int subtaskCount = 0;
+        int epicCount = 0;
+        Duration scheduledDuration = Duration.ZERO;
+        for (TaskStatistics part : parts) {
+            part.statusCounts().forEach((status, count) -> statusCounts.merge(status, count, Integer::sum));
+            roots.addAll(((Utilization) part.dailyUtilization()).roots);
+            taskCount += part.taskCount();
+            subtaskCount += part.subtaskCount();
+            epicCount += part.epicCount();
+            scheduledDuration = scheduledDuration.plus(part.scheduledDuration());
+        }
+        return new TaskStatistics(Collections.unmodifiableMap(statusCounts), taskCount, subtaskCount, epicCount,
+                scheduledDuration, new Utilization(List.copyOf(roots)));
+    }
+
+
+    /**
+     * Занятость по дням как неизменяемое представление деревьев снимков: get выполняется за O(k log d)
+     * для k деревьев, перебор дней в порядке возрастания - слиянием деревьев. Дни без занятости отсутствуют.
+     */
+    private static final class Utilization extends AbstractMap<LocalDate, Duration> {
+
+        private final List<Node> roots;
+
+        private Utilization(List<Node> roots) {
+            this.roots = roots;
+        }
+
+        @Override
+        public Duration get(Object key) {
+            if (!(key instanceof LocalDate date))
+                return null;
+            long nanos = 0;
+            for (Node root : roots)
+                nanos += utilization(root, date.toEpochDay());
+            return nanos == 0 ? null : Duration.ofNanos(nanos);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return roots.isEmpty();
+        }
+
+        @Override
+        public Set<Entry<LocalDate, Duration>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<LocalDate, Duration>> iterator() {
+                    return new MergingIterator(roots);
+                }
+
+                @Override
+                public int size() {
+                    int size = 0;
+                    for (Iterator<?> iterator = iterator(); iterator.hasNext(); iterator.next())
+                        size++;
+                    return size;
+                }
+            };
+        }
+    }
+
+
+    /**
+     * Перебор дней с ненулевой занятостью одного дерева в порядке возрастания
+     */
+    private static final class DayIterator {
+
+        private final Deque<Node> stack = new ArrayDeque<>();
+        private Node node;              // следующий непройденный узел (null - узлы пройдены)
+        private long nextDay;           // следующий день (узла либо промежутка между узлами)
+        private long coverage = 0;      // число задач, покрывающих целиком дни после пройденных узлов
+        private long day;               // текущий день
+        private long nanos;             // занятость текущего дня, нс
+
+        private DayIterator(Node root) {
+            push(root);
+            node = stack.poll();
+            if (node != null)
+                nextDay = node.day;
+        }
+
+        private void push(Node node) {
+            for (; node != null; node = node.left)
+                stack.push(node);
+        }
+
+        /**
+         * Переходит к следующему дню с ненулевой занятостью
+         * @return false, если дни исчерпаны
+         */
+        private boolean advance() {
+            while (node != null) {
+                // Дни между узлами заняты только покрывающими их задачами
+                if (nextDay < node.day && coverage > 0) {
+                    day = nextDay++;
+                    nanos = coverage * NANOS_PER_DAY;
+                    return true;
+                }
+                coverage += node.delta;
+                day = node.day;
+                nanos = node.partial + coverage * NANOS_PER_DAY;
+                nextDay = node.day + 1;
+                push(node.right);
+                node = stack.poll();
+                if (nanos != 0)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+
+    /**
+     * Перебор дней нескольких деревьев слиянием: занятость одного дня суммируется
+     */
+    private static final class MergingIterator implements Iterator<Map.Entry<LocalDate, Duration>> {
+
+        private final PriorityQueue<DayIterator> queue =
+                new PriorityQueue<>(Comparator.comparingLong(iterator -> iterator.day));
+
+        private MergingIterator(List<Node> roots) {
+            for (Node root : roots) {
+                DayIterator iterator = new DayIterator(root);
+                if (iterator.advance())
+                    queue.add(iterator);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<LocalDate, Duration> next() {
+            if (queue.isEmpty())
+                throw new NoSuchElementException();
+            long day = queue.peek().day;
+            long nanos = 0;
+            while (!queue.isEmpty() && queue.peek().day == day) {
+                DayIterator iterator = queue.poll();
+                nanos += iterator.nanos;
+                if (iterator.advance())
+                    queue.add(iterator);
+            }
+            return Map.entry(LocalDate.ofEpochDay(day), Duration.ofNanos(nanos));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ru.maxproof.taskmanager;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Вторичный индекс задач всех типов по статусу. Поддерживается реестрами задач
+ * (см. TaskRegistry) при каждом изменении, поэтому перечень задач со статусом
+ * строится за время, пропорциональное его длине, а число задач по статусам - за O(1).
+ * Задачи одного статуса перечисляются в порядке их добавления в индекс.
+ */
+class StatusIndex implements TaskIndex {
+
+    private final EnumMap<TaskStatus, LinkedHashMap<Integer, Task>> byStatus = new EnumMap<>(TaskStatus.class);
+
+
+    StatusIndex() {
+        for (TaskStatus status : TaskStatus.values())
+            byStatus.put(status, new LinkedHashMap<>());
+    }
+
+    @Override
+    public void replace(Task oldTask, Task newTask) {
+
+        if (oldTask != null && (newTask == null || oldTask.getStatus() != newTask.getStatus()))
+            byStatus.get(oldTask.getStatus()).remove(oldTask.getId());
+        if (newTask != null)
+            byStatus.get(newTask.getStatus()).put(newTask.getId(), newTask);
+    }
+
+    List<Task> get(TaskStatus status) {
+        return List.copyOf(byStatus.get(status).values());
+    }
+
+    Map<TaskStatus, Integer> counts() {
+        Map<TaskStatus, Integer> counts = new EnumMap<>(TaskStatus.class);
+        byStatus.forEach((status, tasks) -> counts.put(status, tasks.size()));
+        return counts;
+    }
+}
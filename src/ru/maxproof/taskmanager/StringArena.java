@@ -0,0 +1,77 @@
+package ru.maxproof.taskmanager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Область строк вне кучи: строки хранятся подряд в кодировке UTF-8.
+ * Строка адресуется описателем типа long (смещение в старших 32 битах, длина в младших).
+ * Замененные строки не освобождаются по отдельности, их объем учитывается как мусор
+ * (см. release) и возвращается при уплотнении - копировании живых строк в новую область.
+ */
+class StringArena {
+
+    static final long NULL_HANDLE = 0xFFFFFFFFL;    // описатель значения null (длина -1)
+
+    private ByteBuffer buffer;
+    private int size = 0;
+    private long garbage = 0;
+
+
+    StringArena(int capacity) {
+        buffer = ByteBuffer.allocateDirect(Math.max(capacity, 16));
+    }
+
+    /**
+     * Добавляет строку
+     * @return Описатель строки
+     */
+    long append(String value) {
+
+        if (value == null)
+            return NULL_HANDLE;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (size + (long) bytes.length > buffer.capacity()) {
+            long capacity = buffer.capacity();
+            while (capacity < size + (long) bytes.length)
+                capacity *= 2;
+            if (capacity > Integer.MAX_VALUE)
+                throw new IllegalStateException("Превышен размер области строк");
+            ByteBuffer grown = ByteBuffer.allocateDirect((int) capacity);
+            grown.put(0, buffer, 0, size);
+            buffer = grown;
+        }
+        int offset = size;
+        buffer.put(offset, bytes);
+        size += bytes.length;
+        return ((long) offset << 32) | bytes.length;
+    }
+
+    String get(long handle) {
+
+        if (handle == NULL_HANDLE)
+            return null;
+        byte[] bytes = new byte[(int) handle];
+        buffer.get((int) (handle >>> 32), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Учитывает замененную строку как мусор
+     */
+    void release(long handle) {
+        if (handle != NULL_HANDLE)
+            garbage += (int) handle;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Объем замененных строк в байтах
+     */
+    long getGarbage() {
+        return garbage;
+    }
+}
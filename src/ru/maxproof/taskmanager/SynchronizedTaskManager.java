@@ -0,0 +1,270 @@
+package ru.maxproof.taskmanager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Потокобезопасная обертка над менеджером задач: все обращения к исходному
+ * менеджеру выполняются под общей блокировкой. Используется ReentrantLock,
+ * а не synchronized, чтобы виртуальные потоки не закреплялись за потоком-носителем
+ * на время операций (в том числе файлового ввода-вывода FileBackedTaskManager).
+ */
+class SynchronizedTaskManager implements TaskManager {
+
+    private final TaskManager manager;
+    private final ReentrantLock lock = new ReentrantLock();
+
+
+    SynchronizedTaskManager(TaskManager manager) {
+        this.manager = manager;
+    }
+
+    private <T> T call(Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run(Runnable action) {
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Task createTask(Task draftTask) {
+        return call(() -> manager.createTask(draftTask));
+    }
+
+    @Override
+    public Subtask createSubtask(Subtask draftSubtask) {
+        return call(() -> manager.createSubtask(draftSubtask));
+    }
+
+    @Override
+    public List<Task> createTasks(List<Task> draftTasks) {
+        return call(() -> manager.createTasks(draftTasks));
+    }
+
+    @Override
+    public List<Subtask> createSubtasks(List<Subtask> draftSubtasks) {
+        return call(() -> manager.createSubtasks(draftSubtasks));
+    }
+
+    @Override
+    public Epic createEpic(Epic draftEpic) {
+        return call(() -> manager.createEpic(draftEpic));
+    }
+
+    @Override
+    public Task updateTask(Task task) {
+        return call(() -> manager.updateTask(task));
+    }
+
+    @Override
+    public Subtask updateSubtask(Subtask subtask) {
+        return call(() -> manager.updateSubtask(subtask));
+    }
+
+    @Override
+    public Epic updateEpic(Epic epic) {
+        return call(() -> manager.updateEpic(epic));
+    }
+
+    @Override
+    public Task updateTask(Task task, long expectedVersion) {
+        return call(() -> manager.updateTask(task, expectedVersion));
+    }
+
+    @Override
+    public Subtask updateSubtask(Subtask subtask, long expectedVersion) {
+        return call(() -> manager.updateSubtask(subtask, expectedVersion));
+    }
+
+    @Override
+    public Epic updateEpic(Epic epic, long expectedVersion) {
+        return call(() -> manager.updateEpic(epic, expectedVersion));
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        return call(manager::getTasks);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        return call(manager::getSubtasks);
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        return call(manager::getEpics);
+    }
+
+    @Override
+    public List<Task> getTopTaskList() {
+        return call(manager::getTopTaskList);
+    }
+
+    @Override
+    public List<Task> getEntireTaskList() {
+        return call(manager::getEntireTaskList);
+    }
+
+    @Override
+    public List<Task> getTasksByStatus(TaskStatus status) {
+        return call(() -> manager.getTasksByStatus(status));
+    }
+
+    @Override
+    public Map<TaskStatus, Integer> countByStatus() {
+        return call(manager::countByStatus);
+    }
+
+    @Override
+    public TaskStatistics getStatistics() {
+        return call(manager::getStatistics);
+    }
+
+    @Override
+    public List<Task> search(String query, int limit) {
+        return call(() -> manager.search(query, limit));
+    }
+
+    @Override
+    public void clearTasks() {
+        run(manager::clearTasks);
+    }
+
+    @Override
+    public void clearSubtasks() {
+        run(manager::clearSubtasks);
+    }
+
+    @Override
+    public void clearEpics() {
+        run(manager::clearEpics);
+    }
+
+    @Override
+    public Task getTask(int id) {
+        return call(() -> manager.getTask(id));
+    }
+
+    @Override
+    public Subtask getSubtask(int id) {
+        return call(() -> manager.getSubtask(id));
+    }
+
+    @Override
+    public Epic getEpic(int id) {
+        return call(() -> manager.getEpic(id));
+    }
+
+    @Override
+    public void removeTask(int id) {
+        run(() -> manager.removeTask(id));
+    }
+
+    @Override
+    public void removeSubtask(int id) {
+        run(() -> manager.removeSubtask(id));
+    }
+
+    @Override
+    public void removeEpic(int id) {
+        run(() -> manager.removeEpic(id));
+    }
+
+    @Override
+    public List<Subtask> getEpicSubtasks(Epic epic) {
+        return call(() -> manager.getEpicSubtasks(epic));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return call(manager::isEmpty);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return call(manager::getHistory);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return call(manager::getPrioritizedTasks);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to, int limit) {
+        return call(() -> manager.getPrioritizedTasks(from, to, limit));
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksAfter(LocalDateTime after, LocalDateTime to, int limit) {
+        return call(() -> manager.getPrioritizedTasksAfter(after, to, limit));
+    }
+
+    @Override
+    public Optional<LocalDateTime> findFreeSlot(Duration length, LocalDateTime notBefore, LocalDateTime notAfter) {
+        return call(() -> manager.findFreeSlot(length, notBefore, notAfter));
+    }
+
+    @Override
+    public SchedulePlan autoSchedule(LocalDateTime notBefore, LocalDateTime notAfter, boolean dryRun) {
+        return call(() -> manager.autoSchedule(notBefore, notAfter, dryRun));
+    }
+
+    @Override
+    public void addDependency(int taskId, int blockerId) {
+        run(() -> manager.addDependency(taskId, blockerId));
+    }
+
+    @Override
+    public void removeDependency(int taskId, int blockerId) {
+        run(() -> manager.removeDependency(taskId, blockerId));
+    }
+
+    @Override
+    public List<Task> getBlockers(int taskId) {
+        return call(() -> manager.getBlockers(taskId));
+    }
+
+    @Override
+    public List<Task> getDependencyOrder() {
+        return call(manager::getDependencyOrder);
+    }
+
+    @Override
+    public List<Task> getCriticalPath() {
+        return call(manager::getCriticalPath);
+    }
+
+    @Override
+    public TaskSubscription subscribe(TaskListener listener) {
+        return call(() -> manager.subscribe(listener));
+    }
+
+    @Override
+    public TaskSubscription subscribeAsync(TaskListener listener, int capacity) {
+        return call(() -> manager.subscribeAsync(listener, capacity));
+    }
+
+    @Override
+    public void executeTransaction(Consumer<TaskTransaction> operations) {
+        run(() -> manager.executeTransaction(operations));
+    }
+}
@@ -1,19 +1,31 @@
 package ru.maxproof.taskmanager;
 
+import ru.maxproof.exceptions.VersionConflictException;
+
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.Objects;
 
 public class Task {
 
+    static final int NANOS_PER_SECOND = 1_000_000_000;
+    static final int NO_TIME = -1;      // значение доли секунды для незаданного времени
+
     // region Fields
 
     private final int id;
     private final String name;
     private final String description;
     private final TaskStatus status;
-    private final LocalDateTime startTime;
-    private final Duration duration;
+
+    // Время хранится в примитивных полях (секунды и доля секунды в наносекундах),
+    // поэтому сравнение задач по времени не создает объектов LocalDateTime и Duration
+    private final long startSecond;     // начало выполнения: секунды от 1970-01-01T00:00
+    private final int startNano;        // доля секунды начала (NO_TIME - начало не задано)
+    private final long durationSeconds;
+    private final int durationNano;     // доля секунды длительности (NO_TIME - длительность не задана)
+    private final long version;         // номер версии задачи (0 - задача не зарегистрирована)
 
     // endregion
 
@@ -27,8 +39,17 @@ public class Task {
         this.name = builder.getName();
         this.description = builder.getDescription();
         this.status = builder.getStatus();
-        this.startTime = builder.getStartTime();
-        this.duration = builder.getDuration();
+        LocalDateTime startTime = builder.getStartTime();
+        this.startSecond = startTime == null ? 0 : startTime.toEpochSecond(ZoneOffset.UTC);
+        this.startNano = startTime == null ? NO_TIME : startTime.getNano();
+        Duration duration = builder.getDuration();
+        this.durationSeconds = duration == null ? 0 : duration.getSeconds();
+        this.durationNano = duration == null ? NO_TIME : duration.getNano();
+        this.version = builder.getVersion();
+    }
+
+    static LocalDateTime toLocalDateTime(long second, int nano) {
+        return nano == NO_TIME ? null : LocalDateTime.ofEpochSecond(second, nano, ZoneOffset.UTC);
     }
 
 
@@ -50,6 +71,42 @@ public class Task {
         return status;
     }
 
+    /**
+     * Возвращает номер версии задачи. Менеджер задач присваивает версию 1 при регистрации задачи
+     * и увеличивает номер при каждом ее изменении (для эпика - в том числе при пересчете по подзадачам)
+     * @return Номер версии (0 - задача не зарегистрирована)
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Создает копию задачи с заданным номером версии
+     * @param task Задача любого типа
+     * @param version Номер версии
+     * @return Копия задачи того же типа
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Task> T withVersion(T task, long version) {
+        return (T) switch (task) {
+            case Epic epic -> new TaskBuilder(epic).setVersion(version).buildEpic();
+            case Subtask subtask -> new TaskBuilder(subtask).setVersion(version).buildSubtask();
+            default -> new TaskBuilder(task).setVersion(version).buildTask();
+        };
+    }
+
+    /**
+     * Проверяет версию задачи перед условным обновлением
+     * @param current Текущая версия задачи в менеджере (null - задача отсутствует)
+     * @param expectedVersion Ожидаемый номер версии
+     * @throws VersionConflictException если номер версии задачи отличается от ожидаемого
+     */
+    static void checkVersion(Task current, long expectedVersion) {
+        if (current != null && current.version != expectedVersion)
+            throw new VersionConflictException("Задача изменена: текущая версия " + current.version +
+                    ", ожидаемая " + expectedVersion, current.version);
+    }
+
     public boolean isNew() {
         return getStatus() == TaskStatus.NEW;
     }
@@ -59,20 +116,75 @@ public class Task {
     }
 
     LocalDateTime getStartTime() {
-        return startTime;
+        return toLocalDateTime(startSecond, startNano);
     }
 
     Duration getDuration() {
-        return duration;
+        return durationNano == NO_TIME ? null : Duration.ofSeconds(durationSeconds, durationNano);
     }
 
     LocalDateTime getEndTime() {
-        return (startTime != null && duration != null) ? startTime.plus(duration) : null;
+        return isValidTime() ? toLocalDateTime(getEndSecond(), getEndNano()) : null;
+    }
+
+    boolean hasStartTime() {
+        return startNano != NO_TIME;
+    }
+
+    boolean hasDuration() {
+        return durationNano != NO_TIME;
+    }
+
+    long getStartSecond() {
+        return startSecond;
+    }
+
+    int getStartNano() {
+        return startNano;
+    }
+
+    long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    int getDurationNano() {
+        return durationNano;
+    }
+
+    /**
+     * Секунды окончания выполнения (для задачи с корректным временем)
+     */
+    long getEndSecond() {
+        return startSecond + durationSeconds + (startNano + durationNano >= NANOS_PER_SECOND ? 1 : 0);
+    }
+
+    /**
+     * Доля секунды окончания выполнения (для задачи с корректным временем)
+     */
+    int getEndNano() {
+        int nano = startNano + durationNano;
+        return nano >= NANOS_PER_SECOND ? nano - NANOS_PER_SECOND : nano;
     }
 
     // endregion
 
 
+    /**
+     * Сравнивает моменты времени, заданные секундами и долей секунды
+     */
+    static int compareTime(long firstSecond, int firstNano, long secondSecond, int secondNano) {
+        int result = Long.compare(firstSecond, secondSecond);
+        return result != 0 ? result : Integer.compare(firstNano, secondNano);
+    }
+
+    /**
+     * Сравнивает задачи по времени начала (без создания объектов времени)
+     */
+    static int compareStartTime(Task first, Task second) {
+        return compareTime(first.startSecond, first.startNano, second.startSecond, second.startNano);
+    }
+
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -96,8 +208,8 @@ public class Task {
                 ", name='" + name + '\'' +
                 ", description='" + description + '\'' +
                 ", status=" + status +
-                ", startTime=" + startTime +
-                ", duration=" + duration +
+                ", startTime=" + getStartTime() +
+                ", duration=" + getDuration() +
                 '}';
     }
 
@@ -107,6 +219,6 @@ public class Task {
      * @return true, если задано начало выполнения и длительность задачи
      */
     public boolean isValidTime() {
-        return startTime != null && duration != null;
+        return hasStartTime() && hasDuration();
     }
 }
@@ -2,7 +2,7 @@ package ru.maxproof.taskmanager;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.List;
 
 public class TaskBuilder {
 
@@ -14,7 +14,8 @@ public class TaskBuilder {
     private Duration duration;
     private int epicId;
     private LocalDateTime endTime;
-    private ArrayList<Integer> subs;
+    private List<Integer> subs;
+    private long version;
 
 
     public TaskBuilder() {
@@ -28,6 +29,7 @@ public class TaskBuilder {
         status = task.getStatus();
         startTime = task.getStartTime();
         duration = task.getDuration();
+        version = task.getVersion();
     }
 
     public TaskBuilder(Subtask subtask) {
@@ -37,8 +39,8 @@ public class TaskBuilder {
 
     public TaskBuilder(Epic epic) {
         this((Task)epic);
-        this.subs = new ArrayList<>();
-        this.subs.addAll(epic.getSubtasks());
+        this.subs = epic.getSubtasks();
+        this.endTime = epic.getEndTime();
     }
 
     void clear() {
@@ -49,10 +51,18 @@ public class TaskBuilder {
         startTime = null;
         duration = null;
         epicId = TaskManager.DRAFT_TASK_ID;
+        endTime = null;
         subs = null;
+        version = 0;
     }
 
-    TaskBuilder setId(int id) {
+    /**
+     * Задает идентификатор задачи. Идентификаторы назначаются менеджером задач,
+     * явное указание используется при восстановлении задач из внешнего представления
+     * @param id Идентификатор задачи
+     * @return Строитель задачи
+     */
+    public TaskBuilder setId(int id) {
         this.id = id;
         return this;
     }
@@ -115,10 +125,30 @@ public class TaskBuilder {
         return this;
     }
 
-    public ArrayList<Integer> getSubs() {
+    public List<Integer> getSubs() {
         return subs;
     }
 
+    public TaskBuilder setSubs(List<Integer> subs) {
+        this.subs = subs;
+        return this;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Задает номер версии задачи. Версии назначаются менеджером задач,
+     * явное указание используется при восстановлении задач из внешнего представления
+     * @param version Номер версии
+     * @return Строитель задачи
+     */
+    public TaskBuilder setVersion(long version) {
+        this.version = version;
+        return this;
+    }
+
     public LocalDateTime getEndTime() {
         return endTime;
     }
@@ -0,0 +1,28 @@
+package ru.maxproof.taskmanager;
+
+/**
+ * Событие изменения задачи (см. TaskManager.subscribe)
+ * @param sequence Порядковый номер события (строго возрастает в пределах менеджера)
+ * @param type Вид изменения
+ * @param oldTask Прежняя версия задачи (null для созданной задачи)
+ * @param newTask Новая версия задачи (null для удаленной задачи)
+ */
+public record TaskEvent(long sequence, Type type, Task oldTask, Task newTask) {
+
+    /**
+     * Вид изменения задачи
+     */
+    public enum Type {
+        CREATED,            // задача создана
+        UPDATED,            // задача изменена
+        REMOVED,            // задача удалена
+        EPIC_RECOMPUTED     // пересчитаны статус, время или состав эпика
+    }
+
+    /**
+     * Возвращает идентификатор измененной задачи
+     */
+    public int taskId() {
+        return newTask != null ? newTask.getId() : oldTask.getId();
+    }
+}
@@ -0,0 +1,14 @@
+package ru.maxproof.taskmanager;
+
+/**
+ * Вторичный индекс задач, поддерживаемый реестрами задач (см. TaskRegistry)
+ */
+interface TaskIndex {
+
+    /**
+     * Учитывает замену версии задачи
+     * @param oldTask Прежняя версия задачи (null для новой задачи)
+     * @param newTask Новая версия задачи (null при удалении)
+     */
+    void replace(Task oldTask, Task newTask);
+}
@@ -0,0 +1,14 @@
+package ru.maxproof.taskmanager;
+
+/**
+ * Получатель событий изменения задач (см. TaskManager.subscribe)
+ */
+@FunctionalInterface
+public interface TaskListener {
+
+    /**
+     * Обрабатывает событие изменения задачи
+     * @param event Событие
+     */
+    void onEvent(TaskEvent event);
+}
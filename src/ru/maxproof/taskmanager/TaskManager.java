@@ -1,9 +1,19 @@
 package ru.maxproof.taskmanager;
 
+import ru.maxproof.exceptions.DependencyCycleException;
 import ru.maxproof.exceptions.NotFoundIdException;
 import ru.maxproof.exceptions.OverlappingTasksException;
+import ru.maxproof.exceptions.VersionConflictException;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface TaskManager {
 
@@ -31,6 +41,33 @@ public interface TaskManager {
      */
     Subtask createSubtask(Subtask draftSubtask);
 
+    /**
+     * Регистрирует группу черновых задач. Реализация по умолчанию регистрирует задачи по одной;
+     * менеджеры пакета проверяют группу целиком до регистрации, поэтому при ошибке
+     * не регистрируется ни одна задача группы.
+     * @param draftTasks Черновые простые задачи с нулевым Id
+     * @return Зарегистрированные задачи в порядке следования черновых задач
+     * @throws NotFoundIdException если какая-либо задача имеет ненулевой Id.
+     * @throws OverlappingTasksException если задачи пересекаются во времени между собой или с другими задачами.
+     */
+    default List<Task> createTasks(List<Task> draftTasks) {
+        return draftTasks.stream().map(this::createTask).toList();
+    }
+
+    /**
+     * Регистрирует группу черновых подзадач (в том числе разных эпиков).
+     * Реализация по умолчанию регистрирует подзадачи по одной;
+     * менеджеры пакета проверяют группу целиком до регистрации и пересчитывают
+     * каждый затронутый эпик однократно.
+     * @param draftSubtasks Черновые подзадачи с нулевым Id
+     * @return Зарегистрированные подзадачи в порядке следования черновых подзадач
+     * @throws NotFoundIdException если какая-либо подзадача имеет ненулевой Id или недопустимый Id эпика.
+     * @throws OverlappingTasksException если подзадачи пересекаются во времени между собой или с другими задачами.
+     */
+    default List<Subtask> createSubtasks(List<Subtask> draftSubtasks) {
+        return draftSubtasks.stream().map(this::createSubtask).toList();
+    }
+
     /**
      * Регистрирует черновую сложную задачу и возвращает ее идентификатор в реестре
      * @param draftEpic Черновая сложная задача
@@ -43,23 +80,60 @@ public interface TaskManager {
      * Обновляет простую задачу с указанным id.
      * @param task Новая задача с указанным id
      * @throws NotFoundIdException если задача имеет ненулевой Id.
+     * @return Сохраненная задача (с новым номером версии)
      * @throws OverlappingTasksException если задача пересекается во времени с другой задачей.
      */
-    void updateTask(Task task);
+    Task updateTask(Task task);
 
     /**
      * Обновляет подзадачу с указанным id.
      * @param subtask Новая подзадача с указанным id
      * @throws NotFoundIdException если задача имеет ненулевой Id.
+     * @return Сохраненная подзадача (с новым номером версии)
      * @throws OverlappingTasksException если задача пересекается во времени с другой задачей.
      */
-    void updateSubtask(Subtask subtask);
+    Subtask updateSubtask(Subtask subtask);
 
     /**
      * Обновляет Epic задачу с указанным id.
      * @param epic Новая задача с указанным id
+     * @return Сохраненный эпик (с новым номером версии) либо null, если эпик отсутствует
+     */
+    Epic updateEpic(Epic epic);
+
+    /**
+     * Обновляет простую задачу, если ее текущая версия совпадает с ожидаемой
+     * (проверка и обновление выполняются атомарно)
+     * @param task Новая задача с указанным id
+     * @param expectedVersion Ожидаемый номер версии задачи (см. Task.getVersion)
+     * @return Сохраненная задача (с новым номером версии)
+     * @throws NotFoundIdException если задача с указанным Id отсутствует.
+     * @throws VersionConflictException если версия задачи отличается от ожидаемой.
+     * @throws OverlappingTasksException если задача пересекается во времени с другой задачей.
+     */
+    Task updateTask(Task task, long expectedVersion);
+
+    /**
+     * Обновляет подзадачу, если ее текущая версия совпадает с ожидаемой
+     * (проверка и обновление выполняются атомарно)
+     * @param subtask Новая подзадача с указанным id
+     * @param expectedVersion Ожидаемый номер версии подзадачи (см. Task.getVersion)
+     * @return Сохраненная подзадача (с новым номером версии)
+     * @throws NotFoundIdException если подзадача с указанным Id отсутствует.
+     * @throws VersionConflictException если версия подзадачи отличается от ожидаемой.
+     * @throws OverlappingTasksException если подзадача пересекается во времени с другой задачей.
+     */
+    Subtask updateSubtask(Subtask subtask, long expectedVersion);
+
+    /**
+     * Обновляет Epic задачу, если ее текущая версия совпадает с ожидаемой
+     * (проверка и обновление выполняются атомарно). Обновление отсутствующего эпика игнорируется.
+     * @param epic Новая задача с указанным id
+     * @param expectedVersion Ожидаемый номер версии эпика (см. Task.getVersion)
+     * @return Сохраненный эпик (с новым номером версии) либо null, если эпик отсутствует
+     * @throws VersionConflictException если версия эпика отличается от ожидаемой.
      */
-    void updateEpic(Epic epic);
+    Epic updateEpic(Epic epic, long expectedVersion);
 
     /**
      * Получение списка задач
@@ -170,9 +244,212 @@ public interface TaskManager {
      */
     List<Task> getHistory();
 
+    /**
+     * Возвращает задачи всех типов с указанным статусом
+     * @param status Статус задач
+     * @return Перечень задач
+     */
+    default List<Task> getTasksByStatus(TaskStatus status) {
+        return getEntireTaskList().stream()
+                .filter(task -> task.getStatus() == status)
+                .toList();
+    }
+
+    /**
+     * Возвращает число задач всех типов по статусам
+     * @return Число задач для каждого статуса (в том числе нулевое)
+     */
+    default Map<TaskStatus, Integer> countByStatus() {
+        Map<TaskStatus, Integer> counts = new EnumMap<>(TaskStatus.class);
+        for (TaskStatus status : TaskStatus.values())
+            counts.put(status, 0);
+        getEntireTaskList().forEach(task -> counts.merge(task.getStatus(), 1, Integer::sum));
+        return counts;
+    }
+
+    /**
+     * Возвращает статистику задач: число задач по статусам и типам, суммарную продолжительность
+     * и занятость по дням. Реализация по умолчанию вычисляет статистику по перечню всех задач;
+     * менеджеры, поддерживающие статистику при каждом изменении, возвращают снимок за O(1).
+     * @return Снимок статистики
+     */
+    default TaskStatistics getStatistics() {
+        StatisticsIndex statistics = new StatisticsIndex();
+        getEntireTaskList().forEach(task -> statistics.replace(null, task));
+        return statistics.snapshot();
+    }
+
+    /**
+     * Ищет задачи всех типов по названию и описанию. Регистр не учитывается,
+     * каждое слово запроса должно быть началом какого-либо слова задачи.
+     * @param query Текст запроса
+     * @param limit Максимальное число задач
+     * @return Перечень задач в порядке возрастания идентификаторов
+     */
+    default List<Task> search(String query, int limit) {
+        Set<String> terms = TextIndex.tokenize(query);
+        if (terms.isEmpty())
+            return List.of();
+        return getEntireTaskList().stream()
+                .filter(task -> TextIndex.matches(task, terms))
+                .sorted(Comparator.comparingInt(Task::getId))
+                .limit(Math.max(limit, 0))
+                .toList();
+    }
+
     /**
      * Возвращает перечень задач, отсортированных по времени выполнения
      * @return Перечень задач
      */
     List<Task> getPrioritizedTasks();
+
+    /**
+     * Возвращает задачи, пересекающиеся во времени с интервалом [from, to),
+     * отсортированные по времени выполнения
+     * @param from Начало интервала (null - без ограничения)
+     * @param to Окончание интервала (null - без ограничения)
+     * @return Перечень задач
+     */
+    default List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return getPrioritizedTasks(from, to, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Возвращает не более limit задач, пересекающихся во времени с интервалом [from, to),
+     * отсортированных по времени выполнения (первая страница постраничной выборки)
+     * @param from Начало интервала (null - без ограничения)
+     * @param to Окончание интервала (null - без ограничения)
+     * @param limit Максимальное число задач
+     * @return Перечень задач
+     */
+    default List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to, int limit) {
+        return getPrioritizedTasks().stream()
+                .filter(task -> (to == null || task.getStartTime().isBefore(to)) &&
+                        (from == null || !task.getStartTime().isBefore(from) || task.getEndTime().isAfter(from)))
+                .limit(Math.max(limit, 0))
+                .toList();
+    }
+
+    /**
+     * Возвращает не более limit задач, начинающихся строго после времени after и до времени to,
+     * отсортированных по времени выполнения (следующая страница постраничной выборки)
+     * @param after Время начала последней полученной задачи (null - с начала)
+     * @param to Окончание интервала (null - без ограничения)
+     * @param limit Максимальное число задач
+     * @return Перечень задач
+     */
+    default List<Task> getPrioritizedTasksAfter(LocalDateTime after, LocalDateTime to, int limit) {
+        return getPrioritizedTasks().stream()
+                .filter(task -> (to == null || task.getStartTime().isBefore(to)) &&
+                        (after == null || task.getStartTime().isAfter(after)))
+                .limit(Math.max(limit, 0))
+                .toList();
+    }
+
+    /**
+     * Ищет самый ранний свободный интервал времени заданной длины, не пересекающийся с задачами
+     * @param length Длина интервала (положительная)
+     * @param notBefore Самое раннее допустимое начало интервала
+     * @param notAfter Самое позднее допустимое окончание интервала (null - без ограничения)
+     * @return Время начала интервала либо пустое значение, если свободного интервала нет
+     * @throws IllegalArgumentException если длина интервала не положительна
+     */
+    default Optional<LocalDateTime> findFreeSlot(Duration length, LocalDateTime notBefore, LocalDateTime notAfter) {
+        return TimeIndex.firstGap(getPrioritizedTasks(notBefore, notAfter), length, notBefore, notAfter);
+    }
+
+    /**
+     * Размещает задачи и подзадачи, имеющие продолжительность, но не имеющие времени начала,
+     * в свободные промежутки временной шкалы в интервале [notBefore, notAfter).
+     * Подзадачи одного эпика размещаются подряд; начатые задачи размещаются раньше новых,
+     * длинные - раньше коротких; завершенные задачи и задачи нулевой длины не размещаются.
+     * План применяется атомарно (см. executeTransaction).
+     * @param notBefore Самое раннее допустимое начало задач
+     * @param notAfter Самое позднее допустимое окончание задач (null - без ограничения)
+     * @param dryRun true - только построить план, не изменяя задачи
+     * @return План размещения
+     */
+    default SchedulePlan autoSchedule(LocalDateTime notBefore, LocalDateTime notAfter, boolean dryRun) {
+        if (dryRun)
+            return new TaskScheduler(this).plan(notBefore, notAfter);
+        SchedulePlan[] plan = new SchedulePlan[1];
+        // План строится внутри транзакции, поэтому не устаревает до применения
+        executeTransaction(transaction -> {
+            plan[0] = new TaskScheduler(this).plan(notBefore, notAfter);
+            TaskScheduler.apply(plan[0], transaction);
+        });
+        return plan[0];
+    }
+
+    /**
+     * Добавляет зависимость задачи от блокирующей задачи: задача не может начаться до окончания блокирующей.
+     * В зависимостях участвуют задачи и подзадачи; зависимости удаляются вместе с задачами.
+     * Повторное добавление зависимости игнорируется.
+     * @param taskId Идентификатор зависимой задачи
+     * @param blockerId Идентификатор блокирующей задачи
+     * @throws NotFoundIdException если задача или подзадача с указанным Id не найдена
+     * @throws DependencyCycleException если зависимость образует цикл зависимостей
+     */
+    void addDependency(int taskId, int blockerId);
+
+    /**
+     * Удаляет зависимость задачи от блокирующей задачи (отсутствующая зависимость игнорируется)
+     * @param taskId Идентификатор зависимой задачи
+     * @param blockerId Идентификатор блокирующей задачи
+     * @throws NotFoundIdException если задача или подзадача с указанным Id не найдена
+     */
+    void removeDependency(int taskId, int blockerId);
+
+    /**
+     * Возвращает задачи, блокирующие задачу
+     * @param taskId Идентификатор зависимой задачи
+     * @return Перечень блокирующих задач в порядке добавления зависимостей
+     * @throws NotFoundIdException если задача или подзадача с указанным Id не найдена
+     */
+    List<Task> getBlockers(int taskId);
+
+    /**
+     * Возвращает задачи и подзадачи в порядке зависимостей: каждая задача следует за блокирующими ее задачами
+     * @return Перечень задач и подзадач
+     */
+    List<Task> getDependencyOrder();
+
+    /**
+     * Возвращает критический путь: цепочку зависимых задач с наибольшей суммарной продолжительностью,
+     * определяющую минимальное время выполнения всех задач
+     * @return Перечень задач пути от первой к последней (пустой, если нет задач ненулевой продолжительности)
+     */
+    List<Task> getCriticalPath();
+
+    /**
+     * Подписывает получателя на события изменения задач с синхронной доставкой:
+     * получатель вызывается потоком, изменившим задачу, сразу после изменения
+     * (изменения транзакции - при ее фиксации). Получатель не должен изменять задачи менеджера.
+     * Исключение получателя не прерывает изменение: оно передается обработчику неперехваченных
+     * исключений потока, а событие доставляется остальным получателям.
+     * @param listener Получатель событий
+     * @return Подписка (закрывается для прекращения доставки)
+     */
+    TaskSubscription subscribe(TaskListener listener);
+
+    /**
+     * Подписывает получателя на события изменения задач с асинхронной доставкой
+     * через кольцевой буфер ограниченного размера. Изменения задач не ожидают получателя;
+     * при заполнении буфера вытесняются самые старые события (см. TaskSubscription.getDroppedEvents).
+     * @param listener Получатель событий
+     * @param capacity Емкость буфера событий
+     * @return Подписка (закрывается для прекращения доставки)
+     */
+    TaskSubscription subscribeAsync(TaskListener listener, int capacity);
+
+    /**
+     * Выполняет группу изменений атомарно: либо применяются все изменения, либо ни одно.
+     * Изменения проверяются относительно состояния с учетом предыдущих изменений группы.
+     * Пересчет эпиков, удаление из истории просмотров и сохранение состояния
+     * выполняются однократно при фиксации транзакции.
+     * @param operations Изменения, выполняемые через переданный объект транзакции
+     * @throws RuntimeException исключение, прервавшее транзакцию (изменения отменены)
+     * @throws IllegalStateException при попытке начать вложенную транзакцию
+     */
+    void executeTransaction(Consumer<TaskTransaction> operations);
 }
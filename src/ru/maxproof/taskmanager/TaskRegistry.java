@@ -0,0 +1,43 @@
+package ru.maxproof.taskmanager;
+
+/**
+ * Реестр задач одного типа, поддерживающий общие для менеджера вторичные индексы.
+ * Все изменения таблицы (в том числе через values().removeIf и Map.replaceAll)
+ * проходят через put(int, T) и remove(int).
+ * @param <T> Тип задач реестра
+ */
+class TaskRegistry<T extends Task> extends IntMap<T> {
+
+    private final TaskIndex[] indexes;
+
+
+    TaskRegistry(TaskIndex... indexes) {
+        this.indexes = indexes;
+    }
+
+    private void replaceInIndexes(T oldValue, T newValue) {
+        for (TaskIndex index : indexes)
+            index.replace(oldValue, newValue);
+    }
+
+    @Override
+    public T put(int key, T value) {
+        T oldValue = super.put(key, value);
+        replaceInIndexes(oldValue, value);
+        return oldValue;
+    }
+
+    @Override
+    public T remove(int key) {
+        T oldValue = super.remove(key);
+        if (oldValue != null)
+            replaceInIndexes(oldValue, null);
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        values().forEach(value -> replaceInIndexes(value, null));
+        super.clear();
+    }
+}
@@ -0,0 +1,228 @@
+package ru.maxproof.taskmanager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Размещение задач и подзадач, имеющих продолжительность, но не имеющих времени начала,
+ * в свободные промежутки временной шкалы.
+ * <p>
+ * Задачи размещаются группами: подзадачи одного эпика образуют одну группу (и размещаются
+ * подряд в порядке создания), каждая задача - отдельную группу. Группы упорядочиваются
+ * по приоритету (сначала начатые - IN_PROGRESS, затем новые), затем по убыванию суммарной
+ * продолжительности, затем по времени создания. Завершенные задачи не размещаются.
+ * <p>
+ * Каждая задача помещается в самый ранний промежуток достаточной длины (first fit);
+ * подзадачи эпика - по возможности одним блоком в промежуток, вмещающий всю группу.
+ * Промежутки хранятся в дереве отрезков с максимумом длины, поэтому поиск промежутка
+ * и его уменьшение выполняются за O(log g), а размещение k задач - за O(n + k log k + k log g).
+ */
+class TaskScheduler {
+
+    private static final long MINUTE_NANOS = Duration.ofMinutes(1).toNanos();
+
+    /**
+     * Дерево отрезков над длинами промежутков (узел хранит максимальную длину поддерева)
+     */
+    private static class GapTree {
+
+        private final long[] starts;
+        private final long[] max;
+        private final int leaves;
+
+        GapTree(long[] starts, long[] lengths, int count) {
+            this.starts = starts;
+            int size = 1;
+            while (size < count)
+                size *= 2;
+            leaves = size;
+            max = new long[2 * size];
+            System.arraycopy(lengths, 0, max, size, count);
+            for (int node = size - 1; node > 0; node--)
+                max[node] = Math.max(max[2 * node], max[2 * node + 1]);
+        }
+
+        /**
+         * Занимает начало самого раннего промежутка длиной не менее length
+         * @return Смещение начала занятого интервала либо -1, если промежутка нет
+         */
+        long allocate(long length) {
+
+            if (max[1] < length)
+                return -1;
+            int node = 1;
+            while (node < leaves)
+                node = max[2 * node] >= length ? 2 * node : 2 * node + 1;
+            int gap = node - leaves;
+            long start = starts[gap];
+            starts[gap] += length;
+            if (max[node] != Long.MAX_VALUE)
+                max[node] -= length;
+            for (node /= 2; node > 0; node /= 2)
+                max[node] = Math.max(max[2 * node], max[2 * node + 1]);
+            return start;
+        }
+    }
+
+    private record Group(List<Task> tasks, int priority, long totalLength, int firstId) {}
+
+    private final TaskManager manager;
+
+
+    TaskScheduler(TaskManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Время от base до time в наносекундах (с насыщением при переполнении)
+     */
+    private static long nanosBetween(LocalDateTime base, LocalDateTime time) {
+        try {
+            return Duration.between(base, time).toNanos();
+        } catch (ArithmeticException e) {
+            return time.isAfter(base) ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+    }
+
+    private static long lengthOf(Task task) {
+        try {
+            return task.getDuration().toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Строит дерево свободных промежутков интервала [notBefore, notAfter).
+     * Смещения отсчитываются от notBefore в наносекундах.
+     */
+    private GapTree buildGaps(LocalDateTime notBefore, LocalDateTime notAfter) {
+
+        List<Task> timeline = manager.getPrioritizedTasks(notBefore, notAfter);
+        long limit = notAfter == null ? Long.MAX_VALUE : nanosBetween(notBefore, notAfter);
+        long[] starts = new long[timeline.size() + 1];
+        long[] lengths = new long[timeline.size() + 1];
+        int count = 0;
+        long cursor = 0;
+        for (Task task : timeline) {
+            long start = nanosBetween(notBefore, task.getStartTime());
+            if (start > cursor) {
+                starts[count] = cursor;
+                lengths[count++] = Math.min(start, limit) - cursor;
+            }
+            long end = nanosBetween(notBefore, task.getEndTime());
+            if (end > cursor)
+                cursor = end;
+            else if (start == cursor)
+                // Задачи не могут начинаться одновременно с задачей нулевой длины
+                cursor += MINUTE_NANOS;
+        }
+        if (cursor < limit) {
+            starts[count] = cursor;
+            lengths[count++] = limit == Long.MAX_VALUE ? Long.MAX_VALUE : limit - cursor;
+        }
+        return new GapTree(starts, lengths, count);
+    }
+
+    /**
+     * Формирует упорядоченные группы размещаемых задач
+     */
+    private List<Group> collectGroups() {
+
+        List<Group> groups = new ArrayList<>();
+        Map<Integer, List<Task>> epicGroups = new HashMap<>();
+        for (Task task : manager.getTasks()) {
+            if (isUnscheduled(task))
+                groups.add(group(List.of(task)));
+        }
+        for (Subtask subtask : manager.getSubtasks()) {
+            if (isUnscheduled(subtask))
+                epicGroups.computeIfAbsent(subtask.getEpicId(), k -> new ArrayList<>()).add(subtask);
+        }
+        for (List<Task> subtasks : epicGroups.values()) {
+            subtasks.sort(Comparator.comparingInt(Task::getId));
+            groups.add(group(subtasks));
+        }
+        groups.sort(Comparator.comparingInt(Group::priority)
+                .thenComparing(Comparator.comparingLong(Group::totalLength).reversed())
+                .thenComparingInt(Group::firstId));
+        return groups;
+    }
+
+    private static boolean isUnscheduled(Task task) {
+        return !task.hasStartTime() && task.hasDuration() && !task.isDone();
+    }
+
+    private static Group group(List<Task> tasks) {
+
+        int priority = Integer.MAX_VALUE;
+        long totalLength = 0;
+        for (Task task : tasks) {
+            priority = Math.min(priority, task.getStatus() == TaskStatus.IN_PROGRESS ? 0 : 1);
+            long length = lengthOf(task);
+            totalLength = length > Long.MAX_VALUE - totalLength ? Long.MAX_VALUE : totalLength + length;
+        }
+        return new Group(tasks, priority, totalLength, tasks.getFirst().getId());
+    }
+
+    /**
+     * Строит план размещения без изменения менеджера
+     * @param notBefore Самое раннее допустимое начало задач
+     * @param notAfter Самое позднее допустимое окончание задач (null - без ограничения)
+     * @return План размещения
+     */
+    SchedulePlan plan(LocalDateTime notBefore, LocalDateTime notAfter) {
+
+        Objects.requireNonNull(notBefore);
+        GapTree gaps = buildGaps(notBefore, notAfter);
+        List<Task> scheduled = new ArrayList<>();
+        List<Task> unscheduled = new ArrayList<>();
+        for (Group group : collectGroups()) {
+            // Подзадачи эпика по возможности размещаются одним блоком, иначе - по отдельности
+            long blockStart = group.tasks().size() > 1 && isPlaceable(group.totalLength()) ?
+                    gaps.allocate(group.totalLength()) : -1;
+            for (Task task : group.tasks()) {
+                long length = lengthOf(task);
+                long start;
+                if (blockStart >= 0) {
+                    start = blockStart;
+                    blockStart += length;
+                } else {
+                    start = isPlaceable(length) ? gaps.allocate(length) : -1;
+                }
+                if (start < 0)
+                    unscheduled.add(task);
+                else
+                    scheduled.add(withStartTime(task, notBefore.plusNanos(start)));
+            }
+        }
+        return new SchedulePlan(List.copyOf(scheduled), List.copyOf(unscheduled));
+    }
+
+    /**
+     * Задачи нулевой длины не размещаются: промежуток не уменьшается,
+     * и следующая задача начиналась бы одновременно с ними
+     */
+    private static boolean isPlaceable(long length) {
+        return length > 0 && length != Long.MAX_VALUE;
+    }
+
+    private static Task withStartTime(Task task, LocalDateTime startTime) {
+        return task instanceof Subtask subtask ?
+                new TaskBuilder(subtask).setStartTime(startTime).buildSubtask() :
+                new TaskBuilder(task).setStartTime(startTime).buildTask();
+    }
+
+    /**
+     * Применяет план в составе транзакции
+     */
+    static void apply(SchedulePlan plan, TaskTransaction transaction) {
+        for (Task task : plan.scheduled()) {
+            if (task instanceof Subtask subtask)
+                transaction.updateSubtask(subtask);
+            else
+                transaction.updateTask(task);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.maxproof.taskmanager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Снимок статистики задач менеджера (см. TaskManager.getStatistics)
+ * @param statusCounts Число задач всех типов по статусам (в том числе нулевое)
+ * @param taskCount Число простых задач
+ * @param subtaskCount Число подзадач
+ * @param epicCount Число эпиков
+ * @param scheduledDuration Суммарная продолжительность задач и подзадач с заданным временем выполнения
+ * @param dailyUtilization Время, занятое задачами и подзадачами, по календарным дням в порядке возрастания
+ *                         (задача, переходящая через полночь, учитывается в обоих днях); неизменяемое
+ *                         представление, дни без занятости отсутствуют
+ */
+public record TaskStatistics(Map<TaskStatus, Integer> statusCounts,
+                             int taskCount,
+                             int subtaskCount,
+                             int epicCount,
+                             Duration scheduledDuration,
+                             Map<LocalDate, Duration> dailyUtilization) {
+
+    /**
+     * Возвращает долю дня, занятую задачами (задачи не пересекаются во времени, поэтому не более 1)
+     * @param day Календарный день
+     * @return Доля дня от 0 до 1
+     */
+    public double utilization(LocalDate day) {
+        Duration busy = dailyUtilization.getOrDefault(day, Duration.ZERO);
+        return (double) busy.toSeconds() / Duration.ofDays(1).toSeconds();
+    }
+}
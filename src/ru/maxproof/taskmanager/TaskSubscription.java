@@ -0,0 +1,21 @@
+package ru.maxproof.taskmanager;
+
+/**
+ * Подписка на события изменения задач (см. TaskManager.subscribe)
+ */
+public interface TaskSubscription extends AutoCloseable {
+
+    /**
+     * Возвращает число событий, вытесненных из заполненного буфера асинхронной подписки
+     * (пропуски также видны по разрывам в порядковых номерах событий)
+     * @return Число потерянных событий (для синхронной подписки - 0)
+     */
+    long getDroppedEvents();
+
+    /**
+     * Прекращает подписку. Асинхронная подписка доставляет события,
+     * накопленные в буфере до закрытия, после чего поток доставки завершается.
+     */
+    @Override
+    void close();
+}
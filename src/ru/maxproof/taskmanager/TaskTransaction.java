@@ -0,0 +1,67 @@
+package ru.maxproof.taskmanager;
+
+import ru.maxproof.exceptions.NotFoundIdException;
+import ru.maxproof.exceptions.OverlappingTasksException;
+
+/**
+ * Изменения, выполняемые в составе транзакции (см. TaskManager.executeTransaction).
+ * Каждая операция проверяется относительно состояния менеджера с учетом предыдущих операций
+ * транзакции; исключение любой операции отменяет все изменения транзакции.
+ * Методы имеют тот же смысл и те же исключения, что и одноименные методы TaskManager.
+ */
+public interface TaskTransaction {
+
+    /**
+     * Регистрирует черновую задачу
+     * @throws NotFoundIdException если задача имеет ненулевой Id.
+     * @throws OverlappingTasksException если задача пересекается во времени с другой задачей.
+     */
+    Task createTask(Task draftTask);
+
+    /**
+     * Регистрирует черновую подзадачу (в том числе подзадачу эпика, созданного в этой же транзакции)
+     * @throws NotFoundIdException если задача имеет ненулевой Id или недопустимый Id эпика.
+     * @throws OverlappingTasksException если задача пересекается во времени с другой задачей.
+     */
+    Subtask createSubtask(Subtask draftSubtask);
+
+    /**
+     * Регистрирует черновую сложную задачу
+     * @throws NotFoundIdException если задача имеет ненулевой Id.
+     */
+    Epic createEpic(Epic draftEpic);
+
+    /**
+     * Обновляет простую задачу
+     * @throws NotFoundIdException если задача не найдена.
+     * @throws OverlappingTasksException если задача пересекается во времени с другой задачей.
+     */
+    void updateTask(Task task);
+
+    /**
+     * Обновляет подзадачу (в том числе переносит ее в другой эпик)
+     * @throws NotFoundIdException если подзадача или эпик не найдены.
+     * @throws OverlappingTasksException если задача пересекается во времени с другой задачей.
+     */
+    void updateSubtask(Subtask subtask);
+
+    /**
+     * Обновляет Epic задачу
+     */
+    void updateEpic(Epic epic);
+
+    /**
+     * Удаляет задачу
+     */
+    void removeTask(int id);
+
+    /**
+     * Удаляет подзадачу
+     */
+    void removeSubtask(int id);
+
+    /**
+     * Удаляет Epic задачу вместе с ее подзадачами
+     */
+    void removeEpic(int id);
+}
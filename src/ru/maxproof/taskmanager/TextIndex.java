@@ -0,0 +1,161 @@
+package ru.maxproof.taskmanager;
+
+import java.util.*;
+
+/**
+ * Полнотекстовый (инвертированный) индекс задач всех типов по названию и описанию.
+ * Текст разбивается на слова из букв и цифр, регистр не учитывается (ё не отличается от е).
+ * Слова запроса ищутся как префиксы слов задачи: задача найдена, если каждое слово
+ * запроса является началом какого-либо ее слова.
+ * Словарь упорядочен, поэтому слова с заданным префиксом выбираются диапазоном за O(log n).
+ */
+class TextIndex implements TaskIndex {
+
+    private final IntMap<Task> documents = new IntMap<>();                      // текущие версии задач
+    private final TreeMap<String, Set<Integer>> postings = new TreeMap<>();    // слово -> идентификаторы задач
+
+
+    /**
+     * Разбивает текст на слова с приведением к нижнему регистру
+     * @param text Текст (null - пустой текст)
+     * @return Различные слова текста в порядке появления
+     */
+    static Set<String> tokenize(String text) {
+
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null)
+            return tokens;
+        String folded = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static Set<String> tokenize(Task task) {
+        Set<String> tokens = tokenize(task.getName());
+        tokens.addAll(tokenize(task.getDescription()));
+        return tokens;
+    }
+
+    /**
+     * Проверяет соответствие задачи запросу без использования индекса
+     * @param task Задача
+     * @param terms Слова запроса (см. tokenize)
+     * @return true, если каждое слово запроса является началом какого-либо слова задачи
+     */
+    static boolean matches(Task task, Set<String> terms) {
+        Set<String> tokens = tokenize(task);
+        return terms.stream().allMatch(term -> tokens.stream().anyMatch(token -> token.startsWith(term)));
+    }
+
+    /**
+     * Изменение индекса при замене версии задачи: слова версий выделяются без обращения к индексу,
+     * поэтому конкурентный менеджер готовит изменение до захвата блокировки индекса (см. apply)
+     * @param oldTask Прежняя версия задачи (null - задача добавляется)
+     * @param oldTokens Слова прежней версии (null - текст не изменился)
+     * @param newTask Новая версия задачи (null - задача удаляется)
+     * @param newTokens Слова новой версии (null - текст не изменился)
+     */
+    record Change(Task oldTask, Set<String> oldTokens, Task newTask, Set<String> newTokens) {
+    }
+
+    @Override
+    public void replace(Task oldTask, Task newTask) {
+        apply(prepare(oldTask, newTask));
+    }
+
+    /**
+     * Вычисляет изменение индекса при замене версии задачи (индекс не используется)
+     */
+    static Change prepare(Task oldTask, Task newTask) {
+
+        // Текст не изменился (например, пересчет эпика): достаточно заменить версию задачи
+        if (oldTask != null && newTask != null &&
+                Objects.equals(oldTask.getName(), newTask.getName()) &&
+                Objects.equals(oldTask.getDescription(), newTask.getDescription()))
+            return new Change(oldTask, null, newTask, null);
+        return new Change(oldTask, oldTask == null ? Set.of() : tokenize(oldTask),
+                newTask, newTask == null ? Set.of() : tokenize(newTask));
+    }
+
+    /**
+     * Применяет изменение индекса, вычисленное prepare
+     */
+    void apply(Change change) {
+
+        Task oldTask = change.oldTask();
+        Task newTask = change.newTask();
+        if (change.newTokens() == null) {
+            documents.put(newTask.getId(), newTask);
+            return;
+        }
+        if (oldTask != null) {
+            documents.remove(oldTask.getId());
+            for (String token : change.oldTokens()) {
+                Set<Integer> ids = postings.get(token);
+                ids.remove(oldTask.getId());
+                if (ids.isEmpty())
+                    postings.remove(token);
+            }
+        }
+        if (newTask != null) {
+            documents.put(newTask.getId(), newTask);
+            for (String token : change.newTokens())
+                postings.computeIfAbsent(token, k -> new HashSet<>()).add(newTask.getId());
+        }
+    }
+
+    /**
+     * Возвращает идентификаторы задач, слова которых начинаются с префикса
+     */
+    private Collection<Integer> matchPrefix(String prefix) {
+
+        var range = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (range.size() == 1)
+            return range.firstEntry().getValue();
+        Set<Integer> ids = new HashSet<>();
+        range.values().forEach(ids::addAll);
+        return ids;
+    }
+
+    /**
+     * Ищет задачи, соответствующие запросу
+     * @param query Текст запроса
+     * @param limit Максимальное число задач
+     * @return Перечень задач в порядке возрастания идентификаторов
+     */
+    List<Task> search(String query, int limit) {
+
+        Set<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0)
+            return List.of();
+        List<Collection<Integer>> matches = new ArrayList<>();
+        for (String term : terms) {
+            Collection<Integer> ids = matchPrefix(term);
+            if (ids.isEmpty())
+                return List.of();
+            matches.add(ids);
+        }
+
+        // Пересечение начинается с самого короткого перечня
+        matches.sort(Comparator.comparingInt(Collection::size));
+        int[] ids = matches.getFirst().stream()
+                .filter(id -> matches.stream().skip(1).allMatch(other -> other.contains(id)))
+                .mapToInt(Integer::intValue)
+                .sorted()
+                .limit(limit)
+                .toArray();
+        List<Task> tasks = new ArrayList<>(ids.length);
+        for (int id : ids)
+            tasks.add(documents.get(id));
+        return tasks;
+    }
+}
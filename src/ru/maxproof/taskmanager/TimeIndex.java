@@ -0,0 +1,267 @@
+package ru.maxproof.taskmanager;
+
+import ru.maxproof.exceptions.OverlappingTasksException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Временная шкала задач: задачи с заданным временем выполнения, упорядоченные по времени начала.
+ * Задачи на шкале попарно не пересекаются во времени.
+ */
+class TimeIndex {
+
+    private static final Comparator<Task> startTimeComparator = Task::compareStartTime;
+
+    private final NavigableSet<Task> tasks;
+
+
+    /**
+     * Создает временную шкалу для использования в одном потоке
+     */
+    TimeIndex() {
+        this(new TreeSet<>(startTimeComparator));
+    }
+
+    private TimeIndex(NavigableSet<Task> tasks) {
+        this.tasks = tasks;
+    }
+
+    /**
+     * Создает временную шкалу, допускающую чтение без блокировок параллельно с изменениями.
+     * Изменения шкалы (вместе с предшествующей проверкой пересечений) должны выполняться
+     * под внешней блокировкой.
+     * @return Временная шкала
+     */
+    static TimeIndex concurrent() {
+        return new TimeIndex(new ConcurrentSkipListSet<>(startTimeComparator));
+    }
+
+    void add(Task task) {
+        tasks.add(task);
+    }
+
+    /**
+     * Удаляет задачу со шкалы. Задача находится по времени начала за O(log n),
+     * поэтому достаточно версии задачи, хранящейся в реестре менеджера
+     * (задачи без времени выполнения на шкале отсутствуют и пропускаются)
+     * @param task Удаляемая задача
+     */
+    void remove(Task task) {
+        if (task.isValidTime())
+            tasks.remove(task);
+    }
+
+    /**
+     * Удаляет группу задач со шкалы за O(k log n)
+     * @param removed Удаляемые задачи
+     */
+    void removeAll(Iterable<? extends Task> removed) {
+        for (Task task : removed)
+            remove(task);
+    }
+
+    void clear() {
+        tasks.clear();
+    }
+
+    /**
+     * Возвращает копию шкалы
+     * @return Перечень задач, упорядоченных по времени начала
+     */
+    List<Task> toList() {
+        return List.copyOf(tasks);
+    }
+
+    /**
+     * Возвращает задачи шкалы, пересекающиеся с интервалом [from, to).
+     * Задачи на шкале не пересекаются, поэтому начавшейся до from может быть
+     * только одна задача - ближайшая слева; остальные выбираются из подмножества шкалы
+     * без копирования всей шкалы, за O(log n + k) операций.
+     * @param from Начало интервала (null - без ограничения)
+     * @param to Окончание интервала (null - без ограничения)
+     * @param limit Максимальное число задач
+     * @return Перечень задач, упорядоченных по времени начала
+     */
+    List<Task> window(LocalDateTime from, LocalDateTime to, int limit) {
+
+        List<Task> result = new ArrayList<>();
+        if (limit <= 0 || (from != null && to != null && !from.isBefore(to)))
+            return result;
+        NavigableSet<Task> range = tasks;
+        if (from != null) {
+            Task before = tasks.lower(probe(from));
+            if (before != null && before.getEndTime().isAfter(from) && (to == null || before.getStartTime().isBefore(to)))
+                result.add(before);
+            range = range.tailSet(probe(from), true);
+        }
+        return collect(range, to, limit, result);
+    }
+
+    /**
+     * Возвращает задачи шкалы, начинающиеся строго после указанного времени и до времени to
+     * (продолжение постраничной выборки: курсор - время начала последней полученной задачи)
+     * @param after Курсор (null - с начала шкалы)
+     * @param to Окончание интервала (null - без ограничения)
+     * @param limit Максимальное число задач
+     * @return Перечень задач, упорядоченных по времени начала
+     */
+    List<Task> after(LocalDateTime after, LocalDateTime to, int limit) {
+
+        List<Task> result = new ArrayList<>();
+        if (limit <= 0 || (after != null && to != null && !after.isBefore(to)))
+            return result;
+        NavigableSet<Task> range = after == null ? tasks : tasks.tailSet(probe(after), false);
+        return collect(range, to, limit, result);
+    }
+
+    private static List<Task> collect(NavigableSet<Task> range, LocalDateTime to, int limit, List<Task> result) {
+
+        if (to != null)
+            range = range.headSet(probe(to), false);
+        for (Task task : range) {
+            if (result.size() >= limit)
+                break;
+            result.add(task);
+        }
+        return result;
+    }
+
+    /**
+     * Ищет самый ранний свободный интервал заданной длины. Поиск начинается с ближайшей
+     * к notBefore задачи (O(log n)), далее последовательно просматриваются промежутки
+     * между задачами до первого подходящего (O(k) для k просмотренных промежутков).
+     * @param length Длина интервала (положительная)
+     * @param notBefore Самое раннее допустимое начало интервала
+     * @param notAfter Самое позднее допустимое окончание интервала (null - без ограничения)
+     * @return Время начала интервала либо пустое значение, если свободного интервала нет
+     */
+    Optional<LocalDateTime> findFreeSlot(Duration length, LocalDateTime notBefore, LocalDateTime notAfter) {
+
+        // Задача, начавшаяся до notBefore, может еще выполняться - просмотр начинается с нее
+        Task before = tasks.lower(probe(notBefore));
+        NavigableSet<Task> range = before == null ? tasks.tailSet(probe(notBefore), true) : tasks.tailSet(before, true);
+        return firstGap(range, length, notBefore, notAfter);
+    }
+
+    /**
+     * Ищет первый промежуток заданной длины между задачами, упорядоченными по времени начала
+     * @param timeline Задачи, упорядоченные по времени начала (включая задачу, выполняющуюся в момент notBefore)
+     * @param length Длина интервала (положительная)
+     * @param notBefore Самое раннее допустимое начало интервала
+     * @param notAfter Самое позднее допустимое окончание интервала (null - без ограничения)
+     * @return Время начала интервала либо пустое значение, если свободного интервала нет
+     */
+    static Optional<LocalDateTime> firstGap(Iterable<Task> timeline, Duration length,
+                                            LocalDateTime notBefore, LocalDateTime notAfter) {
+
+        if (length.isNegative() || length.isZero())
+            throw new IllegalArgumentException("Длина интервала должна быть положительной");
+        LocalDateTime start = Objects.requireNonNull(notBefore);
+        for (Task task : timeline) {
+            if (notAfter != null && start.plus(length).isAfter(notAfter))
+                return Optional.empty();
+            if (!start.plus(length).isAfter(task.getStartTime()))
+                return Optional.of(start);
+            if (task.getEndTime().isAfter(start))
+                start = task.getEndTime();
+            else if (task.getStartTime().equals(start))
+                // Задачи не могут начинаться одновременно, поэтому интервал
+                // не может начаться в момент задачи нулевой длины
+                start = start.plusMinutes(1);
+        }
+        if (notAfter != null && start.plus(length).isAfter(notAfter))
+            return Optional.empty();
+        return Optional.of(start);
+    }
+
+    /**
+     * Создает задачу-образец для поиска на шкале по времени начала
+     */
+    private static Task probe(LocalDateTime startTime) {
+        return new TaskBuilder().setStartTime(startTime).buildTask();
+    }
+
+    /**
+     * Проверка, что две задачи не пересекаются во времени
+     * @param first Задача, начинающаяся не позже второй
+     * @param second Задача, начинающаяся не раньше первой
+     * @return true, если задачи не пересекаются во времени
+     */
+    private static boolean checkTasksDisjointInTime(Task first, Task second) {
+
+        // Если начало второй задачи настает раньше, чем оканчивается первая,
+        // либо задачи запускаются одновременно -
+        // задачи пересекаются во времени
+        return Task.compareTime(second.getStartSecond(), second.getStartNano(),
+                        first.getEndSecond(), first.getEndNano()) >= 0 &&
+                Task.compareStartTime(first, second) != 0;
+    }
+
+    /**
+     * Проверка группы новых задач на пересечение между собой и с задачами на временной шкале.
+     * Задачи группы упорядочиваются по времени начала и проверяются однократным проходом
+     * (сравниваются соседние задачи), затем каждая сравнивается с соседями на шкале.
+     * Требует O(k log k + k log n) операций.
+     * @param batch Проверяемые задачи
+     * @throws OverlappingTasksException Если задачи пересекаются во времени
+     */
+    void checkTasksInTime(List<? extends Task> batch) {
+        checkBatchDisjoint(batch).forEach(this::checkTaskInTime);
+    }
+
+    /**
+     * Проверка группы задач на пересечение между собой однократным проходом
+     * по задачам, упорядоченным по времени начала. Требует O(k log k) операций.
+     * @param batch Проверяемые задачи
+     * @return Задачи группы с заданным временем, упорядоченные по времени начала
+     * @throws OverlappingTasksException Если задачи пересекаются во времени
+     */
+    static List<Task> checkBatchDisjoint(List<? extends Task> batch) {
+
+        List<Task> timed = new ArrayList<>(batch.size());
+        for (Task task : batch) {
+            if (task.isValidTime())
+                timed.add(task);
+        }
+        timed.sort(startTimeComparator);
+        for (int i = 1; i < timed.size(); i++) {
+            if (!checkTasksDisjointInTime(timed.get(i - 1), timed.get(i)))
+                throw new OverlappingTasksException("Недопустимое пересечение задач во времени");
+        }
+        return timed;
+    }
+
+    /**
+     * Проверка задачи на пересечение с другими задачами на временной шкале.
+     * Задачи на шкале попарно не пересекаются, поэтому достаточно сравнить проверяемую задачу
+     * с ближайшими соседями по времени начала, что требует O(log n) операций.
+     * @param task Проверяемая задача
+     * @throws OverlappingTasksException Если задача пересекается с имеющейся задачей
+     */
+    void checkTaskInTime(Task task) {
+
+        if (!task.isValidTime())
+            return;
+
+        // Ближайшие соседи слева и справа (предыдущая версия самой задачи пропускается)
+        Task before = tasks.floor(task);
+        if (before != null && before.getId() == task.getId())
+            before = tasks.lower(before);
+        Task after = tasks.ceiling(task);
+        if (after != null && after.getId() == task.getId())
+            after = tasks.higher(after);
+
+        if ((before != null && !checkTasksDisjointInTime(before, task)) ||
+                (after != null && !checkTasksDisjointInTime(task, after)))
+            throw new OverlappingTasksException("Недопустимое пересечение задач во времени");
+    }
+}
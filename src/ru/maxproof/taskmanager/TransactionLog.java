@@ -0,0 +1,192 @@
+package ru.maxproof.taskmanager;
+
+import java.util.*;
+
+/**
+ * Журнал транзакции менеджера задач. Операции транзакции применяются к менеджеру сразу,
+ * поэтому проверки (в том числе пересечений во времени) выполняются относительно состояния
+ * с учетом предыдущих операций. Перед каждой операцией журнал запоминает исходные версии
+ * затрагиваемых задач и эпиков; при отмене транзакции затронутые задачи возвращаются
+ * к исходным версиям, а агрегаты затронутых эпиков строятся заново.
+ * Стоимость отмены пропорциональна числу затронутых задач, а не размеру менеджера.
+ * <p>
+ * Удаление задач из истории просмотров и пересчет эпиков откладываются менеджером
+ * до фиксации транзакции (см. deferHistoryRemoval, deferEpicRefresh).
+ */
+class TransactionLog implements TaskTransaction {
+
+    private final TaskManager manager;
+    private final Map<Integer, Task> taskRegistry;
+    private final Map<Integer, Subtask> subtaskRegistry;
+    private final Map<Integer, Epic> epicRegistry;
+    private final Map<Integer, EpicAggregate> epicAggregates;
+    private final TimeIndex timeIndex;
+
+    private final Map<Integer, Task> originals = new LinkedHashMap<>();    // null - задача отсутствовала
+    private final Set<Integer> deferredEpics = new LinkedHashSet<>();
+    private final List<Integer> deferredHistoryRemovals = new ArrayList<>();
+
+
+    TransactionLog(TaskManager manager,
+                   Map<Integer, Task> taskRegistry,
+                   Map<Integer, Subtask> subtaskRegistry,
+                   Map<Integer, Epic> epicRegistry,
+                   Map<Integer, EpicAggregate> epicAggregates,
+                   TimeIndex timeIndex) {
+        this.manager = manager;
+        this.taskRegistry = taskRegistry;
+        this.subtaskRegistry = subtaskRegistry;
+        this.epicRegistry = epicRegistry;
+        this.epicAggregates = epicAggregates;
+        this.timeIndex = timeIndex;
+    }
+
+    /**
+     * Запоминает исходную версию задачи любого типа (однократно за транзакцию)
+     */
+    private void touch(int id) {
+
+        if (originals.containsKey(id))
+            return;
+        Task current = taskRegistry.get(id);
+        if (current == null)
+            current = subtaskRegistry.get(id);
+        if (current == null)
+            current = epicRegistry.get(id);
+        originals.put(id, current);
+    }
+
+    private <T extends Task> T created(T task) {
+        originals.putIfAbsent(task.getId(), null);
+        return task;
+    }
+
+    @Override
+    public Task createTask(Task draftTask) {
+        return created(manager.createTask(draftTask));
+    }
+
+    @Override
+    public Subtask createSubtask(Subtask draftSubtask) {
+        touch(draftSubtask.getEpicId());
+        return created(manager.createSubtask(draftSubtask));
+    }
+
+    @Override
+    public Epic createEpic(Epic draftEpic) {
+        return created(manager.createEpic(draftEpic));
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        touch(task.getId());
+        manager.updateTask(task);
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        Subtask oldSubtask = subtaskRegistry.get(subtask.getId());
+        touch(subtask.getId());
+        if (oldSubtask != null)
+            touch(oldSubtask.getEpicId());
+        touch(subtask.getEpicId());
+        manager.updateSubtask(subtask);
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        touch(epic.getId());
+        manager.updateEpic(epic);
+    }
+
+    @Override
+    public void removeTask(int id) {
+        touch(id);
+        manager.removeTask(id);
+    }
+
+    @Override
+    public void removeSubtask(int id) {
+        Subtask subtask = subtaskRegistry.get(id);
+        touch(id);
+        if (subtask != null)
+            touch(subtask.getEpicId());
+        manager.removeSubtask(id);
+    }
+
+    @Override
+    public void removeEpic(int id) {
+        touch(id);
+        // Состав эпика берется из агрегата: опубликованная версия эпика внутри транзакции может быть неактуальна
+        EpicAggregate aggregate = epicAggregates.get(id);
+        if (aggregate != null)
+            aggregate.subtaskIds().forEach(this::touch);
+        manager.removeEpic(id);
+    }
+
+    /**
+     * Откладывает удаление задачи из истории просмотров до фиксации транзакции
+     */
+    void deferHistoryRemoval(int id) {
+        deferredHistoryRemovals.add(id);
+    }
+
+    /**
+     * Откладывает публикацию новой версии эпика до фиксации транзакции
+     */
+    void deferEpicRefresh(int epicId) {
+        deferredEpics.add(epicId);
+    }
+
+    List<Integer> getDeferredHistoryRemovals() {
+        return deferredHistoryRemovals;
+    }
+
+    Set<Integer> getDeferredEpics() {
+        return deferredEpics;
+    }
+
+    /**
+     * Возвращает затронутые задачи к исходным версиям
+     */
+    void rollback() {
+
+        // Удаление текущих версий затронутых задач
+        for (int id : originals.keySet()) {
+            Task current = taskRegistry.remove(id);
+            if (current == null)
+                current = subtaskRegistry.remove(id);
+            if (current != null)
+                timeIndex.remove(current);
+            epicRegistry.remove(id);
+            epicAggregates.remove(id);
+        }
+
+        // Восстановление исходных версий
+        for (Task original : originals.values()) {
+            if (original instanceof Epic epic) {
+                epicRegistry.put(epic.getId(), epic);
+            } else if (original instanceof Subtask subtask) {
+                subtaskRegistry.put(subtask.getId(), subtask);
+                if (subtask.isValidTime())
+                    timeIndex.add(subtask);
+            } else if (original != null) {
+                taskRegistry.put(original.getId(), original);
+                if (original.isValidTime())
+                    timeIndex.add(original);
+            }
+        }
+
+        // Агрегаты эпиков строятся по исходному составу эпиков
+        for (Task original : originals.values()) {
+            if (original instanceof Epic epic) {
+                EpicAggregate aggregate = new EpicAggregate();
+                for (int subtaskId : epic.getSubtasks())
+                    aggregate.addSubtask(subtaskRegistry.get(subtaskId));
+                epicAggregates.put(epic.getId(), aggregate);
+            }
+        }
+        deferredEpics.clear();
+        deferredHistoryRemovals.clear();
+    }
+}
@@ -0,0 +1,108 @@
+package ru.maxproof.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.maxproof.taskmanager.Task;
+import ru.maxproof.taskmanager.TaskBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoardRegistryTest {
+
+    private static final int PORT = 8081;
+
+    Path directory;
+    BoardRegistry boards;
+    HttpTaskServer server;
+    HttpClient client;
+
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("boards");
+        boards = BoardRegistry.open(directory, Duration.ZERO, 2, 0);
+        server = new HttpTaskServer(PORT, HttpTaskServer.ExecutionMode.THREAD_POOL, 2, 0, boards);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.stop();
+    }
+
+    private HttpResponse<String> sendRequest(String method, String path, Object data)
+            throws IOException, InterruptedException {
+
+        var requestBuilder = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path));
+        requestBuilder.version(HttpClient.Version.HTTP_1_1);
+        requestBuilder.method(method, data == null ? HttpRequest.BodyPublishers.noBody() :
+                HttpRequest.BodyPublishers.ofString(TaskConverter.toJson(data), StandardCharsets.UTF_8));
+        return client.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void boardsTest() throws IOException, InterruptedException {
+
+        // Доски создаются при первом обращении и изолированы друг от друга
+        assertFalse(boards.isLoaded("team-1"));
+        var response = sendRequest("POST", "/boards/team-1/tasks",
+                new TaskBuilder().setName("T1").buildTask());
+        assertEquals(201, response.statusCode());
+        Task task = TaskConverter.fromJson(response.body(), Task.class);
+        assertTrue(boards.isLoaded("team-1"));
+
+        response = sendRequest("GET", "/boards/team-1/tasks/" + task.getId(), null);
+        assertEquals(200, response.statusCode());
+        assertEquals(task, TaskConverter.fromJson(response.body(), Task.class));
+        response = sendRequest("GET", "/boards/42/tasks/" + task.getId(), null);
+        assertEquals(404, response.statusCode());
+        response = sendRequest("GET", "/boards/42/tasks", null);
+        assertEquals(200, response.statusCode());
+        assertTrue(TaskConverter.listFromJson(response.body(), Task.class).isEmpty());
+
+        // Недопустимое имя доски и отсутствующий ресурс
+        assertEquals(400, sendRequest("GET", "/boards/a.b/tasks", null).statusCode());
+        assertEquals(404, sendRequest("GET", "/boards/team-1/unknown", null).statusCode());
+
+        // Выгрузка неиспользуемых досок и повторная загрузка из файла
+        boards.evictIdle();
+        assertFalse(boards.isLoaded("team-1"));
+        assertFalse(boards.isLoaded("42"));
+        assertTrue(Files.isRegularFile(directory.resolve("team-1.csv")));
+        response = sendRequest("GET", "/boards/team-1/tasks", null);
+        assertEquals(List.of(task), TaskConverter.listFromJson(response.body(), Task.class));
+
+        // Превышение ограничения доски на число задач
+        assertEquals(201, sendRequest("POST", "/boards/team-1/tasks",
+                new TaskBuilder().setName("T2").buildTask()).statusCode());
+        assertEquals(507, sendRequest("POST", "/boards/team-1/tasks",
+                new TaskBuilder().setName("T3").buildTask()).statusCode());
+        assertEquals(201, sendRequest("POST", "/boards/42/tasks",
+                new TaskBuilder().setName("T3").buildTask()).statusCode());
+    }
+
+    @Test
+    void acquiredBoardIsNotEvicted() {
+
+        var board = boards.acquire("busy");
+        boards.evictIdle();
+        assertTrue(boards.isLoaded("busy"));
+        boards.release(board);
+        boards.evictIdle();
+        assertFalse(boards.isLoaded("busy"));
+    }
+}
@@ -1,5 +1,7 @@
 package ru.maxproof.server;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -7,13 +9,17 @@ import ru.maxproof.taskmanager.*;
 
 import java.io.IOException;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -420,5 +426,216 @@ class ServerTest {
         assertEquals(3, rh.object().size());
         assertEquals(List.of(task3.getId(), task1.getId(), task2.getId()),
                 rh.object().stream().map(Task::getId).toList());
+
+        // Выборка по интервалу времени и постранично
+        LocalDateTime task3Start = new TaskBuilder(task3).getStartTime();
+        LocalDateTime task2Start = new TaskBuilder(task2).getStartTime();
+        rh = makeListRequest("/prioritized?from=" + task3Start.plusMinutes(5) + "&to=" + task2Start.plusHours(2),
+                Task.class);
+        assertEquals(200, rh.code());
+        assertEquals(List.of(task1.getId(), task2.getId()), rh.object().stream().map(Task::getId).toList());
+        rh = makeListRequest("/prioritized?limit=1", Task.class);
+        assertEquals(List.of(task3.getId()), rh.object().stream().map(Task::getId).toList());
+        rh = makeListRequest("/prioritized?limit=1&after=" + task3Start, Task.class);
+        assertEquals(List.of(task1.getId()), rh.object().stream().map(Task::getId).toList());
+        rh = makeListRequest("/prioritized?from=yesterday", Task.class);
+        assertEquals(400, rh.code());
+    }
+
+    @Test
+    void searchHandlerTest() throws IOException, InterruptedException {
+
+        Task task = makeObjectRequest("POST", "/tasks",
+                new TaskBuilder().setName("Купить хлеб").setDescription("Бородинский").buildTask(), Task.class).object();
+        Epic epic = makeObjectRequest("POST", "/epics",
+                new TaskBuilder().setName("Переезд").setDescription("Купить коробки").buildEpic(), Epic.class).object();
+
+        var rh = makeListRequest("/search?q=" + URLEncoder.encode("куп", StandardCharsets.UTF_8), Task.class);
+        assertEquals(200, rh.code());
+        assertEquals(List.of(task.getId(), epic.getId()), rh.object().stream().map(Task::getId).toList());
+        rh = makeListRequest("/search?q=" + URLEncoder.encode("купить короб", StandardCharsets.UTF_8), Task.class);
+        assertEquals(List.of(epic.getId()), rh.object().stream().map(Task::getId).toList());
+        rh = makeListRequest("/search?limit=1&q=" + URLEncoder.encode("КУПИТЬ", StandardCharsets.UTF_8), Task.class);
+        assertEquals(List.of(task.getId()), rh.object().stream().map(Task::getId).toList());
+        assertEquals(400, makeListRequest("/search", Task.class).code());
+        assertEquals(400, makeListRequest("/search?q=a&limit=many", Task.class).code());
+    }
+
+    @Test
+    void freeSlotHandlerTest() throws IOException, InterruptedException {
+
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 10, 0);
+        makeObjectRequest("POST", "/tasks", new TaskBuilder().setName("T1")
+                .setStartTime(base).setDuration(Duration.ofHours(1)).buildTask(), Task.class);
+        makeObjectRequest("POST", "/tasks", new TaskBuilder().setName("T2")
+                .setStartTime(base.plusMinutes(90)).setDuration(Duration.ofHours(1)).buildTask(), Task.class);
+
+        HttpResponse<String> response = sendRequest("GET", "/free-slot?duration=45&from=" + base, null);
+        assertEquals(200, response.statusCode());
+        JsonObject slot = JsonParser.parseString(response.body()).getAsJsonObject();
+        assertEquals(base.plusMinutes(150).toString(), slot.get("startTime").getAsString().substring(0, 16));
+        assertEquals(base.plusMinutes(195).toString(), slot.get("endTime").getAsString().substring(0, 16));
+        response = sendRequest("GET", "/free-slot?duration=30&from=" + base, null);
+        assertEquals(base.plusHours(1).toString(), JsonParser.parseString(response.body()).getAsJsonObject()
+                .get("startTime").getAsString().substring(0, 16));
+
+        assertEquals(404, sendRequest("GET", "/free-slot?duration=45&from=" + base + "&to=" + base.plusHours(3),
+                null).statusCode());
+        assertEquals(400, sendRequest("GET", "/free-slot?from=" + base, null).statusCode());
+        assertEquals(400, sendRequest("GET", "/free-slot?duration=0", null).statusCode());
+        assertEquals(400, sendRequest("GET", "/free-slot?duration=30&to=tomorrow", null).statusCode());
+    }
+
+    private HttpResponse<String> sendConditionalUpdate(String path, Task task, String ifMatch)
+            throws IOException, InterruptedException {
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:8080" + path))
+                .version(HttpClient.Version.HTTP_1_1)
+                .header("If-Match", ifMatch)
+                .POST(HttpRequest.BodyPublishers.ofString(TaskConverter.toJson(task), StandardCharsets.UTF_8))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void conditionalUpdateTest() throws IOException, InterruptedException {
+
+        HttpResponse<String> response = sendRequest("POST", "/tasks", new TaskBuilder().setName("T1").buildTask());
+        assertEquals("\"1\"", response.headers().firstValue("ETag").orElseThrow());
+        Task task = TaskConverter.fromJson(response.body(), Task.class);
+        assertEquals(1, task.getVersion());
+
+        // Обновление с актуальной версией выполняется, с устаревшей - отклоняется с кодом 412
+        Task renamed = new TaskBuilder(task).setName("T2").buildTask();
+        response = sendConditionalUpdate("/tasks", renamed, "\"1\"");
+        assertEquals(201, response.statusCode());
+        assertEquals("\"2\"", response.headers().firstValue("ETag").orElseThrow());
+        response = sendRequest("GET", "/tasks/" + task.getId(), null);
+        assertEquals("\"2\"", response.headers().firstValue("ETag").orElseThrow());
+        response = sendConditionalUpdate("/tasks", new TaskBuilder(task).setName("lost").buildTask(), "\"1\"");
+        assertEquals(412, response.statusCode());
+        assertEquals("\"2\"", response.headers().firstValue("ETag").orElseThrow());
+        assertEquals(412, sendConditionalUpdate("/tasks", renamed, "W/\"2\"").statusCode());
+        assertEquals("T2", makeObjectRequest("GET", "/tasks/" + task.getId(), null, Task.class).object().getName());
+        response = sendConditionalUpdate("/tasks", renamed, "*");
+        assertEquals(201, response.statusCode());
+        assertEquals("\"3\"", response.headers().firstValue("ETag").orElseThrow());
+
+        // Список ETag: обновление выполняется, если текущая версия совпадает с любой из перечисленных
+        response = sendConditionalUpdate("/tasks", renamed, "\"3\", \"4\"");
+        assertEquals(201, response.statusCode());
+        assertEquals("\"4\"", response.headers().firstValue("ETag").orElseThrow());
+        response = sendConditionalUpdate("/tasks", renamed, "\"1\",\"4\"");
+        assertEquals(201, response.statusCode());
+        assertEquals("\"5\"", response.headers().firstValue("ETag").orElseThrow());
+        response = sendConditionalUpdate("/tasks", renamed, "\"1\", W/\"5\", \"6\"");
+        assertEquals(412, response.statusCode());
+        assertEquals("\"5\"", response.headers().firstValue("ETag").orElseThrow());
+
+        // Подзадачи и эпики
+        Epic epic = makeObjectRequest("POST", "/epics", new TaskBuilder().setName("E").buildEpic(), Epic.class).object();
+        Subtask subtask = makeObjectRequest("POST", "/subtasks",
+                new TaskBuilder().setEpicId(epic.getId()).setName("S").buildSubtask(), Subtask.class).object();
+        response = sendRequest("GET", "/epics/" + epic.getId(), null);
+        assertEquals("\"2\"", response.headers().firstValue("ETag").orElseThrow());
+        assertEquals(412, sendConditionalUpdate("/epics", epic, "\"1\"").statusCode());
+        response = sendConditionalUpdate("/epics", epic, "\"2\"");
+        assertEquals(201, response.statusCode());
+        assertEquals("\"3\"", response.headers().firstValue("ETag").orElseThrow());
+        response = sendConditionalUpdate("/subtasks", subtask, "\"1\"");
+        assertEquals(201, response.statusCode());
+        assertEquals("\"2\"", response.headers().firstValue("ETag").orElseThrow());
+        assertEquals(412, sendConditionalUpdate("/subtasks", subtask, "\"1\"").statusCode());
+    }
+
+    @Test
+    void statsTest() throws IOException, InterruptedException {
+
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 10, 0);
+        makeObjectRequest("POST", "/tasks", new TaskBuilder()
+                .setName("T1")
+                .setStartTime(start)
+                .setDuration(Duration.ofMinutes(90))
+                .buildTask(), Task.class);
+        makeObjectRequest("POST", "/epics", new TaskBuilder().setName("E1").buildEpic(), Epic.class);
+
+        HttpResponse<String> response = sendRequest("GET", "/stats", null);
+        assertEquals(200, response.statusCode());
+        JsonObject stats = JsonParser.parseString(response.body()).getAsJsonObject();
+        assertEquals(1, stats.get("taskCount").getAsInt());
+        assertEquals(1, stats.get("epicCount").getAsInt());
+        assertEquals(2, stats.getAsJsonObject("statusCounts").get("NEW").getAsInt());
+        assertEquals(90, stats.get("scheduledDuration").getAsLong());
+        assertEquals(90, stats.getAsJsonObject("dailyUtilization").get("2030-01-01").getAsLong());
+    }
+
+    @Test
+    void streamingResponseTest() throws IOException, InterruptedException {
+
+        // Сервер с заранее заполненным менеджером задач
+        final int count = 5000;
+        TaskManager manager = Managers.getDefault();
+        for (int i = 0; i < count; i++)
+            manager.createTask(new TaskBuilder().setName("T" + i).buildTask());
+        HttpTaskServer filledServer = new HttpTaskServer(manager, 8082, HttpTaskServer.ExecutionMode.DISPATCHER, 0, 0);
+        filledServer.start();
+        try {
+            // Большой список передается потоком (без Content-Length)
+            HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:8082/tasks")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            assertEquals(200, response.statusCode());
+            assertTrue(response.headers().firstValue("Content-Length").isEmpty());
+            assertEquals(TaskConverter.toJson(manager.getTasks()), response.body());
+
+            // Небольшой ответ передается целиком
+            response = client.send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:8082/tasks/1")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            assertEquals(200, response.statusCode());
+            assertTrue(response.headers().firstValue("Content-Length").isPresent());
+        } finally {
+            filledServer.stop();
+        }
+    }
+
+    @Test
+    void concurrentRequestsTest() throws IOException {
+
+        // Сервер с обработкой каждого запроса в отдельном виртуальном потоке
+        HttpTaskServer virtualServer = new HttpTaskServer(8081, HttpTaskServer.ExecutionMode.VIRTUAL_THREADS, 0, 0);
+        virtualServer.start();
+        try {
+            // Параллельное создание задач
+            final int count = 50;
+            var responses = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+            for (int i = 0; i < count; i++) {
+                String json = TaskConverter.toJson(new TaskBuilder().setName("T" + i).buildTask());
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:8081/tasks"))
+                        .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+                        .build();
+                responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+            var ids = responses.stream()
+                    .map(CompletableFuture::join)
+                    .peek(response -> assertEquals(201, response.statusCode()))
+                    .map(response -> TaskConverter.fromJson(response.body(), Task.class).getId())
+                    .collect(Collectors.toSet());
+
+            // Все задачи созданы с уникальными идентификаторами
+            assertEquals(count, ids.size());
+        } finally {
+            virtualServer.stop();
+        }
+    }
+
+    @Test
+    void invalidOptionsTest() {
+
+        // Недопустимые параметры запуска отклоняются до запуска сервера
+        assertThrows(IllegalArgumentException.class, () -> HttpTaskServer.main(new String[]{"--executor=pol"}));
+        assertThrows(IllegalArgumentException.class, () -> HttpTaskServer.main(new String[]{"--prot=8080"}));
+        assertThrows(IllegalArgumentException.class, () -> HttpTaskServer.main(new String[]{"--port"}));
+        assertThrows(IllegalArgumentException.class, () -> HttpTaskServer.main(new String[]{"--port=abc"}));
     }
 }
@@ -0,0 +1,121 @@
+package ru.maxproof.server;
+
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import ru.maxproof.taskmanager.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskConverterTest {
+
+    /**
+     * Прежнее (reflection) представление задач: поля классов задач с временем
+     * в формате ISO и длительностью в минутах (эталон формата), дополненное номером версии
+     */
+    private static final String TASK_JSON =
+            "{\"id\":3,\"name\":\"task\",\"description\":\"\",\"status\":\"NEW\",\"version\":1}";
+    private static final String SUBTASK_JSON =
+            "{\"id\":2,\"name\":\"sub\",\"description\":\"s\",\"status\":\"NEW\"," +
+            "\"startTime\":\"2030-05-01T09:30:00\",\"duration\":90,\"version\":1,\"epicId\":1}";
+    private static final String EPIC_JSON =
+            "{\"id\":1,\"name\":\"epic\",\"description\":\"e\",\"status\":\"NEW\"," +
+            "\"startTime\":\"2030-05-01T09:30:00\",\"duration\":90,\"version\":2," +
+            "\"subtaskIds\":[2],\"endTime\":\"2030-05-01T11:00:00\"}";
+
+    private final TaskManager manager = Managers.getDefault();
+    private final LocalDateTime start = LocalDateTime.of(2030, 5, 1, 9, 30);
+
+
+    @Test
+    void formatCompatibility() {
+
+        int epicId = manager.createEpic(new TaskBuilder().setName("epic").setDescription("e").buildEpic()).getId();
+        Subtask subtask = manager.createSubtask(new TaskBuilder()
+                .setEpicId(epicId)
+                .setName("sub")
+                .setDescription("s")
+                .setStartTime(start)
+                .setDuration(Duration.ofMinutes(90))
+                .buildSubtask());
+        Task task = manager.createTask(new TaskBuilder().setName("task").buildTask());
+        Epic epic = manager.getEpic(epicId);
+
+        // Представление совпадает с прежним с точностью до порядка полей
+        assertEquals(JsonParser.parseString(TASK_JSON), JsonParser.parseString(TaskConverter.toJson(task)));
+        assertEquals(JsonParser.parseString(SUBTASK_JSON), JsonParser.parseString(TaskConverter.toJson(subtask)));
+        assertEquals(JsonParser.parseString(EPIC_JSON), JsonParser.parseString(TaskConverter.toJson(epic)));
+
+        // Задачи разных типов в одном списке сериализуются по фактическому типу
+        assertEquals(JsonParser.parseString("[" + TASK_JSON + "," + SUBTASK_JSON + "," + EPIC_JSON + "]"),
+                JsonParser.parseString(TaskConverter.toJson(List.of(task, subtask, epic))));
+    }
+
+    @Test
+    void writeJsonArray() throws IOException {
+
+        int epicId = manager.createEpic(new TaskBuilder().setName("epic").buildEpic()).getId();
+        manager.createSubtask(new TaskBuilder().setEpicId(epicId).setName("sub").setStartTime(start)
+                .setDuration(Duration.ofMinutes(30)).buildSubtask());
+        manager.createTask(new TaskBuilder().setName("задача").setDescription("\"кавычки\"").buildTask());
+        List<Task> tasks = manager.getEntireTaskList();
+
+        // Потоковая запись совпадает с построением строки
+        StringWriter writer = new StringWriter();
+        TaskConverter.writeJsonArray(tasks, writer);
+        assertEquals(TaskConverter.toJson(tasks), writer.toString());
+
+        writer = new StringWriter();
+        TaskConverter.writeJsonArray(List.of(), writer);
+        assertEquals("[]", writer.toString());
+    }
+
+    @Test
+    void roundTrip() {
+
+        int epicId = manager.createEpic(new TaskBuilder().setName("epic").buildEpic()).getId();
+        Subtask subtask = manager.createSubtask(new TaskBuilder()
+                .setEpicId(epicId)
+                .setName("sub")
+                .setStatus(TaskStatus.DONE)
+                .setStartTime(start)
+                .setDuration(Duration.ofHours(1))
+                .buildSubtask());
+        Epic epic = manager.getEpic(epicId);
+
+        Subtask restoredSubtask = TaskConverter.fromJson(TaskConverter.toJson(subtask), Subtask.class);
+        assertEquals(subtask, restoredSubtask);
+        assertEquals(epicId, restoredSubtask.getEpicId());
+        assertEquals(start, new TaskBuilder(restoredSubtask).getStartTime());
+        assertEquals(Duration.ofHours(1), new TaskBuilder(restoredSubtask).getDuration());
+
+        Epic restoredEpic = TaskConverter.fromJson(TaskConverter.toJson(epic), Epic.class);
+        assertEquals(epic, restoredEpic);
+        assertEquals(List.of(subtask.getId()), restoredEpic.getSubtasks());
+        assertEquals(start.plusHours(1), restoredEpic.getEndTime());
+        assertEquals(TaskStatus.DONE, restoredEpic.getStatus());
+        assertEquals(epic.getVersion(), restoredEpic.getVersion());
+    }
+
+    @Test
+    void readPartialJson() {
+
+        // Отсутствующие поля принимают значения по умолчанию строителя задач
+        Task task = TaskConverter.fromJson("{\"name\":\"T\",\"startTime\":null,\"unknown\":[1,2]}", Task.class);
+        assertEquals(TaskManager.DRAFT_TASK_ID, task.getId());
+        assertEquals("T", task.getName());
+        assertEquals("", task.getDescription());
+        assertEquals(TaskStatus.NEW, task.getStatus());
+        assertFalse(task.isValidTime());
+
+        List<Task> tasks = TaskConverter.listFromJson("[{\"id\":5,\"duration\":30}]", Task.class);
+        assertEquals(1, tasks.size());
+        assertEquals(5, tasks.getFirst().getId());
+        assertEquals(Duration.ofMinutes(30), new TaskBuilder(tasks.getFirst()).getDuration());
+    }
+}
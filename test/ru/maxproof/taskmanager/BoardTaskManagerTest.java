@@ -0,0 +1,71 @@
+package ru.maxproof.taskmanager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.maxproof.exceptions.BoardLimitExceededException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoardTaskManagerTest extends TaskManagerTest<BoardTaskManager> {
+
+    @BeforeEach
+    void setUp() throws IOException {
+        manager = BoardTaskManager.open(Files.createTempFile("board", ".csv"), 0, 0);
+    }
+
+
+    @Test
+    void taskLimit() throws IOException {
+
+        BoardTaskManager manager = BoardTaskManager.open(Files.createTempFile("board", ".csv"), 3, 0);
+        Epic epic = manager.createEpic(new TaskBuilder().setName("epic").buildEpic());
+        manager.createTask(new TaskBuilder().setName("task").buildTask());
+
+        // Пакет, превышающий ограничение, не создается целиком
+        assertThrows(BoardLimitExceededException.class, () -> manager.createSubtasks(List.of(
+                new TaskBuilder().setEpicId(epic.getId()).setName("sub1").buildSubtask(),
+                new TaskBuilder().setEpicId(epic.getId()).setName("sub2").buildSubtask())));
+        assertTrue(manager.getSubtasks().isEmpty());
+
+        manager.createSubtask(new TaskBuilder().setEpicId(epic.getId()).setName("sub").buildSubtask());
+        assertThrows(BoardLimitExceededException.class,
+                () -> manager.createTask(new TaskBuilder().setName("extra").buildTask()));
+
+        // После удаления задачи место освобождается
+        manager.removeEpic(epic.getId());
+        manager.createTask(new TaskBuilder().setName("extra").buildTask());
+        assertEquals(2, manager.getTasks().size());
+    }
+
+    @Test
+    void memoryLimit() throws IOException {
+
+        long limit = 3 * BoardTaskManager.TASK_OVERHEAD;
+        Path storageFile = Files.createTempFile("board", ".csv");
+        BoardTaskManager manager = BoardTaskManager.open(storageFile, 0, limit);
+        Task task = manager.createTask(new TaskBuilder().setName("task").buildTask());
+        assertEquals(BoardTaskManager.estimateMemory(task), manager.getEstimatedMemory());
+
+        // Обновление, увеличивающее оценку памяти сверх ограничения, отклоняется
+        Task large = new TaskBuilder(task).setDescription("x".repeat((int) limit)).buildTask();
+        assertThrows(BoardLimitExceededException.class, () -> manager.updateTask(large));
+        assertEquals(task, manager.getTask(task.getId()));
+
+        manager.createTask(new TaskBuilder().setName("task2").buildTask());
+        assertThrows(BoardLimitExceededException.class,
+                () -> manager.createTask(new TaskBuilder().setName("task3").setDescription("long").buildTask()));
+
+        // Оценка памяти восстанавливается при загрузке доски
+        BoardTaskManager loaded = BoardTaskManager.open(storageFile, 0, limit);
+        assertEquals(manager.getEstimatedMemory(), loaded.getEstimatedMemory());
+        assertEquals(manager.getTasks().size(), loaded.getTasks().size());
+
+        manager.removeTask(task.getId());
+        assertEquals(BoardTaskManager.estimateMemory(manager.getTasks().getFirst()), manager.getEstimatedMemory());
+    }
+}
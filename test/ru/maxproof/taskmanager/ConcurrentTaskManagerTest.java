@@ -0,0 +1,151 @@
+package ru.maxproof.taskmanager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.maxproof.exceptions.OverlappingTasksException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentTaskManagerTest extends TaskManagerTest<ConcurrentTaskManager> {
+
+    @BeforeEach
+    void setUp() {
+        manager = new ConcurrentTaskManager();
+    }
+
+    @Test
+    void concurrentSubtasks() throws Exception {
+
+        final int epics = 8;
+        final int subtasksPerEpic = 200;
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 0, 0);
+        List<Integer> epicIds = new ArrayList<>();
+        for (int i = 0; i < epics; i++)
+            epicIds.add(manager.createEpic(new TaskBuilder().setName("epic" + i).buildEpic()).getId());
+
+        // Параллельное наполнение эпиков непересекающимися подзадачами
+        try (ExecutorService executor = Executors.newFixedThreadPool(epics)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int e = 0; e < epics; e++) {
+                final int epicIndex = e;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < subtasksPerEpic; i++) {
+                        manager.createSubtask(new TaskBuilder()
+                                .setEpicId(epicIds.get(epicIndex))
+                                .setName("sub")
+                                .setStartTime(base.plusMinutes((long) (i * epics + epicIndex) * 10))
+                                .setDuration(Duration.ofMinutes(10))
+                                .buildSubtask());
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        }
+
+        assertEquals(epics * subtasksPerEpic, manager.getSubtasks().size());
+        assertEquals(epics * subtasksPerEpic, manager.getPrioritizedTasks().size());
+        for (int epicId : epicIds) {
+            Epic epic = manager.getEpic(epicId);
+            assertEquals(subtasksPerEpic, epic.getSubtasks().size());
+            assertEquals(Duration.ofMinutes(10L * subtasksPerEpic), epic.getDuration());
+        }
+    }
+
+    @Test
+    void concurrentOverlappingTasks() throws Exception {
+
+        // Из задач, претендующих на одно и то же время, создается ровно одна
+        final int threads = 16;
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 12, 0);
+        int created = 0;
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final int shift = i;
+                futures.add(executor.submit(() -> {
+                    try {
+                        manager.createTask(new TaskBuilder()
+                                .setName("T" + shift)
+                                .setStartTime(start.plusMinutes(shift))
+                                .setDuration(Duration.ofHours(1))
+                                .buildTask());
+                        return true;
+                    } catch (OverlappingTasksException e) {
+                        return false;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures)
+                created += future.get() ? 1 : 0;
+        }
+        assertEquals(1, created);
+        assertEquals(1, manager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void readerDoesNotSeeRolledBackTransaction() throws Exception {
+
+        Task task = manager.createTask(new TaskBuilder().setName("исходная")
+                .setStartTime(LocalDateTime.of(2030, 1, 1, 12, 0)).setDuration(Duration.ofHours(1)).buildTask());
+        CountDownLatch changed = new CountDownLatch(1);
+        AtomicInteger rounds = new AtomicInteger();
+        AtomicBoolean finished = new AtomicBoolean();
+        Set<String> violations = new CopyOnWriteArraySet<>();
+
+        // Читатель проверяет состояние менеджера во время транзакции и после ее отмены
+        Thread reader = new Thread(() -> {
+            try {
+                changed.await();
+                boolean last;
+                do {
+                    last = finished.get();
+                    rounds.incrementAndGet();
+                    if (!manager.getTask(task.getId()).getName().equals("исходная"))
+                        violations.add("измененная версия задачи");
+                    if (manager.getTasks().size() != 1 || manager.getPrioritizedTasks().size() != 1)
+                        violations.add("задача, созданная в транзакции");
+                    if (!manager.search("транзакции", 10).isEmpty())
+                        violations.add("поиск задачи, созданной в транзакции");
+                    if (manager.countByStatus().get(TaskStatus.NEW) != 1)
+                        violations.add("число задач по статусу");
+                } while (!last);
+            } catch (Throwable e) {
+                violations.add(e.toString());
+            }
+        });
+        reader.start();
+
+        assertThrows(IllegalStateException.class, () -> manager.executeTransaction(tx -> {
+            tx.updateTask(new TaskBuilder(task).setName("измененная").buildTask());
+            tx.createTask(new TaskBuilder().setName("созданная в транзакции")
+                    .setStartTime(LocalDateTime.of(2030, 1, 2, 12, 0)).setDuration(Duration.ofHours(1)).buildTask());
+            changed.countDown();
+            // Транзакция отменяется, когда читатель обратился к менеджеру и ожидает ее завершения
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while ((rounds.get() == 0 || reader.getState() != Thread.State.WAITING) && System.nanoTime() < deadline)
+                Thread.onSpinWait();
+            throw new IllegalStateException("Отмена транзакции");
+        }));
+        finished.set(true);
+        reader.join();
+
+        assertEquals(Set.of(), violations);
+        assertEquals("исходная", manager.getTask(task.getId()).getName());
+        assertEquals(1, manager.getTasks().size());
+    }
+}
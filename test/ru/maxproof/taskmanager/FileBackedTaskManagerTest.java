@@ -3,10 +3,13 @@ package ru.maxproof.taskmanager;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ru.maxproof.exceptions.NotFoundIdException;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
@@ -55,6 +58,171 @@ public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskMan
         Assertions.assertEquals(manager, manager2);
     }
 
+    @Test
+    public void journalTest() throws Exception {
+
+        Path storageFile = Files.createTempFile("kanban_journal", ".csv");
+        Files.delete(storageFile);
+        Path journalFile = storageFile.resolveSibling(storageFile.getFileName() + ".journal");
+        FileBackedTaskManager manager = new FileBackedTaskManager(
+                storageFile, FileBackedTaskManager.StorageMode.JOURNAL, 7);
+
+        // Каждое изменение дописывается в журнал (изменение подзадачи - вместе с пересчитанным эпиком),
+        // снимок не создается
+        int epicId = manager.createEpic(new TaskBuilder().setName("epic1").buildEpic()).getId();
+        Subtask sub1 = manager.createSubtask(new TaskBuilder().setEpicId(epicId).setName("sub1").buildSubtask());
+        int taskId = manager.createTask(new TaskBuilder().setName("task1")
+                .setStartTime(LocalDateTime.of(2030, 1, 1, 10, 0))
+                .setDuration(Duration.ofHours(1))
+                .buildTask()).getId();
+        manager.updateSubtask(new TaskBuilder(sub1).setStatus(TaskStatus.DONE).buildSubtask());
+        Assertions.assertFalse(Files.exists(storageFile));
+        Assertions.assertEquals(6, Files.readAllLines(journalFile).size());
+
+        // Проверка восстановления из журнала без снимка
+        FileBackedTaskManager manager1 = FileBackedTaskManager.loadTaskManager(
+                storageFile, FileBackedTaskManager.StorageMode.JOURNAL);
+        Assertions.assertEquals(manager, manager1);
+        Assertions.assertEquals(TaskStatus.DONE, manager1.getEpic(epicId).getStatus());
+        Assertions.assertEquals(2, manager1.getSubtask(sub1.getId()).getVersion());
+        Assertions.assertEquals(List.of(taskId),
+                manager1.getPrioritizedTasks().stream().map(Task::getId).toList());
+
+        // По достижении порога журнал сжимается в снимок
+        manager.removeTask(taskId);
+        Assertions.assertTrue(Files.exists(storageFile));
+        Assertions.assertFalse(Files.exists(journalFile));
+
+        // Проверка восстановления из снимка и хвоста журнала
+        int epicId2 = manager.createEpic(new TaskBuilder().setName("epic2").buildEpic()).getId();
+        manager.removeEpic(epicId);
+        manager.createTask(new TaskBuilder().setName("task2").buildTask());
+        Assertions.assertEquals(3, Files.readAllLines(journalFile).size());
+        FileBackedTaskManager manager2 = FileBackedTaskManager.loadTaskManager(
+                storageFile, FileBackedTaskManager.StorageMode.JOURNAL);
+        Assertions.assertEquals(manager, manager2);
+        Assertions.assertTrue(manager2.getSubtasks().isEmpty());
+        Assertions.assertEquals(List.of(epicId2), manager2.getEpics().stream().map(Task::getId).toList());
+
+        // Идентификаторы удаленных задач повторно не выдаются
+        Task task3 = manager2.createTask(new TaskBuilder().setName("task3").buildTask());
+        Assertions.assertTrue(task3.getId() > epicId2);
+    }
+
+    @Test
+    public void batchJournalTest() throws Exception {
+
+        Path storageFile = Files.createTempFile("kanban_batch", ".csv");
+        Files.delete(storageFile);
+        Path journalFile = storageFile.resolveSibling(storageFile.getFileName() + ".journal");
+        FileBackedTaskManager manager = new FileBackedTaskManager(
+                storageFile, FileBackedTaskManager.StorageMode.JOURNAL, 100);
+
+        // Группа задач записывается в журнал однократно (группа подзадач - вместе с пересчитанным эпиком)
+        int epicId = manager.createEpic(new TaskBuilder().setName("epic").buildEpic()).getId();
+        manager.createTasks(List.of(
+                new TaskBuilder().setName("task1").buildTask(),
+                new TaskBuilder().setName("task2").buildTask()));
+        manager.createSubtasks(List.of(
+                new TaskBuilder().setName("sub1").setEpicId(epicId).buildSubtask(),
+                new TaskBuilder().setName("sub2").setEpicId(epicId).buildSubtask()));
+        Assertions.assertEquals(6, Files.readAllLines(journalFile).size());
+
+        FileBackedTaskManager manager1 = FileBackedTaskManager.loadTaskManager(
+                storageFile, FileBackedTaskManager.StorageMode.JOURNAL);
+        Assertions.assertEquals(manager, manager1);
+        Assertions.assertEquals(2, manager1.getEpic(epicId).getSubtasks().size());
+    }
+
+    @Test
+    public void transactionJournalTest() throws Exception {
+
+        Path storageFile = Files.createTempFile("kanban_tx", ".csv");
+        Files.delete(storageFile);
+        Path journalFile = storageFile.resolveSibling(storageFile.getFileName() + ".journal");
+        FileBackedTaskManager manager = new FileBackedTaskManager(
+                storageFile, FileBackedTaskManager.StorageMode.JOURNAL, 100);
+        int epicId = manager.createEpic(new TaskBuilder().setName("epic").buildEpic()).getId();
+
+        // Отмененная транзакция в журнал не попадает
+        Assertions.assertThrows(NotFoundIdException.class, () -> manager.executeTransaction(tx -> {
+            tx.createTask(new TaskBuilder().setName("task1").buildTask());
+            tx.createSubtask(new TaskBuilder().setName("sub").setEpicId(epicId + 100).buildSubtask());
+        }));
+        Assertions.assertEquals(1, Files.readAllLines(journalFile).size());
+
+        // Зафиксированная транзакция записывается в журнал целиком, включая пересчитанный эпик
+        manager.executeTransaction(tx -> {
+            tx.createTask(new TaskBuilder().setName("task1").buildTask());
+            tx.createSubtask(new TaskBuilder().setName("sub").setEpicId(epicId).buildSubtask());
+        });
+        Assertions.assertEquals(4, Files.readAllLines(journalFile).size());
+        FileBackedTaskManager manager1 = FileBackedTaskManager.loadTaskManager(
+                storageFile, FileBackedTaskManager.StorageMode.JOURNAL);
+        Assertions.assertEquals(manager, manager1);
+    }
+
+    @Test
+    public void dependencyJournalTest() throws Exception {
+
+        Path storageFile = Files.createTempFile("kanban_dep", ".csv");
+        Files.delete(storageFile);
+        FileBackedTaskManager manager = new FileBackedTaskManager(
+                storageFile, FileBackedTaskManager.StorageMode.JOURNAL, 100);
+        Task a = manager.createTask(new TaskBuilder().setName("A").setDuration(Duration.ofHours(2)).buildTask());
+        Task b = manager.createTask(new TaskBuilder().setName("B").setDuration(Duration.ofHours(1)).buildTask());
+        int epicId = manager.createEpic(new TaskBuilder().setName("epic").buildEpic()).getId();
+        Subtask sub = manager.createSubtask(new TaskBuilder().setName("sub").setEpicId(epicId)
+                .setDuration(Duration.ofHours(1)).buildSubtask());
+        manager.addDependency(sub.getId(), a.getId());
+        manager.addDependency(sub.getId(), b.getId());
+        manager.removeDependency(sub.getId(), b.getId());
+
+        // Проверка восстановления зависимостей из журнала
+        FileBackedTaskManager manager1 = FileBackedTaskManager.loadTaskManager(
+                storageFile, FileBackedTaskManager.StorageMode.JOURNAL);
+        Assertions.assertEquals(List.of(a), manager1.getBlockers(sub.getId()));
+        Assertions.assertEquals(List.of(a, sub), manager1.getCriticalPath());
+
+        // Проверка восстановления зависимостей из снимка
+        manager1.save();
+        FileBackedTaskManager manager2 = FileBackedTaskManager.loadTaskManager(storageFile);
+        Assertions.assertEquals(manager1, manager2);
+        Assertions.assertEquals(List.of(a), manager2.getBlockers(sub.getId()));
+        Assertions.assertEquals(List.of(a, sub), manager2.getCriticalPath());
+    }
+
+    @Test
+    public void epicVersionJournalTest() throws Exception {
+
+        Path storageFile = Files.createTempFile("kanban_version", ".csv");
+        Files.delete(storageFile);
+        FileBackedTaskManager manager = new FileBackedTaskManager(
+                storageFile, FileBackedTaskManager.StorageMode.JOURNAL, 100);
+        int epicId = manager.createEpic(new TaskBuilder().setName("epic").buildEpic()).getId();
+        Subtask sub = manager.createSubtask(new TaskBuilder().setName("sub").setEpicId(epicId).buildSubtask());
+        manager.updateSubtask(new TaskBuilder(sub).setStatus(TaskStatus.DONE).buildSubtask());
+        int epicId2 = manager.createEpic(new TaskBuilder().setName("epic2").buildEpic()).getId();
+        manager.executeTransaction(tx -> tx.createSubtask(
+                new TaskBuilder().setName("sub2").setEpicId(epicId2).buildSubtask()));
+        Assertions.assertEquals(3, manager.getEpic(epicId).getVersion());
+        Assertions.assertEquals(2, manager.getEpic(epicId2).getVersion());
+
+        // Версии пересчитанных эпиков восстанавливаются из журнала
+        FileBackedTaskManager manager1 = FileBackedTaskManager.loadTaskManager(
+                storageFile, FileBackedTaskManager.StorageMode.JOURNAL);
+        Assertions.assertEquals(3, manager1.getEpic(epicId).getVersion());
+        Assertions.assertEquals(2, manager1.getEpic(epicId2).getVersion());
+
+        // Очистка подзадач также меняет версии эпиков
+        manager1.clearSubtasks();
+        FileBackedTaskManager manager2 = FileBackedTaskManager.loadTaskManager(
+                storageFile, FileBackedTaskManager.StorageMode.JOURNAL);
+        Assertions.assertEquals(4, manager2.getEpic(epicId).getVersion());
+        Assertions.assertEquals(3, manager2.getEpic(epicId2).getVersion());
+        Assertions.assertEquals(TaskStatus.NEW, manager2.getEpic(epicId).getStatus());
+    }
+
     @Test
     public void throwTest() {
 
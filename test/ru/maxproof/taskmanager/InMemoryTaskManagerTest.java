@@ -1,10 +1,73 @@
 package ru.maxproof.taskmanager;
 
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
 
     @BeforeEach
     void setUp() {
         manager = new InMemoryTaskManager();
     }
-}
\ No newline at end of file
+
+    @Test
+    void dependencyNodes() {
+
+        // Узлы графа создаются только для задач с зависимостями и удаляются вместе с последней зависимостью
+        Task a = createTask("A", 10);
+        Task b = createTask("B", 20);
+        Task c = createTask("C", 30);
+        assertEquals(0, manager.dependencyGraph.size());
+        manager.addDependency(b.getId(), a.getId());
+        manager.addDependency(c.getId(), b.getId());
+        assertEquals(3, manager.dependencyGraph.size());
+        manager.removeDependency(b.getId(), a.getId());
+        assertEquals(2, manager.dependencyGraph.size());
+        manager.updateTask(new TaskBuilder(a).setDuration(Duration.ofMinutes(100)).buildTask());
+        assertEquals(List.of(a), manager.getCriticalPath());
+        assertEquals(List.of(b, c, a), manager.getDependencyOrder());
+        manager.removeTask(b.getId());
+        assertEquals(0, manager.dependencyGraph.size());
+        assertTrue(manager.getBlockers(c.getId()).isEmpty());
+    }
+
+    @Test
+    void subscribeAsync() throws InterruptedException {
+
+        // Получатель заблокирован: события сверх емкости буфера вытесняются
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(1);
+        List<Long> sequences = new ArrayList<>();
+        TaskSubscription subscription = manager.subscribeAsync(event -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (sequences) {
+                sequences.add(event.sequence());
+            }
+            if (event.sequence() == 20)
+                delivered.countDown();
+        }, 4);
+        for (int i = 0; i < 20; i++)
+            manager.createTask(new TaskBuilder().setName("T" + i).buildTask());
+        blocked.countDown();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        subscription.close();
+
+        synchronized (sequences) {
+            // Получены последние 4 события, сохраненные в буфере (и, возможно, первое, взятое до заполнения буфера)
+            assertEquals(List.of(17L, 18L, 19L, 20L), sequences.subList(sequences.size() - 4, sequences.size()));
+            assertEquals(20 - sequences.size(), subscription.getDroppedEvents());
+        }
+    }
+}
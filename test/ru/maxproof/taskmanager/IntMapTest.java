@@ -0,0 +1,59 @@
+package ru.maxproof.taskmanager;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+public class IntMapTest {
+
+
+    @Test
+    public void iterationOrder() {
+
+        // Для небольших ключей порядок обхода совпадает с HashMap
+        IntMap<String> map = new IntMap<>();
+        HashMap<Integer, String> reference = new HashMap<>();
+        for (int id : new int[]{7, 3, 12, 1, 5, 40, 2}) {
+            map.put(id, "v" + id);
+            reference.put(id, "v" + id);
+        }
+        Assertions.assertEquals(new ArrayList<>(reference.keySet()), new ArrayList<>(map.keySet()));
+        Assertions.assertEquals(new ArrayList<>(reference.values()), new ArrayList<>(map.values()));
+        Assertions.assertEquals(reference, map);
+        Assertions.assertEquals(map, reference);
+        Assertions.assertEquals(reference.hashCode(), map.hashCode());
+    }
+
+    @Test
+    public void randomOperations() {
+
+        // Ключи, кратные 64, попадают в одни и те же цепочки пробирования
+        IntMap<Integer> map = new IntMap<>();
+        HashMap<Integer, Integer> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextBoolean() ? random.nextInt(2000) : random.nextInt(50) * 64;
+            Integer value = i;
+            switch (random.nextInt(3)) {
+                case 0, 1 -> Assertions.assertEquals(reference.put(key, value), map.put(key, value));
+                default -> Assertions.assertEquals(reference.remove(key), map.remove(key));
+            }
+            Assertions.assertEquals(reference.get(key), map.get(key));
+        }
+        Assertions.assertEquals(reference.size(), map.size());
+        Assertions.assertEquals(reference, map);
+
+        // Удаление по условию
+        Assertions.assertTrue(map.values().removeIf(value -> value % 2 == 0));
+        reference.values().removeIf(value -> value % 2 == 0);
+        Assertions.assertEquals(reference, map);
+        reference.keySet().forEach(key -> Assertions.assertTrue(map.containsKey(key.intValue())));
+
+        map.clear();
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertNull(map.get(0));
+    }
+}
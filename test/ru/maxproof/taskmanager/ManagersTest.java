@@ -19,6 +19,33 @@ class ManagersTest {
         assertEquals(1, manager.getTasks().size());
     }
 
+    @Test
+    void getConcurrent() {
+
+        TaskManager manager = Managers.getConcurrent();
+        assertNotNull(manager);
+        manager.createTask(new TaskBuilder().setName("abc").buildTask());
+        assertEquals(1, manager.getTasks().size());
+    }
+
+    @Test
+    void getOffHeap() {
+
+        TaskManager manager = Managers.getOffHeap();
+        assertNotNull(manager);
+        manager.createTask(new TaskBuilder().setName("abc").buildTask());
+        assertEquals(1, manager.getTasks().size());
+    }
+
+    @Test
+    void getSharded() {
+
+        TaskManager manager = Managers.getSharded();
+        assertNotNull(manager);
+        manager.createTask(new TaskBuilder().setName("abc").buildTask());
+        assertEquals(1, manager.getTasks().size());
+    }
+
     @Test
     void getDefaultHistory() {
 
@@ -0,0 +1,102 @@
+package ru.maxproof.taskmanager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapTaskManagerTest extends TaskManagerTest<OffHeapTaskManager> {
+
+    @BeforeEach
+    void setUp() {
+        manager = new OffHeapTaskManager();
+    }
+
+    @Test
+    void growAndCompact() {
+
+        // Рост столбцов за пределы начальной емкости и уплотнение замененных строк
+        final int count = 5000;
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 0, 0);
+        Epic epic = manager.createEpic(new TaskBuilder().setName("epic").buildEpic());
+        for (int i = 0; i < count; i++) {
+            manager.createSubtask(new TaskBuilder()
+                    .setEpicId(epic.getId())
+                    .setName("sub" + i)
+                    .setDescription("x".repeat(200))
+                    .setStartTime(base.plusMinutes(i * 10L))
+                    .setDuration(Duration.ofMinutes(5))
+                    .buildSubtask());
+        }
+        for (String filler : new String[]{"y", "z", "y"}) {
+            for (Subtask subtask : manager.getSubtasks()) {
+                manager.updateSubtask(new TaskBuilder(subtask)
+                        .setDescription(filler.repeat(200))
+                        .setStatus(TaskStatus.DONE)
+                        .buildSubtask());
+            }
+        }
+
+        Epic stored = manager.getEpic(epic.getId());
+        assertEquals(count, stored.getSubtasks().size());
+        assertEquals(TaskStatus.DONE, stored.getStatus());
+        assertEquals(Duration.ofMinutes(5L * count), new TaskBuilder(stored).getDuration());
+        assertEquals(base, new TaskBuilder(stored).getStartTime());
+        assertEquals(base.plusMinutes(10L * (count - 1) + 5), stored.getEndTime());
+        assertEquals("sub" + (count - 1), manager.getSubtask(count + 1).getName());
+        assertTrue(manager.getSubtasks().stream().allMatch(s -> s.getDescription().equals("y".repeat(200))));
+        assertEquals(count, manager.getPrioritizedTasks().size());
+
+        // Удаление крайних подзадач сдвигает начало и окончание эпика
+        manager.removeSubtask(stored.getSubtasks().getFirst());
+        manager.removeSubtask(stored.getSubtasks().getLast());
+        stored = manager.getEpic(epic.getId());
+        assertEquals(base.plusMinutes(10), new TaskBuilder(stored).getStartTime());
+        assertEquals(base.plusMinutes(10L * (count - 2) + 5), stored.getEndTime());
+        assertEquals(Duration.ofMinutes(5L * (count - 2)), new TaskBuilder(stored).getDuration());
+    }
+
+    @Test
+    void reuseRows() {
+
+        // Строки удаленных задач используются повторно: емкость не растет с числом выданных Id
+        int capacity = manager.getRowCapacity();
+        Epic epic = manager.createEpic(new TaskBuilder().setName("epic").buildEpic());
+        Task last = null;
+        for (int i = 0; i < 3 * capacity; i++) {
+            Task task = manager.createTask(new TaskBuilder().setName("T" + i).buildTask());
+            Subtask subtask = manager.createSubtask(new TaskBuilder().setEpicId(epic.getId()).setName("S" + i)
+                    .buildSubtask());
+            if (last != null)
+                manager.removeTask(last.getId());
+            manager.removeSubtask(subtask.getId());
+            last = task;
+        }
+        assertEquals(capacity, manager.getRowCapacity());
+        assertEquals(List.of(last), manager.getTasks());
+        assertEquals(6 * capacity, last.getId());
+        assertTrue(manager.getEpic(epic.getId()).getSubtasks().isEmpty());
+
+        // Отмена транзакции восстанавливает задачи в новых строках с сохранением порядка по Id
+        Task second = manager.createTask(new TaskBuilder().setName("second").buildTask());
+        Task third = manager.createTask(new TaskBuilder().setName("third").buildTask());
+        Subtask subtask = manager.createSubtask(new TaskBuilder().setEpicId(epic.getId()).setName("S").buildSubtask());
+        Task lastTask = last;
+        assertThrows(IllegalStateException.class, () -> manager.executeTransaction(tx -> {
+            tx.removeTask(lastTask.getId());
+            tx.removeTask(second.getId());
+            tx.updateSubtask(new TaskBuilder(subtask).setStatus(TaskStatus.DONE).buildSubtask());
+            tx.createTask(new TaskBuilder().setName("lost").buildTask());
+            throw new IllegalStateException();
+        }));
+        assertEquals(List.of(last, second, third), manager.getTasks());
+        assertEquals(second, manager.getTask(second.getId()));
+        assertEquals(List.of(subtask.getId()), manager.getEpic(epic.getId()).getSubtasks());
+        assertEquals(List.of(subtask), manager.getEpicSubtasks(manager.getEpic(epic.getId())));
+        assertEquals(subtask.getId() + 1, manager.createTask(new TaskBuilder().setName("next").buildTask()).getId());
+    }
+}
@@ -0,0 +1,155 @@
+package ru.maxproof.taskmanager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.maxproof.exceptions.OverlappingTasksException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedTaskManagerTest extends TaskManagerTest<ShardedTaskManager> {
+
+    @BeforeEach
+    void setUp() {
+        manager = new ShardedTaskManager(4);
+    }
+
+    @Test
+    void merge() {
+
+        List<Integer> merged = ShardedTaskManager.merge(
+                List.of(List.of(1, 4, 7), List.of(), List.of(2, 3, 9), List.of(5)),
+                Comparator.naturalOrder(), Integer.MAX_VALUE);
+        assertEquals(List.of(1, 2, 3, 4, 5, 7, 9), merged);
+        assertEquals(List.of(1, 2, 3), ShardedTaskManager.merge(
+                List.of(List.of(1, 4, 7), List.of(2, 3, 9)), Comparator.naturalOrder(), 3));
+    }
+
+    @Test
+    void crossShardOrder() {
+
+        // Задачи и подзадачи разных секций объединяются в общий порядок по времени
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 0, 0);
+        Epic epic = manager.createEpic(new TaskBuilder().setName("epic").buildEpic());
+        List<Task> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            TaskBuilder builder = new TaskBuilder().setName("T" + i)
+                    .setStartTime(base.plusHours(20 - i))
+                    .setDuration(Duration.ofMinutes(30));
+            expected.add(i % 3 == 0 ?
+                    manager.createSubtask(builder.setEpicId(epic.getId()).buildSubtask()) :
+                    manager.createTask(builder.buildTask()));
+        }
+        assertEquals(expected.reversed(), manager.getPrioritizedTasks());
+        assertEquals(expected.reversed().subList(5, 9),
+                manager.getPrioritizedTasks(base.plusHours(6), base.plusHours(9).plusMinutes(40), 10));
+        assertEquals(expected.reversed().subList(10, 13),
+                manager.getPrioritizedTasksAfter(base.plusHours(10), null, 3));
+        assertEquals(21, manager.getEntireTaskList().size());
+
+        // Пересечение проверяется по шкалам всех секций
+        assertThrows(OverlappingTasksException.class, () -> manager.createTask(new TaskBuilder()
+                .setName("overlap")
+                .setStartTime(base.plusHours(5).plusMinutes(10))
+                .setDuration(Duration.ofMinutes(5))
+                .buildTask()));
+    }
+
+    @Test
+    void concurrentOverlappingTasks() throws Exception {
+
+        // Из задач разных секций, претендующих на одно и то же время, создается ровно одна
+        final int threads = 16;
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 12, 0);
+        int created = 0;
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final int shift = i;
+                futures.add(executor.submit(() -> {
+                    try {
+                        manager.createTask(new TaskBuilder()
+                                .setName("T" + shift)
+                                .setStartTime(start.plusMinutes(shift))
+                                .setDuration(Duration.ofHours(1))
+                                .buildTask());
+                        return true;
+                    } catch (OverlappingTasksException e) {
+                        return false;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures)
+                created += future.get() ? 1 : 0;
+        }
+        assertEquals(1, created);
+        assertEquals(1, manager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void concurrentDependencies() throws Exception {
+
+        // Зависимости добавляются параллельно с изменением продолжительности задач всех секций:
+        // изменение задачи, получившей узел графа, не должно миновать граф
+        final int groups = 8;
+        final int chain = 4;
+        List<List<Task>> tasks = new ArrayList<>();
+        for (int g = 0; g < groups; g++) {
+            List<Task> group = new ArrayList<>();
+            for (int i = 0; i < chain; i++)
+                group.add(createTask("T" + g + "." + i, 1));
+            tasks.add(group);
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(groups * 2)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<Task> group : tasks) {
+                final int minutes = tasks.indexOf(group) + 2;
+                futures.add(executor.submit(() -> {
+                    for (int i = 1; i < chain; i++)
+                        manager.addDependency(group.get(i).getId(), group.get(i - 1).getId());
+                }));
+                futures.add(executor.submit(() -> {
+                    for (Task task : group)
+                        manager.updateTask(new TaskBuilder(task).setDuration(Duration.ofMinutes(minutes)).buildTask());
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        }
+        assertEquals(tasks.getLast().stream().map(Task::getId).toList(),
+                manager.getCriticalPath().stream().map(Task::getId).toList());
+        assertEquals(List.of(groups + 1L), manager.getCriticalPath().stream()
+                .map(task -> task.getDuration().toMinutes()).distinct().toList());
+    }
+
+    @Test
+    void moveSubtaskBetweenShards() {
+
+        Epic epic1 = manager.createEpic(new TaskBuilder().setName("epic1").buildEpic());
+        Epic epic2 = manager.createEpic(new TaskBuilder().setName("epic2").buildEpic());
+        Subtask subtask = manager.createSubtask(new TaskBuilder()
+                .setEpicId(epic1.getId())
+                .setName("sub")
+                .setStartTime(LocalDateTime.of(2030, 1, 1, 10, 0))
+                .setDuration(Duration.ofHours(1))
+                .buildSubtask());
+
+        manager.updateSubtask(new TaskBuilder(subtask).setEpicId(epic2.getId()).buildSubtask());
+        assertEquals(epic2.getId(), manager.getSubtask(subtask.getId()).getEpicId());
+        assertTrue(manager.getEpic(epic1.getId()).getSubtasks().isEmpty());
+        assertEquals(List.of(subtask.getId()), manager.getEpic(epic2.getId()).getSubtasks());
+        assertEquals(1, manager.getPrioritizedTasks().size());
+
+        manager.removeSubtask(subtask.getId());
+        assertTrue(manager.getSubtasks().isEmpty());
+        assertTrue(manager.getPrioritizedTasks().isEmpty());
+    }
+}
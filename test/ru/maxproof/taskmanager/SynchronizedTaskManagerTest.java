@@ -0,0 +1,11 @@
+package ru.maxproof.taskmanager;
+
+import org.junit.jupiter.api.BeforeEach;
+
+class SynchronizedTaskManagerTest extends TaskManagerTest<TaskManager> {
+
+    @BeforeEach
+    void setUp() {
+        manager = Managers.synchronizedTaskManager(new InMemoryTaskManager());
+    }
+}
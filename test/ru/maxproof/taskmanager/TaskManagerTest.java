@@ -1,12 +1,21 @@
 package ru.maxproof.taskmanager;
 
 import org.junit.jupiter.api.Test;
+import ru.maxproof.exceptions.DependencyCycleException;
 import ru.maxproof.exceptions.NotFoundIdException;
 import ru.maxproof.exceptions.OverlappingTasksException;
+import ru.maxproof.exceptions.VersionConflictException;
 
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -14,6 +23,97 @@ abstract class TaskManagerTest<T extends TaskManager> {
 
     T manager;
 
+    @Test
+    void subscribe() {
+
+        List<TaskEvent> events = new ArrayList<>();
+        TaskSubscription subscription = manager.subscribe(events::add);
+        Epic epic = manager.createEpic(new TaskBuilder().setName("epic").buildEpic());
+        Subtask subtask = manager.createSubtask(new TaskBuilder().setEpicId(epic.getId()).setName("sub").buildSubtask());
+        manager.updateSubtask(new TaskBuilder(subtask).setStatus(TaskStatus.DONE).buildSubtask());
+        manager.updateEpic(new TaskBuilder(epic).setName("renamed").buildEpic());
+        manager.removeSubtask(subtask.getId());
+
+        assertEquals(List.of(TaskEvent.Type.CREATED,
+                        TaskEvent.Type.CREATED, TaskEvent.Type.EPIC_RECOMPUTED,
+                        TaskEvent.Type.UPDATED, TaskEvent.Type.EPIC_RECOMPUTED,
+                        TaskEvent.Type.UPDATED,
+                        TaskEvent.Type.REMOVED, TaskEvent.Type.EPIC_RECOMPUTED),
+                events.stream().map(TaskEvent::type).toList());
+        for (int i = 0; i < events.size(); i++)
+            assertEquals(i + 1, events.get(i).sequence());
+        assertEquals(TaskStatus.DONE, events.get(4).newTask().getStatus());
+        assertEquals(subtask.getId(), events.get(6).taskId());
+        assertNull(events.get(6).newTask());
+
+        // Отмененная транзакция не порождает событий, зафиксированная - публикует события при фиксации
+        assertThrows(IllegalStateException.class, () -> manager.executeTransaction(tx -> {
+            tx.createTask(new TaskBuilder().setName("lost").buildTask());
+            throw new IllegalStateException();
+        }));
+        assertEquals(8, events.size());
+        manager.executeTransaction(tx -> {
+            tx.createTask(new TaskBuilder().setName("kept").buildTask());
+            assertEquals(8, events.size());
+        });
+        assertEquals(9, events.size());
+        assertEquals(9, events.getLast().sequence());
+
+        subscription.close();
+        manager.createTask(new TaskBuilder().setName("unobserved").buildTask());
+        assertEquals(9, events.size());
+        assertEquals(0, subscription.getDroppedEvents());
+    }
+
+    @Test
+    void failingListener() {
+
+        // Ошибка получателя не прерывает операцию и не мешает доставке остальным получателям
+        List<Throwable> failures = new ArrayList<>();
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+        try {
+            manager.subscribe(event -> {
+                throw new IllegalStateException();
+            });
+            List<TaskEvent> events = new ArrayList<>();
+            manager.subscribe(events::add);
+            Epic epic = manager.createEpic(new TaskBuilder().setName("epic").buildEpic());
+            Subtask subtask = manager.createSubtask(new TaskBuilder().setEpicId(epic.getId())
+                    .setName("sub").setStatus(TaskStatus.DONE).buildSubtask());
+            assertEquals(TaskStatus.DONE, manager.getEpic(epic.getId()).getStatus());
+            assertEquals(List.of(subtask.getId()), manager.getEpic(epic.getId()).getSubtasks());
+
+            manager.getSubtask(subtask.getId());
+            manager.executeTransaction(tx -> tx.removeSubtask(subtask.getId()));
+            assertFalse(manager.getHistory().stream().anyMatch(task -> task.getId() == subtask.getId()));
+            assertEquals(5, events.size());
+            assertEquals(5, failures.size());
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+    }
+
+    @Test
+    void subscribeToMovedSubtask() {
+
+        // Перенос подзадачи в другой эпик - одно изменение подзадачи и пересчет обоих эпиков
+        Epic first = manager.createEpic(new TaskBuilder().setName("first").buildEpic());
+        Epic second = manager.createEpic(new TaskBuilder().setName("second").buildEpic());
+        Subtask subtask = manager.createSubtask(new TaskBuilder().setEpicId(first.getId()).setName("sub").buildSubtask());
+        List<TaskEvent> events = new ArrayList<>();
+        manager.subscribe(events::add);
+        manager.updateSubtask(new TaskBuilder(subtask).setEpicId(second.getId()).buildSubtask());
+
+        assertEquals(List.of(TaskEvent.Type.UPDATED, TaskEvent.Type.EPIC_RECOMPUTED, TaskEvent.Type.EPIC_RECOMPUTED),
+                events.stream().map(TaskEvent::type).toList());
+        assertEquals(first.getId(), ((Subtask) events.getFirst().oldTask()).getEpicId());
+        assertEquals(second.getId(), ((Subtask) events.getFirst().newTask()).getEpicId());
+        assertEquals(List.of(), ((Epic) events.get(1).newTask()).getSubtasks());
+        assertEquals(List.of(subtask.getId()), ((Epic) events.get(2).newTask()).getSubtasks());
+    }
+
     @Test
     void createTask() {
 
@@ -257,6 +357,42 @@ abstract class TaskManagerTest<T extends TaskManager> {
                 manager.getPrioritizedTasks().stream().map(Task::getId).toList());
     }
 
+    @Test
+    void checkOverlapWithNeighbours() {
+
+        // Шкала из задач длительностью 1 час с промежутками в 1 час
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            manager.createTask(new TaskBuilder()
+                    .setName("T" + i)
+                    .setStartTime(base.plusHours(2L * i))
+                    .setDuration(Duration.ofHours(1))
+                    .buildTask());
+        }
+
+        // Задача, целиком покрывающая несколько задач шкалы
+        assertThrows(OverlappingTasksException.class, () -> manager.createTask(new TaskBuilder()
+                .setName("wide").setStartTime(base.plusMinutes(30)).setDuration(Duration.ofHours(10))
+                .buildTask()));
+
+        // Задача, начинающаяся внутри задачи шкалы
+        assertThrows(OverlappingTasksException.class, () -> manager.createTask(new TaskBuilder()
+                .setName("inner").setStartTime(base.plusHours(4).plusMinutes(59)).setDuration(Duration.ofMinutes(1))
+                .buildTask()));
+
+        // Задача, заполняющая промежуток целиком
+        int gapId = manager.createTask(new TaskBuilder()
+                .setName("gap").setStartTime(base.plusHours(5)).setDuration(Duration.ofHours(1))
+                .buildTask()).getId();
+
+        // Сдвиг задачи внутри своего же интервала не является пересечением
+        manager.updateTask(new TaskBuilder(manager.getTask(gapId))
+                .setStartTime(base.plusHours(5).plusMinutes(30))
+                .setDuration(Duration.ofMinutes(30))
+                .buildTask());
+        assertEquals(11, manager.getPrioritizedTasks().size());
+    }
+
     @Test
     void updateSubtask() {
 
@@ -325,6 +461,49 @@ abstract class TaskManagerTest<T extends TaskManager> {
         assertEquals(Duration.ofHours(6), epic.getDuration());
     }
 
+    @Test
+    void epicAggregates() {
+
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 0, 0);
+        final int epicId1 = manager.createEpic(new TaskBuilder().setName("epic1").buildEpic()).getId();
+        final int epicId2 = manager.createEpic(new TaskBuilder().setName("epic2").buildEpic()).getId();
+        Subtask sub1 = manager.createSubtask(new TaskBuilder().setEpicId(epicId1).setName("sub1")
+                .setStartTime(base).setDuration(Duration.ofHours(1)).buildSubtask());
+        Epic publishedEpic = manager.getEpic(epicId1);
+        Subtask sub2 = manager.createSubtask(new TaskBuilder().setEpicId(epicId1).setName("sub2")
+                .setStartTime(base.plusHours(2)).setDuration(Duration.ofHours(2)).buildSubtask());
+
+        // Ранее полученная версия эпика не изменяется
+        assertEquals(List.of(sub1.getId()), publishedEpic.getSubtasks());
+        assertEquals(base.plusHours(1), publishedEpic.getEndTime());
+        Epic epic1 = manager.getEpic(epicId1);
+        assertEquals(List.of(sub1.getId(), sub2.getId()), epic1.getSubtasks());
+        assertEquals(base, epic1.getStartTime());
+        assertEquals(base.plusHours(4), epic1.getEndTime());
+        assertEquals(Duration.ofHours(3), epic1.getDuration());
+
+        // Перенос подзадачи в другой эпик
+        manager.updateSubtask(new TaskBuilder(sub1).setEpicId(epicId2).setStatus(TaskStatus.DONE).buildSubtask());
+        epic1 = manager.getEpic(epicId1);
+        Epic epic2 = manager.getEpic(epicId2);
+        assertEquals(List.of(sub2.getId()), epic1.getSubtasks());
+        assertEquals(base.plusHours(2), epic1.getStartTime());
+        assertEquals(Duration.ofHours(2), epic1.getDuration());
+        assertEquals(TaskStatus.NEW, epic1.getStatus());
+        assertEquals(List.of(sub1.getId()), epic2.getSubtasks());
+        assertEquals(TaskStatus.DONE, epic2.getStatus());
+        assertThrows(NotFoundIdException.class, () -> manager.updateSubtask(
+                new TaskBuilder(sub2).setEpicId(999).buildSubtask()));
+
+        // Удаление подзадачи
+        manager.removeSubtask(sub2.getId());
+        epic1 = manager.getEpic(epicId1);
+        assertTrue(epic1.getSubtasks().isEmpty());
+        assertNull(epic1.getStartTime());
+        assertNull(epic1.getEndTime());
+        assertEquals(Duration.ZERO, epic1.getDuration());
+    }
+
     @Test
     void updateEpic() {
 
@@ -603,4 +782,614 @@ abstract class TaskManagerTest<T extends TaskManager> {
         assertEquals("EPIC2", manager.getEpic(history.getLast().getId()).getName());
     }
 
+    @Test
+    void getPrioritizedTasksInWindow() {
+
+        // Задачи по 1 часу с промежутками в 1 час: 10:00, 12:00, ..., 18:00
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 10, 0);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(manager.createTask(new TaskBuilder()
+                    .setName("T" + i)
+                    .setStartTime(base.plusHours(2L * i))
+                    .setDuration(Duration.ofHours(1))
+                    .buildTask()).getId());
+        }
+        manager.createTask(new TaskBuilder().setName("no time").buildTask());
+
+        // Задача, начавшаяся до начала интервала, но не окончившаяся к нему, входит в интервал;
+        // задача, начинающаяся в момент окончания интервала, - нет
+        assertEquals(ids.subList(1, 3), manager.getPrioritizedTasks(base.plusMinutes(150), base.plusHours(6))
+                .stream().map(Task::getId).toList());
+        // Задача, окончившаяся в момент начала интервала, в интервал не входит
+        assertEquals(ids.subList(1, 2), manager.getPrioritizedTasks(base.plusHours(1), base.plusHours(3))
+                .stream().map(Task::getId).toList());
+        assertEquals(ids, manager.getPrioritizedTasks(null, null).stream().map(Task::getId).toList());
+        assertTrue(manager.getPrioritizedTasks(base.plusHours(5), base.plusHours(5)).isEmpty());
+
+        // Постраничная выборка
+        List<Task> page = manager.getPrioritizedTasks(base.plusMinutes(30), null, 2);
+        assertEquals(ids.subList(0, 2), page.stream().map(Task::getId).toList());
+        page = manager.getPrioritizedTasksAfter(page.getLast().getStartTime(), null, 2);
+        assertEquals(ids.subList(2, 4), page.stream().map(Task::getId).toList());
+        page = manager.getPrioritizedTasksAfter(page.getLast().getStartTime(), base.plusHours(20), 2);
+        assertEquals(ids.subList(4, 5), page.stream().map(Task::getId).toList());
+        assertTrue(manager.getPrioritizedTasksAfter(page.getLast().getStartTime(), null, 2).isEmpty());
+    }
+
+    @Test
+    void removeFromTimeline() {
+
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 10, 0);
+        int taskId = manager.createTask(new TaskBuilder().setName("T")
+                .setStartTime(base).setDuration(Duration.ofHours(1)).buildTask()).getId();
+        int epicId = manager.createEpic(new TaskBuilder().setName("E").buildEpic()).getId();
+        List<Integer> subtaskIds = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            subtaskIds.add(manager.createSubtask(new TaskBuilder().setName("S" + i).setEpicId(epicId)
+                    .setStartTime(base.plusHours(i)).setDuration(Duration.ofHours(1)).buildSubtask()).getId());
+        }
+
+        // Очистка задач не затрагивает подзадачи на шкале
+        manager.clearTasks();
+        assertEquals(subtaskIds, manager.getPrioritizedTasks().stream().map(Task::getId).toList());
+
+        // Удаление эпика удаляет со шкалы все его подзадачи
+        int otherId = manager.createTask(new TaskBuilder().setName("T2")
+                .setStartTime(base).setDuration(Duration.ofHours(1)).buildTask()).getId();
+        manager.removeEpic(epicId);
+        assertEquals(List.of(otherId), manager.getPrioritizedTasks().stream().map(Task::getId).toList());
+
+        // Освободившееся время доступно для новых задач
+        manager.createTask(new TaskBuilder().setName("T3")
+                .setStartTime(base.plusHours(2)).setDuration(Duration.ofHours(1)).buildTask());
+        manager.removeTask(otherId);
+        manager.removeTask(taskId);
+        assertEquals(1, manager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void createBatch() {
+
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 10, 0);
+        manager.createTask(new TaskBuilder().setName("T0")
+                .setStartTime(base).setDuration(Duration.ofHours(1)).buildTask());
+
+        // Пересечение задач группы между собой: ни одна задача не регистрируется
+        List<Task> overlapping = List.of(
+                new TaskBuilder().setName("A").setStartTime(base.plusHours(3)).setDuration(Duration.ofHours(2)).buildTask(),
+                new TaskBuilder().setName("B").buildTask(),
+                new TaskBuilder().setName("C").setStartTime(base.plusHours(4)).setDuration(Duration.ofHours(1)).buildTask());
+        assertThrows(OverlappingTasksException.class, () -> manager.createTasks(overlapping));
+        // Пересечение с имеющейся задачей
+        List<Task> conflicting = List.of(
+                new TaskBuilder().setName("D").setStartTime(base.plusMinutes(30)).setDuration(Duration.ofHours(1)).buildTask());
+        assertThrows(OverlappingTasksException.class, () -> manager.createTasks(conflicting));
+        assertEquals(1, manager.getTasks().size());
+
+        // Успешная регистрация группы: идентификаторы выделяются подряд
+        List<Task> tasks = manager.createTasks(List.of(
+                new TaskBuilder().setName("E").setStartTime(base.plusHours(3)).setDuration(Duration.ofHours(1)).buildTask(),
+                new TaskBuilder().setName("F").buildTask(),
+                new TaskBuilder().setName("G").setStartTime(base.plusHours(1)).setDuration(Duration.ofHours(1)).buildTask()));
+        assertEquals(List.of("E", "F", "G"), tasks.stream().map(Task::getName).toList());
+        assertEquals(tasks.get(0).getId() + 1, tasks.get(1).getId());
+        assertEquals(tasks.get(1).getId() + 1, tasks.get(2).getId());
+        assertEquals(4, manager.getTasks().size());
+        assertEquals(3, manager.getPrioritizedTasks().size());
+
+        // Подзадачи нескольких эпиков
+        int epic1 = manager.createEpic(new TaskBuilder().setName("E1").buildEpic()).getId();
+        int epic2 = manager.createEpic(new TaskBuilder().setName("E2").buildEpic()).getId();
+        assertThrows(NotFoundIdException.class, () -> manager.createSubtasks(List.of(
+                new TaskBuilder().setName("S").setEpicId(epic1).buildSubtask(),
+                new TaskBuilder().setName("S").setEpicId(-1).buildSubtask())));
+        List<Subtask> subtasks = manager.createSubtasks(List.of(
+                new TaskBuilder().setName("S1").setEpicId(epic1).setStatus(TaskStatus.DONE)
+                        .setStartTime(base.plusHours(5)).setDuration(Duration.ofHours(1)).buildSubtask(),
+                new TaskBuilder().setName("S2").setEpicId(epic2)
+                        .setStartTime(base.plusHours(7)).setDuration(Duration.ofHours(1)).buildSubtask(),
+                new TaskBuilder().setName("S3").setEpicId(epic1).setStatus(TaskStatus.DONE).buildSubtask()));
+        assertEquals(3, subtasks.size());
+        assertEquals(List.of(subtasks.get(0).getId(), subtasks.get(2).getId()), manager.getEpic(epic1).getSubtasks());
+        assertEquals(TaskStatus.DONE, manager.getEpic(epic1).getStatus());
+        assertEquals(base.plusHours(7), manager.getEpic(epic2).getStartTime());
+        assertEquals(5, manager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void rejectedCreateKeepsIds() {
+
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 10, 0);
+        int first = manager.createTask(new TaskBuilder().setName("T1")
+                .setStartTime(base).setDuration(Duration.ofHours(1)).buildTask()).getId();
+
+        // Отклоненное создание не расходует идентификаторы
+        assertThrows(OverlappingTasksException.class, () -> manager.createTask(new TaskBuilder().setName("T2")
+                .setStartTime(base).setDuration(Duration.ofHours(1)).buildTask()));
+        assertThrows(OverlappingTasksException.class, () -> manager.createTasks(List.of(new TaskBuilder()
+                .setName("T3").setStartTime(base.plusMinutes(30)).setDuration(Duration.ofHours(1)).buildTask())));
+        assertThrows(NotFoundIdException.class, () -> manager.createSubtask(new TaskBuilder().setName("S")
+                .setEpicId(first + 100).buildSubtask()));
+        int epicId = manager.createEpic(new TaskBuilder().setName("E").buildEpic()).getId();
+        assertEquals(first + 1, epicId);
+        assertThrows(OverlappingTasksException.class, () -> manager.createSubtask(new TaskBuilder().setName("S")
+                .setEpicId(epicId).setStartTime(base).setDuration(Duration.ofHours(1)).buildSubtask()));
+        assertEquals(epicId + 1, manager.createTask(new TaskBuilder().setName("T4").buildTask()).getId());
+    }
+
+    @Test
+    void executeTransaction() {
+
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 10, 0);
+        int epic1 = manager.createEpic(new TaskBuilder().setName("E1").buildEpic()).getId();
+        Subtask sub1 = manager.createSubtask(new TaskBuilder().setName("S1").setEpicId(epic1)
+                .setStartTime(base).setDuration(Duration.ofHours(1)).buildSubtask());
+        Task task1 = manager.createTask(new TaskBuilder().setName("T1")
+                .setStartTime(base.plusHours(1)).setDuration(Duration.ofHours(1)).buildTask());
+
+        // Фиксация: эпик и подзадачи создаются, подзадача переносится, задачи сдвигаются цепочкой
+        int[] epic2 = new int[1];
+        manager.executeTransaction(tx -> {
+            epic2[0] = tx.createEpic(new TaskBuilder().setName("E2").buildEpic()).getId();
+            tx.createSubtask(new TaskBuilder().setName("S2").setEpicId(epic2[0])
+                    .setStatus(TaskStatus.DONE).buildSubtask());
+            tx.updateTask(new TaskBuilder(task1).setStartTime(base.plusHours(2)).buildTask());
+            tx.updateSubtask(new TaskBuilder(sub1).setEpicId(epic2[0]).setStatus(TaskStatus.DONE)
+                    .setStartTime(base.plusHours(1)).buildSubtask());
+        });
+        assertTrue(manager.getEpic(epic1).getSubtasks().isEmpty());
+        assertEquals(2, manager.getEpic(epic2[0]).getSubtasks().size());
+        assertEquals(TaskStatus.DONE, manager.getEpic(epic2[0]).getStatus());
+        assertEquals(base.plusHours(1), manager.getEpic(epic2[0]).getStartTime());
+        assertEquals(List.of(sub1.getId(), task1.getId()),
+                manager.getPrioritizedTasks().stream().map(Task::getId).toList());
+
+        // Отмена: исключение последней операции отменяет все изменения транзакции
+        manager.getTask(task1.getId());
+        List<Task> tasks = manager.getEntireTaskList();
+        List<Task> prioritized = manager.getPrioritizedTasks();
+        List<Task> history = manager.getHistory();
+        assertThrows(OverlappingTasksException.class, () -> manager.executeTransaction(tx -> {
+            tx.removeTask(task1.getId());
+            tx.removeEpic(epic2[0]);
+            tx.createTask(new TaskBuilder().setName("T2")
+                    .setStartTime(base.plusHours(5)).setDuration(Duration.ofHours(1)).buildTask());
+            tx.updateEpic(new TaskBuilder(manager.getEpics().getFirst()).setName("renamed").buildEpic());
+            tx.createTask(new TaskBuilder().setName("T3")
+                    .setStartTime(base.plusHours(5)).setDuration(Duration.ofHours(1)).buildTask());
+        }));
+        assertEquals(tasks, manager.getEntireTaskList());
+        assertEquals(prioritized, manager.getPrioritizedTasks());
+        assertEquals(history, manager.getHistory());
+        assertEquals(TaskStatus.DONE, manager.getEpic(epic2[0]).getStatus());
+        assertEquals(List.of(sub1.getId()), manager.getEpicSubtasks(manager.getEpic(epic2[0])).stream()
+                .filter(Task::isValidTime).map(Task::getId).toList());
+
+        // Освобожденное при отмене время снова занято, удаление эпика после отмены работает
+        assertThrows(OverlappingTasksException.class, () -> manager.createTask(new TaskBuilder().setName("T4")
+                .setStartTime(base.plusHours(2)).setDuration(Duration.ofHours(1)).buildTask()));
+        manager.removeEpic(epic2[0]);
+        assertEquals(List.of(task1.getId()), manager.getPrioritizedTasks().stream().map(Task::getId).toList());
+
+        // Вложенные транзакции не поддерживаются
+        assertThrows(IllegalStateException.class,
+                () -> manager.executeTransaction(tx -> manager.executeTransaction(inner -> {})));
+    }
+
+    /**
+     * Сверяет выборку по статусам с перебором всех задач
+     */
+    private void assertStatusIndex() {
+        for (TaskStatus status : TaskStatus.values()) {
+            Set<Integer> expected = manager.getEntireTaskList().stream()
+                    .filter(task -> task.getStatus() == status).map(Task::getId).collect(Collectors.toSet());
+            List<Task> actual = manager.getTasksByStatus(status);
+            assertEquals(expected, actual.stream().map(Task::getId).collect(Collectors.toSet()));
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected.size(), manager.countByStatus().get(status));
+        }
+    }
+
+    @Test
+    void getTasksByStatus() {
+
+        assertEquals(0, manager.countByStatus().get(TaskStatus.NEW));
+        Task task = manager.createTask(new TaskBuilder().setName("T").buildTask());
+        int epicId = manager.createEpic(new TaskBuilder().setName("E").buildEpic()).getId();
+        Subtask sub1 = manager.createSubtask(new TaskBuilder().setName("S1").setEpicId(epicId).buildSubtask());
+        Subtask sub2 = manager.createSubtask(new TaskBuilder().setName("S2").setEpicId(epicId)
+                .setStatus(TaskStatus.DONE).buildSubtask());
+        assertEquals(2, manager.getTasksByStatus(TaskStatus.NEW).size());
+        assertEquals(List.of(manager.getEpic(epicId)), manager.getTasksByStatus(TaskStatus.IN_PROGRESS));
+        assertStatusIndex();
+
+        // Изменение статуса задачи и подзадачи (со сменой статуса эпика)
+        manager.updateTask(new TaskBuilder(task).setStatus(TaskStatus.IN_PROGRESS).buildTask());
+        manager.updateSubtask(new TaskBuilder(sub1).setStatus(TaskStatus.DONE).buildSubtask());
+        assertEquals(TaskStatus.DONE, manager.getTasksByStatus(TaskStatus.DONE).stream()
+                .filter(t -> t.getId() == epicId).findFirst().orElseThrow().getStatus());
+        assertStatusIndex();
+
+        // Отмененная транзакция не меняет индекс
+        assertThrows(IllegalArgumentException.class, () -> manager.executeTransaction(tx -> {
+            tx.removeSubtask(sub2.getId());
+            tx.updateTask(new TaskBuilder(task).setStatus(TaskStatus.NEW).buildTask());
+            throw new IllegalArgumentException();
+        }));
+        assertStatusIndex();
+        assertEquals(3, manager.countByStatus().get(TaskStatus.DONE));
+
+        // Удаление и очистка
+        manager.removeSubtask(sub1.getId());
+        assertStatusIndex();
+        manager.clearEpics();
+        assertStatusIndex();
+        manager.clearTasks();
+        assertStatusIndex();
+        assertTrue(manager.getTasksByStatus(TaskStatus.DONE).isEmpty());
+    }
+
+    @Test
+    void search() {
+
+        Task task = manager.createTask(new TaskBuilder().setName("Купить ёлку").setDescription("Зелёную, 2м").buildTask());
+        int epicId = manager.createEpic(new TaskBuilder().setName("Новый год").buildEpic()).getId();
+        Subtask subtask = manager.createSubtask(new TaskBuilder().setName("Нарядить елку")
+                .setDescription("Игрушки: шары, гирлянда").setEpicId(epicId).buildSubtask());
+
+        // Регистр, буква ё и поиск по началу слова
+        assertEquals(List.of(task.getId(), subtask.getId()),
+                manager.search("ЕЛК", 10).stream().map(Task::getId).toList());
+        assertTrue(manager.search("елка гирл", 10).isEmpty());
+        assertEquals(List.of(subtask.getId()), manager.search("елк гирл", 10).stream().map(Task::getId).toList());
+        assertEquals(List.of(task.getId()), manager.search("2м", 10).stream().map(Task::getId).toList());
+        assertEquals(List.of(task.getId()), manager.search("елк", 1).stream().map(Task::getId).toList());
+        assertTrue(manager.search("  ,. ", 10).isEmpty());
+        assertTrue(manager.search("ель", 10).isEmpty());
+
+        // Изменение текста, пересчет эпика и удаление
+        manager.updateTask(new TaskBuilder(task).setName("Купить сосну").buildTask());
+        assertEquals(List.of(task.getId()), manager.search("зел сосн", 10).stream().map(Task::getId).toList());
+        assertEquals(List.of(subtask.getId()), manager.search("елк", 10).stream().map(Task::getId).toList());
+        manager.updateSubtask(new TaskBuilder(subtask).setStatus(TaskStatus.DONE).buildSubtask());
+        List<Task> found = manager.search("новый", 10);
+        assertEquals(List.of(manager.getEpic(epicId)), found);
+        assertEquals(TaskStatus.DONE, found.getFirst().getStatus());
+        manager.removeEpic(epicId);
+        assertTrue(manager.search("елк", 10).isEmpty());
+        manager.clearTasks();
+        assertTrue(manager.search("купить", 10).isEmpty());
+    }
+
+    @Test
+    void findFreeSlot() {
+
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 10, 0);
+        Duration hour = Duration.ofHours(1);
+        assertEquals(Optional.of(base), manager.findFreeSlot(hour, base, null));
+
+        // Шкала: [10:00, 11:00), [11:30, 12:00), [12:00, 13:00), подзадача [14:00, 15:00)
+        manager.createTask(new TaskBuilder().setName("T1").setStartTime(base).setDuration(hour).buildTask());
+        manager.createTask(new TaskBuilder().setName("T2").setStartTime(base.plusMinutes(90))
+                .setDuration(Duration.ofMinutes(30)).buildTask());
+        manager.createTask(new TaskBuilder().setName("T3").setStartTime(base.plusHours(2)).setDuration(hour).buildTask());
+        int epicId = manager.createEpic(new TaskBuilder().setName("E").buildEpic()).getId();
+        manager.createSubtask(new TaskBuilder().setName("S").setEpicId(epicId)
+                .setStartTime(base.plusHours(4)).setDuration(hour).buildSubtask());
+
+        // Начало внутри задачи, промежуток короче требуемого пропускается
+        assertEquals(Optional.of(base.plusHours(1)), manager.findFreeSlot(Duration.ofMinutes(30), base.plusMinutes(10), null));
+        assertEquals(Optional.of(base.plusHours(3)), manager.findFreeSlot(hour, base.plusMinutes(10), null));
+        assertEquals(Optional.of(base.plusHours(5)), manager.findFreeSlot(Duration.ofMinutes(61), base, null));
+        assertEquals(Optional.of(base.minusHours(1)), manager.findFreeSlot(hour, base.minusHours(1), null));
+
+        // Ограничение окончания интервала
+        assertEquals(Optional.of(base.plusHours(3)), manager.findFreeSlot(hour, base, base.plusHours(4)));
+        assertEquals(Optional.empty(), manager.findFreeSlot(hour, base, base.plusMinutes(239)));
+        assertEquals(Optional.empty(), manager.findFreeSlot(Duration.ofMinutes(61), base, base.plusHours(5)));
+        assertThrows(IllegalArgumentException.class, () -> manager.findFreeSlot(Duration.ZERO, base, null));
+
+        // Найденный интервал свободен
+        LocalDateTime start = manager.findFreeSlot(Duration.ofMinutes(30), base, null).orElseThrow();
+        manager.createTask(new TaskBuilder().setName("T4").setStartTime(start)
+                .setDuration(Duration.ofMinutes(30)).buildTask());
+        assertEquals(Optional.of(base.plusHours(3)), manager.findFreeSlot(Duration.ofMinutes(30), base, null));
+    }
+
+    @Test
+    void autoSchedule() {
+
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 10, 0);
+        Duration hour = Duration.ofHours(1);
+        // Шкала: [10:00, 11:00), [12:00, 13:00); свободно [11:00, 12:00) и с 13:00
+        manager.createTask(new TaskBuilder().setName("T1").setStartTime(base).setDuration(hour).buildTask());
+        manager.createTask(new TaskBuilder().setName("T2").setStartTime(base.plusHours(2)).setDuration(hour).buildTask());
+
+        Task shortTask = manager.createTask(new TaskBuilder().setName("short")
+                .setDuration(Duration.ofMinutes(30)).buildTask());
+        Task longTask = manager.createTask(new TaskBuilder().setName("long")
+                .setDuration(Duration.ofMinutes(90)).buildTask());
+        Task started = manager.createTask(new TaskBuilder().setName("started").setStatus(TaskStatus.IN_PROGRESS)
+                .setDuration(Duration.ofMinutes(20)).buildTask());
+        Task done = manager.createTask(new TaskBuilder().setName("done").setStatus(TaskStatus.DONE)
+                .setDuration(hour).buildTask());
+        Task noDuration = manager.createTask(new TaskBuilder().setName("none").buildTask());
+        int epicId = manager.createEpic(new TaskBuilder().setName("E").buildEpic()).getId();
+        Subtask sub1 = manager.createSubtask(new TaskBuilder().setName("S1").setEpicId(epicId)
+                .setDuration(Duration.ofMinutes(40)).buildSubtask());
+        Subtask sub2 = manager.createSubtask(new TaskBuilder().setName("S2").setEpicId(epicId)
+                .setDuration(Duration.ofMinutes(40)).buildSubtask());
+
+        // Пробный план: начатая задача первой, затем по убыванию длины: long (90 мин),
+        // эпик (80 мин, одним блоком), short (30 мин) - в остаток первого промежутка
+        List<Task> before = manager.getEntireTaskList();
+        SchedulePlan plan = manager.autoSchedule(base, null, true);
+        assertEquals(before, manager.getEntireTaskList());
+        Map<Integer, LocalDateTime> starts = new HashMap<>();
+        plan.scheduled().forEach(task -> starts.put(task.getId(), new TaskBuilder(task).getStartTime()));
+        assertEquals(Map.of(started.getId(), base.plusHours(1),
+                longTask.getId(), base.plusHours(3),
+                sub1.getId(), base.plusMinutes(270),
+                sub2.getId(), base.plusMinutes(310),
+                shortTask.getId(), base.plusMinutes(80)), starts);
+        assertTrue(plan.unscheduled().isEmpty());
+        assertFalse(starts.containsKey(done.getId()) || starts.containsKey(noDuration.getId()));
+        assertEquals(sub1.getEpicId(), ((Subtask) plan.scheduled().stream()
+                .filter(task -> task.getId() == sub1.getId()).findFirst().orElseThrow()).getEpicId());
+
+        // Ограничение интервала (до 14:00): эпик не помещается блоком и размещается по частям
+        plan = manager.autoSchedule(base, base.plusHours(4), true);
+        assertEquals(List.of(started.getId(), sub1.getId(), sub2.getId()),
+                plan.scheduled().stream().map(Task::getId).toList());
+        assertEquals(List.of(longTask.getId(), shortTask.getId()),
+                plan.unscheduled().stream().map(Task::getId).toList());
+
+        // Применение плана
+        plan = manager.autoSchedule(base, null, false);
+        assertEquals(7, manager.getPrioritizedTasks().size());
+        assertEquals(base.plusMinutes(270), manager.getEpic(epicId).getStartTime());
+        assertEquals(base.plusMinutes(350), manager.getEpic(epicId).getEndTime());
+        assertEquals(5, plan.scheduled().size());
+        assertTrue(manager.autoSchedule(base, null, false).scheduled().isEmpty());
+    }
+
+    @Test
+    void versions() {
+
+        Task task = manager.createTask(new TaskBuilder().setName("T").buildTask());
+        Epic epic = manager.createEpic(new TaskBuilder().setName("E").buildEpic());
+        assertEquals(1, task.getVersion());
+        assertEquals(1, manager.getEpic(epic.getId()).getVersion());
+
+        // Каждое изменение увеличивает версию; версия, переданная в задаче, не учитывается
+        manager.updateTask(new TaskBuilder(task).setName("T2").setVersion(100).buildTask());
+        assertEquals(2, manager.getTask(task.getId()).getVersion());
+        Task updated = manager.updateTask(new TaskBuilder(task).setName("T3").buildTask(), 2);
+        assertEquals(3, updated.getVersion());
+        assertEquals(updated, manager.getTask(task.getId()));
+        assertEquals("T3", manager.getTask(task.getId()).getName());
+
+        // Обновление устаревшей версии отклоняется без изменения задачи
+        VersionConflictException conflict = assertThrows(VersionConflictException.class,
+                () -> manager.updateTask(new TaskBuilder(task).setName("lost").buildTask(), 1));
+        assertEquals(3, conflict.getActualVersion());
+        assertEquals("T3", manager.getTask(task.getId()).getName());
+        assertThrows(NotFoundIdException.class,
+                () -> manager.updateTask(new TaskBuilder(task).setId(-1).buildTask(), 1));
+
+        // Изменение подзадачи создает новую версию эпика
+        Subtask subtask = manager.createSubtask(new TaskBuilder().setEpicId(epic.getId()).setName("S").buildSubtask());
+        assertEquals(1, subtask.getVersion());
+        assertEquals(2, manager.getEpic(epic.getId()).getVersion());
+        Subtask updatedSubtask = manager.updateSubtask(
+                new TaskBuilder(subtask).setStatus(TaskStatus.DONE).buildSubtask(), 1);
+        assertEquals(2, updatedSubtask.getVersion());
+        assertEquals(TaskStatus.DONE, updatedSubtask.getStatus());
+        assertEquals(3, manager.getEpic(epic.getId()).getVersion());
+        assertThrows(VersionConflictException.class,
+                () -> manager.updateSubtask(new TaskBuilder(subtask).buildSubtask(), 1));
+
+        Epic stored = manager.getEpic(epic.getId());
+        Epic updatedEpic = manager.updateEpic(new TaskBuilder(stored).setName("E2").buildEpic(), 3);
+        assertEquals(4, updatedEpic.getVersion());
+        assertEquals(TaskStatus.DONE, updatedEpic.getStatus());
+        assertEquals(4, manager.getEpic(epic.getId()).getVersion());
+        assertNull(manager.updateEpic(new TaskBuilder(stored).setId(-1).buildEpic()));
+        assertThrows(VersionConflictException.class,
+                () -> manager.updateEpic(new TaskBuilder(stored).setName("lost").buildEpic(), 3));
+        assertEquals("E2", manager.getEpic(epic.getId()).getName());
+
+        // Отмена транзакции восстанавливает прежние версии
+        assertThrows(IllegalStateException.class, () -> manager.executeTransaction(tx -> {
+            tx.updateSubtask(new TaskBuilder(subtask).setStatus(TaskStatus.NEW).buildSubtask());
+            throw new IllegalStateException();
+        }));
+        assertEquals(2, manager.getSubtask(subtask.getId()).getVersion());
+        assertEquals(4, manager.getEpic(epic.getId()).getVersion());
+    }
+
+    @Test
+    void statistics() {
+
+        TaskStatistics empty = manager.getStatistics();
+        assertEquals(0, empty.taskCount() + empty.subtaskCount() + empty.epicCount());
+        assertEquals(Duration.ZERO, empty.scheduledDuration());
+        assertTrue(empty.dailyUtilization().isEmpty());
+
+        // Задача, переходящая через полночь, учитывается в обоих днях
+        LocalDateTime evening = LocalDateTime.of(2030, 1, 1, 22, 0);
+        Task task = manager.createTask(new TaskBuilder()
+                .setName("T")
+                .setStartTime(evening)
+                .setDuration(Duration.ofHours(4))
+                .buildTask());
+        Epic epic = manager.createEpic(new TaskBuilder().setName("E").buildEpic());
+        Subtask subtask = manager.createSubtask(new TaskBuilder()
+                .setEpicId(epic.getId())
+                .setName("S")
+                .setStatus(TaskStatus.DONE)
+                .setStartTime(evening.plusHours(6))
+                .setDuration(Duration.ofHours(6))
+                .buildSubtask());
+        manager.createTask(new TaskBuilder().setName("no time").setStatus(TaskStatus.IN_PROGRESS).buildTask());
+
+        TaskStatistics statistics = manager.getStatistics();
+        assertEquals(2, statistics.taskCount());
+        assertEquals(1, statistics.subtaskCount());
+        assertEquals(1, statistics.epicCount());
+        assertEquals(Map.of(TaskStatus.NEW, 1, TaskStatus.IN_PROGRESS, 1, TaskStatus.DONE, 2),
+                statistics.statusCounts());
+        assertEquals(Duration.ofHours(10), statistics.scheduledDuration());
+        assertEquals(Map.of(evening.toLocalDate(), Duration.ofHours(2),
+                evening.toLocalDate().plusDays(1), Duration.ofHours(8)), statistics.dailyUtilization());
+        assertEquals(1.0 / 3, statistics.utilization(evening.toLocalDate().plusDays(1)));
+        assertEquals(statistics, manager.getStatistics());
+
+        // Статистика следует за изменениями задач
+        manager.updateSubtask(new TaskBuilder(subtask).setStatus(TaskStatus.NEW).setDuration(null).buildSubtask());
+        manager.removeTask(task.getId());
+        statistics = manager.getStatistics();
+        assertEquals(1, statistics.taskCount());
+        assertEquals(Map.of(TaskStatus.NEW, 2, TaskStatus.IN_PROGRESS, 1, TaskStatus.DONE, 0),
+                statistics.statusCounts());
+        assertEquals(Duration.ZERO, statistics.scheduledDuration());
+        assertTrue(statistics.dailyUtilization().isEmpty());
+
+        manager.clearEpics();
+        assertEquals(0, manager.getStatistics().epicCount());
+        assertEquals(0, manager.getStatistics().subtaskCount());
+
+        // Многодневная задача: неполные первый и последний дни, полностью занятые дни между ними
+        LocalDateTime noon = LocalDateTime.of(2030, 3, 1, 12, 0);
+        manager.createTask(new TaskBuilder()
+                .setName("long")
+                .setStartTime(noon)
+                .setDuration(Duration.ofHours(62))
+                .buildTask());
+        manager.createTask(new TaskBuilder()
+                .setName("next")
+                .setStartTime(noon.plusDays(10))
+                .setDuration(Duration.ofHours(1))
+                .buildTask());
+        TaskStatistics before = manager.getStatistics();
+        LocalDate day = noon.toLocalDate();
+        assertEquals(List.of(day, day.plusDays(1), day.plusDays(2), day.plusDays(3), day.plusDays(10)),
+                List.copyOf(before.dailyUtilization().keySet()));
+        assertEquals(Map.of(day, Duration.ofHours(12), day.plusDays(1), Duration.ofHours(24),
+                day.plusDays(2), Duration.ofHours(24), day.plusDays(3), Duration.ofHours(2),
+                day.plusDays(10), Duration.ofHours(1)), before.dailyUtilization());
+        assertEquals(1.0, before.utilization(day.plusDays(2)));
+        assertEquals(0.0, before.utilization(day.plusDays(5)));
+
+        // Снимок не меняется при последующих изменениях
+        manager.clearTasks();
+        assertEquals(5, before.dailyUtilization().size());
+        assertTrue(manager.getStatistics().dailyUtilization().isEmpty());
+    }
+
+    Task createTask(String name, int minutes) {
+        return manager.createTask(new TaskBuilder().setName(name).setDuration(Duration.ofMinutes(minutes)).buildTask());
+    }
+
+    @Test
+    void dependencies() {
+
+        Task a = createTask("A", 60);
+        Task b = createTask("B", 30);
+        Task c = createTask("C", 45);
+        Epic epic = manager.createEpic(new TaskBuilder().setName("epic").buildEpic());
+        Subtask s = manager.createSubtask(new TaskBuilder().setEpicId(epic.getId()).setName("S")
+                .setDuration(Duration.ofMinutes(20)).buildSubtask());
+        assertEquals(List.of(a), manager.getCriticalPath());
+
+        manager.addDependency(c.getId(), a.getId());
+        manager.addDependency(c.getId(), b.getId());
+        manager.addDependency(c.getId(), b.getId());
+        manager.addDependency(s.getId(), c.getId());
+        assertEquals(List.of(a, b), manager.getBlockers(c.getId()));
+        assertEquals(List.of(a, c, s), manager.getCriticalPath());
+
+        // Изменение продолжительности пересчитывает критический путь
+        Task longB = new TaskBuilder(b).setDuration(Duration.ofMinutes(120)).buildTask();
+        manager.updateTask(longB);
+        assertEquals(List.of(b.getId(), c.getId(), s.getId()),
+                manager.getCriticalPath().stream().map(Task::getId).toList());
+
+        // Циклы и эпики отклоняются
+        assertThrows(DependencyCycleException.class, () -> manager.addDependency(a.getId(), s.getId()));
+        assertThrows(DependencyCycleException.class, () -> manager.addDependency(a.getId(), a.getId()));
+        assertThrows(NotFoundIdException.class, () -> manager.addDependency(a.getId(), epic.getId()));
+        assertEquals(List.of(a), manager.getBlockers(c.getId()).subList(0, 1));
+
+        // Зависимости удаляются вместе с задачей
+        manager.removeTask(c.getId());
+        assertTrue(manager.getBlockers(s.getId()).isEmpty());
+        assertEquals(List.of(b.getId()), manager.getCriticalPath().stream().map(Task::getId).toList());
+        manager.removeDependency(s.getId(), a.getId());
+        manager.clearTasks();
+        manager.clearEpics();
+        assertTrue(manager.getCriticalPath().isEmpty());
+        assertTrue(manager.getDependencyOrder().isEmpty());
+    }
+
+    @Test
+    void dependencyOrder() {
+
+        // Зависимости добавляются против порядка создания: каждая требует перестановки
+        int size = 500;
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+            tasks.add(createTask("T" + i, 1));
+        for (int i = 0; i < size - 1; i++)
+            manager.addDependency(tasks.get(i).getId(), tasks.get(i + 1).getId());
+        assertEquals(tasks.reversed(), manager.getDependencyOrder());
+        assertEquals(tasks.reversed(), manager.getCriticalPath());
+        assertThrows(DependencyCycleException.class,
+                () -> manager.addDependency(tasks.getLast().getId(), tasks.getFirst().getId()));
+
+        // Порядок соблюдает каждую зависимость
+        manager.removeDependency(tasks.get(250).getId(), tasks.get(251).getId());
+        manager.addDependency(tasks.get(400).getId(), tasks.get(100).getId());
+        List<Integer> order = manager.getDependencyOrder().stream().map(Task::getId).toList();
+        for (Task task : tasks) {
+            for (Task blocker : manager.getBlockers(task.getId()))
+                assertTrue(order.indexOf(blocker.getId()) < order.indexOf(task.getId()));
+        }
+        assertEquals(301, manager.getCriticalPath().size());
+    }
+
+    @Test
+    void dependencyTransaction() {
+
+        Task a = createTask("A", 10);
+        Task b = createTask("B", 20);
+        Task c = createTask("C", 5);
+        manager.addDependency(b.getId(), a.getId());
+
+        // Отмена транзакции восстанавливает зависимости удаленных задач и отменяет добавленные
+        assertThrows(IllegalStateException.class, () -> manager.executeTransaction(tx -> {
+            tx.removeTask(a.getId());
+            manager.addDependency(c.getId(), b.getId());
+            throw new IllegalStateException();
+        }));
+        assertEquals(List.of(a), manager.getBlockers(b.getId()));
+        assertTrue(manager.getBlockers(c.getId()).isEmpty());
+        assertEquals(List.of(a, b), manager.getCriticalPath());
+    }
+
+    @Test
+    void dependenciesOfMovedSubtask() {
+
+        // Перенос подзадачи в другой эпик сохраняет ее зависимости
+        Task a = createTask("A", 10);
+        Epic first = manager.createEpic(new TaskBuilder().setName("first").buildEpic());
+        Epic second = manager.createEpic(new TaskBuilder().setName("second").buildEpic());
+        Subtask s = manager.createSubtask(new TaskBuilder().setEpicId(first.getId()).setName("S")
+                .setDuration(Duration.ofMinutes(20)).buildSubtask());
+        manager.addDependency(s.getId(), a.getId());
+        manager.updateSubtask(new TaskBuilder(s).setEpicId(second.getId()).buildSubtask());
+        assertEquals(List.of(a), manager.getBlockers(s.getId()));
+        assertEquals(List.of(a.getId(), s.getId()), manager.getCriticalPath().stream().map(Task::getId).toList());
+    }
 }